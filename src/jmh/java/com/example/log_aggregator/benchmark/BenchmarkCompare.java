@@ -0,0 +1,84 @@
+package com.example.log_aggregator.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares two JMH JSON result files benchmark by benchmark and flags every score that got worse by
+ * more than the threshold (10% unless given as a third argument). Exits with status 1 if any did:
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark.main=com.example.log_aggregator.benchmark.BenchmarkCompare \
+ *   -Dbenchmark.args="target/jmh-results/before.json target/jmh-results/after.json"
+ * </pre>
+ */
+public final class BenchmarkCompare {
+    private static final double DEFAULT_THRESHOLD_PERCENT = 10;
+
+    private BenchmarkCompare() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: BenchmarkCompare <baseline.json> <candidate.json> [threshold-percent]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_THRESHOLD_PERCENT;
+        Map<String, JsonNode> baseline = read(args[0]);
+        Map<String, JsonNode> candidate = read(args[1]);
+
+        int regressions = 0;
+        System.out.printf("%-90s%16s%16s%10s  %s%n", "benchmark", "baseline", "candidate", "unit", "change");
+        for (Map.Entry<String, JsonNode> entry : candidate.entrySet()) {
+            JsonNode before = baseline.get(entry.getKey());
+            JsonNode after = entry.getValue().get("primaryMetric");
+            String unit = after.get("scoreUnit").asText();
+            if (before == null) {
+                System.out.printf("%-90s%16s%16.3f%10s  new%n", entry.getKey(), "-", after.get("score").asDouble(),
+                        unit);
+                continue;
+            }
+            double oldScore = before.get("primaryMetric").get("score").asDouble();
+            double newScore = after.get("score").asDouble();
+            double change = (newScore - oldScore) / oldScore * 100;
+            // throughput is better when higher, every time-based mode when lower
+            boolean higherIsBetter = "thrpt".equals(entry.getValue().get("mode").asText());
+            boolean regressed = (higherIsBetter ? -change : change) > threshold;
+            if (regressed) {
+                regressions++;
+            }
+            System.out.printf("%-90s%16.3f%16.3f%10s  %+.1f%%%s%n", entry.getKey(), oldScore, newScore, unit,
+                    change, regressed ? " REGRESSION" : "");
+        }
+
+        System.out.printf("%n%d regression(s) above %.1f%%%n", regressions, threshold);
+        if (regressions > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * @return results keyed by benchmark name, parameters and thread count
+     */
+    private static Map<String, JsonNode> read(String file) throws IOException {
+        Map<String, JsonNode> results = new LinkedHashMap<>();
+        for (JsonNode result : new ObjectMapper().readTree(new File(file))) {
+            StringBuilder key = new StringBuilder(result.get("benchmark").asText()
+                    .replace("com.example.log_aggregator.benchmark.", ""));
+            JsonNode params = result.get("params");
+            if (params != null) {
+                Map<String, String> sorted = new TreeMap<>();
+                params.fields().forEachRemaining(param -> sorted.put(param.getKey(), param.getValue().asText()));
+                sorted.forEach((name, value) -> key.append(' ').append(name).append('=').append(value));
+            }
+            key.append(" t=").append(result.get("threads").asInt());
+            results.put(key.toString(), result);
+        }
+        return results;
+    }
+}
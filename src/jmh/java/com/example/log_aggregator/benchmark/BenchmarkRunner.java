@@ -0,0 +1,72 @@
+package com.example.log_aggregator.benchmark;
+
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatFactory;
+import org.openjdk.jmh.results.format.ResultFormatType;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Default entry point of the {@code benchmark} profile. Runs {@link org.openjdk.jmh.Main} with the
+ * given arguments and, unless {@code -rf} or {@code -rff} is passed, writes the results as JSON to
+ * {@code target/jmh-results/<name>-<time>.json} so two runs can be compared with {@link BenchmarkCompare}.
+ */
+public final class BenchmarkRunner {
+    static final Path RESULTS_DIRECTORY = Path.of("target", "jmh-results");
+
+    // an explicit result file, or a run that only lists or prints help
+    private static final Set<String> NO_DEFAULT_RESULT_OPTIONS =
+            Set.of("-rf", "-rff", "-l", "-lp", "-lprof", "-lrf", "-h");
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> jmhArgs = new ArrayList<>(List.of(args));
+        if (Collections.disjoint(jmhArgs, NO_DEFAULT_RESULT_OPTIONS)) {
+            jmhArgs.addAll(List.of("-rf", "json", "-rff", resultFile(firstPattern(args)).toString()));
+        }
+        org.openjdk.jmh.Main.main(jmhArgs.toArray(String[]::new));
+    }
+
+    /**
+     * writes results collected by a benchmark's own main method in the same JSON format
+     */
+    static Path writeJson(String name, Collection<RunResult> results) throws IOException {
+        Path file = resultFile(name);
+        try (PrintStream out = new PrintStream(Files.newOutputStream(file), true, "UTF-8")) {
+            ResultFormatFactory.getInstance(ResultFormatType.JSON, out).writeOut(results);
+        }
+        System.out.println("Results written to " + file);
+        return file;
+    }
+
+    private static Path resultFile(String name) throws IOException {
+        Files.createDirectories(RESULTS_DIRECTORY);
+        String safeName = name.replaceAll("[^A-Za-z0-9_.-]", "_");
+        return RESULTS_DIRECTORY.resolve(safeName + "-" + LocalDateTime.now().format(FILE_TIME) + ".json");
+    }
+
+    // the benchmark include pattern is the first argument that isn't an option or an option's value
+    private static String firstPattern(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].startsWith("-")) {
+                i++;
+            } else {
+                return args[i];
+            }
+        }
+        return "all";
+    }
+}
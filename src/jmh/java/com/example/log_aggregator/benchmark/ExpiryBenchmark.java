@@ -0,0 +1,72 @@
+package com.example.log_aggregator.benchmark;
+
+import com.example.log_aggregator.model.LogEntry;
+import com.example.log_aggregator.repository.LogRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures one {@code removeExpiredLogs} pass over a backlog of {@code backlog} entries spread over
+ * 20 services, half of them older than the one hour retention. Every pass starts from a freshly
+ * filled store, so it is timed as a single shot.
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark.args="ExpiryBenchmark"
+ * </pre>
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class ExpiryBenchmark {
+    private static final int SERVICES = 20;
+
+    @Param({"in-memory", "segmented"})
+    public String repositoryType;
+
+    @Param({"100000", "1000000"})
+    public int backlog;
+
+    private LogRepository repository;
+
+    @Setup(Level.Iteration)
+    public void fill() {
+        repository = LogStores.create(repositoryType);
+
+        // two hours of logs, the older hour is expired
+        Instant first = Instant.now().minusSeconds(7200);
+        long stepNanos = TimeUnit.HOURS.toNanos(2) / backlog;
+        List<LogEntry> batch = new ArrayList<>(1000);
+        for (int i = 0; i < backlog; i++) {
+            String serviceName = "service-" + i % SERVICES;
+            batch.add(new LogEntry(serviceName, first.plusNanos(i * stepNanos), "request " + i + " handled"));
+            if (batch.size() == 1000) {
+                repository.saveAll(batch);
+                batch.clear();
+            }
+        }
+        repository.saveAll(batch);
+    }
+
+    @Benchmark
+    public LogRepository removeExpiredLogs() {
+        repository.removeExpiredLogs();
+        return repository;
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.log_aggregator.benchmark;
+
+import com.example.log_aggregator.model.LogEntry;
+import com.example.log_aggregator.model.LogFilter;
+import com.example.log_aggregator.model.SearchQuery;
+import com.example.log_aggregator.model.SortOrder;
+import com.example.log_aggregator.repository.LogRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@code save} throughput when every ingest thread writes to the same hot service, alone
+ * or while another thread keeps searching the service's messages ({@code searching=true}), which
+ * reads the same index buckets the writers add to. Run {@link #main} to sweep 1 to 64 threads, or
+ * the thread counts given as arguments:
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark.main=com.example.log_aggregator.benchmark.IngestContentionBenchmark
+ * </pre>
+ * All runs of the sweep are written to one JSON result file.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g"})
+public class IngestContentionBenchmark {
+    private static final String HOT_SERVICE = "auth-gateway";
+    private static final LogFilter SEARCH = LogFilter.of(SearchQuery.parse("request"));
+    private static final int[] THREAD_COUNTS = {1, 2, 4, 8, 16, 32, 64};
+
+    @State(Scope.Benchmark)
+    public static class RepositoryState {
+        @Param({"in-memory", "segmented"})
+        public String repositoryType;
+
+        @Param({"false", "true"})
+        public boolean searching;
+
+        LogRepository repository;
+        private volatile boolean running;
+        private Thread searcher;
+
+        // fresh store per iteration so heap use stays flat across the run
+        @Setup(Level.Iteration)
+        public void setUp() {
+            repository = LogStores.create(repositoryType);
+            if (searching) {
+                running = true;
+                searcher = new Thread(this::search, "searcher");
+                searcher.setDaemon(true);
+                searcher.start();
+            }
+        }
+
+        // every stored entry matches, so each search walks the whole minute of postings
+        private void search() {
+            while (running) {
+                Instant now = Instant.now();
+                repository.findPageMatching(HOT_SERVICE, now.minusSeconds(3600), now.plusSeconds(3600), SEARCH, null,
+                        100, SortOrder.DESC);
+            }
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown() throws InterruptedException {
+            if (searcher != null) {
+                running = false;
+                searcher.join();
+                searcher = null;
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ClockState {
+        Instant base = Instant.now();
+        long tick;
+    }
+
+    @Benchmark
+    public void save(RepositoryState state, ClockState clock) {
+        state.repository.save(new LogEntry(HOT_SERVICE, clock.base.plusNanos(clock.tick++), "request handled"));
+    }
+
+    public static void main(String[] args) throws RunnerException, IOException {
+        int[] threadCounts = args.length == 0
+                ? THREAD_COUNTS
+                : Arrays.stream(args).mapToInt(Integer::parseInt).toArray();
+        Map<String, Map<Integer, Double>> throughput = new TreeMap<>();
+        List<RunResult> allResults = new ArrayList<>();
+        for (int threads : threadCounts) {
+            Options options = new OptionsBuilder()
+                    .include(IngestContentionBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build();
+            Collection<RunResult> results = new Runner(options).run();
+            allResults.addAll(results);
+            for (RunResult result : results) {
+                String store = result.getParams().getParam("repositoryType")
+                        + (Boolean.parseBoolean(result.getParams().getParam("searching")) ? "+search" : "");
+                throughput.computeIfAbsent(store, k -> new TreeMap<>())
+                        .put(threads, result.getPrimaryResult().getScore());
+            }
+        }
+
+        System.out.printf("%n%-10s", "threads");
+        throughput.keySet().forEach(type -> System.out.printf("%18s", type));
+        System.out.println();
+        for (int threads : threadCounts) {
+            System.out.printf("%-10d", threads);
+            for (Map<Integer, Double> byThreads : throughput.values()) {
+                System.out.printf("%18.0f", byThreads.getOrDefault(threads, Double.NaN));
+            }
+            System.out.println();
+        }
+        BenchmarkRunner.writeJson(IngestContentionBenchmark.class.getSimpleName(), allResults);
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.log_aggregator.benchmark;
+
+import com.example.log_aggregator.controller.LogEntryDecoder;
+import com.example.log_aggregator.model.LogEntry;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures reading a {@code POST /logs/batch} body: Jackson data binding to {@link LogEntry}, as the
+ * endpoints did, against the streaming {@link LogEntryDecoder}. Run with the GC profiler to compare the
+ * bytes allocated per batch, which is what the decoder saves on service names and timestamps.
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark.args="IngestDecodeBenchmark -prof gc"
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class IngestDecodeBenchmark {
+    private static final TypeReference<List<LogEntry>> LOG_ENTRIES = new TypeReference<>() {
+    };
+
+    @Param({"1000"})
+    public int size;
+
+    private ObjectReader batchReader;
+    private LogEntryDecoder decoder;
+    private byte[] body;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // configured like the application's mapper
+        ObjectMapper objectMapper = JsonMapper.builder()
+                .findAndAddModules()
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .build();
+        batchReader = objectMapper.readerFor(LOG_ENTRIES);
+        decoder = new LogEntryDecoder(objectMapper);
+
+        Instant base = Instant.parse("2025-03-17T10:15:00Z");
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            json.append(i == 0 ? "" : ",")
+                    .append("{\"service_name\":\"service-").append(i % 20)
+                    .append("\",\"timestamp\":\"").append(base.plusMillis(i * 7L + 1))
+                    .append("\",\"message\":\"GET /api/v1/orders/").append(i).append(" 200 ").append(i % 997)
+                    .append("ms\",\"level\":\"").append(i % 10 == 0 ? "warn" : "INFO")
+                    .append("\",\"attributes\":{\"trace_id\":\"").append(Long.toHexString(i * 0x9E3779B97F4AL))
+                    .append("\"}}");
+        }
+        body = json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public List<LogEntry> dataBinding() throws IOException {
+        return batchReader.readValue(new ByteArrayInputStream(body));
+    }
+
+    @Benchmark
+    public List<LogEntry> streamingDecoder() throws IOException {
+        return decoder.readArray(new ByteArrayInputStream(body), Integer.MAX_VALUE);
+    }
+}
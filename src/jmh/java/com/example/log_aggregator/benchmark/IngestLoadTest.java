@@ -0,0 +1,238 @@
+package com.example.log_aggregator.benchmark;
+
+import com.example.log_aggregator.DistributedLogAggregatorApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * HTTP load test of {@code POST /logs}, to compare request handling on platform and virtual threads.
+ * <p>
+ * Starts the application in this JVM on a random port, then for each concurrency level keeps that many
+ * requests in flight, one per connection, for {@code load.seconds} and reports throughput and latency
+ * percentiles. Ingest goes through the write-ahead log with {@code fsync=batch} by default, so every
+ * request waits for a disk flush, which is where request threads pile up. The highest level whose p99
+ * stays under {@code load.p99-slo-ms} without errors is reported as the most concurrent connections held.
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark.main=com.example.log_aggregator.benchmark.IngestLoadTest \
+ *     -Dbenchmark.args="platform 50 200 800 2000"
+ * mvn -Pbenchmark,java21 test-compile exec:exec -Dbenchmark.main=com.example.log_aggregator.benchmark.IngestLoadTest \
+ *     -Dbenchmark.args="virtual 50 200 800 2000"
+ * </pre>
+ * Options are system properties given in {@code benchmark.jvmArgs}: {@code load.seconds} (10),
+ * {@code load.warmup-seconds} (3), {@code load.p99-slo-ms} (1000) and {@code load.fsync} ({@code batch},
+ * {@code interval}, {@code never}, or {@code off} for no write-ahead log). Each run is also written as CSV to
+ * {@code target/load-results/}.
+ */
+public final class IngestLoadTest {
+    private static final int[] CONCURRENCY = {50, 200, 800, 2000};
+    private static final Path RESULTS_DIRECTORY = Path.of("target", "load-results");
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private IngestLoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String mode = args.length > 0 ? args[0] : "platform";
+        if (!mode.equals("platform") && !mode.equals("virtual")) {
+            throw new IllegalArgumentException("Mode must be platform or virtual");
+        }
+        int[] levels = args.length > 1
+                ? Arrays.stream(args, 1, args.length).mapToInt(Integer::parseInt).toArray()
+                : CONCURRENCY;
+        Duration duration = Duration.ofSeconds(Long.getLong("load.seconds", 10));
+        Duration warmup = Duration.ofSeconds(Long.getLong("load.warmup-seconds", 3));
+        long sloMillis = Long.getLong("load.p99-slo-ms", 1000);
+        String fsync = System.getProperty("load.fsync", "batch");
+
+        Path walDirectory = Files.createTempDirectory("load-test-wal");
+        try (ConfigurableApplicationContext context = start(mode, fsync, walDirectory)) {
+            URI uri = URI.create("http://localhost:" + context.getEnvironment().getProperty("local.server.port")
+                    + "/logs");
+            ExecutorService clientExecutor = Executors.newFixedThreadPool(8);
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .executor(clientExecutor)
+                    .connectTimeout(Duration.ofSeconds(10))
+                    .build();
+
+            run(client, uri, levels[0], warmup);
+            List<Result> results = new ArrayList<>();
+            for (int concurrency : levels) {
+                results.add(run(client, uri, concurrency, duration));
+            }
+            clientExecutor.shutdownNow();
+            report(mode, fsync, sloMillis, results);
+        } finally {
+            try (var files = Files.list(walDirectory)) {
+                for (Path file : files.toList()) {
+                    Files.deleteIfExists(file);
+                }
+            }
+            Files.deleteIfExists(walDirectory);
+        }
+    }
+
+    private static ConfigurableApplicationContext start(String mode, String fsync, Path walDirectory) {
+        // given as arguments so they win over application.properties
+        List<String> properties = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--server.tomcat.max-connections=20000",
+                "--server.tomcat.accept-count=2000",
+                "--logging.level.root=WARN",
+                "--logging.level.com.example.log_aggregator=WARN",
+                "--spring.threads.virtual.enabled=" + mode.equals("virtual")));
+        if (!fsync.equals("off")) {
+            properties.addAll(List.of(
+                    "--aggregator.wal.enabled=true",
+                    "--aggregator.wal.fsync=" + fsync,
+                    "--aggregator.wal.directory=" + walDirectory));
+        }
+        // a devtools restart would run main again without the load test's own arguments
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        return new SpringApplicationBuilder(DistributedLogAggregatorApplication.class)
+                .run(properties.toArray(String[]::new));
+    }
+
+    /**
+     * keeps {@code concurrency} requests in flight until the duration is over
+     */
+    private static Result run(HttpClient client, URI uri, int concurrency, Duration duration) {
+        long deadline = System.nanoTime() + duration.toNanos();
+        AtomicLong errors = new AtomicLong();
+        List<Worker> workers = new ArrayList<>(concurrency);
+        CompletableFuture<?>[] done = new CompletableFuture<?>[concurrency];
+        for (int i = 0; i < concurrency; i++) {
+            Worker worker = new Worker(client, uri, "load-" + (i % 16), deadline, errors);
+            workers.add(worker);
+            done[i] = worker.start();
+        }
+        CompletableFuture.allOf(done).join();
+
+        long count = workers.stream().mapToLong(worker -> worker.count).sum();
+        long[] latencies = new long[(int) count];
+        int offset = 0;
+        for (Worker worker : workers) {
+            System.arraycopy(worker.latencies, 0, latencies, offset, worker.count);
+            offset += worker.count;
+        }
+        Arrays.sort(latencies);
+        return new Result(concurrency, count / (double) duration.toSeconds(), percentile(latencies, 0.50),
+                percentile(latencies, 0.99), count == 0 ? 0 : latencies[latencies.length - 1], errors.get());
+    }
+
+    private static long percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[(int) Math.max(0, Math.ceil(quantile * sorted.length) - 1)];
+    }
+
+    private static void report(String mode, String fsync, long sloMillis, List<Result> results) throws IOException {
+        System.out.printf("%n%s threads, wal fsync %s%n", mode, fsync);
+        System.out.printf("%-12s%12s%12s%12s%12s%10s%n", "concurrency", "req/s", "p50 ms", "p99 ms", "max ms",
+                "errors");
+        StringBuilder csv = new StringBuilder("mode,fsync,concurrency,requests_per_second,p50_ms,p99_ms,max_ms,"
+                + "errors\n");
+        int held = 0;
+        for (Result result : results) {
+            System.out.printf("%-12d%12.0f%12.1f%12.1f%12.1f%10d%n", result.concurrency, result.throughput,
+                    millis(result.p50Nanos), millis(result.p99Nanos), millis(result.maxNanos), result.errors);
+            csv.append(String.format("%s,%s,%d,%.0f,%.2f,%.2f,%.2f,%d%n", mode, fsync, result.concurrency,
+                    result.throughput, millis(result.p50Nanos), millis(result.p99Nanos), millis(result.maxNanos),
+                    result.errors));
+            if (result.errors == 0 && millis(result.p99Nanos) <= sloMillis) {
+                held = Math.max(held, result.concurrency);
+            }
+        }
+        System.out.printf("most concurrent connections with p99 <= %d ms and no errors: %d%n", sloMillis, held);
+
+        Files.createDirectories(RESULTS_DIRECTORY);
+        Path file = RESULTS_DIRECTORY.resolve("IngestLoadTest-" + mode + "-" + LocalDateTime.now().format(FILE_TIME)
+                + ".csv");
+        Files.writeString(file, csv);
+        System.out.println("Results written to " + file);
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private record Result(int concurrency, double throughput, long p50Nanos, long p99Nanos, long maxNanos,
+                          long errors) {
+    }
+
+    /**
+     * one connection's worth of load: sends the next request when the previous one completes
+     */
+    private static class Worker {
+        private final HttpClient client;
+        private final URI uri;
+        private final String serviceName;
+        private final long deadline;
+        private final AtomicLong errors;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private long[] latencies = new long[1024];
+        private int count;
+
+        Worker(HttpClient client, URI uri, String serviceName, long deadline, AtomicLong errors) {
+            this.client = client;
+            this.uri = uri;
+            this.serviceName = serviceName;
+            this.deadline = deadline;
+            this.errors = errors;
+        }
+
+        CompletableFuture<Void> start() {
+            send();
+            return done;
+        }
+
+        private void send() {
+            if (System.nanoTime() >= deadline) {
+                done.complete(null);
+                return;
+            }
+            HttpRequest request = HttpRequest.newBuilder(uri)
+                    .timeout(Duration.ofSeconds(30))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"service_name\":\"" + serviceName
+                            + "\",\"timestamp\":\"" + Instant.now() + "\",\"message\":\"request handled\"}"))
+                    .build();
+            long startedAt = System.nanoTime();
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, failure) -> {
+                if (failure != null || response.statusCode() >= 300) {
+                    errors.incrementAndGet();
+                } else {
+                    record(System.nanoTime() - startedAt);
+                }
+                send();
+            });
+        }
+
+        private void record(long latency) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = latency;
+        }
+    }
+}
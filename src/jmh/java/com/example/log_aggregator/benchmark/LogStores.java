@@ -0,0 +1,24 @@
+package com.example.log_aggregator.benchmark;
+
+import com.example.log_aggregator.repository.InMemoryLogRepository;
+import com.example.log_aggregator.repository.LogRepository;
+import com.example.log_aggregator.repository.SegmentedLogRepository;
+
+/**
+ * Creates the store behind a {@code repositoryType} benchmark parameter, named like the values of
+ * {@code aggregator.repository.type}. Benchmarks list the built-in stores in their {@code @Param};
+ * a store added here can be compared head-to-head without editing them, e.g.
+ * {@code -Dbenchmark.args="QueryBenchmark -p repositoryType=in-memory,my-store"}.
+ */
+final class LogStores {
+    private LogStores() {
+    }
+
+    static LogRepository create(String type) {
+        return switch (type) {
+            case "in-memory" -> new InMemoryLogRepository();
+            case "segmented" -> new SegmentedLogRepository();
+            default -> throw new IllegalArgumentException("Unknown repository type: " + type);
+        };
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.log_aggregator.benchmark;
+
+import com.example.log_aggregator.model.LogEntry;
+import com.example.log_aggregator.repository.InMemoryLogRepository;
+import com.example.log_aggregator.repository.LogRepository;
+import com.example.log_aggregator.repository.SegmentedLogRepository;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * Measures the retained heap per stored entry of the object-based {@code in-memory} store and the
+ * column-encoded {@code segmented} store at 1M, 10M and 50M entries, next to what the store's
+ * memory accounting estimates. Each store is measured again once the entries have gone cold and
+ * been compressed ({@code +cold} rows). This is a plain program
+ * rather than a JMH benchmark because it measures live heap after a full GC, not time:
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark.jvmArgs=-Xmx24g \
+ *   -Dbenchmark.main=com.example.log_aggregator.benchmark.MemoryFootprintBenchmark
+ * </pre>
+ * Sizes can be passed as arguments, e.g. {@code -Dbenchmark.args="1000000 5000000"}.
+ * A size that does not fit in the heap is reported as {@code OOM}.
+ */
+public class MemoryFootprintBenchmark {
+    private static final long[] DEFAULT_SIZES = {1_000_000, 10_000_000, 50_000_000};
+    private static final int SERVICES = 100;
+    private static final String[] TEMPLATES = {
+            "GET /api/v1/orders/%d 200 %dms",
+            "user %d logged in from 10.0.%d.7",
+            "payment %d declined: insufficient funds (attempt %d)",
+            "cache miss for key session:%d, loading from db took %dms",
+    };
+
+    public static void main(String[] args) {
+        long[] sizes = args.length == 0 ? DEFAULT_SIZES : Arrays.stream(args).mapToLong(Long::parseLong).toArray();
+
+        System.out.printf("max heap %d MB%n", Runtime.getRuntime().maxMemory() >> 20);
+        System.out.printf("%-12s%-16s%12s%16s%20s%16s%n", "entries", "store", "heap MB", "bytes/entry",
+                "accounted b/entry", "raw bytes/entry");
+        for (long size : sizes) {
+            report(size, "in-memory", InMemoryLogRepository::new);
+            report(size, "segmented", SegmentedLogRepository::new);
+        }
+    }
+
+    private static void report(long size, String name, Supplier<LogRepository> factory) {
+        long before = usedHeap();
+        LogRepository repository = factory.get();
+        long rawBytes;
+        try {
+            rawBytes = fill(repository, size);
+        } catch (OutOfMemoryError e) {
+            repository = null;
+            System.out.printf("%-12d%-16s%12s%n", size, name, "OOM");
+            return;
+        }
+        print(size, name, usedHeap() - before, repository, rawBytes);
+
+        // the entries are half an hour old, well past the default five minutes, so this seals all of them
+        repository.removeExpiredLogs();
+        print(size, name + "+cold", usedHeap() - before, repository, rawBytes);
+    }
+
+    private static void print(long size, String name, long used, LogRepository repository, long rawBytes) {
+        System.out.printf("%-12d%-16s%12d%16.1f%20.1f%16.1f%n", size, name, used >> 20, (double) used / size,
+                (double) repository.memoryUsage().getUsedBytes() / size, (double) rawBytes / size);
+    }
+
+    /**
+     * @return raw payload size: UTF-8 message bytes plus an 8 byte timestamp per entry
+     */
+    private static long fill(LogRepository repository, long size) {
+        Instant base = Instant.now().minusSeconds(1800);
+        String[] services = new String[SERVICES];
+        for (int i = 0; i < SERVICES; i++) {
+            services[i] = "service-" + i;
+        }
+
+        long rawBytes = 0;
+        for (long i = 0; i < size; i++) {
+            String message = String.format(TEMPLATES[(int) (i & 3)], i, i % 997);
+            rawBytes += message.getBytes(StandardCharsets.UTF_8).length + Long.BYTES;
+            repository.save(new LogEntry(services[(int) (i % SERVICES)], base.plusNanos(i * 1000), message));
+        }
+        return rawBytes;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
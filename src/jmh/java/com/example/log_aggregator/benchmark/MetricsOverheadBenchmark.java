@@ -0,0 +1,96 @@
+package com.example.log_aggregator.benchmark;
+
+import com.example.log_aggregator.model.BatchIngestResponse;
+import com.example.log_aggregator.model.LogEntry;
+import com.example.log_aggregator.repository.LogRepository;
+import com.example.log_aggregator.repository.ServiceRegistry;
+import com.example.log_aggregator.service.LogMetrics;
+import com.example.log_aggregator.service.LogService;
+import com.example.log_aggregator.service.QueryCache;
+import io.micrometer.prometheusmetrics.PrometheusConfig;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the ingest hot path through {@code LogService}, a single {@code saveLog} and a 100-entry
+ * {@code saveLogs} batch over 10 services, without metrics ({@code sampleInterval=0}, as before
+ * instrumentation) and with {@link LogMetrics} recording into a Prometheus registry, timing every
+ * single-entry save ({@code 1}) or one in 16, the default. The difference is what the timers and
+ * per-service counters cost per call.
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark.args="MetricsOverheadBenchmark"
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class MetricsOverheadBenchmark {
+    private static final int SERVICES = 10;
+    private static final int BATCH_SIZE = 100;
+    private static final String[] SERVICE_NAMES = new String[SERVICES];
+
+    static {
+        for (int i = 0; i < SERVICES; i++) {
+            SERVICE_NAMES[i] = "service-" + i;
+        }
+    }
+
+    @Param({"in-memory", "segmented"})
+    public String repositoryType;
+
+    @Param({"0", "1", "16"})
+    public int sampleInterval;
+
+    private LogService logService;
+    private Instant base;
+    private long tick;
+
+    // fresh store per iteration so heap use stays flat across the run
+    @Setup(Level.Iteration)
+    public void setUp() {
+        LogRepository repository = LogStores.create(repositoryType);
+        ServiceRegistry serviceRegistry = new ServiceRegistry();
+        LogMetrics logMetrics = sampleInterval > 0
+                ? new LogMetrics(new PrometheusMeterRegistry(PrometheusConfig.DEFAULT), repository, serviceRegistry,
+                sampleInterval)
+                : null;
+        logService = new LogService(repository, null, null, serviceRegistry, new QueryCache(), null, logMetrics);
+        base = Instant.now();
+        tick = 0;
+    }
+
+    @Benchmark
+    public void saveLog() {
+        long i = tick++;
+        logService.saveLog(new LogEntry(SERVICE_NAMES[(int) (i % SERVICES)], base.plusNanos(i), "request handled"));
+    }
+
+    @Benchmark
+    public BatchIngestResponse saveLogs() {
+        List<LogEntry> batch = new ArrayList<>(BATCH_SIZE);
+        for (int j = 0; j < BATCH_SIZE; j++) {
+            long i = tick++;
+            batch.add(new LogEntry(SERVICE_NAMES[(int) (i % SERVICES)], base.plusNanos(i), "request handled"));
+        }
+        return logService.saveLogs(batch);
+    }
+}
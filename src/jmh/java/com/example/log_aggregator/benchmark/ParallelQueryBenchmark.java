@@ -0,0 +1,102 @@
+package com.example.log_aggregator.benchmark;
+
+import com.example.log_aggregator.model.LogEntry;
+import com.example.log_aggregator.repository.InMemoryLogRepository;
+import com.example.log_aggregator.repository.LogRepository;
+import com.example.log_aggregator.repository.MemoryBudget;
+import com.example.log_aggregator.repository.QueryExecutor;
+import com.example.log_aggregator.repository.RetentionPolicy;
+import com.example.log_aggregator.repository.SegmentedLogRepository;
+import com.example.log_aggregator.repository.ServiceRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures an hour-wide {@code findByServiceNameAndTimeRange} on one service holding {@code entries}
+ * entries, with the query split over 1 to 16 {@link QueryExecutor} tasks. With {@code cold=true}
+ * everything older than five minutes is sealed first, so most buckets are inflated while read.
+ * Speedup is bounded by the machine's cores; compare the {@code parallelism} rows of one store.
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark.args="ParallelQueryBenchmark"
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(value = 1, jvmArgs = {"-Xms6g", "-Xmx6g"})
+@State(Scope.Benchmark)
+public class ParallelQueryBenchmark {
+    private static final String SERVICE = "service-0";
+
+    @Param({"in-memory", "segmented"})
+    public String repositoryType;
+
+    @Param({"4000000"})
+    public int entries;
+
+    @Param({"1", "2", "4", "8", "16"})
+    public int parallelism;
+
+    @Param({"false", "true"})
+    public boolean cold;
+
+    private QueryExecutor queryExecutor;
+    private LogRepository repository;
+    private Instant startTime;
+    private Instant endTime;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        queryExecutor = new QueryExecutor(parallelism, parallelism);
+        RetentionPolicy retentionPolicy = new RetentionPolicy(Duration.ofHours(2), Map.of(),
+                cold ? RetentionPolicy.DEFAULT_COLD_AFTER : Duration.ZERO);
+        repository = repositoryType.equals("in-memory")
+                ? new InMemoryLogRepository(1024, true, "trace_id", retentionPolicy, new MemoryBudget(),
+                new ServiceRegistry(), queryExecutor)
+                : new SegmentedLogRepository(4096, true, "trace_id", retentionPolicy, new MemoryBudget(),
+                new ServiceRegistry(), queryExecutor);
+
+        endTime = Instant.now();
+        startTime = endTime.minusSeconds(3600);
+        long stepNanos = TimeUnit.HOURS.toNanos(1) / entries;
+        List<LogEntry> batch = new ArrayList<>(1000);
+        for (int i = 0; i < entries; i++) {
+            batch.add(new LogEntry(SERVICE, startTime.plusNanos(i * stepNanos), "request " + i + " handled"));
+            if (batch.size() == 1000) {
+                repository.saveAll(batch);
+                batch.clear();
+            }
+        }
+        repository.saveAll(batch);
+        repository.removeExpiredLogs();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        queryExecutor.shutdown();
+    }
+
+    @Benchmark
+    public List<LogEntry> find() {
+        return repository.findByServiceNameAndTimeRange(SERVICE, startTime, endTime);
+    }
+}
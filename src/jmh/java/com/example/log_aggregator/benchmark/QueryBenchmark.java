@@ -0,0 +1,83 @@
+package com.example.log_aggregator.benchmark;
+
+import com.example.log_aggregator.model.LogEntry;
+import com.example.log_aggregator.repository.LogRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@code findByServiceNameAndTimeRange} over the newest 1, 10 and 60 minutes of an hour
+ * of logs. Entries are spread round-robin over {@code services} services, so the queried service
+ * holds 1/services of the store: the fewer services, the more entries a window returns.
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark.args="QueryBenchmark"
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class QueryBenchmark {
+    private static final String QUERIED_SERVICE = "service-0";
+
+    @Param({"in-memory", "segmented"})
+    public String repositoryType;
+
+    @Param({"1000000"})
+    public int entries;
+
+    @Param({"1", "10", "100"})
+    public int services;
+
+    @Param({"1", "10", "60"})
+    public int windowMinutes;
+
+    private LogRepository repository;
+    private Instant startTime;
+    private Instant endTime;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        repository = LogStores.create(repositoryType);
+        String[] names = new String[services];
+        for (int i = 0; i < services; i++) {
+            names[i] = "service-" + i;
+        }
+
+        endTime = Instant.now();
+        Instant first = endTime.minusSeconds(3600);
+        long stepNanos = TimeUnit.HOURS.toNanos(1) / entries;
+        List<LogEntry> batch = new ArrayList<>(1000);
+        for (int i = 0; i < entries; i++) {
+            batch.add(new LogEntry(names[i % services], first.plusNanos(i * stepNanos), "request " + i + " handled"));
+            if (batch.size() == 1000) {
+                repository.saveAll(batch);
+                batch.clear();
+            }
+        }
+        repository.saveAll(batch);
+        startTime = endTime.minusSeconds(windowMinutes * 60L);
+    }
+
+    @Benchmark
+    public List<LogEntry> find() {
+        return repository.findByServiceNameAndTimeRange(QUERIED_SERVICE, startTime, endTime);
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.log_aggregator.benchmark;
+
+import com.example.log_aggregator.model.LogEntry;
+import com.example.log_aggregator.model.LogResponse;
+import com.example.log_aggregator.repository.LogRepository;
+import com.example.log_aggregator.repository.ServiceRegistry;
+import com.example.log_aggregator.service.LogService;
+import com.example.log_aggregator.service.QueryCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a dashboard panel refreshing {@code LogService.queryLogs} for the same window, 10 minutes ending
+ * 20 minutes ago, of one of 10 services sharing an hour of logs, with the query cache off ({@code 0}) and on.
+ * With {@code ingesting=true} every query is preceded by a save into the newest minute, outside the window,
+ * so the cached result has to survive ongoing ingest of the same service.
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark.args="QueryCacheBenchmark"
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class QueryCacheBenchmark {
+    private static final String QUERIED_SERVICE = "service-0";
+    private static final int SERVICES = 10;
+
+    @Param({"in-memory", "segmented"})
+    public String repositoryType;
+
+    @Param({"1000000"})
+    public int entries;
+
+    @Param({"0", "64MB"})
+    public String cacheSize;
+
+    @Param({"false", "true"})
+    public boolean ingesting;
+
+    private LogService logService;
+    private Instant startTime;
+    private Instant endTime;
+    private Instant now;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        LogRepository repository = LogStores.create(repositoryType);
+        logService = new LogService(repository, null, null, new ServiceRegistry(), new QueryCache(cacheSize));
+
+        now = Instant.now();
+        Instant first = now.minusSeconds(3600);
+        long stepNanos = TimeUnit.HOURS.toNanos(1) / entries;
+        List<LogEntry> batch = new ArrayList<>(1000);
+        for (int i = 0; i < entries; i++) {
+            batch.add(new LogEntry("service-" + i % SERVICES, first.plusNanos(i * stepNanos),
+                    "request " + i + " handled"));
+            if (batch.size() == 1000) {
+                repository.saveAll(batch);
+                batch.clear();
+            }
+        }
+        repository.saveAll(batch);
+        repository.removeExpiredLogs();
+        endTime = now.minusSeconds(20 * 60);
+        startTime = endTime.minusSeconds(10 * 60);
+    }
+
+    @Benchmark
+    public List<LogResponse> refresh() {
+        if (ingesting) {
+            logService.saveLog(new LogEntry(QUERIED_SERVICE, now, "request handled"));
+        }
+        return logService.queryLogs(QUERIED_SERVICE, startTime, endTime);
+    }
+}
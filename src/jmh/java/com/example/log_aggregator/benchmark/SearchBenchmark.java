@@ -0,0 +1,104 @@
+package com.example.log_aggregator.benchmark;
+
+import com.example.log_aggregator.model.LogEntry;
+import com.example.log_aggregator.model.LogFilter;
+import com.example.log_aggregator.model.LogPage;
+import com.example.log_aggregator.model.SearchQuery;
+import com.example.log_aggregator.model.SortOrder;
+import com.example.log_aggregator.repository.InMemoryLogRepository;
+import com.example.log_aggregator.repository.LogRepository;
+import com.example.log_aggregator.repository.SegmentedLogRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency of one {@code q} search page over a service holding an hour of logs,
+ * with and without the message index. {@code rare} matches about one entry in 10,000,
+ * {@code common} one in four and {@code phrase} needs positions checked on every hit.
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark.args="SearchBenchmark"
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class SearchBenchmark {
+    private static final String SERVICE = "checkout";
+    private static final int PAGE_SIZE = 100;
+    private static final String[] TEMPLATES = {
+            "GET /api/v1/orders/%d 200 %dms",
+            "user %d logged in from 10.0.%d.7",
+            "payment %d declined: insufficient funds (attempt %d)",
+            "cache miss for key session:%d, loading from db took %dms",
+    };
+
+    @Param({"in-memory", "segmented"})
+    public String repositoryType;
+
+    @Param({"true", "false"})
+    public boolean indexed;
+
+    @Param({"1000000"})
+    public int entries;
+
+    @Param({"rare", "common", "phrase"})
+    public String query;
+
+    private LogRepository repository;
+    private LogFilter filter;
+    private Instant startTime;
+    private Instant endTime;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        repository = "segmented".equals(repositoryType)
+                ? new SegmentedLogRepository(4096, indexed)
+                : new InMemoryLogRepository(1024, indexed);
+
+        // spread over the last hour, saved in batches like the batch endpoint does
+        endTime = Instant.now();
+        startTime = endTime.minusSeconds(3600);
+        long stepNanos = TimeUnit.HOURS.toNanos(1) / entries;
+        List<LogEntry> batch = new ArrayList<>(1000);
+        for (int i = 0; i < entries; i++) {
+            String message = i % 10_000 == 0
+                    ? "circuit breaker opened for upstream " + i
+                    : String.format(TEMPLATES[i & 3], i, i % 997);
+            batch.add(new LogEntry(SERVICE, startTime.plusNanos(i * stepNanos), message));
+            if (batch.size() == 1000) {
+                repository.saveAll(batch);
+                batch.clear();
+            }
+        }
+        repository.saveAll(batch);
+
+        filter = LogFilter.of(SearchQuery.parse(switch (query) {
+            case "rare" -> "circuit breaker";
+            case "common" -> "declined";
+            default -> "\"insufficient funds\"";
+        }));
+    }
+
+    @Benchmark
+    public LogPage<LogEntry> newestPage() {
+        return repository.findPageMatching(SERVICE, startTime, endTime, filter, null, PAGE_SIZE, SortOrder.DESC);
+    }
+}
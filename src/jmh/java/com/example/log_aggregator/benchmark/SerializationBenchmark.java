@@ -0,0 +1,99 @@
+package com.example.log_aggregator.benchmark;
+
+import com.example.log_aggregator.model.LogResponse;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures Jackson serialization of {@code GET /logs} results: a {@link LogResponse} list written
+ * as one JSON array, as the regular response is, and the same entries written line by line as
+ * the NDJSON stream does. The mapper is configured like the application's.
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark.args="SerializationBenchmark"
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class SerializationBenchmark {
+    // counts the bytes so the output can't be optimized away, without the cost of buffering them
+    private static final class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+
+    @Param({"100", "10000"})
+    public int size;
+
+    private ObjectMapper objectMapper;
+    private List<LogResponse> responses;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        objectMapper = JsonMapper.builder()
+                .findAndAddModules()
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+        Instant base = Instant.now();
+        responses = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            responses.add(new LogResponse(base.plusMillis(i), "GET /api/v1/orders/" + i + " 200 " + i % 997 + "ms"));
+        }
+    }
+
+    @Benchmark
+    public long jsonArray() throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        objectMapper.writeValue(out, responses);
+        return out.count;
+    }
+
+    @Benchmark
+    public long ndjson() throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.setRootValueSeparator(null);
+            for (LogResponse response : responses) {
+                generator.writeStartObject();
+                generator.writeStringField("timestamp", response.getTimestamp().toString());
+                generator.writeStringField("message", response.getMessage());
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+            }
+        }
+        return out.count;
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.log_aggregator.benchmark;
+
+import com.example.log_aggregator.model.LogEntry;
+import com.example.log_aggregator.repository.DurableLogRepository;
+import com.example.log_aggregator.repository.InMemoryLogRepository;
+import com.example.log_aggregator.repository.LogRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Compares {@code save} throughput of the plain in-memory store against the same store behind
+ * the write-ahead log, for each fsync policy, one entry and a batch of 100 per call. Writers share
+ * one log so their writes are grouped.
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark.args="WalIngestBenchmark"
+ * </pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g"})
+@Threads(8)
+public class WalIngestBenchmark {
+    private static final int BATCH_SIZE = 100;
+    private static final String[] SERVICES = {"auth-service", "payments", "search", "checkout"};
+
+    @State(Scope.Benchmark)
+    public static class RepositoryState {
+        @Param({"none", "never", "interval", "batch"})
+        public String fsync;
+
+        LogRepository repository;
+        Path directory;
+
+        @Setup(Level.Iteration)
+        public void setUp() throws IOException {
+            if ("none".equals(fsync)) {
+                repository = new InMemoryLogRepository();
+                return;
+            }
+            directory = Files.createTempDirectory("wal-bench");
+            repository = new DurableLogRepository(new InMemoryLogRepository(), directory.toString(), fsync, 100,
+                    64L * 1024 * 1024);
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown() throws IOException {
+            if (repository instanceof DurableLogRepository durable) {
+                durable.close();
+                try (Stream<Path> files = Files.walk(directory)) {
+                    for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                        Files.delete(file);
+                    }
+                }
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ClockState {
+        Instant base = Instant.now();
+        long tick;
+    }
+
+    @Benchmark
+    public void save(RepositoryState state, ClockState clock) {
+        state.repository.save(nextEntry(clock));
+    }
+
+    // batch ingest amortizes the write syscall, which dominates single saves on the log
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void saveAll(RepositoryState state, ClockState clock) {
+        List<LogEntry> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(nextEntry(clock));
+        }
+        state.repository.saveAll(batch);
+    }
+
+    private static LogEntry nextEntry(ClockState clock) {
+        long tick = clock.tick++;
+        return new LogEntry(SERVICES[(int) (tick & 3)], clock.base.plusNanos(tick), "request handled in 12ms status=200");
+    }
+}
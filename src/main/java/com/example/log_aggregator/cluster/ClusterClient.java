@@ -0,0 +1,183 @@
+package com.example.log_aggregator.cluster;
+
+import com.example.log_aggregator.model.LogCursor;
+import com.example.log_aggregator.model.LogEntry;
+import com.example.log_aggregator.model.LogPage;
+import com.example.log_aggregator.model.LogResponse;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.util.MultiValueMap;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * HTTP calls from one node to another: forwarded ingest batches and node-local log queries. Every
+ * request names the sending node in {@link ClusterRouter#NODE_HEADER}, which tells the receiver to
+ * store or query locally instead of routing again.
+ */
+final class ClusterClient {
+    private static final TypeReference<List<LogResponse>> LOG_LIST = new TypeReference<>() {
+    };
+
+    private final String self;
+    private final ObjectMapper objectMapper;
+    private final Duration timeout;
+    private final HttpClient httpClient;
+
+    ClusterClient(String self, ObjectMapper objectMapper, Duration timeout) {
+        this.self = self;
+        this.objectMapper = objectMapper;
+        this.timeout = timeout;
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(timeout)
+                .build();
+    }
+
+    /**
+     * stores a batch on the node through {@code POST /logs/batch}
+     *
+     * @throws NodeRequestException if the node is unreachable or doesn't accept the batch
+     */
+    void postBatch(String node, List<LogEntry> logEntries) {
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(logEntries);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot encode forwarded logs", e);
+        }
+        HttpRequest request = HttpRequest.newBuilder(URI.create(node + "/logs/batch"))
+                .timeout(timeout)
+                .header(ClusterRouter.NODE_HEADER, self)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+        send(node, request);
+    }
+
+    /**
+     * runs {@code GET /logs} on the node with the same parameters, answered from its own store, without
+     * waiting for the answer
+     *
+     * @return the page, or a {@link NodeRequestException} if the node is unreachable or answers with an error
+     */
+    CompletableFuture<LogPage<LogResponse>> getLogs(String node, MultiValueMap<String, String> params) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(node + "/logs?" + query(params)))
+                .timeout(timeout)
+                .header(ClusterRouter.NODE_HEADER, self)
+                .GET()
+                .build();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                .handle((response, e) -> readPage(node, checked(node, response, e)));
+    }
+
+    /**
+     * runs {@code GET /logs?stream=true} on the node with the same parameters and copies its NDJSON answer to
+     * the output as it arrives
+     *
+     * @throws NodeRequestException if the node is unreachable or answers with an error
+     * @throws IOException          if the node or the output fails mid-stream
+     */
+    void streamLogs(String node, MultiValueMap<String, String> params, OutputStream out) throws IOException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(node + "/logs?" + query(params)))
+                .timeout(timeout)
+                .header(ClusterRouter.NODE_HEADER, self)
+                .GET()
+                .build();
+        HttpResponse<InputStream> response;
+        try {
+            response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        } catch (IOException e) {
+            throw new NodeRequestException(node, 503, "Node " + node + " is unavailable", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NodeRequestException(node, 503, "Interrupted calling node " + node, e);
+        }
+        try (InputStream in = response.body()) {
+            checked(node, response, null);
+            byte[] buffer = new byte[8192];
+            for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+                out.write(buffer, 0, read);
+                // entries reach the client as the node sends them, as they would from the node itself
+                if (in.available() == 0) {
+                    out.flush();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the result of a {@link #getLogs} call
+     * @throws NodeRequestException if the call failed
+     */
+    static <T> T await(CompletableFuture<T> call) {
+        try {
+            return call.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof NodeRequestException nodeRequestException) {
+                throw nodeRequestException;
+            }
+            throw e;
+        }
+    }
+
+    private LogPage<LogResponse> readPage(String node, HttpResponse<byte[]> response) {
+        try {
+            List<LogResponse> items = objectMapper.readValue(response.body(), LOG_LIST);
+            String cursor = response.headers().firstValue(ClusterRouter.NEXT_CURSOR_HEADER).orElse(null);
+            return new LogPage<>(items, cursor != null ? LogCursor.decode(cursor) : null);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new NodeRequestException(node, 502, "Invalid logs from node " + node, e);
+        }
+    }
+
+    private void send(String node, HttpRequest request) {
+        try {
+            checked(node, httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray()), null);
+        } catch (IOException e) {
+            checked(node, null, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NodeRequestException(node, 503, "Interrupted calling node " + node, e);
+        }
+    }
+
+    private static <T> HttpResponse<T> checked(String node, HttpResponse<T> response, Throwable failure) {
+        if (failure != null) {
+            throw new NodeRequestException(node, 503, "Node " + node + " is unavailable", failure);
+        }
+        if (response.statusCode() >= 300) {
+            throw new NodeRequestException(node, response.statusCode(),
+                    "Node " + node + " answered " + response.statusCode(), null);
+        }
+        return response;
+    }
+
+    /**
+     * @return the parameters as a query string, '+' and all encoded so they decode back unchanged
+     */
+    static String query(MultiValueMap<String, String> params) {
+        StringJoiner query = new StringJoiner("&");
+        for (Map.Entry<String, List<String>> param : params.entrySet()) {
+            for (String value : param.getValue()) {
+                query.add(URLEncoder.encode(param.getKey(), StandardCharsets.UTF_8) + "="
+                        + URLEncoder.encode(value, StandardCharsets.UTF_8));
+            }
+        }
+        return query.toString();
+    }
+}
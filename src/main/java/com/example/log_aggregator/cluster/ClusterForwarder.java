@@ -0,0 +1,203 @@
+package com.example.log_aggregator.cluster;
+
+import com.example.log_aggregator.model.LogEntry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends entries owned by other nodes to them in batches. Every peer has a queue and a sender thread
+ * that takes whatever has queued up, up to the batch size, and posts it as one batch, so batches grow
+ * with the ingest rate and a single entry waits for no timer.
+ * <p>
+ * Entries are acknowledged only once room for all of them is reserved, and the room is given back when
+ * the peer has taken them, so the capacity bounds queued and in-flight entries together and nothing
+ * acknowledged is dropped for lack of room. While the peer is unreachable or overloaded, the batch is
+ * retried with pauses doubling up to {@value #MAX_RETRY_PAUSE_MILLIS} ms and new entries queue up behind
+ * it until the capacity is reached; from then on ingest for the peer is refused. Only a batch the peer
+ * refuses as invalid, or one still undelivered at shutdown, is counted as failed.
+ */
+final class ClusterForwarder {
+    private static final Logger logger = LoggerFactory.getLogger(ClusterForwarder.class);
+
+    private static final long POLL_MILLIS = 100;
+    private static final long RETRY_PAUSE_MILLIS = 200;
+    static final long MAX_RETRY_PAUSE_MILLIS = 5_000;
+
+    private final ClusterClient client;
+    private final int batchSize;
+    private final Map<String, Peer> peers = new LinkedHashMap<>();
+    private volatile boolean running = true;
+
+    ClusterForwarder(ClusterClient client, List<String> peerNodes, int capacity, int batchSize) {
+        if (capacity < 1 || batchSize < 1) {
+            throw new IllegalArgumentException("Forward capacity and batch size must be positive");
+        }
+        this.client = client;
+        this.batchSize = batchSize;
+        for (int i = 0; i < peerNodes.size(); i++) {
+            Peer peer = new Peer(peerNodes.get(i), capacity);
+            Thread sender = new Thread(() -> runSender(peer), "cluster-forward-" + i);
+            sender.setDaemon(true);
+            peer.sender = sender;
+            peers.put(peer.node, peer);
+            sender.start();
+        }
+    }
+
+    /**
+     * queues entries for their owner
+     *
+     * @return false if the owner has no room left for all of them, in which case none is queued
+     */
+    boolean forward(String node, List<LogEntry> logEntries) {
+        Peer peer = peers.get(node);
+        if (peer == null) {
+            throw new IllegalArgumentException("Unknown node " + node);
+        }
+        if (!running || !peer.reserve(logEntries.size())) {
+            peer.rejected.addAndGet(logEntries.size());
+            return false;
+        }
+        peer.queue.addAll(logEntries);
+        return true;
+    }
+
+    long queued() {
+        return peers.values().stream().mapToLong(peer -> peer.queue.size()).sum();
+    }
+
+    Map<String, Long> queuedByNode() {
+        Map<String, Long> queued = new LinkedHashMap<>();
+        peers.forEach((node, peer) -> queued.put(node, (long) peer.queue.size()));
+        return queued;
+    }
+
+    long forwarded() {
+        return peers.values().stream().mapToLong(peer -> peer.forwarded.get()).sum();
+    }
+
+    long failed() {
+        return peers.values().stream().mapToLong(peer -> peer.failed.get()).sum();
+    }
+
+    long rejected() {
+        return peers.values().stream().mapToLong(peer -> peer.rejected.get()).sum();
+    }
+
+    /**
+     * stops accepting entries and gives the senders a moment to deliver what is queued
+     */
+    void shutdown() {
+        running = false;
+        for (Peer peer : peers.values()) {
+            try {
+                peer.sender.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void runSender(Peer peer) {
+        List<LogEntry> batch = new ArrayList<>(batchSize);
+        while (running || !peer.queue.isEmpty()) {
+            try {
+                LogEntry first = peer.queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                peer.queue.drainTo(batch, batchSize - 1);
+                send(peer, batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * posts the batch until the peer takes it, then gives its room back
+     */
+    private void send(Peer peer, List<LogEntry> batch) throws InterruptedException {
+        try {
+            long pause = RETRY_PAUSE_MILLIS;
+            while (true) {
+                try {
+                    client.postBatch(peer.node, batch);
+                    peer.forwarded.addAndGet(batch.size());
+                    return;
+                } catch (RuntimeException e) {
+                    if (!retryable(e) || !running) {
+                        peer.failed.addAndGet(batch.size());
+                        logger.error("Failed to forward {} log entries to {}: {}", batch.size(), peer.node,
+                                e.getMessage());
+                        return;
+                    }
+                    logger.warn("Forwarding to {} failed, retrying in {} ms: {}", peer.node, pause, e.getMessage());
+                    Thread.sleep(pause);
+                    pause = Math.min(pause * 2, MAX_RETRY_PAUSE_MILLIS);
+                }
+            }
+        } finally {
+            peer.release(batch.size());
+        }
+    }
+
+    /**
+     * @return true unless the peer refused the batch itself, which it would do again
+     */
+    private static boolean retryable(RuntimeException e) {
+        return !(e instanceof NodeRequestException nodeRequestException)
+                || nodeRequestException.getStatus() == 429 || nodeRequestException.getStatus() >= 500;
+    }
+
+    private static final class Peer {
+        private final String node;
+        private final int capacity;
+        // unbounded, the room is reserved before entries are added
+        private final BlockingQueue<LogEntry> queue = new LinkedBlockingQueue<>();
+        // entries acknowledged and not yet taken by the peer, queued or in flight
+        private final AtomicInteger pending = new AtomicInteger();
+        private final AtomicLong forwarded = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+        private Thread sender;
+
+        Peer(String node, int capacity) {
+            this.node = node;
+            this.capacity = capacity;
+        }
+
+        /**
+         * @return false if there is no room for all the entries, nothing is reserved then
+         */
+        boolean reserve(int entries) {
+            int current;
+            do {
+                current = pending.get();
+                if (current + entries > capacity) {
+                    return false;
+                }
+            } while (!pending.compareAndSet(current, current + entries));
+            return true;
+        }
+
+        void release(int entries) {
+            pending.addAndGet(-entries);
+        }
+    }
+}
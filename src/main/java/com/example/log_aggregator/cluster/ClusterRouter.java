@@ -0,0 +1,247 @@
+package com.example.log_aggregator.cluster;
+
+import com.example.log_aggregator.model.ClusterStatus;
+import com.example.log_aggregator.model.LogCursor;
+import com.example.log_aggregator.model.LogEntry;
+import com.example.log_aggregator.model.LogPage;
+import com.example.log_aggregator.model.LogResponse;
+import com.example.log_aggregator.model.SortOrder;
+import com.example.log_aggregator.service.IngestRejectedException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.IntFunction;
+
+/**
+ * Cluster mode, enabled with {@code aggregator.cluster.enabled=true}: every node of the static list
+ * {@code aggregator.cluster.nodes} owns the services that a {@link HashRing} with
+ * {@code aggregator.cluster.virtual-nodes} points per node assigns to it, and every node computes the
+ * same assignment. Nodes are named by their base URL, {@code aggregator.cluster.self} is this one.
+ * <p>
+ * Ingest for services owned elsewhere is handed to a {@link ClusterForwarder}, which posts it to the
+ * owner in batches. A query of a single service is answered by its owner; a query of several services or
+ * of globs is sent to every node that may hold some of them, and their pages are merged in timestamp order.
+ * A stream is passed through from the one node holding its services.
+ * Requests between nodes carry {@link #NODE_HEADER} and are answered from the receiving node's own store.
+ */
+@Component
+@ConditionalOnProperty(name = "aggregator.cluster.enabled", havingValue = "true")
+public class ClusterRouter {
+    public static final String NODE_HEADER = "X-Aggregator-Node";
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private final String self;
+    private final List<String> nodes;
+    private final int virtualNodes;
+    private final int retryAfterSeconds;
+    private final HashRing ring;
+    private final ClusterClient client;
+    private final ClusterForwarder forwarder;
+
+    @Autowired
+    public ClusterRouter(@Value("${aggregator.cluster.self:http://localhost:8080}") String self,
+                         @Value("${aggregator.cluster.nodes:http://localhost:8080}") String nodes,
+                         @Value("${aggregator.cluster.virtual-nodes:128}") int virtualNodes,
+                         @Value("${aggregator.cluster.forward-capacity:65536}") int forwardCapacity,
+                         @Value("${aggregator.cluster.forward-batch-size:500}") int forwardBatchSize,
+                         @Value("${aggregator.cluster.timeout-ms:5000}") long timeoutMillis,
+                         @Value("${aggregator.cluster.retry-after-seconds:1}") int retryAfterSeconds,
+                         ObjectMapper objectMapper) {
+        this.self = nodeName(self);
+        this.nodes = Arrays.stream(nodes.split(","))
+                .map(ClusterRouter::nodeName)
+                .filter(node -> !node.isEmpty())
+                .distinct()
+                .toList();
+        if (!this.nodes.contains(this.self)) {
+            throw new IllegalArgumentException("aggregator.cluster.self must be one of aggregator.cluster.nodes");
+        }
+        this.virtualNodes = virtualNodes;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.ring = new HashRing(this.nodes, virtualNodes);
+        this.client = new ClusterClient(this.self, objectMapper, Duration.ofMillis(timeoutMillis));
+        this.forwarder = new ClusterForwarder(client,
+                this.nodes.stream().filter(node -> !node.equals(this.self)).toList(),
+                forwardCapacity, forwardBatchSize);
+    }
+
+    /**
+     * @return the base URL without a trailing slash
+     */
+    private static String nodeName(String url) {
+        String node = url.trim();
+        return node.endsWith("/") ? node.substring(0, node.length() - 1) : node;
+    }
+
+    public String self() {
+        return self;
+    }
+
+    public String ownerOf(String serviceName) {
+        return ring.ownerOf(serviceName.trim());
+    }
+
+    public boolean isLocal(String serviceName) {
+        return ownerOf(serviceName).equals(self);
+    }
+
+    /**
+     * @param services service names and globs of a query
+     * @return the nodes owning the named services, or every node if there is a glob
+     */
+    public List<String> nodesFor(List<String> services) {
+        Set<String> owners = new LinkedHashSet<>();
+        for (String service : services) {
+            if (service.contains("*")) {
+                return nodes;
+            }
+            owners.add(ownerOf(service));
+        }
+        return new ArrayList<>(owners);
+    }
+
+    /**
+     * queues validated entries of services owned by other nodes for their owners
+     *
+     * @throws IngestRejectedException if an owner's forwarding queue is full; entries of other owners
+     *                                 may have been queued
+     */
+    public void forward(List<LogEntry> logEntries) {
+        Map<String, List<LogEntry>> byOwner = new LinkedHashMap<>();
+        for (LogEntry logEntry : logEntries) {
+            byOwner.computeIfAbsent(ownerOf(logEntry.getServiceName()), node -> new ArrayList<>()).add(logEntry);
+        }
+        byOwner.forEach((node, entries) -> {
+            if (!forwarder.forward(node, entries)) {
+                throw new IngestRejectedException("Forwarding queue for node " + node + " is full, retry later",
+                        retryAfterSeconds);
+            }
+        });
+    }
+
+    /**
+     * answers a query from another node's store
+     *
+     * @param params the query's parameters
+     * @throws NodeRequestException if the node is unreachable or rejects the query
+     */
+    public LogPage<LogResponse> query(String node, MultiValueMap<String, String> params) {
+        return ClusterClient.await(client.getLogs(node, params));
+    }
+
+    /**
+     * copies a stream of logs from another node's store to the output
+     *
+     * @param params the stream's parameters
+     * @throws NodeRequestException if the node is unreachable or rejects the stream
+     * @throws IOException          if the node or the output fails mid-stream
+     */
+    public void stream(String node, MultiValueMap<String, String> params, OutputStream out) throws IOException {
+        client.streamLogs(node, params, out);
+    }
+
+    /**
+     * runs a multi-service page query on the nodes, all at once, and merges their pages. Entries are
+     * ordered by timestamp then service, as within a node, and services don't span nodes, so the merged
+     * cursor is the last entry's cursor and every node can continue from it.
+     *
+     * @param params the query's parameters, passed on unchanged
+     * @param local  reads this node's page with the given limit from the query's cursor
+     * @throws NodeRequestException if a node is unreachable or rejects the query
+     */
+    public LogPage<LogResponse> gather(List<String> queried, MultiValueMap<String, String> params, int limit,
+                                       SortOrder order, IntFunction<LogPage<LogResponse>> local) {
+        Map<String, CompletableFuture<LogPage<LogResponse>>> calls = new LinkedHashMap<>();
+        for (String node : queried) {
+            if (!node.equals(self)) {
+                calls.put(node, client.getLogs(node, params));
+            }
+        }
+        Map<String, LogPage<LogResponse>> pages = new LinkedHashMap<>();
+        if (queried.contains(self)) {
+            pages.put(self, local.apply(limit));
+        }
+        calls.forEach((node, call) -> pages.put(node, ClusterClient.await(call)));
+        return merge(pages, limit, order, (node, count) -> {
+            if (node.equals(self)) {
+                return local.apply(count).getNextCursor();
+            }
+            MultiValueMap<String, String> shorter = new LinkedMultiValueMap<>(params);
+            shorter.set("limit", String.valueOf(count));
+            return query(node, shorter).getNextCursor();
+        });
+    }
+
+    interface CursorReader {
+        /**
+         * @return the cursor after the first {@code count} entries of the node's page
+         */
+        LogCursor cursorAfter(String node, int count);
+    }
+
+    static LogPage<LogResponse> merge(Map<String, LogPage<LogResponse>> pages, int limit, SortOrder order,
+                                      CursorReader cursorReader) {
+        record Item(String node, int position, LogResponse log) {
+        }
+        List<Item> merged = new ArrayList<>();
+        boolean more = false;
+        for (Map.Entry<String, LogPage<LogResponse>> page : pages.entrySet()) {
+            List<LogResponse> items = page.getValue().getItems();
+            for (int i = 0; i < items.size(); i++) {
+                merged.add(new Item(page.getKey(), i, items.get(i)));
+            }
+            more |= page.getValue().getNextCursor() != null;
+        }
+        Comparator<Item> byTime = Comparator.comparing((Item item) -> item.log().getTimestamp())
+                .thenComparing(item -> item.log().getServiceName());
+        // stable, so each node's entries keep their order
+        merged.sort(order == SortOrder.ASC ? byTime : byTime.reversed());
+        more |= merged.size() > limit;
+
+        List<LogResponse> logs = merged.stream().limit(limit).map(Item::log).toList();
+        if (!more || logs.isEmpty()) {
+            return new LogPage<>(logs, null);
+        }
+        Item last = merged.get(logs.size() - 1);
+        LogPage<LogResponse> lastPage = pages.get(last.node());
+        int count = last.position() + 1;
+        // a node's own cursor only follows its last entry; for an earlier one, the page is read again up to it
+        LogCursor cursor = count == lastPage.getItems().size() ? lastPage.getNextCursor()
+                : cursorReader.cursorAfter(last.node(), count);
+        if (cursor == null) {
+            // nothing left on that node
+            Instant timestamp = last.log().getTimestamp();
+            cursor = new LogCursor(timestamp, last.log().getServiceName(), order == SortOrder.ASC ? Long.MAX_VALUE : -1);
+        }
+        return new LogPage<>(logs, cursor);
+    }
+
+    public ClusterStatus status() {
+        return new ClusterStatus(self, nodes, virtualNodes, forwarder.queuedByNode(), forwarder.forwarded(),
+                forwarder.failed(), forwarder.rejected());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        forwarder.shutdown();
+    }
+}
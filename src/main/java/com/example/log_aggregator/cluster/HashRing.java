@@ -0,0 +1,76 @@
+package com.example.log_aggregator.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Consistent hash ring assigning service names to nodes. Every node is placed on the ring at
+ * {@code virtualNodes} points, and a service belongs to the node of the first point at or after its
+ * own hash, wrapping around. Adding or removing a node only moves the services between its points
+ * and their predecessors, about 1/n of them, and the virtual nodes even out the share of each node.
+ * <p>
+ * Points are kept in a sorted array, so a lookup is one hash of the name and a binary search.
+ */
+public final class HashRing {
+    private final long[] points;
+    private final String[] owners;
+
+    /**
+     * @param nodes        distinct node names, in any order; every node computes the same ring
+     * @param virtualNodes points per node
+     */
+    public HashRing(List<String> nodes, int virtualNodes) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("A hash ring needs at least one node");
+        }
+        if (virtualNodes < 1) {
+            throw new IllegalArgumentException("Virtual nodes per node must be positive");
+        }
+        long[][] placed = new long[nodes.size() * virtualNodes][];
+        int p = 0;
+        for (int n = 0; n < nodes.size(); n++) {
+            for (int v = 0; v < virtualNodes; v++) {
+                placed[p++] = new long[]{hash(nodes.get(n) + "#" + v), n};
+            }
+        }
+        // ties are broken by node name, so the ring doesn't depend on the order nodes are listed in
+        Arrays.sort(placed, (a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0])
+                : nodes.get((int) a[1]).compareTo(nodes.get((int) b[1])));
+        this.points = new long[placed.length];
+        this.owners = new String[placed.length];
+        for (int i = 0; i < placed.length; i++) {
+            points[i] = placed[i][0];
+            owners[i] = nodes.get((int) placed[i][1]);
+        }
+    }
+
+    /**
+     * @return the node owning the key
+     */
+    public String ownerOf(String key) {
+        int i = Arrays.binarySearch(points, hash(key));
+        if (i < 0) {
+            i = -i - 1;
+        }
+        return owners[i == points.length ? 0 : i];
+    }
+
+    /**
+     * 64-bit FNV-1a over the UTF-8 bytes, finished with the MurmurHash3 mix so that similar names
+     * land far apart on the ring
+     */
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.log_aggregator.cluster;
+
+/**
+ * Thrown when a request to another node of the cluster fails: with the node's own status if it
+ * answered with an error, or 503 if it could not be reached in time.
+ */
+public class NodeRequestException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final String node;
+    private final int status;
+
+    public NodeRequestException(String node, int status, String message, Throwable cause) {
+        super(message, cause);
+        this.node = node;
+        this.status = status;
+    }
+
+    public String getNode() {
+        return node;
+    }
+
+    /**
+     * @return HTTP status to answer the client with
+     */
+    public int getStatus() {
+        return status;
+    }
+}
@@ -1,10 +1,27 @@
 package com.example.log_aggregator.config;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableScheduling;
 
 @Configuration
 @EnableScheduling
 public class AppConfig {
+    private static final Logger logger = LoggerFactory.getLogger(AppConfig.class);
 
+    /**
+     * @param virtualThreads Spring Boot only honours {@code spring.threads.virtual.enabled} on Java 21 and
+     *                       later, and ignores it silently before that
+     */
+    public AppConfig(@Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        int javaVersion = Runtime.version().feature();
+        if (virtualThreads && javaVersion < 21) {
+            logger.warn("Virtual threads need Java 21, running on Java {} with platform threads; build with -Pjava21",
+                    javaVersion);
+        } else {
+            logger.info("Handling requests and scheduled tasks on {} threads", virtualThreads ? "virtual" : "platform");
+        }
+    }
 }
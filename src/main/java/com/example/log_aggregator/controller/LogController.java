@@ -1,41 +1,170 @@
 package com.example.log_aggregator.controller;
 
+import com.example.log_aggregator.cluster.ClusterRouter;
+import com.example.log_aggregator.cluster.NodeRequestException;
+import com.example.log_aggregator.model.BatchIngestResponse;
+import com.example.log_aggregator.model.ClusterStatus;
+import com.example.log_aggregator.model.IngestMetrics;
+import com.example.log_aggregator.model.LogCursor;
 import com.example.log_aggregator.model.LogEntry;
+import com.example.log_aggregator.model.LogFilter;
+import com.example.log_aggregator.model.LogPage;
 import com.example.log_aggregator.model.LogResponse;
+import com.example.log_aggregator.model.LogStats;
+import com.example.log_aggregator.model.MemoryUsage;
+import com.example.log_aggregator.model.QueryCacheStats;
+import com.example.log_aggregator.model.ReplicationBatch;
+import com.example.log_aggregator.model.ReplicationStatus;
+import com.example.log_aggregator.model.ServiceVolume;
+import com.example.log_aggregator.model.SortOrder;
+import com.example.log_aggregator.replication.ReplicationService;
+import com.example.log_aggregator.service.IngestRejectedException;
 import com.example.log_aggregator.service.LogService;
+import com.example.log_aggregator.service.LogTailBroadcaster;
+import com.example.log_aggregator.service.TailSink;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.lang.Nullable;
+import org.springframework.util.MultiValueMap;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 @RestController
 @RequestMapping("/logs")
 public class LogController {
     private static final Logger logger = LoggerFactory.getLogger(LogController.class);
 
+    static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    // parameters of GET /logs that are not filters
+    private static final Set<String> PAGE_PARAMS = Set.of("service", "start", "end", "limit", "order", "cursor", "q",
+            "stream");
+    // parameters of GET /logs/tail that are not filters
+    private static final Set<String> TAIL_PARAMS = Set.of("service", "q");
+
     private final LogService logService;
+    private final LogEntryDecoder logEntryDecoder;
+    private final ObjectMapper objectMapper;
+    private final int maxBatchSize;
+    private final int maxQueryLimit;
+    private final int maxStatsBuckets;
+    // null unless cluster mode is enabled
+    private final ClusterRouter clusterRouter;
+    // null unless replication is enabled
+    private final ReplicationService replicationService;
 
-    public LogController(LogService logService) {
+    public LogController(LogService logService,
+                         LogEntryDecoder logEntryDecoder,
+                         ObjectMapper objectMapper,
+                         @Value("${aggregator.ingest.max-batch-size:1000}") int maxBatchSize,
+                         @Value("${aggregator.query.max-limit:10000}") int maxQueryLimit,
+                         @Value("${aggregator.stats.max-buckets:10000}") int maxStatsBuckets,
+                         @Nullable ClusterRouter clusterRouter,
+                         @Nullable ReplicationService replicationService) {
         this.logService = logService;
+        this.logEntryDecoder = logEntryDecoder;
+        this.objectMapper = objectMapper;
+        this.maxBatchSize = maxBatchSize;
+        this.maxQueryLimit = maxQueryLimit;
+        this.maxStatsBuckets = maxStatsBuckets;
+        this.clusterRouter = clusterRouter;
+        this.replicationService = replicationService;
+    }
+
+    /**
+     * @param fromNode the {@link ClusterRouter#NODE_HEADER} of the request, set if another node sent it
+     * @return the router if the request is to be routed across the cluster, null to answer it locally
+     */
+    private ClusterRouter router(String fromNode) {
+        return fromNode == null ? clusterRouter : null;
+    }
+
+    /**
+     * @throws ResponseStatusException 421 if this node follows a leader, which takes the writes
+     */
+    private void requireLeader() {
+        if (replicationService != null && !replicationService.isLeader()) {
+            throw new ResponseStatusException(HttpStatusCode.valueOf(421),
+                    "This node replicates " + replicationService.leader() + ", send logs to the leader");
+        }
+    }
+
+    private ReplicationService replication() {
+        if (replicationService == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Replication is disabled");
+        }
+        return replicationService;
     }
 
     /**
      * endpoint to ingest a log entry
      *
-     * @param logEntry The log entry containing service name, timestamp, and message.
-     * @return http 201 created if the log is sorted successfully
+     * @param body the log entry containing service name, timestamp, and message, as JSON
+     * @return http 201 created if the log is sorted successfully, or 202 accepted once it is queued
+     * when asynchronous ingestion is enabled or the service belongs to another node of the cluster; 429 with
+     * Retry-After if the ingest buffer or the forwarding queue is full, the service is over its memory budget or
+     * followers are too far behind; 421 on a replication follower
      */
-    @PostMapping
-    public ResponseEntity<String> ingestLog(@RequestBody LogEntry logEntry) {
+    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<String> ingestLog(InputStream body,
+                                            @RequestHeader(value = ClusterRouter.NODE_HEADER, required = false)
+                                            String fromNode) throws IOException {
+        requireLeader();
+        LogEntry logEntry;
+        try {
+            logEntry = logEntryDecoder.readEntry(body);
+        } catch (JsonProcessingException e) {
+            logger.error("Malformed log: {}", e.getOriginalMessage());
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Malformed JSON: " + e.getOriginalMessage(), e);
+        }
+        ClusterRouter router = router(fromNode);
         try {
+            if (router != null && logEntry.getServiceName() != null && !router.isLocal(logEntry.getServiceName())) {
+                logService.validateLog(logEntry);
+                router.forward(List.of(logEntry));
+                return ResponseEntity.status(HttpStatus.ACCEPTED).body("Log forwarded");
+            }
+            if (logService.isAsyncIngest()) {
+                logService.submitLog(logEntry);
+                return ResponseEntity.status(HttpStatus.ACCEPTED).body("Log accepted");
+            }
             logService.saveLog(logEntry);
             return ResponseEntity.status(HttpStatus.CREATED).body("Log ingested successfully");
+        } catch (IngestRejectedException e) {
+            logger.warn("Rejecting log: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .body(e.getMessage());
         } catch (IllegalArgumentException e) {
             logger.error("Error ingesting log: {}", e.getMessage());
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
@@ -46,23 +175,284 @@ public class LogController {
     }
 
     /**
-     * @param service service name
+     * endpoint to inspect the asynchronous ingest buffer
+     *
+     * @return queue depth, counters and drain latency; 404 if asynchronous ingestion is disabled
+     */
+    @GetMapping("/ingest/metrics")
+    public ResponseEntity<IngestMetrics> ingestMetrics() {
+        if (!logService.isAsyncIngest()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Asynchronous ingestion is disabled");
+        }
+        return ResponseEntity.ok(logService.ingestMetrics());
+    }
+
+    /**
+     * endpoint to inspect cluster membership and the forwarding of ingest to other nodes
+     *
+     * @return this node, every node, and forwarded, queued, failed and rejected entries; 404 if cluster mode
+     * is disabled
+     */
+    @GetMapping("/cluster")
+    public ResponseEntity<ClusterStatus> clusterStatus() {
+        if (clusterRouter == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Cluster mode is disabled");
+        }
+        return ResponseEntity.ok(clusterRouter.status());
+    }
+
+    /**
+     * endpoint to inspect replication
+     *
+     * @return role, epoch and sequences, and the lag behind the leader or of each follower; 404 if replication
+     * is disabled
+     */
+    @GetMapping("/replication")
+    public ResponseEntity<ReplicationStatus> replicationStatus() {
+        return ResponseEntity.ok(replication().status());
+    }
+
+    /**
+     * endpoint followers poll for the replication stream; answered as soon as there are entries from the
+     * sequence on, or empty after aggregator.replication.poll-wait-ms
+     *
+     * @param epoch    epoch of the sequence, the stream is read from its start if it is not the current one
+     * @param from     first sequence wanted, everything before it counts as applied by the follower
+     * @param max      most entries returned
+     * @param follower name of the follower, to report and bound its lag
+     * @return consecutive entries and their first sequence, and the leader's next sequence
+     */
+    @GetMapping("/replication/stream")
+    public ResponseEntity<ReplicationBatch> replicationStream(
+            @RequestParam(value = "epoch", defaultValue = "-1") long epoch,
+            @RequestParam(value = "from", defaultValue = "0") long from,
+            @RequestParam(value = "max", defaultValue = "1000") int max,
+            @RequestParam(value = "follower", required = false) String follower) throws InterruptedException {
+        try {
+            return ResponseEntity.ok(replication().read(follower, epoch, from, max));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * endpoint to promote a follower: it stops replicating and takes writes, continuing the leader's sequences
+     *
+     * @return the new replication status; 409 if this node already leads
+     */
+    @PostMapping("/replication/promote")
+    public ResponseEntity<ReplicationStatus> promote() {
+        try {
+            return ResponseEntity.ok(replication().promote());
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * endpoint to inspect the query result cache
+     *
+     * @return cached results and their bytes, hits, misses and the hit ratio, invalidations and evictions
+     */
+    @GetMapping("/cache")
+    public ResponseEntity<QueryCacheStats> queryCacheStats() {
+        return ResponseEntity.ok(logService.queryCacheStats());
+    }
+
+    /**
+     * endpoint to inspect memory use of the log store
+     *
+     * @return bytes held per service, largest first, the budgets and eviction and rejection counters
+     */
+    @GetMapping("/memory")
+    public ResponseEntity<MemoryUsage> memoryUsage() {
+        return ResponseEntity.ok(logService.memoryUsage());
+    }
+
+    /**
+     * endpoint to ingest a batch of log entries sent as a JSON array
+     *
+     * @param body the request body stream
+     * @return accepted and rejected counts, with the index of each rejected entry; 429 with Retry-After
+     * if a service of the batch is over its memory budget, in which case nothing is stored, or if the
+     * forwarding queue of another node is full, in which case the entries of this node are stored
+     */
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BatchIngestResponse> ingestBatch(InputStream body,
+                                                           @RequestHeader(value = ClusterRouter.NODE_HEADER,
+                                                                   required = false) String fromNode)
+            throws IOException {
+        requireLeader();
+        List<LogEntry> logEntries;
+        try {
+            // one past the maximum, to tell a full batch from one that is too large
+            logEntries = logEntryDecoder.readArray(body, maxBatchSize + 1);
+        } catch (JsonProcessingException e) {
+            logger.error("Malformed batch: {}", e.getOriginalMessage());
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Malformed JSON: " + e.getOriginalMessage(), e);
+        }
+        if (logEntries.size() > maxBatchSize) {
+            throw batchTooLarge();
+        }
+        return saveBatch(logEntries, router(fromNode));
+    }
+
+    /**
+     * endpoint to ingest a batch of log entries sent as newline-delimited JSON, one entry per line
+     *
+     * @param body the request body stream
+     * @return accepted and rejected counts, with the index of each rejected entry
+     */
+    @PostMapping(value = "/batch", consumes = APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<BatchIngestResponse> ingestNdjsonBatch(InputStream body,
+                                                                 @RequestHeader(value = ClusterRouter.NODE_HEADER,
+                                                                         required = false) String fromNode)
+            throws IOException {
+        requireLeader();
+        List<LogEntry> logEntries;
+        try {
+            logEntries = logEntryDecoder.readSequence(body, maxBatchSize + 1);
+        } catch (JsonProcessingException e) {
+            int lineNumber = e.getLocation() == null ? 0 : e.getLocation().getLineNr();
+            logger.error("Malformed batch line {}: {}", lineNumber, e.getOriginalMessage());
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Malformed JSON on line " + lineNumber, e);
+        }
+        if (logEntries.size() > maxBatchSize) {
+            throw batchTooLarge();
+        }
+        return saveBatch(logEntries, router(fromNode));
+    }
+
+    private ResponseEntity<BatchIngestResponse> saveBatch(List<LogEntry> logEntries, ClusterRouter router) {
+        try {
+            if (router == null) {
+                return ResponseEntity.ok(logService.saveLogs(logEntries));
+            }
+            return ResponseEntity.ok(saveRoutedBatch(logEntries, router));
+        } catch (IngestRejectedException e) {
+            logger.warn("Rejecting log batch: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .build();
+        } catch (IllegalArgumentException e) {
+            logger.error("Error ingesting log batch: {}", e.getMessage());
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        } catch (Exception e) {
+            logger.error("Unexpected error ingesting log batch", e);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Error processing log batch", e);
+        }
+    }
+
+    /**
+     * stores the entries of services owned by this node and forwards the valid ones of other services to
+     * their owners, with rejections indexed as in the whole batch
+     */
+    private BatchIngestResponse saveRoutedBatch(List<LogEntry> logEntries, ClusterRouter router) {
+        List<LogEntry> local = new ArrayList<>();
+        List<Integer> localIndexes = new ArrayList<>();
+        List<LogEntry> remote = new ArrayList<>();
+        List<BatchIngestResponse.Rejection> rejections = new ArrayList<>();
+        for (int i = 0; i < logEntries.size(); i++) {
+            LogEntry logEntry = logEntries.get(i);
+            if (logEntry == null || logEntry.getServiceName() == null || router.isLocal(logEntry.getServiceName())) {
+                local.add(logEntry);
+                localIndexes.add(i);
+                continue;
+            }
+            try {
+                logService.validateLog(logEntry);
+                remote.add(logEntry);
+            } catch (IllegalArgumentException e) {
+                rejections.add(new BatchIngestResponse.Rejection(i, e.getMessage()));
+            }
+        }
+        BatchIngestResponse saved = logService.saveLogs(local);
+        for (BatchIngestResponse.Rejection rejection : saved.getRejections()) {
+            rejections.add(new BatchIngestResponse.Rejection(localIndexes.get(rejection.getIndex()),
+                    rejection.getReason()));
+        }
+        router.forward(remote);
+        rejections.sort(Comparator.comparingInt(BatchIngestResponse.Rejection::getIndex));
+        return new BatchIngestResponse(saved.getAccepted() + remote.size(), rejections);
+    }
+
+    private ResponseStatusException batchTooLarge() {
+        return new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
+                "Batch exceeds the maximum of " + maxBatchSize + " entries");
+    }
+
+    /**
+     * Without limit, order, cursor or q every matching log is returned in ascending order. With any of
+     * them the result is paged, and the cursor for the next page is returned in the X-Next-Cursor header.
+     * q keeps only logs whose message contains the search terms. Any other parameter is a filter: level=X,
+     * level>=X, level>X, level<=X and level<X on the level, and name=value on an indexed attribute such as
+     * trace_id. Filters are answered through the level and attribute indexes; an attribute that is not
+     * indexed is rejected with 400.
+     * service may list several services, comma-separated or repeated, and globs like payments-*. Their logs
+     * are then always paged, merged in timestamp order and tagged with service_name.
+     * In cluster mode a service's logs are read from the node owning it, and several services from every node
+     * owning some of them, merged into one page.
+     *
+     * @param service service names or globs
      * @param start   start timestamp in ISO 8601 format
      * @param end     end timestamp in ISO 8601 format
+     * @param limit   maximum number of logs to return
+     * @param order   asc (default) or desc
+     * @param cursor  X-Next-Cursor value of the previous page
+     * @param q       full-text query: words that must all appear, "quoted phrases", alternatives separated by OR
+     * @param params  every query parameter, the level and attribute filters are taken from it
      * @return a list of log entries that match the query
      */
     @GetMapping
     public ResponseEntity<List<LogResponse>> queryLogs(
-            @RequestParam("service") String service,
+            @RequestParam("service") List<String> service,
             @RequestParam("start") String start,
-            @RequestParam("end") String end) {
+            @RequestParam("end") String end,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "order", required = false) String order,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "q", required = false) String q,
+            @RequestParam MultiValueMap<String, String> params,
+            @RequestHeader(value = ClusterRouter.NODE_HEADER, required = false) String fromNode) {
 
+        ClusterRouter router = router(fromNode);
         try {
             Instant startTime = Instant.parse(start);
             Instant endTime = Instant.parse(end);
+            Map<String, String> conditions = filterConditions(params, PAGE_PARAMS);
+            boolean singleService = isSingleService(service);
 
-            List<LogResponse> logs = logService.queryLogs(service, startTime, endTime);
-            return ResponseEntity.ok(logs);
+            if (router != null && singleService && !router.isLocal(service.get(0))) {
+                return pageResponse(router.query(router.ownerOf(service.get(0)), params));
+            }
+            if (singleService && limit == null && order == null && cursor == null && q == null
+                    && conditions.isEmpty()) {
+                List<LogResponse> logs = logService.queryLogs(service.get(0), startTime, endTime);
+                return ResponseEntity.ok(logs);
+            }
+
+            int pageSize = limit != null ? limit : maxQueryLimit;
+            if (pageSize > maxQueryLimit) {
+                throw new IllegalArgumentException("Limit cannot exceed " + maxQueryLimit);
+            }
+            SortOrder sortOrder = order != null ? SortOrder.fromString(order) : SortOrder.ASC;
+            LogCursor after = cursor != null ? LogCursor.decode(cursor) : null;
+
+            LogPage<LogResponse> page;
+            List<String> nodes = router != null && !singleService ? router.nodesFor(service) : List.of();
+            if (!nodes.isEmpty() && !nodes.equals(List.of(router.self()))) {
+                page = router.gather(nodes, params, pageSize, sortOrder, nodeLimit -> logService.queryServicesPage(
+                        service, startTime, endTime, q, conditions, after, nodeLimit, sortOrder));
+            } else if (!singleService) {
+                page = logService.queryServicesPage(service, startTime, endTime, q, conditions, after, pageSize,
+                        sortOrder);
+            } else if (q != null || !conditions.isEmpty()) {
+                page = logService.filterLogPage(service.get(0), startTime, endTime, LogFilter.parse(q, conditions),
+                        after, pageSize, sortOrder);
+            } else {
+                page = logService.queryLogPage(service.get(0), startTime, endTime, after, pageSize, sortOrder);
+            }
+            return pageResponse(page);
         } catch (DateTimeParseException e) {
             logger.error("Invalid date format: {}", e.getMessage());
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
@@ -70,9 +460,280 @@ public class LogController {
         } catch (IllegalArgumentException e) {
             logger.error("Error querying logs: {}", e.getMessage());
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        } catch (NodeRequestException e) {
+            logger.error("Error querying logs on {}: {}", e.getNode(), e.getMessage());
+            throw new ResponseStatusException(HttpStatus.valueOf(e.getStatus()), e.getMessage(), e);
         } catch (Exception e) {
             logger.error("Unexpected error querying logs", e);
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Error querying logs", e);
         }
     }
+
+    private static ResponseEntity<List<LogResponse>> pageResponse(LogPage<LogResponse> page) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor().encode());
+        }
+        return response.body(page.getItems());
+    }
+
+    private static boolean isSingleService(List<String> service) {
+        return service.size() == 1 && !service.get(0).contains("*");
+    }
+
+    /**
+     * @return the query parameters that are level or attribute filters, each with its first value
+     */
+    private static Map<String, String> filterConditions(MultiValueMap<String, String> params,
+                                                        Set<String> reserved) {
+        Map<String, String> conditions = new LinkedHashMap<>();
+        params.forEach((name, values) -> {
+            if (!reserved.contains(name)) {
+                conditions.put(name, values.isEmpty() || values.get(0) == null ? "" : values.get(0));
+            }
+        });
+        return conditions;
+    }
+
+    /**
+     * endpoint for log volume per service and per time bucket, answered from counters kept at ingest
+     *
+     * @param service  services to count, repeated; every service if omitted
+     * @param start    start timestamp in ISO 8601 format, the start of the first bucket
+     * @param end      end timestamp in ISO 8601 format
+     * @param interval bucket width like 10s, 1m or PT5M, whole seconds
+     * @return totals per service and the count of each bucket
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<LogStats> logStats(
+            @RequestParam(value = "service", required = false) List<String> service,
+            @RequestParam("start") String start,
+            @RequestParam("end") String end,
+            @RequestParam(value = "interval", defaultValue = "1m") String interval) {
+
+        try {
+            Instant startTime = Instant.parse(start);
+            Instant endTime = Instant.parse(end);
+            Duration bucketWidth = DurationStyle.detectAndParse(interval);
+            if (!bucketWidth.isNegative() && !bucketWidth.isZero()
+                    && Duration.between(startTime, endTime).dividedBy(bucketWidth) >= maxStatsBuckets) {
+                throw new IllegalArgumentException("Range cannot span more than " + maxStatsBuckets + " intervals");
+            }
+            return ResponseEntity.ok(logService.logStats(service, startTime, endTime, bucketWidth));
+        } catch (DateTimeParseException e) {
+            logger.error("Invalid date format: {}", e.getMessage());
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Invalid date format. Please use ISO 8601 format (e.g. 2025-03-17T10:15:00Z)", e);
+        } catch (IllegalArgumentException e) {
+            logger.error("Error counting logs: {}", e.getMessage());
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * endpoint for the services that logged the most over the last minutes
+     *
+     * @param minutes length of the window ending now
+     * @param limit   maximum number of services returned
+     * @return services and their log counts, largest first
+     */
+    @GetMapping("/stats/top")
+    public ResponseEntity<List<ServiceVolume>> topServices(
+            @RequestParam(value = "minutes", defaultValue = "60") int minutes,
+            @RequestParam(value = "limit", defaultValue = "10") int limit) {
+        try {
+            return ResponseEntity.ok(logService.topServices(minutes, limit));
+        } catch (IllegalArgumentException e) {
+            logger.error("Error ranking services: {}", e.getMessage());
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * streams matching logs as newline-delimited JSON, one object per line, written straight from the
+     * repository so memory use doesn't grow with the size of the result. In cluster mode a stream of
+     * services held by one other node is passed through from it; 421 naming the nodes if they are spread
+     * over several, each of which streams its own share to a request carrying the node header.
+     *
+     * @param service  service names or globs
+     * @param start    start timestamp in ISO 8601 format
+     * @param end      end timestamp in ISO 8601 format
+     * @param q        full-text query, as for the paged query
+     * @param params   every query parameter, passed on to the owner; level and attribute filters are
+     *                 taken from it as for the paged query
+     * @param response the response the entries are written to
+     */
+    @GetMapping(params = "stream=true")
+    public void streamLogs(
+            @RequestParam("service") List<String> service,
+            @RequestParam("start") String start,
+            @RequestParam("end") String end,
+            @RequestParam(value = "q", required = false) String q,
+            @RequestParam MultiValueMap<String, String> params,
+            @RequestHeader(value = ClusterRouter.NODE_HEADER, required = false) String fromNode,
+            HttpServletResponse response) throws IOException {
+
+        Instant startTime;
+        Instant endTime;
+        try {
+            startTime = Instant.parse(start);
+            endTime = Instant.parse(end);
+        } catch (DateTimeParseException e) {
+            logger.error("Invalid date format: {}", e.getMessage());
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Invalid date format. Please use ISO 8601 format (e.g. 2025-03-17T10:15:00Z)", e);
+        }
+
+        ClusterRouter router = router(fromNode);
+        List<String> nodes = router != null ? router.nodesFor(service) : List.of();
+        if (!nodes.isEmpty() && !nodes.equals(List.of(router.self()))) {
+            if (nodes.size() > 1) {
+                throw new ResponseStatusException(HttpStatusCode.valueOf(421), "The services are held by "
+                        + String.join(", ", nodes) + ", stream from each with the " + ClusterRouter.NODE_HEADER
+                        + " header");
+            }
+            response.setContentType(APPLICATION_NDJSON_VALUE);
+            response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+            try {
+                router.stream(nodes.get(0), params, response.getOutputStream());
+            } catch (NodeRequestException e) {
+                logger.error("Error streaming logs from {}: {}", e.getNode(), e.getMessage());
+                throw new ResponseStatusException(HttpStatusCode.valueOf(e.getStatus()), e.getMessage(), e);
+            } catch (IOException e) {
+                logger.debug("Log stream from {} aborted: {}", nodes.get(0), e.getMessage());
+            }
+            return;
+        }
+
+        response.setContentType(APPLICATION_NDJSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        boolean singleService = isSingleService(service);
+        Map<String, String> conditions = filterConditions(params, PAGE_PARAMS);
+        try (NdjsonLogWriter writer = new NdjsonLogWriter(response, !singleService)) {
+            if (singleService) {
+                logService.streamLogs(service.get(0), startTime, endTime, q, conditions, writer);
+            } else {
+                logService.streamServices(service, startTime, endTime, q, conditions, writer);
+            }
+        } catch (IllegalArgumentException e) {
+            logger.error("Error streaming logs: {}", e.getMessage());
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        } catch (UncheckedIOException e) {
+            // client went away mid-stream, nothing left to report to it
+            logger.debug("Log stream aborted: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * follows new logs as Server-Sent Events. Each stored entry that matches is sent as a "log" event
+     * with a JSON body tagged with service_name; when the client falls too far behind, a "dropped"
+     * event gives the number of entries it missed, or the stream is ended, depending on
+     * aggregator.tail.overflow. Filters are the same as for GET /logs, but attributes need not be
+     * indexed. 503 if too many tails are open.
+     *
+     * @param service service names or globs, globs also match services that appear later
+     * @param q       full-text query
+     * @param params  every query parameter, the level and attribute filters are taken from it
+     * @return the event stream, open until the client leaves
+     */
+    @GetMapping(value = "/tail", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter tailLogs(
+            @RequestParam("service") List<String> service,
+            @RequestParam(value = "q", required = false) String q,
+            @RequestParam MultiValueMap<String, String> params) {
+
+        SseEmitter emitter = new SseEmitter(0L);
+        try {
+            LogTailBroadcaster.Subscription subscription = logService.tail(service, q,
+                    filterConditions(params, TAIL_PARAMS), new SseTailSink(emitter));
+            emitter.onCompletion(subscription::close);
+            emitter.onTimeout(subscription::close);
+            emitter.onError(e -> subscription.close());
+        } catch (IllegalArgumentException e) {
+            logger.error("Error tailing logs: {}", e.getMessage());
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        } catch (IllegalStateException e) {
+            logger.warn("Refusing tail: {}", e.getMessage());
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage(), e);
+        }
+        return emitter;
+    }
+
+    /**
+     * writes a batch of events with a single flush
+     */
+    private record SseTailSink(SseEmitter emitter) implements TailSink {
+        @Override
+        public void send(List<LogEntry> logEntries, long dropped) throws IOException {
+            Set<ResponseBodyEmitter.DataWithMediaType> events = new LinkedHashSet<>();
+            if (dropped > 0) {
+                events.addAll(SseEmitter.event().name("dropped").data(Map.of("dropped", dropped)).build());
+            }
+            for (LogEntry logEntry : logEntries) {
+                events.addAll(SseEmitter.event().name("log").data(LogResponse.fromLogEntryWithService(logEntry))
+                        .build());
+            }
+            if (events.isEmpty()) {
+                events.addAll(SseEmitter.event().comment("keep-alive").build());
+            }
+            emitter.send(events);
+        }
+
+        @Override
+        public void close() {
+            emitter.complete();
+        }
+    }
+
+    /**
+     * writes each entry as one JSON line; the response is only opened on the first entry,
+     * so validation errors raised before that can still become a 400
+     */
+    private class NdjsonLogWriter implements Consumer<LogEntry>, Closeable {
+        private final HttpServletResponse response;
+        private final boolean withService;
+        private JsonGenerator generator;
+
+        NdjsonLogWriter(HttpServletResponse response, boolean withService) {
+            this.response = response;
+            this.withService = withService;
+        }
+
+        @Override
+        public void accept(LogEntry logEntry) {
+            try {
+                if (generator == null) {
+                    generator = objectMapper.getFactory().createGenerator(response.getOutputStream());
+                    generator.setRootValueSeparator(null);
+                }
+                generator.writeStartObject();
+                if (withService) {
+                    generator.writeStringField("service_name", logEntry.getServiceName());
+                }
+                generator.writeStringField("timestamp", logEntry.getTimestamp().toString());
+                generator.writeStringField("message", logEntry.getMessage());
+                if (logEntry.getLevel() != null) {
+                    generator.writeStringField("level", logEntry.getLevel().name());
+                }
+                if (logEntry.getAttributes() != null) {
+                    generator.writeObjectFieldStart("attributes");
+                    for (Map.Entry<String, String> attribute : logEntry.getAttributes().entrySet()) {
+                        generator.writeStringField(attribute.getKey(), attribute.getValue());
+                    }
+                    generator.writeEndObject();
+                }
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (generator != null) {
+                generator.close();
+            }
+        }
+    }
 }
@@ -0,0 +1,296 @@
+package com.example.log_aggregator.controller;
+
+import com.example.log_aggregator.model.LogEntry;
+import com.example.log_aggregator.model.LogLevel;
+import com.example.log_aggregator.model.ServiceNames;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads ingested log entries with Jackson's streaming parser instead of data binding.
+ * <p>
+ * Accepts what binding {@link LogEntry} accepts: {@code service_name}, {@code timestamp},
+ * {@code message}, {@code level} and {@code attributes}, scalars where strings are expected, and
+ * unknown fields, which are skipped. Service names are interned through {@link ServiceNames} straight
+ * from the parser's buffer, and timestamps of the usual form {@code 2025-03-17T10:15:00.123Z} or with a
+ * {@code +01:00} offset are converted without building a string; any other timestamp is handed to the
+ * same deserializer binding uses. Field values are not validated here, see {@code LogService}.
+ */
+@Component
+public class LogEntryDecoder {
+    private static final long SECONDS_PER_DAY = 86_400;
+    private static final int[] DAYS_IN_MONTH = {31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+    private static final LogLevel[] LEVELS = LogLevel.values();
+
+    private final JsonFactory jsonFactory;
+    private final ObjectReader instantReader;
+
+    public LogEntryDecoder(ObjectMapper objectMapper) {
+        this.jsonFactory = objectMapper.getFactory();
+        this.instantReader = objectMapper.readerFor(Instant.class);
+    }
+
+    /**
+     * @return the entry held in the JSON object, or null for a JSON null
+     * @throws com.fasterxml.jackson.core.JsonProcessingException if the input is not a log entry
+     */
+    public LogEntry readEntry(InputStream in) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(in)) {
+            if (parser.nextToken() == null) {
+                throw new JsonParseException(parser, "No log entry in request body");
+            }
+            return readObject(parser);
+        }
+    }
+
+    /**
+     * reads a JSON array of entries, stopping after {@code limit} entries
+     *
+     * @return the entries, null for JSON nulls
+     */
+    public List<LogEntry> readArray(InputStream in, int limit) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new JsonParseException(parser, "Expected a JSON array of log entries");
+            }
+            List<LogEntry> logEntries = new ArrayList<>();
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (parser.currentToken() == null) {
+                    throw new JsonParseException(parser, "Unexpected end of JSON array");
+                }
+                if (logEntries.size() == limit) {
+                    break;
+                }
+                logEntries.add(readObject(parser));
+            }
+            return logEntries;
+        }
+    }
+
+    /**
+     * reads entries written one after another, as in newline-delimited JSON, stopping after {@code limit} entries
+     *
+     * @return the entries, null for JSON nulls
+     */
+    public List<LogEntry> readSequence(InputStream in, int limit) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(in)) {
+            List<LogEntry> logEntries = new ArrayList<>();
+            while (parser.nextToken() != null && logEntries.size() < limit) {
+                logEntries.add(readObject(parser));
+            }
+            return logEntries;
+        }
+    }
+
+    private LogEntry readObject(JsonParser parser) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            throw JsonMappingException.from(parser, "Expected a JSON object for a log entry");
+        }
+        LogEntry logEntry = new LogEntry();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "service_name" -> logEntry.setServiceName(readServiceName(parser));
+                case "timestamp" -> logEntry.setTimestamp(readTimestamp(parser));
+                case "message" -> logEntry.setMessage(readText(parser, field));
+                case "level" -> logEntry.setLevel(readLevel(parser));
+                case "attributes" -> logEntry.setAttributes(readAttributes(parser));
+                default -> parser.skipChildren();
+            }
+        }
+        if (parser.currentToken() != JsonToken.END_OBJECT) {
+            throw new JsonParseException(parser, "Unexpected end of log entry");
+        }
+        return logEntry;
+    }
+
+    private static String readServiceName(JsonParser parser) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_STRING) {
+            return ServiceNames.intern(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+        }
+        return ServiceNames.intern(readText(parser, "service_name"));
+    }
+
+    /**
+     * @return the value of a string field; numbers and booleans are read as their text, like binding does
+     */
+    private static String readText(JsonParser parser, String field) throws IOException {
+        if (parser.currentToken().isScalarValue()) {
+            return parser.getValueAsString();
+        }
+        throw JsonMappingException.from(parser, "Field " + field + " must be a string");
+    }
+
+    private static LogLevel readLevel(JsonParser parser) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (parser.currentToken() == JsonToken.VALUE_STRING) {
+            LogLevel level = matchLevel(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+            if (level != null) {
+                return level;
+            }
+        }
+        try {
+            return LogLevel.fromString(readText(parser, "level"));
+        } catch (IllegalArgumentException e) {
+            throw JsonMappingException.from(parser, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return the level spelled exactly by its name in any case, or null to leave it to {@link LogLevel#fromString}
+     */
+    private static LogLevel matchLevel(char[] chars, int offset, int length) {
+        for (LogLevel level : LEVELS) {
+            String name = level.name();
+            if (name.length() == length) {
+                int i = 0;
+                while (i < length && Character.toUpperCase(chars[offset + i]) == name.charAt(i)) {
+                    i++;
+                }
+                if (i == length) {
+                    return level;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static Map<String, String> readAttributes(JsonParser parser) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            throw JsonMappingException.from(parser, "Field attributes must be an object");
+        }
+        Map<String, String> attributes = new LinkedHashMap<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String key = parser.currentName();
+            parser.nextToken();
+            attributes.put(key, readText(parser, "attributes." + key));
+        }
+        return attributes;
+    }
+
+    private Instant readTimestamp(JsonParser parser) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_STRING) {
+            Instant instant = parseIsoInstant(parser.getTextCharacters(), parser.getTextOffset(),
+                    parser.getTextLength());
+            if (instant != null) {
+                return instant;
+            }
+        }
+        return instantReader.readValue(parser);
+    }
+
+    /**
+     * parses {@code yyyy-MM-ddTHH:mm:ss[.fraction](Z|+HH:MM|-HH:MM)} without intermediate objects
+     *
+     * @return the instant, or null if the text has any other form, so that it is parsed the regular way
+     */
+    static Instant parseIsoInstant(char[] chars, int offset, int length) {
+        if (length < 20 || chars[offset + 4] != '-' || chars[offset + 7] != '-' || chars[offset + 10] != 'T'
+                || chars[offset + 13] != ':' || chars[offset + 16] != ':') {
+            return null;
+        }
+        int year = digits(chars, offset, 4);
+        int month = digits(chars, offset + 5, 2);
+        int day = digits(chars, offset + 8, 2);
+        int hour = digits(chars, offset + 11, 2);
+        int minute = digits(chars, offset + 14, 2);
+        int second = digits(chars, offset + 17, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return null;
+        }
+
+        int position = offset + 19;
+        int end = offset + length;
+        int nanos = 0;
+        if (chars[position] == '.') {
+            int fractionStart = ++position;
+            while (position < end && position - fractionStart < 9 && chars[position] >= '0' && chars[position] <= '9') {
+                nanos = nanos * 10 + (chars[position] - '0');
+                position++;
+            }
+            int fractionDigits = position - fractionStart;
+            if (fractionDigits == 0) {
+                return null;
+            }
+            for (int i = fractionDigits; i < 9; i++) {
+                nanos *= 10;
+            }
+        }
+
+        int offsetSeconds;
+        if (position == end - 1 && chars[position] == 'Z') {
+            offsetSeconds = 0;
+        } else if (position == end - 6 && (chars[position] == '+' || chars[position] == '-')
+                && chars[position + 3] == ':') {
+            int offsetHours = digits(chars, position + 1, 2);
+            int offsetMinutes = digits(chars, position + 4, 2);
+            if (offsetHours < 0 || offsetHours > 17 || offsetMinutes < 0 || offsetMinutes > 59) {
+                return null;
+            }
+            offsetSeconds = (offsetHours * 3600 + offsetMinutes * 60) * (chars[position] == '-' ? -1 : 1);
+        } else {
+            return null;
+        }
+
+        long epochSecond = epochDay(year, month, day) * SECONDS_PER_DAY + hour * 3600L + minute * 60L + second
+                - offsetSeconds;
+        return Instant.ofEpochSecond(epochSecond, nanos);
+    }
+
+    /**
+     * @return the number written with {@code count} digits, or -1 if any of them isn't a digit
+     */
+    private static int digits(char[] chars, int offset, int count) {
+        int value = 0;
+        for (int i = offset; i < offset + count; i++) {
+            char c = chars[i];
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+        return month == 2 && leap ? 29 : DAYS_IN_MONTH[month - 1];
+    }
+
+    /**
+     * days since 1970-01-01 of a proleptic Gregorian date
+     */
+    private static long epochDay(int year, int month, int day) {
+        // years start in March, so the leap day is the last day of the year
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153L * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146_097 + dayOfEra - 719_468;
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.log_aggregator.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class BatchIngestResponse {
+    private int accepted;
+    private int rejected;
+    private List<Rejection> rejections = new ArrayList<>();
+
+    public BatchIngestResponse() {
+    }
+
+    public BatchIngestResponse(int accepted, List<Rejection> rejections) {
+        this.accepted = accepted;
+        this.rejected = rejections.size();
+        this.rejections = rejections;
+    }
+
+    public int getAccepted() {
+        return accepted;
+    }
+
+    public void setAccepted(int accepted) {
+        this.accepted = accepted;
+    }
+
+    public int getRejected() {
+        return rejected;
+    }
+
+    public void setRejected(int rejected) {
+        this.rejected = rejected;
+    }
+
+    public List<Rejection> getRejections() {
+        return rejections;
+    }
+
+    public void setRejections(List<Rejection> rejections) {
+        this.rejections = rejections;
+    }
+
+    /**
+     * a batch entry that failed validation, identified by its position in the request
+     */
+    public static class Rejection {
+        private int index;
+        private String reason;
+
+        public Rejection() {
+        }
+
+        public Rejection(int index, String reason) {
+            this.index = index;
+            this.reason = reason;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public void setIndex(int index) {
+            this.index = index;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+
+        public void setReason(String reason) {
+            this.reason = reason;
+        }
+    }
+}
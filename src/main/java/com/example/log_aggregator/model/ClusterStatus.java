@@ -0,0 +1,92 @@
+package com.example.log_aggregator.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Snapshot of this node's view of the cluster: the static membership and its forwarding of ingest
+ * to the other nodes. Queued entries wait for their owner; failed ones were given up on after retries,
+ * rejected ones were refused with 429 because the owner's queue was full.
+ */
+public class ClusterStatus {
+    private String self;
+    private List<String> nodes;
+    @JsonProperty("virtual_nodes")
+    private int virtualNodes;
+    private Map<String, Long> queued;
+    private long forwarded;
+    private long failed;
+    private long rejected;
+
+    public ClusterStatus() {
+    }
+
+    public ClusterStatus(String self, List<String> nodes, int virtualNodes, Map<String, Long> queued,
+                         long forwarded, long failed, long rejected) {
+        this.self = self;
+        this.nodes = nodes;
+        this.virtualNodes = virtualNodes;
+        this.queued = queued;
+        this.forwarded = forwarded;
+        this.failed = failed;
+        this.rejected = rejected;
+    }
+
+    public String getSelf() {
+        return self;
+    }
+
+    public void setSelf(String self) {
+        this.self = self;
+    }
+
+    public List<String> getNodes() {
+        return nodes;
+    }
+
+    public void setNodes(List<String> nodes) {
+        this.nodes = nodes;
+    }
+
+    public int getVirtualNodes() {
+        return virtualNodes;
+    }
+
+    public void setVirtualNodes(int virtualNodes) {
+        this.virtualNodes = virtualNodes;
+    }
+
+    public Map<String, Long> getQueued() {
+        return queued;
+    }
+
+    public void setQueued(Map<String, Long> queued) {
+        this.queued = queued;
+    }
+
+    public long getForwarded() {
+        return forwarded;
+    }
+
+    public void setForwarded(long forwarded) {
+        this.forwarded = forwarded;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public void setFailed(long failed) {
+        this.failed = failed;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public void setRejected(long rejected) {
+        this.rejected = rejected;
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.log_aggregator.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Snapshot of the asynchronous ingest buffer. Drain latency is the time from publishing the
+ * oldest entry of a drained batch until the batch is stored.
+ */
+public class IngestMetrics {
+    @JsonProperty("queue_depth")
+    private int queueDepth;
+    private int capacity;
+    @JsonProperty("overflow_policy")
+    private String overflowPolicy;
+    private long published;
+    private long drained;
+    private long dropped;
+    private long rejected;
+    private long failed;
+    @JsonProperty("drain_latency_avg_ms")
+    private double drainLatencyAvgMillis;
+    @JsonProperty("drain_latency_max_ms")
+    private double drainLatencyMaxMillis;
+
+    public IngestMetrics() {
+    }
+
+    public IngestMetrics(int queueDepth, int capacity, String overflowPolicy, long published, long drained,
+                         long dropped, long rejected, long failed,
+                         double drainLatencyAvgMillis, double drainLatencyMaxMillis) {
+        this.queueDepth = queueDepth;
+        this.capacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+        this.published = published;
+        this.drained = drained;
+        this.dropped = dropped;
+        this.rejected = rejected;
+        this.failed = failed;
+        this.drainLatencyAvgMillis = drainLatencyAvgMillis;
+        this.drainLatencyMaxMillis = drainLatencyMaxMillis;
+    }
+
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    public void setQueueDepth(int queueDepth) {
+        this.queueDepth = queueDepth;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public String getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public void setOverflowPolicy(String overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    public long getPublished() {
+        return published;
+    }
+
+    public void setPublished(long published) {
+        this.published = published;
+    }
+
+    public long getDrained() {
+        return drained;
+    }
+
+    public void setDrained(long drained) {
+        this.drained = drained;
+    }
+
+    public long getDropped() {
+        return dropped;
+    }
+
+    public void setDropped(long dropped) {
+        this.dropped = dropped;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public void setRejected(long rejected) {
+        this.rejected = rejected;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public void setFailed(long failed) {
+        this.failed = failed;
+    }
+
+    public double getDrainLatencyAvgMillis() {
+        return drainLatencyAvgMillis;
+    }
+
+    public void setDrainLatencyAvgMillis(double drainLatencyAvgMillis) {
+        this.drainLatencyAvgMillis = drainLatencyAvgMillis;
+    }
+
+    public double getDrainLatencyMaxMillis() {
+        return drainLatencyMaxMillis;
+    }
+
+    public void setDrainLatencyMaxMillis(double drainLatencyMaxMillis) {
+        this.drainLatencyMaxMillis = drainLatencyMaxMillis;
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.log_aggregator.model;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Objects;
+
+/**
+ * Position of a stored log entry, used to continue a paged query.
+ * Entries are ordered by timestamp, then by the sequence the repository assigned on save.
+ * Cursors of queries over several services also name the service of the entry, which orders
+ * entries with equal timestamps before their sequence does.
+ */
+public class LogCursor {
+    private final Instant timestamp;
+    private final String serviceName;
+    private final long sequence;
+
+    public LogCursor(Instant timestamp, long sequence) {
+        this(timestamp, null, sequence);
+    }
+
+    public LogCursor(Instant timestamp, String serviceName, long sequence) {
+        this.timestamp = timestamp;
+        this.serviceName = serviceName;
+        this.sequence = sequence;
+    }
+
+    public Instant getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return service of the entry for cursors of multi-service queries, null otherwise
+     */
+    public String getServiceName() {
+        return serviceName;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return true if an entry at the given position sorts after this cursor
+     */
+    public boolean isBefore(Instant entryTimestamp, long entrySequence) {
+        int byTime = timestamp.compareTo(entryTimestamp);
+        return byTime != 0 ? byTime < 0 : sequence < entrySequence;
+    }
+
+    /**
+     * @return true if an entry at the given position sorts before this cursor
+     */
+    public boolean isAfter(Instant entryTimestamp, long entrySequence) {
+        int byTime = timestamp.compareTo(entryTimestamp);
+        return byTime != 0 ? byTime > 0 : sequence > entrySequence;
+    }
+
+    /**
+     * @return an opaque, url-safe token for this cursor
+     */
+    public String encode() {
+        String raw = timestamp.getEpochSecond() + ":" + timestamp.getNano() + ":" + sequence
+                + (serviceName != null ? ":" + serviceName : "");
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param token a token produced by {@link #encode()}
+     * @return the decoded cursor
+     * @throws IllegalArgumentException if the token is malformed
+     */
+    public static LogCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            // the service name comes last and may itself contain ':'
+            String[] parts = raw.split(":", 4);
+            if (parts.length < 3) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            Instant timestamp = Instant.ofEpochSecond(Long.parseLong(parts[0]), Long.parseLong(parts[1]));
+            return new LogCursor(timestamp, parts.length == 4 ? parts[3] : null, Long.parseLong(parts[2]));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        LogCursor logCursor = (LogCursor) o;
+        return sequence == logCursor.sequence && Objects.equals(timestamp, logCursor.timestamp)
+                && Objects.equals(serviceName, logCursor.serviceName);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(timestamp, serviceName, sequence);
+    }
+
+    @Override
+    public String toString() {
+        return "LogCursor{" +
+                "timestamp=" + timestamp +
+                ", serviceName=" + serviceName +
+                ", sequence=" + sequence +
+                '}';
+    }
+}
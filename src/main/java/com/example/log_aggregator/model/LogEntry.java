@@ -1,8 +1,11 @@
 package com.example.log_aggregator.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import java.time.Instant;
+import java.util.Map;
 import java.util.Objects;
 
 public class LogEntry {
@@ -10,6 +13,13 @@ public class LogEntry {
     private String serviceName;
     private Instant timestamp;
     private String message;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private LogLevel level;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Map<String, String> attributes;
+    // ID of the service in the registry that validated the entry, -1 until then; not part of the entry's value
+    @JsonIgnore
+    private int serviceId = -1;
 
     public LogEntry() {
     }
@@ -20,6 +30,13 @@ public class LogEntry {
         this.message = message;
     }
 
+    public LogEntry(String serviceName, Instant timestamp, String message, LogLevel level,
+                    Map<String, String> attributes) {
+        this(serviceName, timestamp, message);
+        this.level = level;
+        this.attributes = attributes;
+    }
+
     public String getServiceName() {
         return serviceName;
     }
@@ -28,6 +45,14 @@ public class LogEntry {
         this.serviceName = serviceName;
     }
 
+    public int getServiceId() {
+        return serviceId;
+    }
+
+    public void setServiceId(int serviceId) {
+        this.serviceId = serviceId;
+    }
+
     public Instant getTimestamp() {
         return timestamp;
     }
@@ -44,6 +69,22 @@ public class LogEntry {
         this.message = message;
     }
 
+    public LogLevel getLevel() {
+        return level;
+    }
+
+    public void setLevel(LogLevel level) {
+        this.level = level;
+    }
+
+    public Map<String, String> getAttributes() {
+        return attributes;
+    }
+
+    public void setAttributes(Map<String, String> attributes) {
+        this.attributes = attributes;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -51,12 +92,14 @@ public class LogEntry {
         LogEntry logEntry = (LogEntry) o;
         return Objects.equals(serviceName, logEntry.serviceName) &&
                 Objects.equals(timestamp, logEntry.timestamp) &&
-                Objects.equals(message, logEntry.message);
+                Objects.equals(message, logEntry.message) &&
+                level == logEntry.level &&
+                Objects.equals(attributes, logEntry.attributes);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(serviceName, timestamp, message);
+        return Objects.hash(serviceName, timestamp, message, level, attributes);
     }
 
     @Override
@@ -65,6 +108,8 @@ public class LogEntry {
                 "serviceName='" + serviceName + '\'' +
                 ", timestamp=" + timestamp +
                 ", message='" + message + '\'' +
+                ", level=" + level +
+                ", attributes=" + attributes +
                 '}';
     }
 }
\ No newline at end of file
@@ -0,0 +1,151 @@
+package com.example.log_aggregator.model;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Conditions a log entry must all meet to be returned: an optional full-text query on the message,
+ * an optional range of levels and exact values of attributes. An entry without a level never
+ * matches a level condition.
+ */
+public class LogFilter {
+    private static final Pattern LEVEL_NAME = Pattern.compile("level(\\s*[<>=]|$)");
+    private static final Pattern LEVEL_CONDITION = Pattern.compile("level\\s*(>=|<=|>|<|=)\\s*(\\w*)");
+
+    private final SearchQuery text;
+    private final LogLevel minLevel;
+    private final LogLevel maxLevel;
+    private final Map<String, String> attributes;
+
+    public LogFilter(SearchQuery text, LogLevel minLevel, LogLevel maxLevel, Map<String, String> attributes) {
+        if (minLevel != null && maxLevel != null && minLevel.compareTo(maxLevel) > 0) {
+            throw new IllegalArgumentException("Minimum level cannot be above maximum level");
+        }
+        this.text = text;
+        this.minLevel = minLevel;
+        this.maxLevel = maxLevel;
+        this.attributes = attributes != null ? Map.copyOf(attributes) : Map.of();
+    }
+
+    /**
+     * @return a filter on the message text alone
+     */
+    public static LogFilter of(SearchQuery text) {
+        return new LogFilter(text, null, null, null);
+    }
+
+    /**
+     * Builds a filter from query parameters. {@code level=X} keeps one level; {@code level>=X},
+     * {@code level>X}, {@code level<=X} and {@code level<X} bound the range. A parameter like
+     * {@code level>=WARN} arrives with the name {@code level>} and the value {@code WARN}, so the
+     * comparison is rebuilt from both. Every other parameter is an exact attribute value.
+     *
+     * @param text       full-text query, see {@link SearchQuery}, or null
+     * @param conditions parameter names and values
+     * @throws IllegalArgumentException if a level or query is invalid or an attribute value is empty
+     */
+    public static LogFilter parse(String text, Map<String, String> conditions) {
+        LogLevel minLevel = null;
+        LogLevel maxLevel = null;
+        Map<String, String> attributes = new LinkedHashMap<>();
+        for (Map.Entry<String, String> condition : conditions.entrySet()) {
+            String name = condition.getKey().trim();
+            String value = condition.getValue() != null ? condition.getValue().trim() : "";
+            if (!LEVEL_NAME.matcher(name).lookingAt()) {
+                if (value.isEmpty()) {
+                    throw new IllegalArgumentException("Attribute filter " + name + " needs a value");
+                }
+                attributes.put(name, value);
+                continue;
+            }
+            String expression = value.isEmpty() ? name : name + (name.endsWith("=") ? "" : "=") + value;
+            Matcher matcher = LEVEL_CONDITION.matcher(expression);
+            if (!matcher.matches()) {
+                throw new IllegalArgumentException("Invalid level filter: " + expression);
+            }
+            LogLevel level = LogLevel.fromString(matcher.group(2));
+            switch (matcher.group(1)) {
+                case "=" -> {
+                    minLevel = level;
+                    maxLevel = level;
+                }
+                case ">=" -> minLevel = level;
+                case "<=" -> maxLevel = level;
+                case ">" -> minLevel = adjacent(level, 1);
+                default -> maxLevel = adjacent(level, -1);
+            }
+        }
+        return new LogFilter(text != null ? SearchQuery.parse(text) : null, minLevel, maxLevel, attributes);
+    }
+
+    private static LogLevel adjacent(LogLevel level, int step) {
+        int ordinal = level.ordinal() + step;
+        if (ordinal < 0 || ordinal >= LogLevel.values().length) {
+            throw new IllegalArgumentException("No level " + (step > 0 ? "above " : "below ") + level);
+        }
+        return LogLevel.values()[ordinal];
+    }
+
+    public SearchQuery getText() {
+        return text;
+    }
+
+    public LogLevel getMinLevel() {
+        return minLevel;
+    }
+
+    public LogLevel getMaxLevel() {
+        return maxLevel;
+    }
+
+    public Map<String, String> getAttributes() {
+        return attributes;
+    }
+
+    /**
+     * @return true if the filter has no condition at all
+     */
+    public boolean isEmpty() {
+        return text == null && !hasLevel() && attributes.isEmpty();
+    }
+
+    public boolean hasLevel() {
+        return minLevel != null || maxLevel != null;
+    }
+
+    /**
+     * @return true if the level is inside the filter's level range, or the filter has none
+     */
+    public boolean matchesLevel(LogLevel level) {
+        if (!hasLevel()) {
+            return true;
+        }
+        return level != null
+                && (minLevel == null || level.compareTo(minLevel) >= 0)
+                && (maxLevel == null || level.compareTo(maxLevel) <= 0);
+    }
+
+    public boolean matches(LogEntry logEntry) {
+        if (text != null && !text.matches(logEntry.getMessage())) {
+            return false;
+        }
+        if (!matchesLevel(logEntry.getLevel())) {
+            return false;
+        }
+        for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+            Map<String, String> entryAttributes = logEntry.getAttributes();
+            if (entryAttributes == null || !attribute.getValue().equals(entryAttributes.get(attribute.getKey()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "LogFilter{text=" + text + ", minLevel=" + minLevel + ", maxLevel=" + maxLevel
+                + ", attributes=" + attributes + '}';
+    }
+}
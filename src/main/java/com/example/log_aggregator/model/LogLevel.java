@@ -0,0 +1,36 @@
+package com.example.log_aggregator.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+
+/**
+ * Severity of a log entry, from least to most severe.
+ */
+public enum LogLevel {
+    TRACE,
+    DEBUG,
+    INFO,
+    WARN,
+    ERROR,
+    FATAL;
+
+    /**
+     * @param value a level name, case-insensitive; {@code WARNING} is read as {@link #WARN}
+     * @return the matching level
+     * @throws IllegalArgumentException for any other value
+     */
+    @JsonCreator
+    public static LogLevel fromString(String value) {
+        if (value != null) {
+            String name = value.trim();
+            if ("warning".equalsIgnoreCase(name)) {
+                return WARN;
+            }
+            for (LogLevel level : values()) {
+                if (level.name().equalsIgnoreCase(name)) {
+                    return level;
+                }
+            }
+        }
+        throw new IllegalArgumentException("Level must be one of TRACE, DEBUG, INFO, WARN, ERROR or FATAL");
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.log_aggregator.model;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * One page of a paged log query.
+ *
+ * @param <T> the type of the returned items
+ */
+public class LogPage<T> {
+    private final List<T> items;
+    private final LogCursor nextCursor;
+
+    public LogPage(List<T> items, LogCursor nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * @return cursor to pass for the next page, or null if this is the last page
+     */
+    public LogCursor getNextCursor() {
+        return nextCursor;
+    }
+
+    public <R> LogPage<R> map(Function<T, R> mapper) {
+        return new LogPage<>(items.stream().map(mapper).collect(Collectors.toList()), nextCursor);
+    }
+}
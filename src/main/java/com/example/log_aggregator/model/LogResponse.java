@@ -1,10 +1,21 @@
 package com.example.log_aggregator.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
 import java.time.Instant;
+import java.util.Map;
 
 public class LogResponse {
+    @JsonProperty("service_name")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String serviceName;
     private Instant timestamp;
     private String message;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private LogLevel level;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Map<String, String> attributes;
 
     public LogResponse() {
     }
@@ -14,8 +25,32 @@ public class LogResponse {
         this.message = message;
     }
 
+    public LogResponse(Instant timestamp, String message, LogLevel level, Map<String, String> attributes) {
+        this(timestamp, message);
+        this.level = level;
+        this.attributes = attributes;
+    }
+
     public static LogResponse fromLogEntry(LogEntry logEntry) {
-        return new LogResponse(logEntry.getTimestamp(), logEntry.getMessage());
+        return new LogResponse(logEntry.getTimestamp(), logEntry.getMessage(), logEntry.getLevel(),
+                logEntry.getAttributes());
+    }
+
+    /**
+     * @return the response for a multi-service query, tagged with the entry's service
+     */
+    public static LogResponse fromLogEntryWithService(LogEntry logEntry) {
+        LogResponse response = fromLogEntry(logEntry);
+        response.serviceName = logEntry.getServiceName();
+        return response;
+    }
+
+    public String getServiceName() {
+        return serviceName;
+    }
+
+    public void setServiceName(String serviceName) {
+        this.serviceName = serviceName;
     }
 
     public Instant getTimestamp() {
@@ -33,4 +68,20 @@ public class LogResponse {
     public void setMessage(String message) {
         this.message = message;
     }
-}
\ No newline at end of file
+
+    public LogLevel getLevel() {
+        return level;
+    }
+
+    public void setLevel(LogLevel level) {
+        this.level = level;
+    }
+
+    public Map<String, String> getAttributes() {
+        return attributes;
+    }
+
+    public void setAttributes(Map<String, String> attributes) {
+        this.attributes = attributes;
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.log_aggregator.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Log volume over a time range: totals per service and a histogram of fixed-width buckets.
+ * Bucket service maps only list services with logs in that bucket.
+ */
+public class LogStats {
+    private Instant start;
+    private Instant end;
+    @JsonProperty("interval_seconds")
+    private long intervalSeconds;
+    private long total;
+    private Map<String, Long> services;
+    private List<Bucket> buckets;
+
+    public LogStats() {
+    }
+
+    public LogStats(Instant start, Instant end, long intervalSeconds, long total, Map<String, Long> services,
+                    List<Bucket> buckets) {
+        this.start = start;
+        this.end = end;
+        this.intervalSeconds = intervalSeconds;
+        this.total = total;
+        this.services = services;
+        this.buckets = buckets;
+    }
+
+    public Instant getStart() {
+        return start;
+    }
+
+    public void setStart(Instant start) {
+        this.start = start;
+    }
+
+    public Instant getEnd() {
+        return end;
+    }
+
+    public void setEnd(Instant end) {
+        this.end = end;
+    }
+
+    public long getIntervalSeconds() {
+        return intervalSeconds;
+    }
+
+    public void setIntervalSeconds(long intervalSeconds) {
+        this.intervalSeconds = intervalSeconds;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public void setTotal(long total) {
+        this.total = total;
+    }
+
+    public Map<String, Long> getServices() {
+        return services;
+    }
+
+    public void setServices(Map<String, Long> services) {
+        this.services = services;
+    }
+
+    public List<Bucket> getBuckets() {
+        return buckets;
+    }
+
+    public void setBuckets(List<Bucket> buckets) {
+        this.buckets = buckets;
+    }
+
+    public static class Bucket {
+        private Instant start;
+        private long total;
+        private Map<String, Long> services;
+
+        public Bucket() {
+        }
+
+        public Bucket(Instant start, long total, Map<String, Long> services) {
+            this.start = start;
+            this.total = total;
+            this.services = services;
+        }
+
+        public Instant getStart() {
+            return start;
+        }
+
+        public void setStart(Instant start) {
+            this.start = start;
+        }
+
+        public long getTotal() {
+            return total;
+        }
+
+        public void setTotal(long total) {
+            this.total = total;
+        }
+
+        public Map<String, Long> getServices() {
+            return services;
+        }
+
+        public void setServices(Map<String, Long> services) {
+            this.services = services;
+        }
+    }
+}
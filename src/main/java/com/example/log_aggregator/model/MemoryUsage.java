@@ -0,0 +1,104 @@
+package com.example.log_aggregator.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Map;
+
+/**
+ * Snapshot of the log store's memory accounting. Budgets of 0 are unlimited; services are
+ * listed from the largest to the smallest usage.
+ */
+public class MemoryUsage {
+    @JsonProperty("used_bytes")
+    private long usedBytes;
+    @JsonProperty("max_bytes")
+    private long maxBytes;
+    @JsonProperty("max_bytes_per_service")
+    private long maxBytesPerService;
+    private String policy;
+    @JsonProperty("evicted_bytes")
+    private long evictedBytes;
+    @JsonProperty("evicted_buckets")
+    private long evictedBuckets;
+    private long rejected;
+    private Map<String, Long> services;
+
+    public MemoryUsage() {
+    }
+
+    public MemoryUsage(long usedBytes, long maxBytes, long maxBytesPerService, String policy, long evictedBytes,
+                       long evictedBuckets, long rejected, Map<String, Long> services) {
+        this.usedBytes = usedBytes;
+        this.maxBytes = maxBytes;
+        this.maxBytesPerService = maxBytesPerService;
+        this.policy = policy;
+        this.evictedBytes = evictedBytes;
+        this.evictedBuckets = evictedBuckets;
+        this.rejected = rejected;
+        this.services = services;
+    }
+
+    public long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public void setUsedBytes(long usedBytes) {
+        this.usedBytes = usedBytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public long getMaxBytesPerService() {
+        return maxBytesPerService;
+    }
+
+    public void setMaxBytesPerService(long maxBytesPerService) {
+        this.maxBytesPerService = maxBytesPerService;
+    }
+
+    public String getPolicy() {
+        return policy;
+    }
+
+    public void setPolicy(String policy) {
+        this.policy = policy;
+    }
+
+    public long getEvictedBytes() {
+        return evictedBytes;
+    }
+
+    public void setEvictedBytes(long evictedBytes) {
+        this.evictedBytes = evictedBytes;
+    }
+
+    public long getEvictedBuckets() {
+        return evictedBuckets;
+    }
+
+    public void setEvictedBuckets(long evictedBuckets) {
+        this.evictedBuckets = evictedBuckets;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public void setRejected(long rejected) {
+        this.rejected = rejected;
+    }
+
+    public Map<String, Long> getServices() {
+        return services;
+    }
+
+    public void setServices(Map<String, Long> services) {
+        this.services = services;
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.log_aggregator.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Snapshot of the query result cache. Invalidations count results found stale because logs were
+ * saved into their range or removed from it; evictions count results dropped to make room.
+ */
+public class QueryCacheStats {
+    private int entries;
+    @JsonProperty("used_bytes")
+    private long usedBytes;
+    @JsonProperty("max_bytes")
+    private long maxBytes;
+    private long hits;
+    private long misses;
+    @JsonProperty("hit_ratio")
+    private double hitRatio;
+    private long invalidations;
+    private long evictions;
+
+    public QueryCacheStats() {
+    }
+
+    public QueryCacheStats(int entries, long usedBytes, long maxBytes, long hits, long misses, double hitRatio,
+                           long invalidations, long evictions) {
+        this.entries = entries;
+        this.usedBytes = usedBytes;
+        this.maxBytes = maxBytes;
+        this.hits = hits;
+        this.misses = misses;
+        this.hitRatio = hitRatio;
+        this.invalidations = invalidations;
+        this.evictions = evictions;
+    }
+
+    public int getEntries() {
+        return entries;
+    }
+
+    public void setEntries(int entries) {
+        this.entries = entries;
+    }
+
+    public long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public void setUsedBytes(long usedBytes) {
+        this.usedBytes = usedBytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public void setHits(long hits) {
+        this.hits = hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public void setMisses(long misses) {
+        this.misses = misses;
+    }
+
+    public double getHitRatio() {
+        return hitRatio;
+    }
+
+    public void setHitRatio(double hitRatio) {
+        this.hitRatio = hitRatio;
+    }
+
+    public long getInvalidations() {
+        return invalidations;
+    }
+
+    public void setInvalidations(long invalidations) {
+        this.invalidations = invalidations;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public void setEvictions(long evictions) {
+        this.evictions = evictions;
+    }
+}
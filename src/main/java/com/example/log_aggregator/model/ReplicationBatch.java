@@ -0,0 +1,61 @@
+package com.example.log_aggregator.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * A run of the replication stream: consecutive entries from {@code firstSequence} on, and the sequence the
+ * leader will give its next entry. A first sequence past the one asked for means the entries in between
+ * are no longer held by the leader.
+ */
+public class ReplicationBatch {
+    private long epoch;
+    @JsonProperty("first_sequence")
+    private long firstSequence;
+    @JsonProperty("next_sequence")
+    private long nextSequence;
+    private List<LogEntry> entries;
+
+    public ReplicationBatch() {
+    }
+
+    public ReplicationBatch(long epoch, long firstSequence, long nextSequence, List<LogEntry> entries) {
+        this.epoch = epoch;
+        this.firstSequence = firstSequence;
+        this.nextSequence = nextSequence;
+        this.entries = entries;
+    }
+
+    public long getEpoch() {
+        return epoch;
+    }
+
+    public void setEpoch(long epoch) {
+        this.epoch = epoch;
+    }
+
+    public long getFirstSequence() {
+        return firstSequence;
+    }
+
+    public void setFirstSequence(long firstSequence) {
+        this.firstSequence = firstSequence;
+    }
+
+    public long getNextSequence() {
+        return nextSequence;
+    }
+
+    public void setNextSequence(long nextSequence) {
+        this.nextSequence = nextSequence;
+    }
+
+    public List<LogEntry> getEntries() {
+        return entries;
+    }
+
+    public void setEntries(List<LogEntry> entries) {
+        this.entries = entries;
+    }
+}
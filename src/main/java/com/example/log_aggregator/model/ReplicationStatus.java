@@ -0,0 +1,140 @@
+package com.example.log_aggregator.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Map;
+
+/**
+ * Snapshot of this node's replication. A follower reports how far it is behind the leader, in entries and
+ * in how long it has been behind, and the entries it missed because the leader no longer held them; the
+ * leader reports how far each follower that polled recently is behind and the writes it refused with 429
+ * to keep that under the maximum lag.
+ */
+public class ReplicationStatus {
+    private String role;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String leader;
+    private long epoch;
+    @JsonProperty("oldest_sequence")
+    private long oldestSequence;
+    @JsonProperty("next_sequence")
+    private long nextSequence;
+    @JsonProperty("lag_entries")
+    private long lagEntries;
+    @JsonProperty("lag_millis")
+    private long lagMillis;
+    private long missed;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Map<String, Long> followers;
+    @JsonProperty("max_lag")
+    private long maxLag;
+    private long rejected;
+
+    public ReplicationStatus() {
+    }
+
+    public ReplicationStatus(String role, String leader, long epoch, long oldestSequence, long nextSequence,
+                             long lagEntries, long lagMillis, long missed, Map<String, Long> followers, long maxLag,
+                             long rejected) {
+        this.role = role;
+        this.leader = leader;
+        this.epoch = epoch;
+        this.oldestSequence = oldestSequence;
+        this.nextSequence = nextSequence;
+        this.lagEntries = lagEntries;
+        this.lagMillis = lagMillis;
+        this.missed = missed;
+        this.followers = followers;
+        this.maxLag = maxLag;
+        this.rejected = rejected;
+    }
+
+    public String getRole() {
+        return role;
+    }
+
+    public void setRole(String role) {
+        this.role = role;
+    }
+
+    public String getLeader() {
+        return leader;
+    }
+
+    public void setLeader(String leader) {
+        this.leader = leader;
+    }
+
+    public long getEpoch() {
+        return epoch;
+    }
+
+    public void setEpoch(long epoch) {
+        this.epoch = epoch;
+    }
+
+    public long getOldestSequence() {
+        return oldestSequence;
+    }
+
+    public void setOldestSequence(long oldestSequence) {
+        this.oldestSequence = oldestSequence;
+    }
+
+    public long getNextSequence() {
+        return nextSequence;
+    }
+
+    public void setNextSequence(long nextSequence) {
+        this.nextSequence = nextSequence;
+    }
+
+    public long getLagEntries() {
+        return lagEntries;
+    }
+
+    public void setLagEntries(long lagEntries) {
+        this.lagEntries = lagEntries;
+    }
+
+    public long getLagMillis() {
+        return lagMillis;
+    }
+
+    public void setLagMillis(long lagMillis) {
+        this.lagMillis = lagMillis;
+    }
+
+    public long getMissed() {
+        return missed;
+    }
+
+    public void setMissed(long missed) {
+        this.missed = missed;
+    }
+
+    public Map<String, Long> getFollowers() {
+        return followers;
+    }
+
+    public void setFollowers(Map<String, Long> followers) {
+        this.followers = followers;
+    }
+
+    public long getMaxLag() {
+        return maxLag;
+    }
+
+    public void setMaxLag(long maxLag) {
+        this.maxLag = maxLag;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public void setRejected(long rejected) {
+        this.rejected = rejected;
+    }
+}
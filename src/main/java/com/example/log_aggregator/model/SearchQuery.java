@@ -0,0 +1,157 @@
+package com.example.log_aggregator.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Parsed full-text query for log messages.
+ * <p>
+ * Words are matched as whole tokens, case-insensitively; a token is a run of letters and digits.
+ * Words next to each other must all match ({@code AND} may be written but is implied), {@code OR}
+ * separates alternatives, and {@code "double quoted"} text must appear as consecutive tokens.
+ * A word that splits into several tokens, such as {@code req-42}, is matched as a phrase.
+ * There is no grouping: {@code a b OR c} means {@code (a AND b) OR c}.
+ */
+public class SearchQuery {
+    private final String text;
+    private final List<Clause> clauses;
+
+    private SearchQuery(String text, List<Clause> clauses) {
+        this.text = text;
+        this.clauses = clauses;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the query is empty, has an unclosed quote or an empty alternative
+     */
+    public static SearchQuery parse(String text) {
+        if (text == null || text.isBlank()) {
+            throw new IllegalArgumentException("Search query cannot be empty");
+        }
+
+        List<Clause> clauses = new ArrayList<>();
+        Clause current = new Clause();
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '"') {
+                int close = text.indexOf('"', i + 1);
+                if (close < 0) {
+                    throw new IllegalArgumentException("Search query has an unclosed quote");
+                }
+                current.add(tokenize(text.substring(i + 1, close)));
+                i = close + 1;
+            } else {
+                int end = i;
+                while (end < text.length() && !Character.isWhitespace(text.charAt(end)) && text.charAt(end) != '"') {
+                    end++;
+                }
+                String word = text.substring(i, end);
+                if (word.equals("OR")) {
+                    clauses.add(current.requireNotEmpty());
+                    current = new Clause();
+                } else if (!word.equals("AND")) {
+                    current.add(tokenize(word));
+                }
+                i = end;
+            }
+        }
+        clauses.add(current.requireNotEmpty());
+        return new SearchQuery(text, Collections.unmodifiableList(clauses));
+    }
+
+    /**
+     * splits text into lower-cased runs of letters and digits
+     */
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean tokenChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (tokenChar && start < 0) {
+                start = i;
+            } else if (!tokenChar && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    public List<Clause> getClauses() {
+        return clauses;
+    }
+
+    /**
+     * @return true if any clause needs token positions, which an index of token sets can't answer alone
+     */
+    public boolean hasPhrases() {
+        return clauses.stream().anyMatch(clause -> !clause.phrases.isEmpty());
+    }
+
+    public boolean matches(String message) {
+        if (message == null) {
+            return false;
+        }
+        List<String> tokens = tokenize(message);
+        Set<String> distinct = new HashSet<>(tokens);
+        for (Clause clause : clauses) {
+            if (distinct.containsAll(clause.terms)
+                    && clause.phrases.stream().allMatch(phrase -> Collections.indexOfSubList(tokens, phrase) >= 0)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+
+    /**
+     * terms and phrases that must all match
+     */
+    public static class Clause {
+        private final List<String> terms = new ArrayList<>();
+        private final List<List<String>> phrases = new ArrayList<>();
+
+        private void add(List<String> tokens) {
+            if (tokens.size() == 1) {
+                terms.add(tokens.get(0));
+            } else if (tokens.size() > 1) {
+                phrases.add(tokens);
+            }
+        }
+
+        private Clause requireNotEmpty() {
+            if (terms.isEmpty() && phrases.isEmpty()) {
+                throw new IllegalArgumentException("Search query has an empty alternative");
+            }
+            return this;
+        }
+
+        public List<String> getTerms() {
+            return terms;
+        }
+
+        public List<List<String>> getPhrases() {
+            return phrases;
+        }
+
+        /**
+         * @return every token the clause needs, terms and phrase tokens alike
+         */
+        public Set<String> requiredTokens() {
+            Set<String> tokens = new HashSet<>(terms);
+            phrases.forEach(tokens::addAll);
+            return tokens;
+        }
+    }
+}
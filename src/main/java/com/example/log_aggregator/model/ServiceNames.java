@@ -0,0 +1,86 @@
+package com.example.log_aggregator.model;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Process-wide table of service names, so every entry of a service refers to one {@code String}.
+ * <p>
+ * A name can be looked up straight from a parser's character buffer, which allocates nothing once the
+ * name is known. The table is open-addressed with a short probe sequence and never removes names; a
+ * name that finds no free slot is returned as a fresh string, uninterned, so a flood of distinct
+ * names costs no more than it would without the table.
+ */
+public final class ServiceNames {
+    private static final int CAPACITY = 8192;
+    private static final int MAX_PROBES = 8;
+    private static final int MAX_LENGTH = 256;
+    private static final AtomicReferenceArray<String> TABLE = new AtomicReferenceArray<>(CAPACITY);
+
+    private ServiceNames() {
+    }
+
+    /**
+     * @return the table's instance of the name, or the name itself if it isn't kept
+     */
+    public static String intern(String name) {
+        if (name == null || name.length() > MAX_LENGTH) {
+            return name;
+        }
+        int hash = name.hashCode();
+        int slot = spread(hash);
+        for (int probe = 0; probe < MAX_PROBES; probe++, slot = (slot + 1) & (CAPACITY - 1)) {
+            String existing = TABLE.get(slot);
+            if (existing == null) {
+                if (TABLE.compareAndSet(slot, null, name)) {
+                    return name;
+                }
+                existing = TABLE.get(slot);
+            }
+            if (existing.hashCode() == hash && existing.equals(name)) {
+                return existing;
+            }
+        }
+        return name;
+    }
+
+    /**
+     * @return the table's instance of the name held in {@code chars[offset, offset + length)}, or a
+     * new string if it isn't kept
+     */
+    public static String intern(char[] chars, int offset, int length) {
+        if (length > MAX_LENGTH) {
+            return new String(chars, offset, length);
+        }
+        int hash = 0;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + chars[i]; // String.hashCode
+        }
+        int slot = spread(hash);
+        for (int probe = 0; probe < MAX_PROBES; probe++, slot = (slot + 1) & (CAPACITY - 1)) {
+            String existing = TABLE.get(slot);
+            if (existing == null) {
+                return intern(new String(chars, offset, length));
+            }
+            if (existing.hashCode() == hash && contentEquals(existing, chars, offset, length)) {
+                return existing;
+            }
+        }
+        return new String(chars, offset, length);
+    }
+
+    private static boolean contentEquals(String name, char[] chars, int offset, int length) {
+        if (name.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (name.charAt(i) != chars[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int spread(int hash) {
+        return (hash ^ (hash >>> 16)) & (CAPACITY - 1);
+    }
+}
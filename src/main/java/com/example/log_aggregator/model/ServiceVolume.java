@@ -0,0 +1,36 @@
+package com.example.log_aggregator.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Number of logs a service stored in a time window.
+ */
+public class ServiceVolume {
+    @JsonProperty("service_name")
+    private String serviceName;
+    private long count;
+
+    public ServiceVolume() {
+    }
+
+    public ServiceVolume(String serviceName, long count) {
+        this.serviceName = serviceName;
+        this.count = count;
+    }
+
+    public String getServiceName() {
+        return serviceName;
+    }
+
+    public void setServiceName(String serviceName) {
+        this.serviceName = serviceName;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+}
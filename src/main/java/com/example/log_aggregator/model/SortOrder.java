@@ -0,0 +1,21 @@
+package com.example.log_aggregator.model;
+
+public enum SortOrder {
+    ASC,
+    DESC;
+
+    /**
+     * @param value "asc" or "desc", case-insensitive
+     * @return the matching order
+     * @throws IllegalArgumentException for any other value
+     */
+    public static SortOrder fromString(String value) {
+        if ("asc".equalsIgnoreCase(value)) {
+            return ASC;
+        }
+        if ("desc".equalsIgnoreCase(value)) {
+            return DESC;
+        }
+        throw new IllegalArgumentException("Order must be asc or desc");
+    }
+}
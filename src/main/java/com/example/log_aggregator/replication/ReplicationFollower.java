@@ -0,0 +1,187 @@
+package com.example.log_aggregator.replication;
+
+import com.example.log_aggregator.model.ReplicationBatch;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Follows a leader: one thread long-polls {@code GET /logs/replication/stream} from the next sequence
+ * it needs and applies each batch before asking for the next, so batches are applied in order and
+ * the position it sends is what it has applied. A new epoch, from a restarted leader, is read from its
+ * start. With a position file the epoch and position are saved after each batch and read on startup, so
+ * a follower whose store survived a restart catches up from there; an entry applied just before a crash
+ * may be applied twice.
+ */
+final class ReplicationFollower {
+    private static final Logger logger = LoggerFactory.getLogger(ReplicationFollower.class);
+
+    private static final long RETRY_PAUSE_MILLIS = 1000;
+
+    private final ReplicationService replicationService;
+    private final String leader;
+    private final String self;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+    private final long pollWaitMillis;
+    private final Path positionFile;
+    private final HttpClient httpClient;
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    // written by the follower thread only
+    private volatile long epoch = -1;
+    private volatile long nextSequence;
+    private volatile long leaderSequence;
+    private volatile long missed;
+    private volatile boolean caughtUp;
+    private volatile long caughtUpAt = System.currentTimeMillis();
+
+    ReplicationFollower(ReplicationService replicationService, String leader, String self, ObjectMapper objectMapper,
+                        int batchSize, long pollWaitMillis, Path positionFile) {
+        this.replicationService = replicationService;
+        this.leader = leader;
+        this.self = self;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+        this.pollWaitMillis = pollWaitMillis;
+        this.positionFile = positionFile;
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        loadPosition();
+        this.thread = new Thread(this::run, "replication-follower");
+        thread.setDaemon(true);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    String leader() {
+        return leader;
+    }
+
+    long lagEntries() {
+        return Math.max(0, leaderSequence - nextSequence);
+    }
+
+    /**
+     * @return how long this follower has not been caught up with the leader, 0 if it is
+     */
+    long lagMillis() {
+        return caughtUp ? 0 : System.currentTimeMillis() - caughtUpAt;
+    }
+
+    long missed() {
+        return missed;
+    }
+
+    void shutdown() {
+        running = false;
+        thread.interrupt();
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                apply(fetch());
+            } catch (InterruptedException e) {
+                return;
+            } catch (IOException | RuntimeException e) {
+                caughtUp = false;
+                if (!running) {
+                    return;
+                }
+                logger.warn("Replication from {} failed, retrying: {}", leader, e.toString());
+                try {
+                    Thread.sleep(RETRY_PAUSE_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private ReplicationBatch fetch() throws IOException, InterruptedException {
+        String query = "epoch=" + epoch + "&from=" + nextSequence + "&max=" + batchSize
+                + "&follower=" + URLEncoder.encode(self, StandardCharsets.UTF_8);
+        HttpRequest request = HttpRequest.newBuilder(URI.create(leader + "/logs/replication/stream?" + query))
+                .timeout(Duration.ofMillis(pollWaitMillis).plusSeconds(5))
+                .GET()
+                .build();
+        HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IOException("Leader answered " + response.statusCode());
+        }
+        return objectMapper.readValue(response.body(), ReplicationBatch.class);
+    }
+
+    private void apply(ReplicationBatch batch) throws IOException {
+        if (batch.getEpoch() != epoch) {
+            if (epoch != -1) {
+                logger.warn("Leader {} restarted, replicating its new epoch from the start", leader);
+            }
+            epoch = batch.getEpoch();
+            nextSequence = 0;
+        }
+        if (batch.getFirstSequence() > nextSequence) {
+            missed += batch.getFirstSequence() - nextSequence;
+            logger.warn("Missed {} log entries no longer held by the leader", batch.getFirstSequence() - nextSequence);
+        }
+        replicationService.apply(batch);
+        nextSequence = batch.getFirstSequence() + batch.getEntries().size();
+        leaderSequence = batch.getNextSequence();
+        if (!batch.getEntries().isEmpty()) {
+            savePosition();
+        }
+        boolean upToDate = nextSequence >= leaderSequence;
+        if (upToDate) {
+            caughtUpAt = System.currentTimeMillis();
+        }
+        caughtUp = upToDate;
+    }
+
+    private void loadPosition() {
+        if (positionFile == null || !Files.exists(positionFile)) {
+            return;
+        }
+        try {
+            String[] position = Files.readString(positionFile).trim().split(" ");
+            epoch = Long.parseLong(position[0]);
+            nextSequence = Long.parseLong(position[1]);
+            logger.info("Resuming replication from {} at sequence {}", leader, nextSequence);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Ignoring unreadable replication position {}: {}", positionFile, e.getMessage());
+        }
+    }
+
+    private void savePosition() throws IOException {
+        if (positionFile == null) {
+            return;
+        }
+        Files.createDirectories(positionFile.toAbsolutePath().getParent());
+        Path temp = positionFile.resolveSibling(positionFile.getFileName() + ".tmp");
+        Files.writeString(temp, epoch + " " + nextSequence);
+        Files.move(temp, positionFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
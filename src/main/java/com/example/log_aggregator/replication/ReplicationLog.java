@@ -0,0 +1,134 @@
+package com.example.log_aggregator.replication;
+
+import com.example.log_aggregator.model.LogEntry;
+import com.example.log_aggregator.model.ReplicationBatch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The replication stream: stored entries numbered in the order they were stored, the newest
+ * {@code capacity} of them kept in a ring for followers to read from any sequence still held.
+ * Sequences are only meaningful within an epoch, which a leader picks when it starts.
+ */
+final class ReplicationLog {
+    private final LogEntry[] ring;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition appended = lock.newCondition();
+    private long epoch;
+    // sequence of the oldest entry held, and of the next one to append
+    private long oldestSequence;
+    private long nextSequence;
+
+    ReplicationLog(int capacity, long epoch) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Replication log capacity must be positive");
+        }
+        this.ring = new LogEntry[capacity];
+        this.epoch = epoch;
+    }
+
+    /**
+     * numbers the entries after the ones appended before and wakes waiting readers
+     */
+    void append(List<LogEntry> logEntries) {
+        if (logEntries.isEmpty()) {
+            return;
+        }
+        lock.lock();
+        try {
+            for (LogEntry logEntry : logEntries) {
+                put(logEntry);
+            }
+            appended.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * appends entries under the sequences another log gave them; a log of another epoch or with a gap
+     * before {@code firstSequence} is restarted there
+     */
+    void appendAt(long epoch, long firstSequence, List<LogEntry> logEntries) {
+        lock.lock();
+        try {
+            if (epoch != this.epoch || firstSequence != nextSequence) {
+                this.epoch = epoch;
+                oldestSequence = firstSequence;
+                nextSequence = firstSequence;
+            }
+            for (LogEntry logEntry : logEntries) {
+                put(logEntry);
+            }
+            appended.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void put(LogEntry logEntry) {
+        ring[(int) (nextSequence % ring.length)] = logEntry;
+        nextSequence++;
+        if (nextSequence - oldestSequence > ring.length) {
+            oldestSequence++;
+        }
+    }
+
+    /**
+     * reads up to {@code max} entries from {@code fromSequence}, or from the oldest one held if that one is
+     * gone, waiting up to {@code waitMillis} for one to be appended if there is none yet
+     */
+    ReplicationBatch read(long fromSequence, int max, long waitMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMillis);
+        lock.lock();
+        try {
+            while (fromSequence >= nextSequence) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    break;
+                }
+                appended.awaitNanos(remaining);
+            }
+            long first = Math.min(Math.max(fromSequence, oldestSequence), nextSequence);
+            int count = (int) Math.min(max, nextSequence - first);
+            List<LogEntry> logEntries = new ArrayList<>(count);
+            for (long sequence = first; sequence < first + count; sequence++) {
+                logEntries.add(ring[(int) (sequence % ring.length)]);
+            }
+            return new ReplicationBatch(epoch, first, nextSequence, logEntries);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long epoch() {
+        lock.lock();
+        try {
+            return epoch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long oldestSequence() {
+        lock.lock();
+        try {
+            return oldestSequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long nextSequence() {
+        lock.lock();
+        try {
+            return nextSequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.example.log_aggregator.replication;
+
+import com.example.log_aggregator.model.LogEntry;
+import com.example.log_aggregator.model.ReplicationBatch;
+import com.example.log_aggregator.model.ReplicationStatus;
+import com.example.log_aggregator.repository.LogRepository;
+import com.example.log_aggregator.repository.MemoryBudgetExceededException;
+import com.example.log_aggregator.repository.ServiceRegistry;
+import com.example.log_aggregator.service.IngestRejectedException;
+import com.example.log_aggregator.service.LogTailBroadcaster;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Leader/follower replication, enabled with {@code aggregator.replication.enabled=true}. Without
+ * {@code aggregator.replication.leader} this node leads: every entry it stores is appended to a
+ * {@link ReplicationLog}, which followers read with long polls from the sequence they have applied up to.
+ * With it, this node follows that leader through a {@link ReplicationFollower}, refuses ingest and serves
+ * reads from the replicated store. A follower can be promoted to take writes, keeping the leader's epoch and
+ * sequences, so the other followers can follow it from where they are.
+ * <p>
+ * The position a follower asks for is taken as applied, and the leader refuses ingest with 429 while a
+ * follower that polled within {@code aggregator.replication.follower-timeout-ms} is more than
+ * {@code aggregator.replication.max-lag} entries behind, which bounds the lag of live followers.
+ */
+@Component
+@ConditionalOnProperty(name = "aggregator.replication.enabled", havingValue = "true")
+public class ReplicationService {
+    private static final Logger logger = LoggerFactory.getLogger(ReplicationService.class);
+
+    private final String leader;
+    private final ReplicationLog replicationLog;
+    private final long maxLag;
+    private final int batchSize;
+    private final long pollWaitMillis;
+    private final long followerTimeoutMillis;
+    private final int retryAfterSeconds;
+    private final LogRepository logRepository;
+    private final ServiceRegistry serviceRegistry;
+    private final LogTailBroadcaster tailBroadcaster;
+    private final Map<String, FollowerPosition> followers = new ConcurrentHashMap<>();
+    private final AtomicLong rejected = new AtomicLong();
+    private volatile ReplicationFollower follower;
+
+    public ReplicationService(@Value("${aggregator.replication.leader:}") String leader,
+                              @Value("${aggregator.replication.self:http://localhost:8080}") String self,
+                              @Value("${aggregator.replication.log-capacity:262144}") int logCapacity,
+                              @Value("${aggregator.replication.max-lag:131072}") long maxLag,
+                              @Value("${aggregator.replication.batch-size:1000}") int batchSize,
+                              @Value("${aggregator.replication.poll-wait-ms:1000}") long pollWaitMillis,
+                              @Value("${aggregator.replication.follower-timeout-ms:10000}") long followerTimeoutMillis,
+                              @Value("${aggregator.replication.retry-after-seconds:1}") int retryAfterSeconds,
+                              @Value("${aggregator.wal.enabled:false}") boolean durable,
+                              @Value("${aggregator.wal.directory:data/wal}") String walDirectory,
+                              LogRepository logRepository,
+                              ServiceRegistry serviceRegistry,
+                              @Nullable LogTailBroadcaster tailBroadcaster,
+                              ObjectMapper objectMapper) {
+        if (maxLag > logCapacity) {
+            throw new IllegalArgumentException("Maximum replication lag cannot exceed the replication log capacity");
+        }
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Replication batch size must be positive");
+        }
+        this.leader = leader.isBlank() ? null : leader.trim().replaceAll("/+$", "");
+        // a restarted leader numbers its entries anew, which followers tell by the epoch
+        this.replicationLog = new ReplicationLog(logCapacity, System.currentTimeMillis());
+        this.maxLag = maxLag;
+        this.batchSize = batchSize;
+        this.pollWaitMillis = pollWaitMillis;
+        this.followerTimeoutMillis = followerTimeoutMillis;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.logRepository = logRepository;
+        this.serviceRegistry = serviceRegistry;
+        this.tailBroadcaster = tailBroadcaster;
+        if (this.leader != null) {
+            // the position only survives a restart along with the store, through the write-ahead log
+            Path positionFile = durable ? Path.of(walDirectory, "replication-position") : null;
+            follower = new ReplicationFollower(this, this.leader, self.trim(), objectMapper, batchSize,
+                    pollWaitMillis, positionFile);
+            follower.start();
+        }
+    }
+
+    public boolean isLeader() {
+        return follower == null;
+    }
+
+    /**
+     * @return the leader this node follows, null if it leads
+     */
+    public String leader() {
+        ReplicationFollower current = follower;
+        return current == null ? null : current.leader();
+    }
+
+    /**
+     * @param count entries about to be stored
+     * @throws IngestRejectedException if they would put a live follower more than the maximum lag behind
+     */
+    public void checkLag(int count) {
+        if (maxLag <= 0 || !isLeader()) {
+            return;
+        }
+        long behind = replicationLog.nextSequence() + count - slowestFollower();
+        if (behind > maxLag) {
+            rejected.addAndGet(count);
+            throw new IngestRejectedException("Followers are more than " + maxLag + " entries behind, retry later",
+                    retryAfterSeconds);
+        }
+    }
+
+    /**
+     * @return the lowest position of the followers that polled recently, the next sequence if there are none
+     */
+    private long slowestFollower() {
+        long now = System.currentTimeMillis();
+        long slowest = replicationLog.nextSequence();
+        for (FollowerPosition position : followers.values()) {
+            if (now - position.seenAt < followerTimeoutMillis) {
+                slowest = Math.min(slowest, position.sequence);
+            }
+        }
+        return slowest;
+    }
+
+    /**
+     * adds stored entries to the replication stream
+     */
+    public void append(List<LogEntry> logEntries) {
+        if (isLeader()) {
+            replicationLog.append(logEntries);
+        }
+    }
+
+    /**
+     * answers a follower's poll, waiting up to {@code aggregator.replication.poll-wait-ms} for new entries
+     *
+     * @param followerName  the follower, to track its lag; null for a one-off read
+     * @param epoch         the epoch of {@code fromSequence}; from another epoch the stream is read from its start
+     * @param fromSequence  the first sequence wanted; everything before it counts as applied by the follower
+     * @param max           most entries returned, at most {@code aggregator.replication.batch-size}
+     */
+    public ReplicationBatch read(@Nullable String followerName, long epoch, long fromSequence, int max)
+            throws InterruptedException {
+        if (max < 1) {
+            throw new IllegalArgumentException("Max must be positive");
+        }
+        long from = epoch == replicationLog.epoch() ? fromSequence : 0;
+        if (followerName != null) {
+            followers.computeIfAbsent(followerName, name -> new FollowerPosition()).update(from);
+        }
+        return replicationLog.read(from, Math.min(max, batchSize), pollWaitMillis);
+    }
+
+    /**
+     * stores a batch read from the leader, as a follower
+     */
+    void apply(ReplicationBatch batch) {
+        List<LogEntry> valid = new ArrayList<>(batch.getEntries().size());
+        for (LogEntry logEntry : batch.getEntries()) {
+            try {
+                serviceRegistry.register(logEntry);
+                valid.add(logEntry);
+            } catch (IllegalArgumentException e) {
+                logger.warn("Skipping replicated log entry: {}", e.getMessage());
+            }
+        }
+        try {
+            logRepository.saveAll(valid);
+            if (tailBroadcaster != null) {
+                tailBroadcaster.publishAll(valid);
+            }
+        } catch (MemoryBudgetExceededException e) {
+            // the leader kept them; a follower with a smaller budget keeps what fits, as ingest would
+            logger.warn("Skipping {} replicated log entries over the memory budget", valid.size());
+        }
+        replicationLog.appendAt(batch.getEpoch(), batch.getFirstSequence(), batch.getEntries());
+    }
+
+    /**
+     * stops following and starts taking writes, continuing the leader's sequences
+     *
+     * @throws IllegalStateException if this node already leads
+     */
+    public ReplicationStatus promote() {
+        ReplicationFollower current = follower;
+        if (current == null) {
+            throw new IllegalStateException("This node is already the leader");
+        }
+        current.shutdown();
+        follower = null;
+        logger.info("Promoted to leader at sequence {}", replicationLog.nextSequence());
+        return status();
+    }
+
+    public ReplicationStatus status() {
+        ReplicationFollower current = follower;
+        if (current != null) {
+            return new ReplicationStatus("follower", current.leader(), replicationLog.epoch(),
+                    replicationLog.oldestSequence(), replicationLog.nextSequence(), current.lagEntries(),
+                    current.lagMillis(), current.missed(), null, maxLag, 0);
+        }
+        long now = System.currentTimeMillis();
+        long next = replicationLog.nextSequence();
+        Map<String, Long> lagByFollower = new LinkedHashMap<>();
+        followers.forEach((name, position) -> {
+            if (now - position.seenAt < followerTimeoutMillis) {
+                lagByFollower.put(name, Math.max(0, next - position.sequence));
+            }
+        });
+        long lag = lagByFollower.values().stream().mapToLong(Long::longValue).max().orElse(0);
+        return new ReplicationStatus("leader", null, replicationLog.epoch(), replicationLog.oldestSequence(), next,
+                lag, 0, 0, lagByFollower, maxLag, rejected.get());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ReplicationFollower current = follower;
+        if (current != null) {
+            current.shutdown();
+        }
+    }
+
+    private static final class FollowerPosition {
+        private volatile long sequence;
+        private volatile long seenAt;
+
+        void update(long sequence) {
+            this.sequence = sequence;
+            this.seenAt = System.currentTimeMillis();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.log_aggregator.repository;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Binary form of a log entry's attributes, shared by the column store and the write-ahead log:
+ * the pair count followed by each key and value as a length-prefixed UTF-8 string.
+ */
+final class AttributeCodec {
+
+    private AttributeCodec() {
+    }
+
+    static byte[] encode(Map<String, String> attributes) {
+        byte[][] strings = new byte[attributes.size() * 2][];
+        int length = Integer.BYTES;
+        int i = 0;
+        for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+            strings[i] = attribute.getKey().getBytes(StandardCharsets.UTF_8);
+            strings[i + 1] = attribute.getValue().getBytes(StandardCharsets.UTF_8);
+            length += 2 * Integer.BYTES + strings[i].length + strings[i + 1].length;
+            i += 2;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        buffer.putInt(attributes.size());
+        for (byte[] string : strings) {
+            buffer.putInt(string.length).put(string);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * reads attributes from the buffer's position, leaving it right after them
+     */
+    static Map<String, String> decode(ByteBuffer buffer) {
+        int count = buffer.getInt();
+        Map<String, String> attributes = new LinkedHashMap<>(Math.max(4, count * 2));
+        for (int i = 0; i < count; i++) {
+            attributes.put(readString(buffer), readString(buffer));
+        }
+        return attributes;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
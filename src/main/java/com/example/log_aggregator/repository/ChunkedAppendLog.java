@@ -0,0 +1,494 @@
+package com.example.log_aggregator.repository;
+
+import com.example.log_aggregator.model.LogCursor;
+import com.example.log_aggregator.model.LogEntry;
+import com.example.log_aggregator.model.LogPage;
+import com.example.log_aggregator.model.LogFilter;
+import com.example.log_aggregator.model.SortOrder;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Lock-free append-only log of a single service, holding one time bucket of a {@link TimeBucketedLog}.
+ * <p>
+ * Writers reserve a slot in the tail chunk with a single CAS and never block each other or
+ * readers. Chunks hold entries in arrival order; once a chunk is full
+ * and every slot is published, its time-sorted view is built once and cached. The open chunk's view
+ * is rebuilt only after appends, and range queries merge the sorted views of the overlapping chunks.
+ * <p>
+ * A reader sees every entry whose write completed before it reached that chunk; slots that
+ * are reserved but still being written are skipped and show up on the next read.
+ * <p>
+ * The sequence of an entry is its slot position in the log, so entries with equal timestamps
+ * are ordered by arrival.
+ * <p>
+ * Every entry is added to the {@link MessageIndex} right after its slot is published and filter
+ * hits are resolved through the chunk holding their sequence.
+ */
+class ChunkedAppendLog implements ServiceLog {
+    // chunk slot and sorted view reference (4 + 4), sorted view sequence (8),
+    // LogEntry (12 byte header + 3 references) and Instant (12 byte header + long + int)
+    private static final int ENTRY_BYTES = 16 + 24 + 24;
+    // String header, hash, coder and value reference, plus the byte[] header
+    private static final int STRING_BYTES = 24 + 16;
+    // LinkedHashMap with its table, and one linked node per attribute
+    private static final int ATTRIBUTE_MAP_BYTES = 56 + 80;
+    private static final int ATTRIBUTE_BYTES = 40;
+
+    private final int chunkSize;
+    private final Chunk head;
+    private final AtomicReference<Chunk> tail;
+    private final MessageIndex messageIndex;
+    private final ConcurrentSkipListMap<Long, Chunk> chunksByBase = new ConcurrentSkipListMap<>();
+
+    ChunkedAppendLog(int chunkSize) {
+        this(chunkSize, false);
+    }
+
+    ChunkedAppendLog(int chunkSize, boolean indexed) {
+        this(chunkSize, indexed, MessageIndex.DEFAULT_INDEXED_ATTRIBUTES);
+    }
+
+    ChunkedAppendLog(int chunkSize, boolean indexed, Set<String> indexedAttributes) {
+        this.chunkSize = chunkSize;
+        this.messageIndex = new MessageIndex(indexed, indexedAttributes);
+        this.head = new Chunk(chunkSize, 0);
+        this.tail = new AtomicReference<>(head);
+        chunksByBase.put(head.base, head);
+    }
+
+    boolean isIndexed() {
+        return messageIndex.indexesMessages();
+    }
+
+    @Override
+    public long append(LogEntry logEntry) {
+        while (true) {
+            Chunk chunk = tail.get();
+            int index = chunk.reserved.getAndIncrement();
+            if (index < chunkSize) {
+                chunk.slots.set(index, logEntry);
+                return estimatedBytes(logEntry) + index(logEntry, chunk.base + index);
+            }
+            advanceTail(chunk);
+        }
+    }
+
+    /**
+     * appends a batch, reserving as many slots as fit in the tail chunk with one atomic add
+     */
+    @Override
+    public long appendAll(List<LogEntry> logEntries) {
+        long bytes = 0;
+        int offset = 0;
+        while (offset < logEntries.size()) {
+            Chunk chunk = tail.get();
+            int remaining = logEntries.size() - offset;
+            int index = chunk.reserved.getAndAdd(remaining);
+            if (index < chunkSize) {
+                int claimed = Math.min(remaining, chunkSize - index);
+                for (int i = 0; i < claimed; i++) {
+                    chunk.slots.set(index + i, logEntries.get(offset + i));
+                }
+                for (int i = 0; i < claimed; i++) {
+                    LogEntry logEntry = logEntries.get(offset + i);
+                    bytes += estimatedBytes(logEntry) + index(logEntry, chunk.base + index + i);
+                }
+                offset += claimed;
+                if (offset == logEntries.size()) {
+                    return bytes;
+                }
+            }
+            advanceTail(chunk);
+        }
+        return bytes;
+    }
+
+    private long index(LogEntry logEntry, long sequence) {
+        return messageIndex.add(EpochNanos.of(logEntry.getTimestamp()), sequence, logEntry);
+    }
+
+    /**
+     * heap retained by a stored entry with compressed oops: the entry, its timestamp and its own
+     * copies of the message and attributes, as deserialized requests don't share strings; the service
+     * name is shared with the service's other entries, see {@link com.example.log_aggregator.model.ServiceNames}
+     */
+    static long estimatedBytes(LogEntry logEntry) {
+        long bytes = ENTRY_BYTES + stringBytes(logEntry.getMessage());
+        Map<String, String> attributes = logEntry.getAttributes();
+        if (attributes != null) {
+            bytes += ATTRIBUTE_MAP_BYTES + (long) attributes.size() * ATTRIBUTE_BYTES;
+            for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+                bytes += stringBytes(attribute.getKey()) + stringBytes(attribute.getValue());
+            }
+        }
+        return bytes;
+    }
+
+    private static long stringBytes(String value) {
+        if (value == null) {
+            return 0;
+        }
+        int bytesPerChar = 1;
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) > 0xFF) {
+                bytesPerChar = 2; // not Latin-1, stored as UTF-16
+                break;
+            }
+        }
+        // arrays are padded to 8 bytes
+        return STRING_BYTES + ((value.length() * bytesPerChar + 7L) & ~7L);
+    }
+
+    private void advanceTail(Chunk full) {
+        Chunk next = full.next.get();
+        if (next == null) {
+            Chunk created = new Chunk(chunkSize, full.base + chunkSize);
+            if (full.next.compareAndSet(null, created)) {
+                chunksByBase.put(created.base, created);
+                next = created;
+            } else {
+                next = full.next.get();
+            }
+        }
+        tail.compareAndSet(full, next);
+    }
+
+    @Override
+    public void findInRange(Instant startTime, Instant endTime, List<LogEntry> target) {
+        forEachInRange(startTime, endTime, target::add);
+    }
+
+    /**
+     * passes entries with timestamps in [startTime, endTime] to the action, in time order.
+     * Only one cursor per overlapping chunk is held, the result itself is never collected.
+     */
+    @Override
+    public void forEachInRange(Instant startTime, Instant endTime, Consumer<LogEntry> action) {
+        scan(startTime, endTime, null, Integer.MAX_VALUE, SortOrder.ASC, entry -> true, action);
+    }
+
+    /**
+     * collects up to {@code limit} entries in [startTime, endTime] that follow the cursor in the given order
+     */
+    @Override
+    public LogPage<LogEntry> findPage(Instant startTime, Instant endTime, LogCursor after, int limit,
+                                      SortOrder order) {
+        List<LogEntry> items = new ArrayList<>(Math.min(limit, chunkSize));
+        LogCursor nextCursor = scan(startTime, endTime, after, limit, order, entry -> true, items::add);
+        return new LogPage<>(items, nextCursor);
+    }
+
+    /**
+     * collects up to {@code limit} entries in [startTime, endTime] that match the filter.
+     * Filters the index can answer only resolve its hits, others check every entry of the range.
+     */
+    @Override
+    public LogPage<LogEntry> findPageMatching(Instant startTime, Instant endTime, LogFilter filter, LogCursor after,
+                                              int limit, SortOrder order) {
+        if (messageIndex.canAnswer(filter)) {
+            return messageIndex.search(EpochNanos.of(startTime), EpochNanos.of(endTime), filter, after, limit, order,
+                    this::resolve);
+        }
+        List<LogEntry> items = new ArrayList<>(Math.min(limit, chunkSize));
+        Predicate<LogEntry> matching = filter::matches;
+        LogCursor nextCursor = scan(startTime, endTime, after, limit, order, matching, items::add);
+        return new LogPage<>(items, nextCursor);
+    }
+
+    /**
+     * merges the sorted views of all chunks
+     */
+    @Override
+    public void forEachSequenced(SequencedAction action) {
+        PriorityQueue<Run> runs = new PriorityQueue<>();
+        for (Chunk chunk = head; chunk != null; chunk = chunk.next.get()) {
+            SortedView view = chunk.sortedView();
+            if (view.size() > 0) {
+                runs.add(new Run(view, 0, 1));
+            }
+        }
+        while (!runs.isEmpty()) {
+            Run run = runs.poll();
+            action.accept(run.view.entries[run.position], run.view.sequence(run.position));
+            run.position++;
+            if (run.position < run.view.size()) {
+                runs.add(run);
+            }
+        }
+    }
+
+    @Override
+    public MessageIndex.Sealed sealIndex(LogEntry[] entries) {
+        return messageIndex.seal(entries);
+    }
+
+    private LogEntry resolve(long timestamp, long sequence) {
+        Map.Entry<Long, Chunk> holder = chunksByBase.floorEntry(sequence);
+        if (holder == null) {
+            return null;
+        }
+        long slot = sequence - holder.getKey();
+        return slot < chunkSize ? holder.getValue().slots.get((int) slot) : null;
+    }
+
+    /**
+     * k-way merge over the sorted views of the chunks overlapping the range. Each run starts at the
+     * cursor position found by binary search, so earlier entries are never visited.
+     *
+     * @return cursor of the last emitted entry if more entries remain after the limit, null otherwise
+     */
+    private LogCursor scan(Instant startTime, Instant endTime, LogCursor after, int limit, SortOrder order,
+                           Predicate<LogEntry> filter, Consumer<LogEntry> action) {
+        boolean ascending = order == SortOrder.ASC;
+        Instant from = startTime;
+        Instant to = endTime;
+        if (after != null) {
+            if (ascending) {
+                from = latest(from, after.getTimestamp());
+            } else if (after.getTimestamp().isBefore(to)) {
+                to = after.getTimestamp();
+            }
+        }
+        if (from.isAfter(to)) {
+            return null;
+        }
+
+        Comparator<Run> byPosition = ascending ? Comparator.naturalOrder() : Comparator.reverseOrder();
+        PriorityQueue<Run> runs = new PriorityQueue<>(byPosition);
+        for (Chunk chunk = head; chunk != null; chunk = chunk.next.get()) {
+            SortedView view = chunk.sortedView();
+            if (view.size() == 0 || view.timestamp(view.size() - 1).isBefore(from) || view.timestamp(0).isAfter(to)) {
+                continue;
+            }
+            Run run = ascending
+                    ? new Run(view, view.firstAfter(from, after), 1)
+                    : new Run(view, view.lastBefore(to, after), -1);
+            if (run.isWithin(from, to)) {
+                runs.add(run);
+            }
+        }
+
+        int emitted = 0;
+        Instant lastTimestamp = null;
+        long lastSequence = 0;
+        while (!runs.isEmpty()) {
+            Run run = runs.poll();
+            LogEntry logEntry = run.view.entries[run.position];
+            if (filter.test(logEntry)) {
+                if (emitted == limit) {
+                    return new LogCursor(lastTimestamp, lastSequence);
+                }
+                action.accept(logEntry);
+                lastTimestamp = run.view.timestamp(run.position);
+                lastSequence = run.view.sequence(run.position);
+                emitted++;
+            }
+
+            run.position += run.step;
+            if (run.isWithin(from, to)) {
+                runs.add(run);
+            }
+        }
+        return null;
+    }
+
+    private static Instant latest(Instant a, Instant b) {
+        return a.isAfter(b) ? a : b;
+    }
+
+    private static class Chunk {
+        private final AtomicReferenceArray<LogEntry> slots;
+        private final AtomicInteger reserved = new AtomicInteger();
+        private final AtomicReference<Chunk> next = new AtomicReference<>();
+        private final long base;
+        private volatile SortedView sealedView;
+        // view of the open chunk and the number of slots it covers, all of them published
+        private volatile OpenView openView;
+
+        Chunk(int capacity, long base) {
+            this.slots = new AtomicReferenceArray<>(capacity);
+            this.base = base;
+        }
+
+        /**
+         * @return the published entries sorted by timestamp then sequence; cached once the chunk is full, and
+         * reused while nothing is appended to the open chunk
+         */
+        SortedView sortedView() {
+            SortedView view = sealedView;
+            if (view != null) {
+                return view;
+            }
+            int visible = Math.min(reserved.get(), slots.length());
+            OpenView open = openView;
+            if (open != null && open.visible == visible) {
+                return open.view;
+            }
+
+            LogEntry[] published = new LogEntry[visible];
+            int[] order = new int[visible];
+            int count = 0;
+            for (int i = 0; i < visible; i++) {
+                LogEntry logEntry = slots.get(i);
+                if (logEntry != null) {
+                    published[i] = logEntry;
+                    order[count++] = i;
+                }
+            }
+            sortByTimestamp(order, count, published);
+
+            LogEntry[] entries = new LogEntry[count];
+            long[] sequences = new long[count];
+            for (int i = 0; i < count; i++) {
+                entries[i] = published[order[i]];
+                sequences[i] = base + order[i];
+            }
+            view = new SortedView(entries, sequences);
+
+            if (count == slots.length()) {
+                sealedView = view;
+                openView = null;
+            } else if (count == visible) {
+                // a slot reserved but not yet written leaves a gap the next read has to see filled
+                openView = new OpenView(visible, view);
+            }
+            return view;
+        }
+    }
+
+    private record OpenView(int visible, SortedView view) {
+    }
+
+    /**
+     * stable merge sort of slot indexes by timestamp, so equal timestamps stay in slot order; entries
+     * mostly arrive in timestamp order, which the first pass recognises without sorting
+     */
+    private static void sortByTimestamp(int[] order, int count, LogEntry[] published) {
+        int i = 1;
+        while (i < count && !published[order[i]].getTimestamp().isBefore(published[order[i - 1]].getTimestamp())) {
+            i++;
+        }
+        if (i >= count) {
+            return;
+        }
+        int[] buffer = new int[count];
+        for (int width = 1; width < count; width *= 2) {
+            for (int low = 0; low < count - width; low += 2 * width) {
+                merge(order, buffer, low, low + width, Math.min(low + 2 * width, count), published);
+            }
+        }
+    }
+
+    private static void merge(int[] order, int[] buffer, int low, int middle, int high, LogEntry[] published) {
+        System.arraycopy(order, low, buffer, low, high - low);
+        int left = low;
+        int right = middle;
+        for (int i = low; i < high; i++) {
+            if (right == high || left < middle
+                    && !published[buffer[right]].getTimestamp().isBefore(published[buffer[left]].getTimestamp())) {
+                order[i] = buffer[left++];
+            } else {
+                order[i] = buffer[right++];
+            }
+        }
+    }
+
+    private static class SortedView {
+        private final LogEntry[] entries;
+        private final long[] sequences;
+
+        SortedView(LogEntry[] entries, long[] sequences) {
+            this.entries = entries;
+            this.sequences = sequences;
+        }
+
+        int size() {
+            return entries.length;
+        }
+
+        Instant timestamp(int index) {
+            return entries[index].getTimestamp();
+        }
+
+        long sequence(int index) {
+            return sequences[index];
+        }
+
+        /**
+         * @return index of the first entry at or after {@code from} that sorts after the cursor
+         */
+        int firstAfter(Instant from, LogCursor after) {
+            int low = 0;
+            int high = entries.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (entries[mid].getTimestamp().isBefore(from)) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            while (after != null && low < entries.length && !after.isBefore(timestamp(low), sequences[low])) {
+                low++;
+            }
+            return low;
+        }
+
+        /**
+         * @return index of the last entry at or before {@code to} that sorts before the cursor
+         */
+        int lastBefore(Instant to, LogCursor before) {
+            int low = 0;
+            int high = entries.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (entries[mid].getTimestamp().isAfter(to)) {
+                    high = mid;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            int index = low - 1;
+            while (before != null && index >= 0 && !before.isAfter(timestamp(index), sequences[index])) {
+                index--;
+            }
+            return index;
+        }
+    }
+
+    private static class Run implements Comparable<Run> {
+        private final SortedView view;
+        private final int step;
+        private int position;
+
+        Run(SortedView view, int position, int step) {
+            this.view = view;
+            this.position = position;
+            this.step = step;
+        }
+
+        boolean isWithin(Instant from, Instant to) {
+            return position >= 0 && position < view.size()
+                    && !view.timestamp(position).isBefore(from) && !view.timestamp(position).isAfter(to);
+        }
+
+        @Override
+        public int compareTo(Run other) {
+            int byTime = view.timestamp(position).compareTo(other.view.timestamp(other.position));
+            return byTime != 0 ? byTime : Long.compare(view.sequence(position), other.view.sequence(other.position));
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.example.log_aggregator.repository;
+
+import com.example.log_aggregator.model.LogCursor;
+import com.example.log_aggregator.model.LogEntry;
+import com.example.log_aggregator.model.LogFilter;
+import com.example.log_aggregator.model.LogPage;
+import com.example.log_aggregator.model.MemoryUsage;
+import com.example.log_aggregator.model.SortOrder;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Makes the configured log store durable: every entry is appended to a {@link WriteAheadLog}
+ * before it is applied to the in-memory store, and on startup the log segments still inside
+ * the retention window are replayed to rebuild it. Reads go straight to the in-memory store.
+ * Enabled with {@code aggregator.wal.enabled=true}.
+ */
+@Repository
+@Primary
+@ConditionalOnProperty(name = "aggregator.wal.enabled", havingValue = "true")
+public class DurableLogRepository implements LogRepository {
+    private static final Logger logger = LoggerFactory.getLogger(DurableLogRepository.class);
+
+    private static final int REPLAY_BATCH_SIZE = 1000;
+
+    private final LogRepository delegate;
+    private final WriteAheadLog writeAheadLog;
+    private final RetentionPolicy retentionPolicy;
+    // replayed entries the store refused for reasons other than the memory budget
+    private final long replayFailures;
+
+    public DurableLogRepository(LogRepository delegate, String directory, String fsyncPolicy,
+                                long fsyncIntervalMillis, long segmentBytes) throws IOException {
+        this(delegate, directory, fsyncPolicy, fsyncIntervalMillis, segmentBytes, new RetentionPolicy());
+    }
+
+    @Autowired
+    public DurableLogRepository(@Qualifier("logStore") LogRepository delegate,
+                                @Value("${aggregator.wal.directory:data/wal}") String directory,
+                                @Value("${aggregator.wal.fsync:interval}") String fsyncPolicy,
+                                @Value("${aggregator.wal.fsync-interval-ms:100}") long fsyncIntervalMillis,
+                                @Value("${aggregator.wal.segment-bytes:67108864}") long segmentBytes,
+                                RetentionPolicy retentionPolicy) throws IOException {
+        this(delegate, new WriteAheadLog(Path.of(directory), FsyncPolicy.fromString(fsyncPolicy),
+                fsyncIntervalMillis, segmentBytes), retentionPolicy);
+    }
+
+    DurableLogRepository(LogRepository delegate, WriteAheadLog writeAheadLog) throws IOException {
+        this(delegate, writeAheadLog, new RetentionPolicy());
+    }
+
+    /**
+     * segments are shared by all services, so they are kept and replayed for the longest retention;
+     * the store drops what is past a shorter retention on its next expiry pass
+     */
+    DurableLogRepository(LogRepository delegate, WriteAheadLog writeAheadLog, RetentionPolicy retentionPolicy)
+            throws IOException {
+        this.delegate = delegate;
+        this.writeAheadLog = writeAheadLog;
+        this.retentionPolicy = retentionPolicy;
+
+        AtomicLong replayed = new AtomicLong();
+        AtomicLong skipped = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        writeAheadLog.replay(Instant.now().minus(retentionPolicy.longestRetention()), REPLAY_BATCH_SIZE, batch -> {
+            try {
+                delegate.saveAll(batch);
+                replayed.addAndGet(batch.size());
+            } catch (MemoryBudgetExceededException e) {
+                // a budget smaller than before the restart; keep what fits, as ingest would
+                skipped.addAndGet(batch.size());
+            } catch (RuntimeException e) {
+                // a batch is stored whole or not at all, so one entry the store refuses, such as a service past a
+                // lower services cap, is set apart by storing the batch an entry at a time
+                for (LogEntry logEntry : batch) {
+                    try {
+                        delegate.save(logEntry);
+                        replayed.incrementAndGet();
+                    } catch (MemoryBudgetExceededException budgetExceeded) {
+                        skipped.incrementAndGet();
+                    } catch (RuntimeException refused) {
+                        logger.debug("Failed to replay a log entry of {}: {}", logEntry.getServiceName(),
+                                refused.toString());
+                        failed.incrementAndGet();
+                    }
+                }
+            }
+        });
+        this.replayFailures = failed.get();
+        logger.info("Replayed {} log entries from the write-ahead log", replayed.get());
+        if (skipped.get() > 0) {
+            logger.warn("Skipped {} replayed log entries over the memory budget", skipped.get());
+        }
+        if (failed.get() > 0) {
+            logger.warn("Skipped {} replayed log entries the store refused", failed.get());
+        }
+        writeAheadLog.start();
+    }
+
+    /**
+     * @return replayed entries the store refused on startup, other than for the memory budget
+     */
+    long replayFailures() {
+        return replayFailures;
+    }
+
+    @Override
+    public void save(LogEntry logEntry) {
+        if (logEntry == null || logEntry.getServiceName() == null) {
+            return; // ignore invalid entries
+        }
+
+        // a rejected entry must not come back on replay
+        List<LogEntry> logEntries = List.of(logEntry);
+        delegate.checkMemoryBudget(logEntries);
+        writeAheadLog.append(logEntries);
+        delegate.save(logEntry);
+    }
+
+    @Override
+    public void saveAll(List<LogEntry> logEntries) {
+        if (logEntries == null || logEntries.isEmpty()) {
+            return;
+        }
+
+        List<LogEntry> valid = logEntries.stream()
+                .filter(logEntry -> logEntry != null && logEntry.getServiceName() != null)
+                .toList();
+        delegate.checkMemoryBudget(valid);
+        writeAheadLog.append(valid);
+        delegate.saveAll(valid);
+    }
+
+    @Override
+    public List<LogEntry> findByServiceNameAndTimeRange(String serviceName, Instant startTime, Instant endTime) {
+        return delegate.findByServiceNameAndTimeRange(serviceName, startTime, endTime);
+    }
+
+    @Override
+    public LogPage<LogEntry> findPageByServiceNameAndTimeRange(String serviceName, Instant startTime, Instant endTime,
+                                                               LogCursor after, int limit, SortOrder order) {
+        return delegate.findPageByServiceNameAndTimeRange(serviceName, startTime, endTime, after, limit, order);
+    }
+
+    @Override
+    public LogPage<LogEntry> findPageMatching(String serviceName, Instant startTime, Instant endTime,
+                                              LogFilter filter, LogCursor after, int limit, SortOrder order) {
+        return delegate.findPageMatching(serviceName, startTime, endTime, filter, after, limit, order);
+    }
+
+    @Override
+    public void streamByServiceNameAndTimeRange(String serviceName, Instant startTime, Instant endTime,
+                                                LogFilter filter, Consumer<LogEntry> action) {
+        delegate.streamByServiceNameAndTimeRange(serviceName, startTime, endTime, filter, action);
+    }
+
+    @Override
+    public LogPage<LogEntry> findPageAcrossServices(List<String> serviceNames, Instant startTime, Instant endTime,
+                                                    LogFilter filter, LogCursor after, int limit, SortOrder order) {
+        return delegate.findPageAcrossServices(serviceNames, startTime, endTime, filter, after, limit, order);
+    }
+
+    @Override
+    public void streamAcrossServices(List<String> serviceNames, Instant startTime, Instant endTime,
+                                     LogFilter filter, Consumer<LogEntry> action) {
+        delegate.streamAcrossServices(serviceNames, startTime, endTime, filter, action);
+    }
+
+    @Override
+    public long[] countByInterval(String serviceName, Instant startTime, Instant endTime, Duration interval) {
+        return delegate.countByInterval(serviceName, startTime, endTime, interval);
+    }
+
+    @Override
+    public RangeVersion rangeVersion(String serviceName, Instant startTime, Instant endTime) {
+        return delegate.rangeVersion(serviceName, startTime, endTime);
+    }
+
+    @Override
+    public List<String> findServiceNames() {
+        return delegate.findServiceNames();
+    }
+
+    @Override
+    public long removeExpiredLogs() {
+        long removed = delegate.removeExpiredLogs();
+        writeAheadLog.removeOlderThan(Instant.now().minus(retentionPolicy.longestRetention()));
+        return removed;
+    }
+
+    @Override
+    public void checkMemoryBudget(List<LogEntry> logEntries) {
+        delegate.checkMemoryBudget(logEntries);
+    }
+
+    @Override
+    public MemoryUsage memoryUsage() {
+        return delegate.memoryUsage();
+    }
+
+    @Override
+    public long countEntries(String serviceName) {
+        return delegate.countEntries(serviceName);
+    }
+
+    @Override
+    public long usedBytes(String serviceName) {
+        return delegate.usedBytes(serviceName);
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        writeAheadLog.close();
+    }
+}
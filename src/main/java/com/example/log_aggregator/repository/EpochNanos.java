@@ -0,0 +1,30 @@
+package com.example.log_aggregator.repository;
+
+import java.time.Instant;
+
+/**
+ * Conversions between {@link Instant} and nanoseconds since the epoch held in a {@code long}.
+ * That covers the years 1677 to 2262; instants outside are clamped to the nearest end.
+ */
+final class EpochNanos {
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private static final Instant MIN = Instant.ofEpochSecond(0, Long.MIN_VALUE);
+    private static final Instant MAX = Instant.ofEpochSecond(0, Long.MAX_VALUE);
+
+    private EpochNanos() {
+    }
+
+    static long of(Instant instant) {
+        if (instant.isBefore(MIN)) {
+            return Long.MIN_VALUE;
+        }
+        if (instant.isAfter(MAX)) {
+            return Long.MAX_VALUE;
+        }
+        return instant.getEpochSecond() * NANOS_PER_SECOND + instant.getNano();
+    }
+
+    static Instant toInstant(long epochNanos) {
+        return Instant.ofEpochSecond(Math.floorDiv(epochNanos, NANOS_PER_SECOND), Math.floorMod(epochNanos, NANOS_PER_SECOND));
+    }
+}
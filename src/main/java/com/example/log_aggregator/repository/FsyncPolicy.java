@@ -0,0 +1,33 @@
+package com.example.log_aggregator.repository;
+
+/**
+ * When the write-ahead log forces written records to disk.
+ */
+public enum FsyncPolicy {
+    /**
+     * after every group commit, before any writer in the group is acknowledged
+     */
+    BATCH,
+    /**
+     * at most once per configured interval; a crash can lose the last interval
+     */
+    INTERVAL,
+    /**
+     * never, the operating system decides when pages are flushed
+     */
+    NEVER;
+
+    /**
+     * @param value "batch", "interval" or "never", case-insensitive
+     * @return the matching policy
+     * @throws IllegalArgumentException for any other value
+     */
+    public static FsyncPolicy fromString(String value) {
+        for (FsyncPolicy policy : values()) {
+            if (policy.name().equalsIgnoreCase(value)) {
+                return policy;
+            }
+        }
+        throw new IllegalArgumentException("Fsync policy must be batch, interval or never");
+    }
+}
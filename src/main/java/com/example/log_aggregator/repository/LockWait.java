@@ -0,0 +1,70 @@
+package com.example.log_aggregator.repository;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Time threads spend waiting for one kind of store lock. An acquisition first tries the lock, which is
+ * all an uncontended one costs; only when that fails is the wait timed, so the clock is never read on
+ * the fast path. Counts are kept per kind of lock across every store in the JVM, in adders that writers
+ * on different cores don't contend on.
+ */
+public final class LockWait {
+    /** the read/write lock of a {@link SegmentedLog} */
+    static final LockWait SEGMENT = new LockWait("segment");
+    /** the lock of a {@link MessageIndex} bucket */
+    static final LockWait INDEX = new LockWait("index");
+    /** the lock writers of a sealed {@link TimeBucketedLog} bucket share with the sealer */
+    static final LockWait SEAL = new LockWait("seal");
+    /** the write lock of the {@link WriteAheadLog} */
+    static final LockWait WAL = new LockWait("wal");
+
+    private static final List<LockWait> ALL = List.of(SEGMENT, INDEX, SEAL, WAL);
+
+    private final String name;
+    private final LongAdder waits = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+
+    LockWait(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return every kind of lock waited for
+     */
+    public static List<LockWait> all() {
+        return ALL;
+    }
+
+    /**
+     * acquires the lock, timing the wait if it is held
+     */
+    void lock(Lock lock) {
+        if (lock.tryLock()) {
+            return;
+        }
+        long start = System.nanoTime();
+        lock.lock();
+        waitNanos.add(System.nanoTime() - start);
+        waits.increment();
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * @return acquisitions that found the lock held and waited
+     */
+    public long waits() {
+        return waits.sum();
+    }
+
+    /**
+     * @return total time spent waiting, in nanoseconds
+     */
+    public long waitNanos() {
+        return waitNanos.sum();
+    }
+}
@@ -1,9 +1,16 @@
 package com.example.log_aggregator.repository;
 
+import com.example.log_aggregator.model.LogCursor;
 import com.example.log_aggregator.model.LogEntry;
+import com.example.log_aggregator.model.LogFilter;
+import com.example.log_aggregator.model.LogPage;
+import com.example.log_aggregator.model.MemoryUsage;
+import com.example.log_aggregator.model.SortOrder;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface LogRepository {
     /**
@@ -13,6 +20,13 @@ public interface LogRepository {
      */
     void save(LogEntry logEntry);
 
+    /**
+     * persists a batch of log entries, grouping them so each service is touched once
+     *
+     * @param logEntries the log entries to be saved
+     */
+    void saveAll(List<LogEntry> logEntries);
+
     /**
      * Retrieves log entries for a specific service within the given time range.
      *
@@ -24,7 +38,146 @@ public interface LogRepository {
     List<LogEntry> findByServiceNameAndTimeRange(String serviceName, Instant startTime, Instant endTime);
 
     /**
-     * Deletes log entries that are considered expired (older than one hour).
+     * Retrieves one page of log entries for a specific service within the given time range,
+     * starting right after the cursor of the previous page.
+     *
+     * @param serviceName name of the service
+     * @param startTime   start of the time range(inclusive)
+     * @param endTime     end of the time range(exclusive)
+     * @param after       cursor returned with the previous page, or null for the first page
+     * @param limit       maximum number of entries to return
+     * @param order       timestamp order of the page
+     * @return the entries of the page and the cursor of the next page, if any
+     */
+    LogPage<LogEntry> findPageByServiceNameAndTimeRange(String serviceName, Instant startTime, Instant endTime,
+                                                        LogCursor after, int limit, SortOrder order);
+
+    /**
+     * Retrieves one page of log entries for a specific service within the given time range
+     * that match a filter on message text, level and indexed attributes.
+     *
+     * @param serviceName name of the service
+     * @param startTime   start of the time range(inclusive)
+     * @param endTime     end of the time range(exclusive)
+     * @param filter      conditions entries must meet; filters on attributes that are not indexed
+     *                    throw {@link IllegalArgumentException}
+     * @param after       cursor returned with the previous page, or null for the first page
+     * @param limit       maximum number of entries to return
+     * @param order       timestamp order of the page
+     * @return the matching entries of the page and the cursor of the next page, if any
+     */
+    LogPage<LogEntry> findPageMatching(String serviceName, Instant startTime, Instant endTime, LogFilter filter,
+                                       LogCursor after, int limit, SortOrder order);
+
+    /**
+     * Retrieves one page of log entries of several services within the given time range, merged
+     * in timestamp order. Entries with equal timestamps are ordered by service name.
+     *
+     * @param serviceNames names of the services; unknown services are skipped
+     * @param startTime    start of the time range(inclusive)
+     * @param endTime      end of the time range(exclusive)
+     * @param filter       conditions entries must meet, or null for every entry
+     * @param after        cursor returned with the previous page, or null for the first page
+     * @param limit        maximum number of entries to return
+     * @param order        timestamp order of the page
+     * @return the entries of the page, each with its service name, and the cursor of the next page, if any
+     */
+    LogPage<LogEntry> findPageAcrossServices(List<String> serviceNames, Instant startTime, Instant endTime,
+                                             LogFilter filter, LogCursor after, int limit, SortOrder order);
+
+    /**
+     * Passes log entries of several services within the given time range to the consumer, merged
+     * in timestamp order, without collecting the whole result in memory.
+     *
+     * @param serviceNames names of the services; unknown services are skipped
+     * @param startTime    start of the time range(inclusive)
+     * @param endTime      end of the time range(exclusive)
+     * @param filter       conditions entries must meet, or null for every entry; filters on attributes that
+     *                     are not indexed throw {@link IllegalArgumentException}
+     * @param action       receives each matching entry, with its service name
+     */
+    void streamAcrossServices(List<String> serviceNames, Instant startTime, Instant endTime, LogFilter filter,
+                              Consumer<LogEntry> action);
+
+    /**
+     * Passes log entries for a specific service within the given time range to the consumer,
+     * in timestamp order, without collecting the whole result in memory.
+     *
+     * @param serviceName name of the service
+     * @param startTime   start of the time range(inclusive)
+     * @param endTime     end of the time range(exclusive)
+     * @param filter      conditions entries must meet, or null for every entry; filters on attributes that
+     *                    are not indexed throw {@link IllegalArgumentException}
+     * @param action      receives each matching entry
+     */
+    void streamByServiceNameAndTimeRange(String serviceName, Instant startTime, Instant endTime, LogFilter filter,
+                                         Consumer<LogEntry> action);
+
+    /**
+     * Counts the log entries of a specific service per time interval from counters kept while
+     * saving, without reading the entries. Counts have a resolution of one second: an entry is
+     * counted if its second starts in [startTime, endTime).
+     *
+     * @param serviceName name of the service
+     * @param startTime   start of the first interval, a whole second
+     * @param endTime     end of the counted range(exclusive)
+     * @param interval    width of each interval, whole seconds
+     * @return one count per interval, the last one possibly cut short by endTime
+     */
+    long[] countByInterval(String serviceName, Instant startTime, Instant endTime, Duration interval);
+
+    /**
+     * Returns a version of a service's time range, read from the same counters as
+     * {@link #countByInterval}, that changes whenever an entry is saved into the range or expiry or
+     * eviction removes entries of it. A result read after taking the version is at least as current
+     * as the version, so it can be reused for as long as the version of the range stays equal.
+     *
+     * @param serviceName name of the service
+     * @param startTime   start of the time range(inclusive)
+     * @param endTime     end of the time range
+     * @return the version of the range
+     */
+    RangeVersion rangeVersion(String serviceName, Instant startTime, Instant endTime);
+
+    /**
+     * @return names of all services holding logs, sorted
+     */
+    List<String> findServiceNames();
+
+    /**
+     * Deletes log entries that are considered expired, i.e. older than their service's retention
+     * (one hour unless configured otherwise, see {@link RetentionPolicy}).
+     *
+     * @return the number of entries removed
+     */
+    long removeExpiredLogs();
+
+    /**
+     * Checks that the entries' services may store more under the {@link MemoryBudget}, without
+     * storing anything. Saving runs the same check.
+     *
+     * @param logEntries the log entries about to be saved
+     * @throws MemoryBudgetExceededException if the budget's policy is reject and a service is over budget
+     */
+    void checkMemoryBudget(List<LogEntry> logEntries);
+
+    /**
+     * @return bytes retained per service, the budgets and what has been evicted or rejected
+     */
+    MemoryUsage memoryUsage();
+
+    /**
+     * Counts the log entries a service holds from the counters kept while saving, without reading them.
+     * Expired entries are counted until the time bucket holding them is removed.
+     *
+     * @param serviceName name of the service
+     * @return the number of entries held, 0 for an unknown service
+     */
+    long countEntries(String serviceName);
+
+    /**
+     * @param serviceName name of the service
+     * @return estimated heap bytes retained by the service's logs, 0 for an unknown service
      */
-    void removeExpiredLogs();
+    long usedBytes(String serviceName);
 }
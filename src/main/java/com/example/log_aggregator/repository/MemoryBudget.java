@@ -0,0 +1,211 @@
+package com.example.log_aggregator.repository;
+
+import com.example.log_aggregator.model.LogEntry;
+import com.example.log_aggregator.model.MemoryUsage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounds the heap held by stored log entries: a global budget and a per-service budget,
+ * configured as {@code aggregator.memory.max-size=512MB} and
+ * {@code aggregator.memory.max-size-per-service=64MB}, 0 meaning unlimited.
+ * <p>
+ * Every {@link TimeBucketedLog} reports the bytes its buckets retain, as estimated by the bucket
+ * implementation for its own layout, and the budget keeps the running total. Evicting policies
+ * drop whole one-minute buckets, the same unit expiry drops. The reject policy refuses entries of
+ * a service once it is at its budget; when only the global budget is full, it refuses just the
+ * services holding more than an even share of it, so a noisy service can't lock out quiet ones.
+ * <p>
+ * Eviction never drops the buckets a write went into, so entries are never acknowledged and then
+ * lost before anything could read them. A service at its budget with nothing older than the entries
+ * it is sending left to evict is refused, under the evicting policies too.
+ */
+@Component
+public class MemoryBudget {
+    public static final int DEFAULT_RETRY_AFTER_SECONDS = 5;
+
+    private final long maxBytes;
+    private final long maxBytesPerService;
+    private final MemoryPolicy policy;
+    private final int retryAfterSeconds;
+    private final AtomicLong usedBytes = new AtomicLong();
+    private final AtomicLong evictedBytes = new AtomicLong();
+    private final AtomicLong evictedBuckets = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    /**
+     * an unlimited budget that only accounts
+     */
+    public MemoryBudget() {
+        this(0, 0, MemoryPolicy.EVICT_OLDEST, DEFAULT_RETRY_AFTER_SECONDS);
+    }
+
+    @Autowired
+    public MemoryBudget(@Value("${aggregator.memory.max-size:0}") String maxSize,
+                        @Value("${aggregator.memory.max-size-per-service:0}") String maxSizePerService,
+                        @Value("${aggregator.memory.policy:evict-oldest}") String policy,
+                        @Value("${aggregator.memory.retry-after-seconds:5}") int retryAfterSeconds) {
+        this(parseSize(maxSize), parseSize(maxSizePerService), MemoryPolicy.fromString(policy), retryAfterSeconds);
+    }
+
+    public MemoryBudget(long maxBytes, long maxBytesPerService, MemoryPolicy policy, int retryAfterSeconds) {
+        if (maxBytes < 0 || maxBytesPerService < 0) {
+            throw new IllegalArgumentException("Memory budget cannot be negative");
+        }
+        this.maxBytes = maxBytes;
+        this.maxBytesPerService = maxBytesPerService;
+        this.policy = policy;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public MemoryPolicy getPolicy() {
+        return policy;
+    }
+
+    public long usedBytes() {
+        return usedBytes.get();
+    }
+
+    void add(long bytes) {
+        usedBytes.addAndGet(bytes);
+    }
+
+    /**
+     * @param oldest timestamp of the oldest entry the service is about to store
+     * @throws MemoryBudgetExceededException if the service may not store more: under the reject policy once
+     *                                       it is at its budget, under the evicting ones once it is at its own
+     *                                       budget and has no bucket older than the entries left to evict
+     */
+    void checkAdmission(int serviceId, Instant oldest, ServiceTable<TimeBucketedLog> logsByService) {
+        TimeBucketedLog serviceLog = logsByService.get(serviceId);
+        long serviceBytes = serviceLog != null ? serviceLog.usedBytes() : 0;
+        boolean overService = maxBytesPerService > 0 && serviceBytes >= maxBytesPerService;
+        boolean rejecting;
+        if (policy == MemoryPolicy.REJECT) {
+            rejecting = overService || maxBytes > 0 && usedBytes.get() >= maxBytes
+                    && serviceBytes >= maxBytes / Math.max(1, logsByService.size());
+        } else {
+            rejecting = overService && !serviceLog.hasBucketBefore(oldest);
+        }
+        if (rejecting) {
+            rejected.incrementAndGet();
+            throw new MemoryBudgetExceededException(logsByService.name(serviceId), retryAfterSeconds);
+        }
+    }
+
+    /**
+     * checks the admission of every service of a batch
+     */
+    void checkAdmission(Map<Integer, List<LogEntry>> batchesByService, ServiceTable<TimeBucketedLog> logsByService) {
+        batchesByService.forEach((serviceId, batch) -> checkAdmission(serviceId, oldest(batch), logsByService));
+    }
+
+    static Instant oldest(List<LogEntry> logEntries) {
+        Instant oldest = Instant.MAX;
+        for (LogEntry logEntry : logEntries) {
+            if (logEntry.getTimestamp().isBefore(oldest)) {
+                oldest = logEntry.getTimestamp();
+            }
+        }
+        return oldest;
+    }
+
+    /**
+     * brings the written service and then the whole store back under budget by dropping buckets,
+     * unless the policy is reject. Buckets of the written service from the one holding {@code oldest}
+     * on are kept. Only one writer evicts at a time; the others carry on appending.
+     *
+     * @param oldest timestamp of the oldest entry just stored
+     */
+    void enforce(ServiceTable<TimeBucketedLog> logsByService, TimeBucketedLog written, Instant oldest) {
+        if (policy == MemoryPolicy.REJECT) {
+            return;
+        }
+        boolean overService = maxBytesPerService > 0 && written.usedBytes() > maxBytesPerService;
+        boolean overGlobal = maxBytes > 0 && usedBytes.get() > maxBytes;
+        if ((!overService && !overGlobal) || !evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            while (maxBytesPerService > 0 && written.usedBytes() > maxBytesPerService
+                    && evict(written, oldest)) {
+                // keep dropping the service's oldest minute
+            }
+            while (maxBytes > 0 && usedBytes.get() > maxBytes) {
+                TimeBucketedLog victim = victim(logsByService, written, oldest);
+                if (!evict(victim, victim == written ? oldest : null)) {
+                    break;
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * @return the service to drop a bucket of, among those with one to spare
+     */
+    private TimeBucketedLog victim(ServiceTable<TimeBucketedLog> logsByService, TimeBucketedLog written,
+                                   Instant oldest) {
+        Comparator<TimeBucketedLog> order = policy == MemoryPolicy.EVICT_LARGEST
+                ? Comparator.comparingLong(TimeBucketedLog::usedBytes)
+                : Comparator.comparingLong(TimeBucketedLog::oldestBucketKey).reversed();
+        return logsByService.values()
+                .filter(serviceLog -> serviceLog == written ? serviceLog.hasBucketBefore(oldest)
+                        : serviceLog.hasBuckets())
+                .max(order)
+                .orElse(null);
+    }
+
+    /**
+     * @param before the bucket holding it and later ones are kept; null to drop the oldest bucket whatever it is
+     */
+    private boolean evict(TimeBucketedLog serviceLog, Instant before) {
+        if (serviceLog == null) {
+            return false;
+        }
+        long freed = before != null ? serviceLog.evictOldestBucket(before) : serviceLog.evictOldestBucket();
+        if (freed < 0) {
+            return false;
+        }
+        evictedBytes.addAndGet(freed);
+        evictedBuckets.incrementAndGet();
+        return true;
+    }
+
+    MemoryUsage usage(ServiceTable<TimeBucketedLog> logsByService) {
+        Map<String, Long> bytesByService = new HashMap<>();
+        logsByService.forEach((serviceName, serviceLog) -> bytesByService.put(serviceName, serviceLog.usedBytes()));
+        Map<String, Long> services = new LinkedHashMap<>();
+        bytesByService.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .forEach(entry -> services.put(entry.getKey(), entry.getValue()));
+        return new MemoryUsage(usedBytes.get(), maxBytes, maxBytesPerService,
+                policy.name().toLowerCase(Locale.ROOT).replace('_', '-'), evictedBytes.get(), evictedBuckets.get(),
+                rejected.get(), services);
+    }
+
+    /**
+     * @param value a size like {@code 512MB}, or a plain number of bytes
+     */
+    private static long parseSize(String value) {
+        try {
+            return DataSize.parse(value.trim()).toBytes();
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid memory size: " + value, e);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.log_aggregator.repository;
+
+/**
+ * Thrown when a service is over its memory budget and the policy is {@link MemoryPolicy#REJECT}.
+ */
+public class MemoryBudgetExceededException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final String serviceName;
+    private final int retryAfterSeconds;
+
+    public MemoryBudgetExceededException(String serviceName, int retryAfterSeconds) {
+        super("Memory budget exceeded for service " + serviceName + ", retry later");
+        this.serviceName = serviceName;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public String getServiceName() {
+        return serviceName;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
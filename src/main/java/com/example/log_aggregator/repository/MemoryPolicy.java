@@ -0,0 +1,33 @@
+package com.example.log_aggregator.repository;
+
+/**
+ * What the log store does once a memory budget is exceeded.
+ */
+public enum MemoryPolicy {
+    /**
+     * drop the oldest time bucket of any service until usage is back under the budget
+     */
+    EVICT_OLDEST,
+    /**
+     * drop the oldest time bucket of the service using the most memory, repeatedly
+     */
+    EVICT_LARGEST,
+    /**
+     * keep what is stored and refuse new entries of the offending service (429 with Retry-After)
+     */
+    REJECT;
+
+    /**
+     * @param value "evict-oldest", "evict-largest" or "reject", case-insensitive
+     * @return the matching policy
+     * @throws IllegalArgumentException for any other value
+     */
+    public static MemoryPolicy fromString(String value) {
+        for (MemoryPolicy policy : values()) {
+            if (policy.name().replace('_', '-').equalsIgnoreCase(value.trim())) {
+                return policy;
+            }
+        }
+        throw new IllegalArgumentException("Memory policy must be evict-oldest, evict-largest or reject");
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.log_aggregator.repository;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Append-only store of UTF-8 encoded messages, packed back to back into fixed-size byte chunks.
+ * A message is addressed by its offset in the arena and its length; messages may straddle a
+ * chunk boundary. Chunks are only ever added, the arena is released as a whole with its owner.
+ * Not thread-safe, callers must guard access (see {@link SegmentedLog}).
+ */
+class MessageArena {
+    static final int CHUNK_BYTES = 16 * 1024;
+
+    private byte[][] chunks = new byte[4][];
+    private int chunkCount;
+    private int size;
+
+    /**
+     * @return offset of the appended bytes
+     */
+    int append(byte[] bytes) {
+        if (bytes.length > Integer.MAX_VALUE - size) {
+            throw new IllegalStateException("Message arena is full");
+        }
+        int offset = size;
+        int copied = 0;
+        while (copied < bytes.length) {
+            int chunkIndex = size / CHUNK_BYTES;
+            if (chunkIndex == chunkCount) {
+                addChunk();
+            }
+            int position = size % CHUNK_BYTES;
+            int length = Math.min(bytes.length - copied, CHUNK_BYTES - position);
+            System.arraycopy(bytes, copied, chunks[chunkIndex], position, length);
+            copied += length;
+            size += length;
+        }
+        return offset;
+    }
+
+    String read(int offset, int length) {
+        int position = offset % CHUNK_BYTES;
+        if (position + length <= CHUNK_BYTES) {
+            return new String(chunks[offset / CHUNK_BYTES], position, length, StandardCharsets.UTF_8);
+        }
+        return new String(bytes(offset, length), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return a copy of the raw bytes at the given offset
+     */
+    byte[] bytes(int offset, int length) {
+        byte[] bytes = new byte[length];
+        int chunkIndex = offset / CHUNK_BYTES;
+        int position = offset % CHUNK_BYTES;
+        int copied = 0;
+        while (copied < length) {
+            int part = Math.min(length - copied, CHUNK_BYTES - position);
+            System.arraycopy(chunks[chunkIndex], position, bytes, copied, part);
+            copied += part;
+            chunkIndex++;
+            position = 0;
+        }
+        return bytes;
+    }
+
+    /**
+     * @return bytes in use, not counting the unused tail of the last chunk
+     */
+    int size() {
+        return size;
+    }
+
+    private void addChunk() {
+        if (chunkCount == chunks.length) {
+            chunks = Arrays.copyOf(chunks, chunkCount * 2);
+        }
+        chunks[chunkCount++] = new byte[CHUNK_BYTES];
+    }
+}
@@ -0,0 +1,676 @@
+package com.example.log_aggregator.repository;
+
+import com.example.log_aggregator.model.LogCursor;
+import com.example.log_aggregator.model.LogEntry;
+import com.example.log_aggregator.model.LogFilter;
+import com.example.log_aggregator.model.LogLevel;
+import com.example.log_aggregator.model.LogPage;
+import com.example.log_aggregator.model.SearchQuery;
+import com.example.log_aggregator.model.SortOrder;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Inverted index over the messages, levels and selected attributes of one service, built
+ * incrementally as entries are stored.
+ * <p>
+ * The index is split into one-minute buckets. Every bucket numbers its entries with dense int
+ * ids in arrival order, keeps each id's timestamp and sequence, and maps every token to the
+ * ascending list of ids whose message contains it. A query intersects the posting lists of each
+ * {@code AND} clause and unions the clauses; phrases are checked against the stored message once
+ * the entry is resolved. Levels are kept as one posting list per level and indexed attributes as
+ * one per key and value, both intersected with the text hits. The index is dropped along with the
+ * log that owns it.
+ * <p>
+ * Writers add to a bucket under its lock. Every array of a bucket is only appended to, and replaced
+ * by a longer copy when full, so a search holds the lock just long enough to note the arrays and
+ * lengths of the lists it reads; the intersections and sorting run outside it and never hold back
+ * ingest into the same minute.
+ * <p>
+ * A bucket sealed into a {@link SealedLog} gets a {@link Sealed} index of its own, built once with the
+ * same settings over the entries' positions in the sealed order, its posting lists packed into varint deltas.
+ * <p>
+ * The index never holds entries itself; the owning log resolves hits by timestamp and sequence.
+ */
+class MessageIndex {
+    static final long BUCKET_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    // ids share a sort key with the 36 bit offset of the timestamp inside its bucket
+    private static final int ID_BITS = 27;
+    private static final int MAX_IDS = 1 << ID_BITS;
+    // timestamp and sequence of every id, and one posting per distinct token
+    private static final int BYTES_PER_ID = 16;
+    private static final int BYTES_PER_POSTING = 4;
+    // first sighting of a token in a bucket: hash map node and table slot, the token String and
+    // its array header, the posting list and its initial array
+    private static final int BYTES_PER_TOKEN = 40 + 40 + 24 + 32;
+    private static final LogLevel[] LEVELS = LogLevel.values();
+    static final Set<String> DEFAULT_INDEXED_ATTRIBUTES = Set.of("trace_id");
+
+    /**
+     * looks up a stored entry; null if it is gone or not visible
+     */
+    interface EntryResolver {
+        LogEntry resolve(long timestamp, long sequence);
+    }
+
+    private final NavigableMap<Long, Bucket> buckets = new ConcurrentSkipListMap<>();
+    private final boolean indexMessages;
+    private final Set<String> indexedAttributes;
+
+    MessageIndex(boolean indexMessages, Set<String> indexedAttributes) {
+        this.indexMessages = indexMessages;
+        this.indexedAttributes = indexedAttributes;
+    }
+
+    boolean indexesMessages() {
+        return indexMessages;
+    }
+
+    /**
+     * @return true if every condition of the filter can be resolved through the index
+     */
+    boolean canAnswer(LogFilter filter) {
+        return (filter.getText() == null || indexMessages)
+                && indexedAttributes.containsAll(filter.getAttributes().keySet());
+    }
+
+    /**
+     * @return attribute keys from a comma-separated list, blanks dropped
+     */
+    static Set<String> parseAttributes(String keys) {
+        Set<String> parsed = new HashSet<>();
+        for (String key : keys.split(",")) {
+            if (!key.isBlank()) {
+                parsed.add(key.trim());
+            }
+        }
+        return Set.copyOf(parsed);
+    }
+
+    /**
+     * rejects filters on attributes that no log indexes, before any log is read
+     */
+    static void requireIndexed(LogFilter filter, Set<String> indexedAttributes) {
+        for (String key : filter.getAttributes().keySet()) {
+            if (!indexedAttributes.contains(key)) {
+                throw new IllegalArgumentException("Attribute " + key + " is not indexed");
+            }
+        }
+    }
+
+    /**
+     * wraps a stream consumer so that it only receives entries matching the filter, with the same attribute
+     * check as the paged queries
+     *
+     * @param filter conditions entries must meet, or null to pass every entry
+     */
+    static Consumer<LogEntry> matching(LogFilter filter, Set<String> indexedAttributes, Consumer<LogEntry> action) {
+        if (filter == null || filter.isEmpty()) {
+            return action;
+        }
+        requireIndexed(filter, indexedAttributes);
+        return logEntry -> {
+            if (filter.matches(logEntry)) {
+                action.accept(logEntry);
+            }
+        };
+    }
+
+    /**
+     * @return estimated bytes the index keeps for the entry
+     */
+    long add(long timestamp, long sequence, LogEntry logEntry) {
+        List<String> tokens = indexMessages && logEntry.getMessage() != null
+                ? SearchQuery.tokenize(logEntry.getMessage()) : List.of();
+        List<String> attributes = indexedValues(logEntry.getAttributes());
+        if (tokens.isEmpty() && attributes.isEmpty() && logEntry.getLevel() == null) {
+            return 0; // no filter can match it
+        }
+        long key = Math.floorDiv(timestamp, BUCKET_NANOS);
+        Bucket bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = buckets.computeIfAbsent(key, k -> new Bucket(k * BUCKET_NANOS));
+        }
+        return bucket.add(timestamp, sequence, tokens, logEntry.getLevel(), attributes);
+    }
+
+    private List<String> indexedValues(Map<String, String> attributes) {
+        if (attributes == null || attributes.isEmpty() || indexedAttributes.isEmpty()) {
+            return List.of();
+        }
+        List<String> values = new ArrayList<>(indexedAttributes.size());
+        for (String key : indexedAttributes) {
+            String value = attributes.get(key);
+            if (value != null) {
+                values.add(attributeKey(key, value));
+            }
+        }
+        return values;
+    }
+
+    private static String attributeKey(String key, String value) {
+        return key + '\0' + value;
+    }
+
+    /**
+     * indexes entries being sealed with this index's settings
+     *
+     * @param entries in timestamp then sequence order, an entry's position being its id
+     */
+    Sealed seal(LogEntry[] entries) {
+        Map<String, PostingList> tokens = new HashMap<>();
+        Map<String, PostingList> attributes = new HashMap<>();
+        PostingList[] levels = new PostingList[LEVELS.length];
+        for (int id = 0; id < entries.length; id++) {
+            LogEntry logEntry = entries[id];
+            if (indexMessages && logEntry.getMessage() != null) {
+                Bucket.post(tokens, SearchQuery.tokenize(logEntry.getMessage()), id);
+            }
+            Bucket.post(attributes, indexedValues(logEntry.getAttributes()), id);
+            if (logEntry.getLevel() != null) {
+                if (levels[logEntry.getLevel().ordinal()] == null) {
+                    levels[logEntry.getLevel().ordinal()] = new PostingList();
+                }
+                levels[logEntry.getLevel().ordinal()].add(id);
+            }
+        }
+        return new Sealed(new MessageIndex(indexMessages, indexedAttributes), entries.length, tokens, attributes,
+                levels);
+    }
+
+    /**
+     * collects up to {@code limit} matching entries in [from, to] that follow the cursor in the given order.
+     * Buckets are visited in order and only the hits that end up on the page are resolved.
+     * Callers check {@link #canAnswer} first.
+     */
+    LogPage<LogEntry> search(long from, long to, LogFilter filter, LogCursor after, int limit, SortOrder order,
+                             EntryResolver resolver) {
+        boolean ascending = order == SortOrder.ASC;
+        long afterTime = 0;
+        if (after != null) {
+            afterTime = EpochNanos.of(after.getTimestamp());
+            if (ascending) {
+                from = Math.max(from, afterTime);
+            } else {
+                to = Math.min(to, afterTime);
+            }
+        }
+        List<LogEntry> items = new ArrayList<>(Math.min(limit, 1024));
+        if (from > to) {
+            return new LogPage<>(items, null);
+        }
+
+        NavigableMap<Long, Bucket> range = buckets.subMap(Math.floorDiv(from, BUCKET_NANOS), true,
+                Math.floorDiv(to, BUCKET_NANOS), true);
+        SearchQuery query = filter.getText();
+        boolean verify = query != null && query.hasPhrases();
+        long lastTimestamp = 0;
+        long lastSequence = 0;
+        for (Bucket bucket : ascending ? range.values() : range.descendingMap().values()) {
+            Hits hits = bucket.match(filter, from, to);
+            for (int n = 0; n < hits.size; n++) {
+                int i = ascending ? n : hits.size - 1 - n;
+                long timestamp = hits.timestamps[i];
+                long sequence = hits.sequences[i];
+                if (after != null && timestamp == afterTime
+                        && (ascending ? sequence <= after.getSequence() : sequence >= after.getSequence())) {
+                    continue;
+                }
+                LogEntry logEntry = resolver.resolve(timestamp, sequence);
+                if (logEntry == null || verify && !query.matches(logEntry.getMessage())) {
+                    continue;
+                }
+                if (items.size() == limit) {
+                    return new LogPage<>(items, new LogCursor(EpochNanos.toInstant(lastTimestamp), lastSequence));
+                }
+                items.add(logEntry);
+                lastTimestamp = timestamp;
+                lastSequence = sequence;
+            }
+        }
+        return new LogPage<>(items, null);
+    }
+
+    private static class Bucket {
+        // a lock rather than a monitor, so virtual threads waiting on a busy bucket don't pin their carrier
+        private final ReentrantLock lock = new ReentrantLock();
+        private final long start;
+        private final Map<String, PostingList> postings = new HashMap<>();
+        private final Map<String, PostingList> attributePostings = new HashMap<>();
+        private final PostingList[] levels = new PostingList[LEVELS.length];
+        private long[] timestamps = new long[64];
+        private long[] sequences = new long[64];
+        private int size;
+
+        Bucket(long start) {
+            this.start = start;
+        }
+
+        long add(long timestamp, long sequence, List<String> tokens, LogLevel level, List<String> attributes) {
+            LockWait.INDEX.lock(lock);
+            try {
+                if (size == MAX_IDS) {
+                    return 0; // more than 2^27 entries of one service in one minute are left unindexed
+                }
+                if (size == timestamps.length) {
+                    timestamps = Arrays.copyOf(timestamps, size * 2);
+                    sequences = Arrays.copyOf(sequences, size * 2);
+                }
+                int id = size++;
+                timestamps[id] = timestamp;
+                sequences[id] = sequence;
+                long bytes = BYTES_PER_ID + post(postings, tokens, id) + post(attributePostings, attributes, id);
+                if (level != null) {
+                    if (levels[level.ordinal()] == null) {
+                        levels[level.ordinal()] = new PostingList();
+                    }
+                    levels[level.ordinal()].add(id);
+                    bytes += BYTES_PER_POSTING;
+                }
+                return bytes;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private static long post(Map<String, PostingList> postings, List<String> keys, int id) {
+            long bytes = 0;
+            for (String key : keys) {
+                PostingList list = postings.get(key);
+                if (list == null) {
+                    list = new PostingList();
+                    postings.put(key, list);
+                    bytes += BYTES_PER_TOKEN + ((key.length() + 7L) & ~7L);
+                }
+                if (list.add(id)) {
+                    bytes += BYTES_PER_POSTING;
+                }
+            }
+            return bytes;
+        }
+
+        /**
+         * @return ids matching the filter's tokens, levels and attributes with timestamps in [from, to],
+         * sorted by timestamp then sequence
+         */
+        Hits match(LogFilter filter, long from, long to) {
+            int count;
+            long[] timestamps;
+            long[] sequences;
+            List<List<Postings>> clauses = new ArrayList<>();
+            List<Postings> levelIds = new ArrayList<>();
+            List<Postings> attributeIds = null;
+            // only the lists the filter reads are noted under the lock, ids added later lie past their lengths
+            LockWait.INDEX.lock(lock);
+            try {
+                count = size;
+                timestamps = this.timestamps;
+                sequences = this.sequences;
+                if (filter.getText() != null) {
+                    for (SearchQuery.Clause clause : filter.getText().getClauses()) {
+                        clauses.add(lookup(postings, clause.requiredTokens()));
+                    }
+                }
+                if (filter.hasLevel()) {
+                    for (LogLevel level : LEVELS) {
+                        if (levels[level.ordinal()] != null && filter.matchesLevel(level)) {
+                            levelIds.add(levels[level.ordinal()].snapshot());
+                        }
+                    }
+                }
+                if (!filter.getAttributes().isEmpty()) {
+                    Set<String> keys = new HashSet<>();
+                    filter.getAttributes().forEach((key, value) -> keys.add(attributeKey(key, value)));
+                    attributeIds = lookup(attributePostings, keys);
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            BitSet matched = matched(filter, count, clauses, levelIds, attributeIds);
+            long[] keys = new long[matched.cardinality()];
+            int found = 0;
+            for (int id = matched.nextSetBit(0); id >= 0; id = matched.nextSetBit(id + 1)) {
+                if (timestamps[id] >= from && timestamps[id] <= to) {
+                    keys[found++] = (timestamps[id] - start) << ID_BITS | id;
+                }
+            }
+            Arrays.sort(keys, 0, found);
+
+            Hits hits = new Hits(found);
+            for (int i = 0; i < found; i++) {
+                int id = (int) (keys[i] & (MAX_IDS - 1));
+                hits.timestamps[i] = timestamps[id];
+                hits.sequences[i] = sequences[id];
+            }
+            hits.orderEqualTimestampsBySequence();
+            return hits;
+        }
+
+        /**
+         * @return the lists of every token as they are now, or null if a token is not listed
+         */
+        private static List<Postings> lookup(Map<String, PostingList> postings, Set<String> tokens) {
+            List<Postings> lists = new ArrayList<>(tokens.size());
+            for (String token : tokens) {
+                PostingList list = postings.get(token);
+                if (list == null) {
+                    return null;
+                }
+                lists.add(list.snapshot());
+            }
+            return lists;
+        }
+    }
+
+    /**
+     * @param clauses    the lists of each text clause's tokens, null for a clause with an unlisted token
+     * @param levelIds   the lists of the levels the filter accepts
+     * @param attributes the lists of the filter's attributes, null if one is not listed
+     * @return ids below {@code count} in every list the filter reads
+     */
+    private static BitSet matched(LogFilter filter, int count, List<List<Postings>> clauses, List<Postings> levelIds,
+                                  List<Postings> attributes) {
+        BitSet matched = new BitSet(count);
+        if (filter.getText() != null) {
+            for (List<Postings> clause : clauses) {
+                intersect(clause, matched);
+            }
+        } else {
+            matched.set(0, count);
+        }
+        if (filter.hasLevel()) {
+            BitSet inRange = new BitSet(count);
+            for (Postings ids : levelIds) {
+                for (int i = 0; i < ids.size(); i++) {
+                    inRange.set(ids.ids()[i]);
+                }
+            }
+            matched.and(inRange);
+        }
+        if (!filter.getAttributes().isEmpty() && !matched.isEmpty()) {
+            BitSet withAttributes = new BitSet(count);
+            intersect(attributes, withAttributes);
+            matched.and(withAttributes);
+        }
+        return matched;
+    }
+
+    private static void intersect(List<Postings> lists, BitSet target) {
+        if (lists == null) {
+            return;
+        }
+        // walk the shortest list and probe the others, all are ascending
+        lists.sort(Comparator.comparingInt(Postings::size));
+        Postings shortest = lists.get(0);
+        int[] cursors = new int[lists.size()];
+        candidates:
+        for (int i = 0; i < shortest.size(); i++) {
+            int id = shortest.ids()[i];
+            for (int l = 1; l < lists.size(); l++) {
+                cursors[l] = lists.get(l).seek(id, cursors[l]);
+                if (cursors[l] == lists.get(l).size()) {
+                    return;
+                }
+                if (lists.get(l).ids()[cursors[l]] != id) {
+                    continue candidates;
+                }
+            }
+            target.set(id);
+        }
+    }
+
+    /**
+     * Index of a sealed bucket, never written after it is built, so it takes no lock.
+     */
+    static final class Sealed {
+        private final MessageIndex settings;
+        private final int count;
+        private final PackedLists postings;
+        private final PackedLists attributePostings;
+        private final PackedLists levels;
+
+        private Sealed(MessageIndex settings, int count, Map<String, PostingList> postings,
+                       Map<String, PostingList> attributePostings, PostingList[] levels) {
+            this.settings = settings;
+            this.count = count;
+            this.postings = new PackedLists(postings);
+            this.attributePostings = new PackedLists(attributePostings);
+            Map<String, PostingList> byLevel = new HashMap<>();
+            for (LogLevel level : LEVELS) {
+                if (levels[level.ordinal()] != null) {
+                    byLevel.put(level.name(), levels[level.ordinal()]);
+                }
+            }
+            this.levels = new PackedLists(byLevel);
+        }
+
+        /**
+         * @return estimated heap bytes of the posting lists
+         */
+        long bytes() {
+            return postings.bytes() + attributePostings.bytes() + levels.bytes();
+        }
+
+        boolean canAnswer(LogFilter filter) {
+            return settings.canAnswer(filter);
+        }
+
+        /**
+         * indexes the entries of a bucket sealed again, with the same settings
+         */
+        Sealed seal(LogEntry[] entries) {
+            return settings.seal(entries);
+        }
+
+        /**
+         * @return ascending positions of the entries in the tokens, levels and attributes of the filter; phrases
+         * are not checked
+         */
+        int[] match(LogFilter filter) {
+            List<List<Postings>> clauses = new ArrayList<>();
+            if (filter.getText() != null) {
+                for (SearchQuery.Clause clause : filter.getText().getClauses()) {
+                    clauses.add(postings.lookup(clause.requiredTokens()));
+                }
+            }
+            List<Postings> levelIds = new ArrayList<>();
+            if (filter.hasLevel()) {
+                for (LogLevel level : LEVELS) {
+                    if (filter.matchesLevel(level)) {
+                        List<Postings> ids = levels.lookup(Set.of(level.name()));
+                        if (ids != null) {
+                            levelIds.addAll(ids);
+                        }
+                    }
+                }
+            }
+            List<Postings> attributeIds = null;
+            if (!filter.getAttributes().isEmpty()) {
+                Set<String> keys = new HashSet<>();
+                filter.getAttributes().forEach((key, value) -> keys.add(attributeKey(key, value)));
+                attributeIds = attributePostings.lookup(keys);
+            }
+            return matched(filter, count, clauses, levelIds, attributeIds).stream().toArray();
+        }
+    }
+
+    /**
+     * Posting lists of sorted keys packed into a few arrays: key {@code i} is the run of {@code keys} ending at
+     * {@code keyEnds[i]}, its ids the varint deltas in the run of {@code ids} ending at {@code idEnds[i]}. A
+     * token seen once takes its length and a dozen bytes, an id of a frequent token about one byte.
+     */
+    private static final class PackedLists {
+        // the arrays' and the String's headers and the object's fields
+        private static final int BYTES_PER_PACK = 16 * 3 + 24 + 32;
+
+        private final String keys;
+        private final int[] keyEnds;
+        private final int[] idEnds;
+        private final byte[] ids;
+        private final long bytes;
+
+        PackedLists(Map<String, PostingList> lists) {
+            List<String> sorted = new ArrayList<>(lists.keySet());
+            sorted.sort(null);
+            StringBuilder packed = new StringBuilder();
+            ByteArrayOutputStream deltas = new ByteArrayOutputStream();
+            keyEnds = new int[sorted.size()];
+            idEnds = new int[sorted.size()];
+            for (int i = 0; i < sorted.size(); i++) {
+                packed.append(sorted.get(i));
+                keyEnds[i] = packed.length();
+                PostingList list = lists.get(sorted.get(i));
+                int previous = 0;
+                for (int n = 0; n < list.size; n++) {
+                    SealedBlock.writeVarLong(deltas, list.ids[n] - previous);
+                    previous = list.ids[n];
+                }
+                idEnds[i] = deltas.size();
+            }
+            keys = packed.toString();
+            ids = deltas.toByteArray();
+            // a String of Latin-1 characters takes a byte per character
+            int charBytes = keys.chars().allMatch(c -> c <= 0xFF) ? 1 : 2;
+            bytes = BYTES_PER_PACK + (long) charBytes * keys.length() + 8L * keyEnds.length + ids.length;
+        }
+
+        long bytes() {
+            return bytes;
+        }
+
+        /**
+         * @return the lists of every key, or null if a key is not listed
+         */
+        List<Postings> lookup(Set<String> tokens) {
+            List<Postings> lists = new ArrayList<>(tokens.size());
+            for (String token : tokens) {
+                int index = find(token);
+                if (index < 0) {
+                    return null;
+                }
+                int from = index > 0 ? idEnds[index - 1] : 0;
+                // every id takes at least a byte
+                int[] decoded = new int[idEnds[index] - from];
+                ByteBuffer buffer = ByteBuffer.wrap(ids, from, idEnds[index] - from);
+                int size = 0;
+                for (int id = 0; buffer.hasRemaining(); size++) {
+                    id += (int) SealedBlock.readVarLong(buffer);
+                    decoded[size] = id;
+                }
+                lists.add(new Postings(decoded, size));
+            }
+            return lists;
+        }
+
+        private int find(String key) {
+            int low = 0;
+            int high = keyEnds.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int order = compare(mid, key);
+                if (order < 0) {
+                    low = mid + 1;
+                } else if (order > 0) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * @return the order of key {@code index} against the given key, as {@link String#compareTo} has it
+         */
+        private int compare(int index, String key) {
+            int from = index > 0 ? keyEnds[index - 1] : 0;
+            int length = keyEnds[index] - from;
+            int common = Math.min(length, key.length());
+            for (int i = 0; i < common; i++) {
+                char c = keys.charAt(from + i);
+                if (c != key.charAt(i)) {
+                    return c - key.charAt(i);
+                }
+            }
+            return length - key.length();
+        }
+    }
+
+    private static class PostingList {
+        private int[] ids = new int[4];
+        private int size;
+
+        /**
+         * @return false if the id is already listed, a token repeated in one message is listed once
+         */
+        boolean add(int id) {
+            if (size > 0 && ids[size - 1] == id) {
+                return false;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+            return true;
+        }
+
+        Postings snapshot() {
+            return new Postings(ids, size);
+        }
+    }
+
+    /**
+     * the first {@code size} ids of a posting list, which later additions leave as they are
+     */
+    private record Postings(int[] ids, int size) {
+        /**
+         * @return position of the first id at or after {@code id}, searching from {@code from}
+         */
+        int seek(int id, int from) {
+            int index = Arrays.binarySearch(ids, from, size, id);
+            return index >= 0 ? index : -index - 1;
+        }
+    }
+
+    private static class Hits {
+        private final long[] timestamps;
+        private final long[] sequences;
+        private final int size;
+
+        Hits(int size) {
+            this.timestamps = new long[size];
+            this.sequences = new long[size];
+            this.size = size;
+        }
+
+        /**
+         * ids follow arrival order, which concurrent writers may not have taken in sequence order
+         */
+        void orderEqualTimestampsBySequence() {
+            for (int i = 1; i < size; i++) {
+                for (int j = i; j > 0 && timestamps[j] == timestamps[j - 1] && sequences[j] < sequences[j - 1]; j--) {
+                    long sequence = sequences[j];
+                    sequences[j] = sequences[j - 1];
+                    sequences[j - 1] = sequence;
+                }
+            }
+        }
+    }
+}
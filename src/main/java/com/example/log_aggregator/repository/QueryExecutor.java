@@ -0,0 +1,173 @@
+package com.example.log_aggregator.repository;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BiConsumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * Scans the time partitions of wide range queries in parallel on a dedicated {@link ForkJoinPool}.
+ * <p>
+ * The pool has {@code aggregator.query.parallelism} workers (half the processors unless configured), which
+ * bounds the cores all queries together take from ingestion; the calling thread only waits. A single query
+ * is split into at most {@code aggregator.query.max-tasks-per-query} tasks, and into none unless its
+ * partitions hold at least two tasks' worth of entries, so narrow queries stay on the calling thread.
+ * <p>
+ * Partitions are read into lists of their own and concatenated in order, so the result is the same as
+ * a sequential read as long as the partitions are disjoint and given in order.
+ */
+@Component
+public class QueryExecutor {
+    static final int DEFAULT_MIN_ENTRIES_PER_TASK = 16_384;
+
+    private final ForkJoinPool pool;
+    private final int maxTasksPerQuery;
+    private final long minEntriesPerTask;
+
+    /**
+     * creates an executor that reads every query on the calling thread
+     */
+    public QueryExecutor() {
+        this(1, 1);
+    }
+
+    @Autowired
+    public QueryExecutor(@Value("${aggregator.query.parallelism:0}") int parallelism,
+                         @Value("${aggregator.query.max-tasks-per-query:8}") int maxTasksPerQuery) {
+        this(parallelism, maxTasksPerQuery, DEFAULT_MIN_ENTRIES_PER_TASK);
+    }
+
+    /**
+     * @param parallelism       workers shared by all queries, 0 for half the available processors
+     * @param maxTasksPerQuery  most tasks a single query is split into
+     * @param minEntriesPerTask fewest estimated entries worth a task of their own
+     */
+    QueryExecutor(int parallelism, int maxTasksPerQuery, long minEntriesPerTask) {
+        if (parallelism < 0) {
+            throw new IllegalArgumentException("Query parallelism cannot be negative");
+        }
+        if (maxTasksPerQuery < 1) {
+            throw new IllegalArgumentException("Tasks per query must be positive");
+        }
+        int workers = parallelism > 0 ? parallelism : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        this.pool = workers > 1 && maxTasksPerQuery > 1
+                ? new ForkJoinPool(workers, QueryExecutor::worker, null, false)
+                : null;
+        this.maxTasksPerQuery = pool != null ? Math.min(maxTasksPerQuery, workers) : 1;
+        this.minEntriesPerTask = Math.max(1, minEntriesPerTask);
+    }
+
+    private static ForkJoinWorkerThread worker(ForkJoinPool pool) {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("query-" + thread.getPoolIndex());
+        return thread;
+    }
+
+    /**
+     * reads the partitions into the target in order, splitting them into consecutive groups of about
+     * equal weight that are read in parallel when there are enough entries
+     *
+     * @param partitions disjoint partitions in the order of the result
+     * @param weight     estimated number of entries in a partition
+     * @param reader     appends the entries a query wants from one partition to a list
+     */
+    public <P, T> void readInOrder(Collection<P> partitions, ToLongFunction<P> weight, BiConsumer<P, List<T>> reader,
+                                   List<T> target) {
+        if (pool == null || partitions.size() < 2) {
+            partitions.forEach(partition -> reader.accept(partition, target));
+            return;
+        }
+
+        List<P> parts = new ArrayList<>(partitions);
+        long[] cumulative = new long[parts.size() + 1];
+        for (int i = 0; i < parts.size(); i++) {
+            cumulative[i + 1] = cumulative[i] + weight.applyAsLong(parts.get(i));
+        }
+        long tasks = Math.min(Math.min(maxTasksPerQuery, parts.size()), cumulative[parts.size()] / minEntriesPerTask);
+        if (tasks < 2) {
+            parts.forEach(partition -> reader.accept(partition, target));
+            return;
+        }
+
+        // one slot per task, each written by its own task only
+        List<List<T>> results = new ArrayList<>(Collections.nCopies((int) tasks, null));
+        pool.invoke(new Split<>(parts, cumulative, 0, parts.size(), 0, (int) tasks, reader, results));
+        for (List<T> result : results) {
+            if (result != null) {
+                target.addAll(result);
+            }
+        }
+    }
+
+    /**
+     * @return the most tasks a single query is split into, 1 if queries are never split
+     */
+    public int getMaxTasksPerQuery() {
+        return maxTasksPerQuery;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Reads partitions [from, to) as {@code tasks} tasks, halving the range by weight until one task is left.
+     */
+    private static final class Split<P, T> extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<P> parts;
+        private final long[] cumulative;
+        private final int from;
+        private final int to;
+        private final int firstTask;
+        private final int tasks;
+        private final BiConsumer<P, List<T>> reader;
+        private final List<List<T>> results;
+
+        Split(List<P> parts, long[] cumulative, int from, int to, int firstTask, int tasks,
+              BiConsumer<P, List<T>> reader, List<List<T>> results) {
+            this.parts = parts;
+            this.cumulative = cumulative;
+            this.from = from;
+            this.to = to;
+            this.firstTask = firstTask;
+            this.tasks = tasks;
+            this.reader = reader;
+            this.results = results;
+        }
+
+        @Override
+        protected void compute() {
+            if (tasks == 1 || to - from == 1) {
+                List<T> result = new ArrayList<>();
+                for (int i = from; i < to; i++) {
+                    reader.accept(parts.get(i), result);
+                }
+                results.set(firstTask, result);
+                return;
+            }
+            int leftTasks = tasks / 2;
+            long middle = cumulative[from] + (cumulative[to] - cumulative[from]) * leftTasks / tasks;
+            int split = from + 1;
+            while (split < to - 1 && cumulative[split] < middle) {
+                split++;
+            }
+            invokeAll(new Split<>(parts, cumulative, from, split, firstTask, leftTasks, reader, results),
+                    new Split<>(parts, cumulative, split, to, firstTask + leftTasks, tasks - leftTasks, reader, results));
+        }
+    }
+}
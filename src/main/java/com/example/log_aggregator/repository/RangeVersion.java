@@ -0,0 +1,17 @@
+package com.example.log_aggregator.repository;
+
+/**
+ * Version of the entries a service holds in a time range, see {@link LogRepository#rangeVersion}.
+ * Saving into the range raises the entry count; expiry or eviction reaching into the range sets
+ * the removal point. Results read for the range stay current while the version stays equal.
+ *
+ * @param entries       entries stored in the seconds touching the range
+ * @param removedBefore epoch nanos up to which entries of the range have been removed,
+ *                      {@code Long.MIN_VALUE} while no entry of the range has been removed
+ */
+public record RangeVersion(long entries, long removedBefore) {
+    /**
+     * version of a range of a service that holds no logs
+     */
+    public static final RangeVersion EMPTY = new RangeVersion(0, Long.MIN_VALUE);
+}
@@ -0,0 +1,124 @@
+package com.example.log_aggregator.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * How long each service's logs are kept: a default retention and optional per-service overrides,
+ * configured as {@code aggregator.retention.default=1h} and
+ * {@code aggregator.retention.services=payments=24h,debug-service=10m}.
+ * <p>
+ * Logs older than {@code aggregator.retention.cold-after} (5m unless configured, 0 to disable) are kept
+ * compressed until they expire, see {@link SealedLog}.
+ */
+@Component
+public class RetentionPolicy {
+    public static final Duration DEFAULT_RETENTION = Duration.ofHours(1);
+    public static final Duration DEFAULT_COLD_AFTER = Duration.ofMinutes(5);
+
+    private final Duration defaultRetention;
+    private final Map<String, Duration> retentionByService;
+    private final Duration longestRetention;
+    private final Duration coldAfter;
+
+    public RetentionPolicy() {
+        this(DEFAULT_RETENTION, Collections.emptyMap());
+    }
+
+    public RetentionPolicy(String defaultRetention, String retentionByService) {
+        this(parseDuration(defaultRetention), parseServices(retentionByService));
+    }
+
+    @Autowired
+    public RetentionPolicy(@Value("${aggregator.retention.default:1h}") String defaultRetention,
+                           @Value("${aggregator.retention.services:}") String retentionByService,
+                           @Value("${aggregator.retention.cold-after:5m}") String coldAfter) {
+        this(parseDuration(defaultRetention), parseServices(retentionByService), parseDuration(coldAfter));
+    }
+
+    public RetentionPolicy(Duration defaultRetention, Map<String, Duration> retentionByService) {
+        this(defaultRetention, retentionByService, DEFAULT_COLD_AFTER);
+    }
+
+    /**
+     * @param coldAfter age after which logs are compressed, zero to keep every log uncompressed
+     */
+    public RetentionPolicy(Duration defaultRetention, Map<String, Duration> retentionByService, Duration coldAfter) {
+        requirePositive(defaultRetention);
+        if (coldAfter.isNegative()) {
+            throw new IllegalArgumentException("Cold tier age cannot be negative");
+        }
+        this.coldAfter = coldAfter;
+        retentionByService.values().forEach(RetentionPolicy::requirePositive);
+        this.defaultRetention = defaultRetention;
+        this.retentionByService = Map.copyOf(retentionByService);
+        this.longestRetention = retentionByService.values().stream()
+                .reduce(defaultRetention, (a, b) -> a.compareTo(b) >= 0 ? a : b);
+    }
+
+    public Duration retentionOf(String serviceName) {
+        return retentionByService.getOrDefault(serviceName, defaultRetention);
+    }
+
+    /**
+     * @return the oldest timestamp still retained for the service at the given time
+     */
+    public Instant expiryThreshold(String serviceName, Instant now) {
+        return now.minus(retentionOf(serviceName));
+    }
+
+    /**
+     * @return the newest timestamp that is compressed at the given time, or null if the cold tier is disabled
+     */
+    public Instant coldThreshold(Instant now) {
+        return coldAfter.isZero() ? null : now.minus(coldAfter);
+    }
+
+    /**
+     * @return the longest retention of any service, which bounds what storage shared by all services must keep
+     */
+    public Duration longestRetention() {
+        return longestRetention;
+    }
+
+    /**
+     * @param spec comma-separated {@code service=duration} pairs, durations like {@code 30m} or ISO-8601 {@code PT30M}
+     * @throws IllegalArgumentException if a pair or duration is malformed
+     */
+    static Map<String, Duration> parseServices(String spec) {
+        Map<String, Duration> retentionByService = new HashMap<>();
+        if (spec == null || spec.isBlank()) {
+            return retentionByService;
+        }
+        for (String pair : spec.split(",")) {
+            int separator = pair.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Invalid service retention, expected service=duration: " + pair);
+            }
+            retentionByService.put(pair.substring(0, separator).trim(), parseDuration(pair.substring(separator + 1)));
+        }
+        return retentionByService;
+    }
+
+    private static Duration parseDuration(String value) {
+        try {
+            return DurationStyle.detectAndParse(value.trim());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid retention duration: " + value, e);
+        }
+    }
+
+    private static void requirePositive(Duration retention) {
+        if (retention.isNegative() || retention.isZero()) {
+            throw new IllegalArgumentException("Retention must be positive");
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package com.example.log_aggregator.repository;
+
+import com.example.log_aggregator.model.LogEntry;
+import com.example.log_aggregator.model.LogLevel;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Immutable, compressed run of entries of a {@link SealedLog}, in timestamp then sequence order.
+ * <p>
+ * Entries are laid out column by column: timestamps as varint deltas from the previous one,
+ * sequences as zigzag varint deltas, one level byte each, the lengths of the messages and the
+ * {@link AttributeCodec encoded} attributes, then their UTF-8 bytes. The columns are Deflate-compressed
+ * together. The first and last timestamp stay outside the compressed bytes, so readers skip a block
+ * that does not overlap their range without inflating it.
+ */
+final class SealedBlock {
+    // object header, two longs, two ints and the array reference, plus the byte[] header
+    static final int HEADER_BYTES = 12 + 16 + 8 + 4 + 16;
+
+    private static final byte NO_LEVEL = 0;
+    private static final LogLevel[] LEVELS = LogLevel.values();
+
+    private final long minTimestamp;
+    private final long maxTimestamp;
+    private final int size;
+    private final int rawLength;
+    private final byte[] compressed;
+
+    private SealedBlock(long minTimestamp, long maxTimestamp, int size, int rawLength, byte[] compressed) {
+        this.minTimestamp = minTimestamp;
+        this.maxTimestamp = maxTimestamp;
+        this.size = size;
+        this.rawLength = rawLength;
+        this.compressed = compressed;
+    }
+
+    /**
+     * encodes entries {@code [from, to)} of the columns, which must be sorted by timestamp then sequence
+     */
+    static SealedBlock encode(long[] timestamps, long[] sequences, LogEntry[] entries, int from, int to) {
+        int count = to - from;
+        byte[][] messages = new byte[count][];
+        byte[][] attributes = new byte[count][];
+        ByteArrayOutputStream raw = new ByteArrayOutputStream(count * 64);
+        long previousTimestamp = timestamps[from];
+        long previousSequence = 0;
+        for (int i = from; i < to; i++) {
+            writeVarLong(raw, timestamps[i] - previousTimestamp);
+            previousTimestamp = timestamps[i];
+        }
+        for (int i = from; i < to; i++) {
+            long delta = sequences[i] - previousSequence;
+            writeVarLong(raw, (delta << 1) ^ (delta >> 63));
+            previousSequence = sequences[i];
+        }
+        for (int i = from; i < to; i++) {
+            LogLevel level = entries[i].getLevel();
+            raw.write(level == null ? NO_LEVEL : level.ordinal() + 1);
+        }
+        // lengths are shifted by one, zero stands for null
+        for (int i = from; i < to; i++) {
+            String message = entries[i].getMessage();
+            messages[i - from] = message == null ? null : message.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(raw, message == null ? 0 : messages[i - from].length + 1L);
+        }
+        for (int i = from; i < to; i++) {
+            Map<String, String> attributeMap = entries[i].getAttributes();
+            attributes[i - from] = attributeMap == null ? null : AttributeCodec.encode(attributeMap);
+            writeVarLong(raw, attributeMap == null ? 0 : attributes[i - from].length + 1L);
+        }
+        for (byte[] message : messages) {
+            if (message != null) {
+                raw.writeBytes(message);
+            }
+        }
+        for (byte[] attribute : attributes) {
+            if (attribute != null) {
+                raw.writeBytes(attribute);
+            }
+        }
+        byte[] columns = raw.toByteArray();
+        return new SealedBlock(timestamps[from], timestamps[to - 1], count, columns.length, deflate(columns));
+    }
+
+    long minTimestamp() {
+        return minTimestamp;
+    }
+
+    long maxTimestamp() {
+        return maxTimestamp;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return heap bytes the block retains
+     */
+    long bytes() {
+        return HEADER_BYTES + ((compressed.length + 7L) & ~7L);
+    }
+
+    /**
+     * inflates the block; entries are only built when read from the result
+     */
+    Entries decode() {
+        byte[] columns = inflate();
+        ByteBuffer buffer = ByteBuffer.wrap(columns);
+        long[] timestamps = new long[size];
+        long[] sequences = new long[size];
+        long timestamp = minTimestamp;
+        for (int i = 0; i < size; i++) {
+            timestamp += readVarLong(buffer);
+            timestamps[i] = timestamp;
+        }
+        long sequence = 0;
+        for (int i = 0; i < size; i++) {
+            long zigzag = readVarLong(buffer);
+            sequence += (zigzag >>> 1) ^ -(zigzag & 1);
+            sequences[i] = sequence;
+        }
+        int levels = buffer.position();
+        buffer.position(levels + size);
+        int[] messageLengths = new int[size];
+        int[] attributeLengths = new int[size];
+        for (int i = 0; i < size; i++) {
+            messageLengths[i] = (int) readVarLong(buffer) - 1;
+        }
+        for (int i = 0; i < size; i++) {
+            attributeLengths[i] = (int) readVarLong(buffer) - 1;
+        }
+        int[] messageOffsets = new int[size];
+        int[] attributeOffsets = new int[size];
+        int offset = buffer.position();
+        for (int i = 0; i < size; i++) {
+            messageOffsets[i] = offset;
+            offset += Math.max(0, messageLengths[i]);
+        }
+        for (int i = 0; i < size; i++) {
+            attributeOffsets[i] = offset;
+            offset += Math.max(0, attributeLengths[i]);
+        }
+        return new Entries(columns, timestamps, sequences, levels, messageOffsets, messageLengths,
+                attributeOffsets, attributeLengths);
+    }
+
+    private static byte[] deflate(byte[] columns) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(columns);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(columns.length / 4 + 64);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private byte[] inflate() {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            byte[] columns = new byte[rawLength];
+            int length = 0;
+            while (length < rawLength) {
+                int inflated = inflater.inflate(columns, length, rawLength - length);
+                if (inflated == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new IllegalStateException("Sealed block is truncated");
+                }
+                length += inflated;
+            }
+            return columns;
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Sealed block is corrupt", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    static long readVarLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Inflated columns of a block.
+     */
+    static final class Entries {
+        private final byte[] columns;
+        private final long[] timestamps;
+        private final long[] sequences;
+        private final int levels;
+        private final int[] messageOffsets;
+        private final int[] messageLengths;
+        private final int[] attributeOffsets;
+        private final int[] attributeLengths;
+
+        private Entries(byte[] columns, long[] timestamps, long[] sequences, int levels, int[] messageOffsets,
+                        int[] messageLengths, int[] attributeOffsets, int[] attributeLengths) {
+            this.columns = columns;
+            this.timestamps = timestamps;
+            this.sequences = sequences;
+            this.levels = levels;
+            this.messageOffsets = messageOffsets;
+            this.messageLengths = messageLengths;
+            this.attributeOffsets = attributeOffsets;
+            this.attributeLengths = attributeLengths;
+        }
+
+        int size() {
+            return timestamps.length;
+        }
+
+        long timestamp(int index) {
+            return timestamps[index];
+        }
+
+        long sequence(int index) {
+            return sequences[index];
+        }
+
+        LogEntry entry(int index, String serviceName) {
+            int length = messageLengths[index];
+            String message = length < 0 ? null
+                    : new String(columns, messageOffsets[index], length, StandardCharsets.UTF_8);
+            byte level = columns[levels + index];
+            Map<String, String> attributes = attributeLengths[index] < 0 ? null
+                    : AttributeCodec.decode(ByteBuffer.wrap(columns, attributeOffsets[index], attributeLengths[index]));
+            return new LogEntry(serviceName, EpochNanos.toInstant(timestamps[index]), message,
+                    level == NO_LEVEL ? null : LEVELS[level - 1], attributes);
+        }
+
+        /**
+         * @return index of the first entry with a timestamp at or after the given time
+         */
+        int lowerBound(long time) {
+            int low = 0;
+            int high = timestamps.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (timestamps[mid] < time) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * @return index of the first entry with a timestamp strictly after the given time
+         */
+        int upperBound(long time) {
+            int low = 0;
+            int high = timestamps.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (timestamps[mid] > time) {
+                    high = mid;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            return low;
+        }
+    }
+}
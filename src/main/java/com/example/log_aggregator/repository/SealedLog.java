@@ -0,0 +1,353 @@
+package com.example.log_aggregator.repository;
+
+import com.example.log_aggregator.model.LogCursor;
+import com.example.log_aggregator.model.LogEntry;
+import com.example.log_aggregator.model.LogFilter;
+import com.example.log_aggregator.model.LogPage;
+import com.example.log_aggregator.model.SortOrder;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * A time bucket of a {@link TimeBucketedLog} that has gone cold: its entries compressed into
+ * immutable {@link SealedBlock}s of up to {@value #BLOCK_SIZE} entries, in timestamp then sequence order.
+ * <p>
+ * Queries skip blocks by their timestamp header and inflate only those overlapping the range, one at
+ * a time. The bucket's {@link MessageIndex} is rebuilt at sealing into a {@link MessageIndex.Sealed} over
+ * the entries' positions, so a filter it can answer inflates only the blocks holding a hit, and checks
+ * only the hits. Entries keep the sequences of the log they were sealed from, so cursors stay valid
+ * across sealing.
+ * <p>
+ * Entries that still arrive for the bucket go to a regular log created on the first one, with
+ * sequences following the sealed ones, and are merged into every read until the bucket is sealed again.
+ */
+final class SealedLog implements ServiceLog {
+    static final int BLOCK_SIZE = 1024;
+    // object header, references, the sequence and the block array header
+    private static final int LOG_BYTES = 12 + 16 + 8 + 16;
+
+    private final String serviceName;
+    private final SealedBlock[] blocks;
+    private final MessageIndex.Sealed index;
+    private final long nextSequence;
+    private final long bytes;
+    private final Supplier<ServiceLog> lateLogFactory;
+    private final AtomicReference<ServiceLog> lateLog = new AtomicReference<>();
+    private final LongAdder inflatedBlocks = new LongAdder();
+
+    private SealedLog(String serviceName, SealedBlock[] blocks, MessageIndex.Sealed index, long nextSequence,
+                      Supplier<ServiceLog> lateLogFactory) {
+        this.serviceName = serviceName;
+        this.blocks = blocks;
+        this.index = index;
+        this.nextSequence = nextSequence;
+        this.lateLogFactory = lateLogFactory;
+        this.bytes = LOG_BYTES + 4L * blocks.length + Arrays.stream(blocks).mapToLong(SealedBlock::bytes).sum()
+                + index.bytes();
+    }
+
+    /**
+     * compresses every entry of the source, which must not change meanwhile
+     *
+     * @param lateLogFactory creates the log for entries appended after sealing
+     */
+    static SealedLog seal(ServiceLog source, Supplier<ServiceLog> lateLogFactory) {
+        Collected collected = new Collected();
+        source.forEachSequenced(collected);
+
+        int count = collected.entries.size();
+        LogEntry[] entries = collected.entries.toArray(new LogEntry[0]);
+        long[] timestamps = new long[count];
+        long nextSequence = 0;
+        for (int i = 0; i < count; i++) {
+            timestamps[i] = EpochNanos.of(entries[i].getTimestamp());
+            nextSequence = Math.max(nextSequence, collected.sequences[i] + 1);
+        }
+        SealedBlock[] blocks = new SealedBlock[(count + BLOCK_SIZE - 1) / BLOCK_SIZE];
+        for (int b = 0; b < blocks.length; b++) {
+            blocks[b] = SealedBlock.encode(timestamps, collected.sequences, entries, b * BLOCK_SIZE,
+                    Math.min(count, (b + 1) * BLOCK_SIZE));
+        }
+        String serviceName = count > 0 ? entries[0].getServiceName() : null;
+        return new SealedLog(serviceName, blocks, source.sealIndex(entries), nextSequence, lateLogFactory);
+    }
+
+    /**
+     * @return heap bytes retained by the sealed blocks and their index; entries appended later are counted by
+     * their log
+     */
+    long bytes() {
+        return bytes;
+    }
+
+    /**
+     * @return blocks inflated by reads so far
+     */
+    long inflatedBlocks() {
+        return inflatedBlocks.sum();
+    }
+
+    /**
+     * @return whether entries were appended after sealing
+     */
+    boolean hasLateEntries() {
+        return lateLog.get() != null;
+    }
+
+    @Override
+    public long append(LogEntry logEntry) {
+        return lateLog().append(logEntry);
+    }
+
+    @Override
+    public long appendAll(List<LogEntry> logEntries) {
+        return lateLog().appendAll(logEntries);
+    }
+
+    private ServiceLog lateLog() {
+        ServiceLog log = lateLog.get();
+        return log != null ? log : lateLog.updateAndGet(current -> current != null ? current : lateLogFactory.get());
+    }
+
+    @Override
+    public void findInRange(Instant startTime, Instant endTime, List<LogEntry> target) {
+        forEachInRange(startTime, endTime, target::add);
+    }
+
+    @Override
+    public void forEachInRange(Instant startTime, Instant endTime, Consumer<LogEntry> action) {
+        scan(startTime, endTime, null, Integer.MAX_VALUE, SortOrder.ASC, logEntry -> true, null,
+                (logEntry, sequence) -> action.accept(logEntry));
+    }
+
+    @Override
+    public LogPage<LogEntry> findPage(Instant startTime, Instant endTime, LogCursor after, int limit,
+                                      SortOrder order) {
+        List<LogEntry> items = new ArrayList<>(Math.min(limit, BLOCK_SIZE));
+        LogCursor nextCursor = scan(startTime, endTime, after, limit, order, logEntry -> true, null,
+                (logEntry, sequence) -> items.add(logEntry));
+        return new LogPage<>(items, nextCursor);
+    }
+
+    /**
+     * collects up to {@code limit} entries in [startTime, endTime] that match the filter. Filters the index can
+     * answer only read the blocks holding its hits, late entries are checked one by one.
+     */
+    @Override
+    public LogPage<LogEntry> findPageMatching(Instant startTime, Instant endTime, LogFilter filter, LogCursor after,
+                                              int limit, SortOrder order) {
+        List<LogEntry> items = new ArrayList<>(Math.min(limit, BLOCK_SIZE));
+        int[] hits = index.canAnswer(filter) ? index.match(filter) : null;
+        LogCursor nextCursor = scan(startTime, endTime, after, limit, order, filter::matches, hits,
+                (logEntry, sequence) -> items.add(logEntry));
+        return new LogPage<>(items, nextCursor);
+    }
+
+    @Override
+    public void forEachSequenced(SequencedAction action) {
+        scan(Instant.MIN, Instant.MAX, null, Integer.MAX_VALUE, SortOrder.ASC, logEntry -> true, null, action);
+    }
+
+    @Override
+    public MessageIndex.Sealed sealIndex(LogEntry[] entries) {
+        return index.seal(entries);
+    }
+
+    /**
+     * walks the blocks overlapping the range in the given order and merges in the late entries
+     *
+     * @param hits ascending positions of the only sealed entries that may match, null to check all of them
+     * @return cursor of the last emitted entry if more entries remain after the limit, null otherwise
+     */
+    private LogCursor scan(Instant startTime, Instant endTime, LogCursor after, int limit, SortOrder order,
+                           Predicate<LogEntry> filter, int[] hits, SequencedAction action) {
+        boolean ascending = order == SortOrder.ASC;
+        long from = EpochNanos.of(startTime);
+        long to = EpochNanos.of(endTime);
+        if (after != null) {
+            long afterTime = EpochNanos.of(after.getTimestamp());
+            if (ascending) {
+                from = Math.max(from, afterTime);
+            } else {
+                to = Math.min(to, afterTime);
+            }
+        }
+        if (from > to) {
+            return null;
+        }
+
+        Emitter emitter = new Emitter(ascending, after, limit, filter, action);
+        List<Late> late = lateEntries(from, to, emitter);
+        int nextLate = 0;
+        int step = ascending ? 1 : -1;
+        for (int b = ascending ? 0 : blocks.length - 1; b >= 0 && b < blocks.length; b += step) {
+            SealedBlock block = blocks[b];
+            if (ascending ? block.minTimestamp() > to : block.maxTimestamp() < from) {
+                break;
+            }
+            if (block.maxTimestamp() < from || block.minTimestamp() > to) {
+                continue;
+            }
+            // the hits inside the block, [firstHit, endHit) of the array
+            int firstHit = 0;
+            int endHit = 0;
+            if (hits != null) {
+                firstHit = lowerBound(hits, b * BLOCK_SIZE);
+                endHit = lowerBound(hits, (b + 1) * BLOCK_SIZE);
+                if (firstHit == endHit) {
+                    continue;
+                }
+            }
+            SealedBlock.Entries entries = block.decode();
+            inflatedBlocks.increment();
+            int first = hits != null ? 0 : ascending ? entries.lowerBound(from) : entries.upperBound(to) - 1;
+            int end = hits != null ? endHit - firstHit : ascending ? entries.size() : -1;
+            for (int n = first; n != end; n += hits != null ? 1 : step) {
+                int i = hits == null ? n : (ascending ? hits[firstHit + n] : hits[endHit - 1 - n]) - b * BLOCK_SIZE;
+                long timestamp = entries.timestamp(i);
+                if (ascending ? timestamp > to : timestamp < from) {
+                    break;
+                }
+                if (ascending ? timestamp < from : timestamp > to) {
+                    continue;
+                }
+                long sequence = entries.sequence(i);
+                if (!emitter.follows(timestamp, sequence)) {
+                    continue;
+                }
+                for (; nextLate < late.size() && late.get(nextLate).precedes(timestamp, sequence, ascending);
+                     nextLate++) {
+                    Late lateEntry = late.get(nextLate);
+                    if (!emitter.offer(lateEntry.timestamp(), lateEntry.sequence(), lateEntry.logEntry())) {
+                        return emitter.cursor();
+                    }
+                }
+                if (!emitter.offer(timestamp, sequence, entries.entry(i, serviceName))) {
+                    return emitter.cursor();
+                }
+            }
+        }
+        for (; nextLate < late.size(); nextLate++) {
+            Late lateEntry = late.get(nextLate);
+            if (!emitter.offer(lateEntry.timestamp(), lateEntry.sequence(), lateEntry.logEntry())) {
+                return emitter.cursor();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return entries appended after sealing that fall in the range and follow the cursor, in scan order
+     */
+    private List<Late> lateEntries(long from, long to, Emitter emitter) {
+        ServiceLog log = lateLog.get();
+        if (log == null) {
+            return List.of();
+        }
+        List<Late> late = new ArrayList<>();
+        log.forEachSequenced((logEntry, sequence) -> {
+            long timestamp = EpochNanos.of(logEntry.getTimestamp());
+            if (timestamp >= from && timestamp <= to && emitter.follows(timestamp, nextSequence + sequence)) {
+                late.add(new Late(timestamp, nextSequence + sequence, logEntry));
+            }
+        });
+        if (!emitter.ascending) {
+            Collections.reverse(late);
+        }
+        return late;
+    }
+
+    /**
+     * @return index of the first position at or after {@code position}
+     */
+    private static int lowerBound(int[] positions, int position) {
+        int index = Arrays.binarySearch(positions, position);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    private static final class Collected implements SequencedAction {
+        private final List<LogEntry> entries = new ArrayList<>();
+        private long[] sequences = new long[BLOCK_SIZE];
+
+        @Override
+        public void accept(LogEntry logEntry, long sequence) {
+            if (entries.size() == sequences.length) {
+                sequences = Arrays.copyOf(sequences, sequences.length * 2);
+            }
+            sequences[entries.size()] = sequence;
+            entries.add(logEntry);
+        }
+    }
+
+    private record Late(long timestamp, long sequence, LogEntry logEntry) {
+        boolean precedes(long otherTimestamp, long otherSequence, boolean ascending) {
+            int order = timestamp != otherTimestamp ? Long.compare(timestamp, otherTimestamp)
+                    : Long.compare(sequence, otherSequence);
+            return ascending ? order < 0 : order > 0;
+        }
+    }
+
+    /**
+     * Passes matching entries on until the limit and remembers the last one for the cursor.
+     */
+    private static final class Emitter {
+        private final boolean ascending;
+        private final LogCursor after;
+        private final long afterTime;
+        private final int limit;
+        private final Predicate<LogEntry> filter;
+        private final SequencedAction action;
+        private int emitted;
+        private long lastTimestamp;
+        private long lastSequence;
+
+        Emitter(boolean ascending, LogCursor after, int limit, Predicate<LogEntry> filter, SequencedAction action) {
+            this.ascending = ascending;
+            this.after = after;
+            this.afterTime = after != null ? EpochNanos.of(after.getTimestamp()) : 0;
+            this.limit = limit;
+            this.filter = filter;
+            this.action = action;
+        }
+
+        /**
+         * @return true if an entry at the position sorts after the cursor in the scan order
+         */
+        boolean follows(long timestamp, long sequence) {
+            if (after == null || timestamp != afterTime) {
+                return true;
+            }
+            return ascending ? sequence > after.getSequence() : sequence < after.getSequence();
+        }
+
+        /**
+         * @return false if the entry matches but the limit is reached
+         */
+        boolean offer(long timestamp, long sequence, LogEntry logEntry) {
+            if (!filter.test(logEntry)) {
+                return true;
+            }
+            if (emitted == limit) {
+                return false;
+            }
+            action.accept(logEntry, sequence);
+            lastTimestamp = timestamp;
+            lastSequence = sequence;
+            emitted++;
+            return true;
+        }
+
+        LogCursor cursor() {
+            return new LogCursor(EpochNanos.toInstant(lastTimestamp), lastSequence);
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.example.log_aggregator.repository;
+
+import com.example.log_aggregator.model.LogEntry;
+import com.example.log_aggregator.model.LogLevel;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A fixed-capacity block of log entries kept in timestamp order.
+ * Entries with equal timestamps keep their insertion order, which is also the order
+ * of the sequence numbers stored alongside them.
+ * <p>
+ * Entries are stored column-wise rather than as {@link LogEntry} objects: timestamps as epoch
+ * nanos, levels as one byte, messages and {@link AttributeCodec encoded} attributes as bytes in a
+ * {@link MessageArena}. The service name is held once by the
+ * owning log and {@link LogEntry} objects are only built when entries are read.
+ * Columns start small and grow up to the capacity, since a service that logs rarely may only
+ * put a handful of entries in each time bucket.
+ * Not thread-safe, callers must guard access (see {@link SegmentedLog}).
+ */
+class Segment {
+    private static final int NULL_MESSAGE = -1;
+    private static final int INITIAL_COLUMN_SIZE = 64;
+    private static final byte NO_LEVEL = 0;
+    private static final LogLevel[] LEVELS = LogLevel.values();
+    // timestamp and sequence longs, message and attribute offset and length ints, level byte
+    static final int COLUMN_BYTES_PER_ENTRY = 33;
+
+    private final int capacity;
+    private long[] timestamps;
+    private long[] sequences;
+    private int[] messageOffsets;
+    private int[] messageLengths;
+    private byte[] levels;
+    private int[] attributeOffsets;
+    private int[] attributeLengths;
+    private MessageArena messages = new MessageArena();
+    private int size;
+
+    Segment(int capacity) {
+        this.capacity = capacity;
+        int columnSize = Math.min(capacity, INITIAL_COLUMN_SIZE);
+        this.timestamps = new long[columnSize];
+        this.sequences = new long[columnSize];
+        this.messageOffsets = new int[columnSize];
+        this.messageLengths = new int[columnSize];
+        this.levels = new byte[columnSize];
+        this.attributeOffsets = new int[columnSize];
+        this.attributeLengths = new int[columnSize];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    boolean isFull() {
+        return size == capacity;
+    }
+
+    long first() {
+        return timestamps[0];
+    }
+
+    long last() {
+        return timestamps[size - 1];
+    }
+
+    long timestamp(int index) {
+        return timestamps[index];
+    }
+
+    long sequence(int index) {
+        return sequences[index];
+    }
+
+    LogEntry entry(int index, String serviceName) {
+        int length = messageLengths[index];
+        String message = length == NULL_MESSAGE ? null : messages.read(messageOffsets[index], length);
+        LogLevel level = levels[index] == NO_LEVEL ? null : LEVELS[levels[index] - 1];
+        Map<String, String> attributes = attributeLengths[index] == NULL_MESSAGE ? null
+                : AttributeCodec.decode(ByteBuffer.wrap(messages.bytes(attributeOffsets[index], attributeLengths[index])));
+        return new LogEntry(serviceName, EpochNanos.toInstant(timestamps[index]), message, level, attributes);
+    }
+
+    /**
+     * appends an entry that is not older than the current last entry
+     *
+     * @return bytes the entry occupies in the columns and the message arena
+     */
+    int append(long timestamp, LogEntry logEntry, long sequence) {
+        ensureRoom();
+        int bytes = store(size, timestamp, logEntry, sequence);
+        size++;
+        return bytes;
+    }
+
+    /**
+     * inserts an entry at its sorted position, after any entries with the same timestamp
+     *
+     * @return bytes the entry occupies in the columns and the message arena
+     */
+    int insert(long timestamp, LogEntry logEntry, long sequence) {
+        ensureRoom();
+        int index = upperBound(timestamp);
+        System.arraycopy(timestamps, index, timestamps, index + 1, size - index);
+        System.arraycopy(sequences, index, sequences, index + 1, size - index);
+        System.arraycopy(messageOffsets, index, messageOffsets, index + 1, size - index);
+        System.arraycopy(messageLengths, index, messageLengths, index + 1, size - index);
+        System.arraycopy(levels, index, levels, index + 1, size - index);
+        System.arraycopy(attributeOffsets, index, attributeOffsets, index + 1, size - index);
+        System.arraycopy(attributeLengths, index, attributeLengths, index + 1, size - index);
+        int bytes = store(index, timestamp, logEntry, sequence);
+        size++;
+        return bytes;
+    }
+
+    private void ensureRoom() {
+        if (size == timestamps.length) {
+            int columnSize = Math.min(capacity, size * 2);
+            timestamps = Arrays.copyOf(timestamps, columnSize);
+            sequences = Arrays.copyOf(sequences, columnSize);
+            messageOffsets = Arrays.copyOf(messageOffsets, columnSize);
+            messageLengths = Arrays.copyOf(messageLengths, columnSize);
+            levels = Arrays.copyOf(levels, columnSize);
+            attributeOffsets = Arrays.copyOf(attributeOffsets, columnSize);
+            attributeLengths = Arrays.copyOf(attributeLengths, columnSize);
+        }
+    }
+
+    private int store(int index, long timestamp, LogEntry logEntry, long sequence) {
+        timestamps[index] = timestamp;
+        sequences[index] = sequence;
+        levels[index] = logEntry.getLevel() == null ? NO_LEVEL : (byte) (logEntry.getLevel().ordinal() + 1);
+        int bytes = COLUMN_BYTES_PER_ENTRY;
+        if (logEntry.getMessage() == null) {
+            messageLengths[index] = NULL_MESSAGE;
+        } else {
+            byte[] message = logEntry.getMessage().getBytes(StandardCharsets.UTF_8);
+            messageOffsets[index] = messages.append(message);
+            messageLengths[index] = message.length;
+            bytes += message.length;
+        }
+        if (logEntry.getAttributes() == null) {
+            attributeLengths[index] = NULL_MESSAGE;
+        } else {
+            byte[] attributes = AttributeCodec.encode(logEntry.getAttributes());
+            attributeOffsets[index] = messages.append(attributes);
+            attributeLengths[index] = attributes.length;
+            bytes += attributes.length;
+        }
+        return bytes;
+    }
+
+    /**
+     * moves the upper half of this segment into a new segment. Both halves get a fresh arena
+     * holding only their own messages, so the split leaves no dead bytes behind.
+     *
+     * @return the new segment holding the later entries
+     */
+    Segment splitUpperHalf() {
+        int keep = size / 2;
+        Segment upper = new Segment(capacity);
+        for (int i = keep; i < size; i++) {
+            upper.copyFrom(this, i);
+        }
+
+        MessageArena previous = messages;
+        messages = new MessageArena();
+        for (int i = 0; i < keep; i++) {
+            if (messageLengths[i] != NULL_MESSAGE) {
+                messageOffsets[i] = messages.append(previous.bytes(messageOffsets[i], messageLengths[i]));
+            }
+            if (attributeLengths[i] != NULL_MESSAGE) {
+                attributeOffsets[i] = messages.append(previous.bytes(attributeOffsets[i], attributeLengths[i]));
+            }
+        }
+        size = keep;
+        return upper;
+    }
+
+    private void copyFrom(Segment source, int index) {
+        ensureRoom();
+        timestamps[size] = source.timestamps[index];
+        sequences[size] = source.sequences[index];
+        int length = source.messageLengths[index];
+        messageLengths[size] = length;
+        if (length != NULL_MESSAGE) {
+            messageOffsets[size] = messages.append(source.messages.bytes(source.messageOffsets[index], length));
+        }
+        levels[size] = source.levels[index];
+        int attributeLength = source.attributeLengths[index];
+        attributeLengths[size] = attributeLength;
+        if (attributeLength != NULL_MESSAGE) {
+            attributeOffsets[size] = messages.append(
+                    source.messages.bytes(source.attributeOffsets[index], attributeLength));
+        }
+        size++;
+    }
+
+    /**
+     * @return index of the first entry with a timestamp at or after the given time
+     */
+    int lowerBound(long time) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[mid] < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return index of the first entry with a timestamp strictly after the given time
+     */
+    int upperBound(long time) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[mid] > time) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    void copyTo(int from, int to, String serviceName, List<LogEntry> target) {
+        for (int i = from; i < to; i++) {
+            target.add(entry(i, serviceName));
+        }
+    }
+}
@@ -0,0 +1,351 @@
+package com.example.log_aggregator.repository;
+
+import com.example.log_aggregator.model.LogCursor;
+import com.example.log_aggregator.model.LogEntry;
+import com.example.log_aggregator.model.LogPage;
+import com.example.log_aggregator.model.LogFilter;
+import com.example.log_aggregator.model.SortOrder;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Time-ordered log of a single service, split into fixed-size {@link Segment}s. Holds one time
+ * bucket of a {@link TimeBucketedLog}.
+ * Every entry in a segment is not after any entry in the next segment, so a range
+ * lookup is a binary search over segments followed by a contiguous copy.
+ * The service name is kept here once instead of in every stored entry.
+ * Its {@link MessageIndex} is updated under the same write lock as the segments.
+ */
+class SegmentedLog implements ServiceLog {
+    private final List<Segment> segments = new ArrayList<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final String serviceName;
+    private final int segmentSize;
+    private final MessageIndex messageIndex;
+    private long nextSequence;
+
+    SegmentedLog(String serviceName, int segmentSize) {
+        this(serviceName, segmentSize, false);
+    }
+
+    SegmentedLog(String serviceName, int segmentSize, boolean indexed) {
+        this(serviceName, segmentSize, indexed, MessageIndex.DEFAULT_INDEXED_ATTRIBUTES);
+    }
+
+    SegmentedLog(String serviceName, int segmentSize, boolean indexed, Set<String> indexedAttributes) {
+        this.serviceName = serviceName;
+        this.segmentSize = segmentSize;
+        this.messageIndex = new MessageIndex(indexed, indexedAttributes);
+    }
+
+    boolean isIndexed() {
+        return messageIndex.indexesMessages();
+    }
+
+    @Override
+    public long append(LogEntry logEntry) {
+        LockWait.SEGMENT.lock(lock.writeLock());
+        try {
+            return addLocked(logEntry);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * adds a batch under a single acquisition of the write lock
+     */
+    @Override
+    public long appendAll(List<LogEntry> logEntries) {
+        LockWait.SEGMENT.lock(lock.writeLock());
+        try {
+            long bytes = 0;
+            for (LogEntry logEntry : logEntries) {
+                bytes += addLocked(logEntry);
+            }
+            return bytes;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return bytes the entry occupies in its segment and the index
+     */
+    private long addLocked(LogEntry logEntry) {
+        long timestamp = EpochNanos.of(logEntry.getTimestamp());
+        long sequence = nextSequence++;
+        long indexBytes = messageIndex.add(timestamp, sequence, logEntry);
+        Segment tail = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+
+        // fast path: entries mostly arrive in time order
+        if (tail == null || timestamp >= tail.last()) {
+            if (tail == null || tail.isFull()) {
+                tail = new Segment(segmentSize);
+                segments.add(tail);
+            }
+            return indexBytes + tail.append(timestamp, logEntry, sequence);
+        }
+
+        // out-of-order arrival, merge it into the segment covering its timestamp
+        int index = Math.max(0, lastSegmentStartingAtOrBefore(timestamp));
+        Segment target = segments.get(index);
+        if (target.isFull()) {
+            Segment upper = target.splitUpperHalf();
+            segments.add(index + 1, upper);
+            if (timestamp >= upper.first()) {
+                target = upper;
+            }
+        }
+        return indexBytes + target.insert(timestamp, logEntry, sequence);
+    }
+
+    /**
+     * copies entries with timestamps in [startTime, endTime] into the target list, in time order
+     */
+    @Override
+    public void findInRange(Instant startTime, Instant endTime, List<LogEntry> target) {
+        long from = EpochNanos.of(startTime);
+        long to = EpochNanos.of(endTime);
+        LockWait.SEGMENT.lock(lock.readLock());
+        try {
+            for (int i = firstSegmentEndingAtOrAfter(from); i < segments.size(); i++) {
+                Segment segment = segments.get(i);
+                if (segment.first() > to) {
+                    break;
+                }
+                segment.copyTo(segment.lowerBound(from), segment.upperBound(to), serviceName, target);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * collects up to {@code limit} entries in [startTime, endTime] that follow the cursor in the given order.
+     * The start position is found by binary search, earlier entries are never visited.
+     */
+    @Override
+    public LogPage<LogEntry> findPage(Instant startTime, Instant endTime, LogCursor after, int limit,
+                                      SortOrder order) {
+        return findPage(startTime, endTime, after, limit, order, null);
+    }
+
+    /**
+     * like {@link #findPage} but only counts entries that match the filter.
+     * Filters the index can answer only resolve its hits, others check every entry of the range.
+     */
+    @Override
+    public LogPage<LogEntry> findPageMatching(Instant startTime, Instant endTime, LogFilter filter, LogCursor after,
+                                              int limit, SortOrder order) {
+        if (!messageIndex.canAnswer(filter)) {
+            return findPage(startTime, endTime, after, limit, order, filter);
+        }
+        LockWait.SEGMENT.lock(lock.readLock());
+        try {
+            return messageIndex.search(EpochNanos.of(startTime), EpochNanos.of(endTime), filter, after, limit, order,
+                    this::resolve);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private LogPage<LogEntry> findPage(Instant startTime, Instant endTime, LogCursor after, int limit,
+                                       SortOrder order, LogFilter filter) {
+        LockWait.SEGMENT.lock(lock.readLock());
+        try {
+            return order == SortOrder.ASC
+                    ? pageAscending(EpochNanos.of(startTime), EpochNanos.of(endTime), after, limit, filter)
+                    : pageDescending(EpochNanos.of(startTime), EpochNanos.of(endTime), after, limit, filter);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private LogPage<LogEntry> pageAscending(long startTime, long endTime, LogCursor after, int limit,
+                                            LogFilter filter) {
+        long afterTime = after != null ? EpochNanos.of(after.getTimestamp()) : Long.MIN_VALUE;
+        long from = Math.max(startTime, afterTime);
+        List<LogEntry> items = new ArrayList<>(Math.min(limit, segmentSize));
+        long lastSequence = 0;
+        for (int i = firstSegmentEndingAtOrAfter(from); i < segments.size(); i++) {
+            Segment segment = segments.get(i);
+            for (int j = segment.lowerBound(from); j < segment.size(); j++) {
+                long timestamp = segment.timestamp(j);
+                if (timestamp > endTime) {
+                    return new LogPage<>(items, null);
+                }
+                if (after != null && timestamp == afterTime && segment.sequence(j) <= after.getSequence()) {
+                    continue;
+                }
+                LogEntry logEntry = segment.entry(j, serviceName);
+                if (filter != null && !filter.matches(logEntry)) {
+                    continue;
+                }
+                if (items.size() == limit) {
+                    return new LogPage<>(items, cursorOf(items, lastSequence));
+                }
+                items.add(logEntry);
+                lastSequence = segment.sequence(j);
+            }
+        }
+        return new LogPage<>(items, null);
+    }
+
+    private LogPage<LogEntry> pageDescending(long startTime, long endTime, LogCursor after, int limit,
+                                             LogFilter filter) {
+        long afterTime = after != null ? EpochNanos.of(after.getTimestamp()) : Long.MAX_VALUE;
+        long to = Math.min(endTime, afterTime);
+        List<LogEntry> items = new ArrayList<>(Math.min(limit, segmentSize));
+        long lastSequence = 0;
+        for (int i = lastSegmentStartingAtOrBefore(to); i >= 0; i--) {
+            Segment segment = segments.get(i);
+            for (int j = segment.upperBound(to) - 1; j >= 0; j--) {
+                long timestamp = segment.timestamp(j);
+                if (timestamp < startTime) {
+                    return new LogPage<>(items, null);
+                }
+                if (after != null && timestamp == afterTime && segment.sequence(j) >= after.getSequence()) {
+                    continue;
+                }
+                LogEntry logEntry = segment.entry(j, serviceName);
+                if (filter != null && !filter.matches(logEntry)) {
+                    continue;
+                }
+                if (items.size() == limit) {
+                    return new LogPage<>(items, cursorOf(items, lastSequence));
+                }
+                items.add(logEntry);
+                lastSequence = segment.sequence(j);
+            }
+        }
+        return new LogPage<>(items, null);
+    }
+
+    /**
+     * finds an entry by timestamp and sequence; callers hold the read lock
+     */
+    private LogEntry resolve(long timestamp, long sequence) {
+        for (int i = firstSegmentEndingAtOrAfter(timestamp); i < segments.size(); i++) {
+            Segment segment = segments.get(i);
+            for (int j = segment.lowerBound(timestamp); j < segment.size() && segment.timestamp(j) == timestamp; j++) {
+                if (segment.sequence(j) == sequence) {
+                    return segment.entry(j, serviceName);
+                }
+            }
+            if (segment.last() > timestamp) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private static LogCursor cursorOf(List<LogEntry> items, long lastSequence) {
+        return new LogCursor(items.get(items.size() - 1).getTimestamp(), lastSequence);
+    }
+
+    /**
+     * passes entries with timestamps in [startTime, endTime] to the action, in time order.
+     * Entries are copied out one segment-sized page at a time and the read lock is released
+     * before the action runs, so a slow consumer never holds up writers.
+     */
+    @Override
+    public void forEachInRange(Instant startTime, Instant endTime, Consumer<LogEntry> action) {
+        List<LogEntry> page = new ArrayList<>(segmentSize);
+        long from = EpochNanos.of(startTime);
+        long to = EpochNanos.of(endTime);
+        int skip = 0;
+        while (true) {
+            page.clear();
+            LockWait.SEGMENT.lock(lock.readLock());
+            try {
+                copyPage(from, skip, to, page);
+            } finally {
+                lock.readLock().unlock();
+            }
+            page.forEach(action);
+            if (page.size() < segmentSize) {
+                return;
+            }
+
+            // resume after the last emitted entry; equal timestamps are resolved by counting,
+            // late arrivals with the same timestamp are always inserted after existing ones
+            Instant last = page.get(page.size() - 1).getTimestamp();
+            int sameAsLast = 0;
+            for (int i = page.size() - 1; i >= 0 && page.get(i).getTimestamp().equals(last); i--) {
+                sameAsLast++;
+            }
+            long lastNanos = EpochNanos.of(last);
+            skip = lastNanos == from ? skip + sameAsLast : sameAsLast;
+            from = lastNanos;
+        }
+    }
+
+    @Override
+    public void forEachSequenced(SequencedAction action) {
+        LockWait.SEGMENT.lock(lock.readLock());
+        try {
+            for (Segment segment : segments) {
+                for (int j = 0; j < segment.size(); j++) {
+                    action.accept(segment.entry(j, serviceName), segment.sequence(j));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public MessageIndex.Sealed sealIndex(LogEntry[] entries) {
+        return messageIndex.seal(entries);
+    }
+
+    private void copyPage(long from, int skip, long endTime, List<LogEntry> page) {
+        for (int i = firstSegmentEndingAtOrAfter(from); i < segments.size() && page.size() < segmentSize; i++) {
+            Segment segment = segments.get(i);
+            if (segment.first() > endTime) {
+                return;
+            }
+            int start = segment.lowerBound(from);
+            int end = segment.upperBound(endTime);
+            int skipped = Math.min(skip, end - start);
+            start += skipped;
+            skip -= skipped;
+            segment.copyTo(start, Math.min(end, start + segmentSize - page.size()), serviceName, page);
+        }
+    }
+
+    private int lastSegmentStartingAtOrBefore(long time) {
+        int low = 0;
+        int high = segments.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (segments.get(mid).first() > time) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low - 1;
+    }
+
+    private int firstSegmentEndingAtOrAfter(long time) {
+        int low = 0;
+        int high = segments.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (segments.get(mid).last() < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,305 @@
+package com.example.log_aggregator.repository;
+
+import com.example.log_aggregator.model.LogCursor;
+import com.example.log_aggregator.model.LogEntry;
+import com.example.log_aggregator.model.LogFilter;
+import com.example.log_aggregator.model.LogPage;
+import com.example.log_aggregator.model.MemoryUsage;
+import com.example.log_aggregator.model.SortOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Keeps each service's logs in time-ordered, fixed-size segments so range queries
+ * don't have to filter and sort the whole service history. Segments store entries in a
+ * compact column layout (epoch nanos, UTF-8 message bytes) instead of {@link LogEntry} objects.
+ * Each service's log is split into one-minute {@link TimeBucketedLog} buckets that expire whole.
+ * Enabled with {@code aggregator.repository.type=segmented}.
+ */
+@Repository("logStore")
+@ConditionalOnProperty(name = "aggregator.repository.type", havingValue = "segmented")
+public class SegmentedLogRepository implements LogRepository {
+    static final int DEFAULT_SEGMENT_SIZE = 4096;
+
+    private final int segmentSize;
+    private final boolean indexed;
+    private final Set<String> indexedAttributes;
+    private final RetentionPolicy retentionPolicy;
+    private final MemoryBudget memoryBudget;
+    private final ServiceRegistry serviceRegistry;
+    private final QueryExecutor queryExecutor;
+    private final ServiceTable<TimeBucketedLog> logsByService;
+
+    public SegmentedLogRepository() {
+        this(DEFAULT_SEGMENT_SIZE);
+    }
+
+    public SegmentedLogRepository(int segmentSize) {
+        this(segmentSize, true);
+    }
+
+    public SegmentedLogRepository(int segmentSize, boolean indexed) {
+        this(segmentSize, indexed, new RetentionPolicy());
+    }
+
+    public SegmentedLogRepository(int segmentSize, boolean indexed, RetentionPolicy retentionPolicy) {
+        this(segmentSize, indexed, retentionPolicy, new MemoryBudget());
+    }
+
+    public SegmentedLogRepository(int segmentSize, boolean indexed, RetentionPolicy retentionPolicy, MemoryBudget memoryBudget) {
+        this(segmentSize, indexed, String.join(",", MessageIndex.DEFAULT_INDEXED_ATTRIBUTES), retentionPolicy, memoryBudget,
+                new ServiceRegistry(), new QueryExecutor());
+    }
+
+    @Autowired
+    public SegmentedLogRepository(@Value("${aggregator.repository.segment-size:4096}") int segmentSize,
+                                  @Value("${aggregator.search.index-enabled:true}") boolean indexed,
+                                  @Value("${aggregator.index.attributes:trace_id}") String indexedAttributes,
+                                  RetentionPolicy retentionPolicy,
+                                  MemoryBudget memoryBudget,
+                                  ServiceRegistry serviceRegistry,
+                                  QueryExecutor queryExecutor) {
+        if (segmentSize < 2) {
+            throw new IllegalArgumentException("Segment size must be at least 2");
+        }
+        this.segmentSize = segmentSize;
+        this.indexed = indexed;
+        this.indexedAttributes = MessageIndex.parseAttributes(indexedAttributes);
+        this.retentionPolicy = retentionPolicy;
+        this.memoryBudget = memoryBudget;
+        this.serviceRegistry = serviceRegistry;
+        this.queryExecutor = queryExecutor;
+        this.logsByService = new ServiceTable<>(serviceRegistry);
+    }
+
+    @Override
+    public void save(LogEntry logEntry) {
+        if (logEntry == null || logEntry.getServiceName() == null) {
+            return; // ignore invalid entries
+        }
+
+        int serviceId = serviceRegistry.idOf(logEntry);
+        memoryBudget.checkAdmission(serviceId, logEntry.getTimestamp(), logsByService);
+        TimeBucketedLog serviceLog = logsByService.computeIfAbsent(serviceId, this::newServiceLog);
+        while (serviceLog == null || !serviceLog.append(logEntry)) {
+            // the service's log was retired and its ID released meanwhile
+            Thread.onSpinWait();
+            serviceLog = logsByService.computeIfAbsent(serviceRegistry.idOf(logEntry), this::newServiceLog);
+        }
+        memoryBudget.enforce(logsByService, serviceLog, logEntry.getTimestamp());
+    }
+
+    @Override
+    public void saveAll(List<LogEntry> logEntries) {
+        if (logEntries == null || logEntries.isEmpty()) {
+            return;
+        }
+
+        Map<Integer, List<LogEntry>> batchesByService = batchesByService(logEntries);
+
+        // a batch is stored whole or not at all
+        memoryBudget.checkAdmission(batchesByService, logsByService);
+        batchesByService.forEach((serviceId, batch) -> {
+            TimeBucketedLog serviceLog = logsByService.computeIfAbsent(serviceId, this::newServiceLog);
+            while (serviceLog == null || !serviceLog.appendAll(batch)) {
+                Thread.onSpinWait();
+                serviceLog = logsByService.computeIfAbsent(serviceRegistry.idOf(batch.get(0)), this::newServiceLog);
+            }
+            memoryBudget.enforce(logsByService, serviceLog, MemoryBudget.oldest(batch));
+        });
+    }
+
+    @Override
+    public List<LogEntry> findByServiceNameAndTimeRange(String serviceName, Instant startTime, Instant endTime) {
+        if (serviceName == null || startTime == null || endTime == null) {
+            return Collections.emptyList();
+        }
+
+        TimeBucketedLog serviceLog = logsByService.get(serviceName);
+        if (serviceLog == null) {
+            return Collections.emptyList();
+        }
+
+        List<LogEntry> results = new ArrayList<>();
+        serviceLog.findInRange(startTime, endTime, results);
+        return results;
+    }
+
+    @Override
+    public LogPage<LogEntry> findPageByServiceNameAndTimeRange(String serviceName, Instant startTime, Instant endTime,
+                                                               LogCursor after, int limit, SortOrder order) {
+        if (serviceName == null || startTime == null || endTime == null) {
+            return new LogPage<>(Collections.emptyList(), null);
+        }
+
+        TimeBucketedLog serviceLog = logsByService.get(serviceName);
+        if (serviceLog == null) {
+            return new LogPage<>(Collections.emptyList(), null);
+        }
+
+        return serviceLog.findPage(startTime, endTime, after, limit, order);
+    }
+
+    @Override
+    public LogPage<LogEntry> findPageMatching(String serviceName, Instant startTime, Instant endTime,
+                                              LogFilter filter, LogCursor after, int limit, SortOrder order) {
+        if (serviceName == null || startTime == null || endTime == null) {
+            return new LogPage<>(Collections.emptyList(), null);
+        }
+        MessageIndex.requireIndexed(filter, indexedAttributes);
+
+        TimeBucketedLog serviceLog = logsByService.get(serviceName);
+        if (serviceLog == null) {
+            return new LogPage<>(Collections.emptyList(), null);
+        }
+
+        return serviceLog.findPageMatching(startTime, endTime, filter, after, limit, order);
+    }
+
+    @Override
+    public void streamByServiceNameAndTimeRange(String serviceName, Instant startTime, Instant endTime,
+                                                LogFilter filter, Consumer<LogEntry> action) {
+        if (serviceName == null || startTime == null || endTime == null) {
+            return;
+        }
+        Consumer<LogEntry> matching = MessageIndex.matching(filter, indexedAttributes, action);
+
+        TimeBucketedLog serviceLog = logsByService.get(serviceName);
+        if (serviceLog != null) {
+            serviceLog.forEachInRange(startTime, endTime, matching);
+        }
+    }
+
+    /**
+     * k-way merge over the services' own sorted pages, see {@link ServiceMerge}
+     */
+    @Override
+    public LogPage<LogEntry> findPageAcrossServices(List<String> serviceNames, Instant startTime, Instant endTime,
+                                                    LogFilter filter, LogCursor after, int limit, SortOrder order) {
+        if (serviceNames == null || startTime == null || endTime == null) {
+            return new LogPage<>(Collections.emptyList(), null);
+        }
+        if (filter != null) {
+            MessageIndex.requireIndexed(filter, indexedAttributes);
+        }
+
+        return ServiceMerge.findPage(logsByService, serviceNames, startTime, endTime, filter, after, limit, order);
+    }
+
+    @Override
+    public void streamAcrossServices(List<String> serviceNames, Instant startTime, Instant endTime,
+                                     LogFilter filter, Consumer<LogEntry> action) {
+        if (serviceNames == null || startTime == null || endTime == null) {
+            return;
+        }
+        Consumer<LogEntry> matching = MessageIndex.matching(filter, indexedAttributes, action);
+
+        ServiceMerge.forEach(logsByService, serviceNames, startTime, endTime, matching);
+    }
+
+    @Override
+    public long[] countByInterval(String serviceName, Instant startTime, Instant endTime, Duration interval) {
+        long fromSecond = startTime.getEpochSecond();
+        long toSecond = endTime.getEpochSecond() + (endTime.getNano() > 0 ? 1 : 0);
+        long intervalSeconds = interval.getSeconds();
+        long slots = Math.max(0, Math.floorDiv(toSecond - fromSecond + intervalSeconds - 1, intervalSeconds));
+        long[] counts = new long[(int) slots];
+        TimeBucketedLog serviceLog = logsByService.get(serviceName);
+        if (serviceLog != null) {
+            serviceLog.countByInterval(fromSecond, toSecond, intervalSeconds, counts);
+        }
+        return counts;
+    }
+
+    @Override
+    public RangeVersion rangeVersion(String serviceName, Instant startTime, Instant endTime) {
+        TimeBucketedLog serviceLog = logsByService.get(serviceName);
+        return serviceLog != null ? serviceLog.rangeVersion(startTime, endTime) : RangeVersion.EMPTY;
+    }
+
+    @Override
+    public List<String> findServiceNames() {
+        return logsByService.names().stream().sorted().toList();
+    }
+
+    @Override
+    public long removeExpiredLogs() {
+        Instant now = Instant.now();
+        long[] removed = new long[1];
+
+        logsByService.forEach((serviceName, serviceLog) ->
+                removed[0] += serviceLog.removeOlderThan(retentionPolicy.expiryThreshold(serviceName, now)));
+        // services left without logs, by expiry or by eviction, no longer count against the services cap
+        logsByService.removeIf(TimeBucketedLog::retire);
+
+        // compress the buckets that have gone cold
+        Instant coldThreshold = retentionPolicy.coldThreshold(now);
+        if (coldThreshold != null) {
+            logsByService.values().forEach(serviceLog -> serviceLog.sealOlderThan(coldThreshold));
+        }
+        return removed[0];
+    }
+
+    @Override
+    public void checkMemoryBudget(List<LogEntry> logEntries) {
+        if (logEntries == null) {
+            return;
+        }
+        memoryBudget.checkAdmission(batchesByService(logEntries), logsByService);
+    }
+
+    @Override
+    public MemoryUsage memoryUsage() {
+        return memoryBudget.usage(logsByService);
+    }
+
+    @Override
+    public long countEntries(String serviceName) {
+        TimeBucketedLog serviceLog = logsByService.get(serviceName);
+        return serviceLog != null ? serviceLog.entryCount() : 0;
+    }
+
+    @Override
+    public long usedBytes(String serviceName) {
+        TimeBucketedLog serviceLog = logsByService.get(serviceName);
+        return serviceLog != null ? serviceLog.usedBytes() : 0;
+    }
+
+    /**
+     * @return the entries grouped by service ID, in the order services first appear
+     */
+    private Map<Integer, List<LogEntry>> batchesByService(List<LogEntry> logEntries) {
+        Map<String, List<LogEntry>> batchesByName = new LinkedHashMap<>();
+        for (LogEntry logEntry : logEntries) {
+            if (logEntry != null && logEntry.getServiceName() != null) {
+                batchesByName.computeIfAbsent(logEntry.getServiceName(), name -> new ArrayList<>()).add(logEntry);
+            }
+        }
+        Map<Integer, List<LogEntry>> batchesByService = new LinkedHashMap<>();
+        for (List<LogEntry> batch : batchesByName.values()) {
+            // a full registry releases the services without logs, which includes those of this batch so far
+            if (batchesByService.putIfAbsent(serviceRegistry.idOf(batch.get(0)), batch) != null) {
+                throw serviceRegistry.full();
+            }
+        }
+        return batchesByService;
+    }
+
+    private TimeBucketedLog newServiceLog(String serviceName) {
+        return new TimeBucketedLog(serviceName,
+                () -> new SegmentedLog(serviceName, segmentSize, indexed, indexedAttributes), memoryBudget,
+                queryExecutor);
+    }
+}
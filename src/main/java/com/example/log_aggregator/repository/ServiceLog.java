@@ -0,0 +1,65 @@
+package com.example.log_aggregator.repository;
+
+import com.example.log_aggregator.model.LogCursor;
+import com.example.log_aggregator.model.LogEntry;
+import com.example.log_aggregator.model.LogFilter;
+import com.example.log_aggregator.model.LogPage;
+import com.example.log_aggregator.model.SortOrder;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Entries of a single service within one time bucket of a {@link TimeBucketedLog}.
+ * Ranges are inclusive at both ends; equal timestamps are ordered by the sequence the log assigned.
+ */
+interface ServiceLog {
+    /**
+     * @return estimated heap bytes the log retains for the entry, index included
+     */
+    long append(LogEntry logEntry);
+
+    /**
+     * @return estimated heap bytes the log retains for the batch, index included
+     */
+    long appendAll(List<LogEntry> logEntries);
+
+    /**
+     * copies entries with timestamps in [startTime, endTime] into the target list, in time order
+     */
+    void findInRange(Instant startTime, Instant endTime, List<LogEntry> target);
+
+    /**
+     * passes entries with timestamps in [startTime, endTime] to the action, in time order
+     */
+    void forEachInRange(Instant startTime, Instant endTime, Consumer<LogEntry> action);
+
+    /**
+     * collects up to {@code limit} entries in [startTime, endTime] that follow the cursor in the given order
+     */
+    LogPage<LogEntry> findPage(Instant startTime, Instant endTime, LogCursor after, int limit, SortOrder order);
+
+    /**
+     * like {@link #findPage} but only counts entries that match the filter
+     */
+    LogPage<LogEntry> findPageMatching(Instant startTime, Instant endTime, LogFilter filter, LogCursor after,
+                                       int limit, SortOrder order);
+
+    /**
+     * passes every entry and its sequence to the action, in timestamp then sequence order
+     */
+    void forEachSequenced(SequencedAction action);
+
+    /**
+     * indexes entries sealed from this log with the settings of its own index
+     *
+     * @param entries in timestamp then sequence order
+     */
+    MessageIndex.Sealed sealIndex(LogEntry[] entries);
+
+    @FunctionalInterface
+    interface SequencedAction {
+        void accept(LogEntry logEntry, long sequence);
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.log_aggregator.repository;
+
+import com.example.log_aggregator.model.LogCursor;
+import com.example.log_aggregator.model.LogEntry;
+import com.example.log_aggregator.model.LogFilter;
+import com.example.log_aggregator.model.LogPage;
+import com.example.log_aggregator.model.SortOrder;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+/**
+ * K-way merge of the time-ordered entries of several services.
+ * <p>
+ * Every service is read through its own paged cursor, a batch at a time, and a heap keyed on the
+ * head of each batch picks the next entry. Entries with equal timestamps are ordered by service
+ * name, then by the service's own sequence, so a merged cursor is the timestamp, service and
+ * sequence of the last entry. At most one batch per service is held, whatever the range holds.
+ */
+final class ServiceMerge {
+    private static final int MIN_BATCH = 64;
+    // entries held across all services while merging an unbounded stream
+    private static final int TARGET_BATCH_ENTRIES = 4096;
+
+    private ServiceMerge() {
+    }
+
+    /**
+     * collects up to {@code limit} entries of the services in [startTime, endTime] that follow the cursor
+     *
+     * @param filter conditions entries must meet, or null for every entry
+     */
+    static LogPage<LogEntry> findPage(ServiceTable<TimeBucketedLog> logsByService, List<String> serviceNames,
+                                      Instant startTime, Instant endTime, LogFilter filter, LogCursor after,
+                                      int limit, SortOrder order) {
+        List<LogEntry> items = new ArrayList<>(Math.min(limit, TARGET_BATCH_ENTRIES));
+        LogCursor nextCursor = merge(logsByService, serviceNames, startTime, endTime, filter, after, limit, order,
+                items::add);
+        return new LogPage<>(items, nextCursor);
+    }
+
+    /**
+     * passes every entry of the services in [startTime, endTime] to the action, in time order
+     */
+    static void forEach(ServiceTable<TimeBucketedLog> logsByService, List<String> serviceNames,
+                        Instant startTime, Instant endTime, Consumer<LogEntry> action) {
+        merge(logsByService, serviceNames, startTime, endTime, null, null, Integer.MAX_VALUE, SortOrder.ASC, action);
+    }
+
+    /**
+     * @return cursor of the last emitted entry if more entries remain after the limit, null otherwise
+     */
+    private static LogCursor merge(ServiceTable<TimeBucketedLog> logsByService, List<String> serviceNames,
+                                   Instant startTime, Instant endTime, LogFilter filter, LogCursor after, int limit,
+                                   SortOrder order, Consumer<LogEntry> action) {
+        int batchSize = Math.max(1, Math.min(limit, Math.max(MIN_BATCH, TARGET_BATCH_ENTRIES / Math.max(1,
+                serviceNames.size()))));
+        Comparator<Run> byHead = Comparator.comparing((Run run) -> run.head().getTimestamp())
+                .thenComparing(run -> run.serviceName);
+        PriorityQueue<Run> runs = new PriorityQueue<>(order == SortOrder.ASC ? byHead : byHead.reversed());
+        for (String serviceName : serviceNames) {
+            TimeBucketedLog log = logsByService.get(serviceName);
+            if (log == null) {
+                continue;
+            }
+            Run run = new Run(serviceName, log, startTime, endTime, filter, order, batchSize,
+                    serviceCursor(after, serviceName));
+            if (run.fill()) {
+                runs.add(run);
+            }
+        }
+
+        int emitted = 0;
+        Run lastRun = null;
+        Instant lastTimestamp = null;
+        LogCursor lastBatchStart = null;
+        int lastBatchCount = 0;
+        while (!runs.isEmpty()) {
+            Run run = runs.poll();
+            if (emitted == limit) {
+                return lastRun.cursorAfter(lastTimestamp, lastBatchStart, lastBatchCount);
+            }
+            action.accept(run.head());
+            emitted++;
+            lastRun = run;
+            lastTimestamp = run.head().getTimestamp();
+            lastBatchStart = run.batchStart;
+            lastBatchCount = run.position + 1;
+            if (run.advance()) {
+                runs.add(run);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * position of one service after a merged cursor: services ordered before the cursor's service
+     * have emitted every entry at its timestamp, services ordered after it none of them
+     */
+    private static LogCursor serviceCursor(LogCursor after, String serviceName) {
+        if (after == null) {
+            return null;
+        }
+        if (after.getServiceName() == null) {
+            return after;
+        }
+        int byService = serviceName.compareTo(after.getServiceName());
+        if (byService == 0) {
+            return new LogCursor(after.getTimestamp(), after.getSequence());
+        }
+        return new LogCursor(after.getTimestamp(), byService < 0 ? Long.MAX_VALUE : -1);
+    }
+
+    private static class Run {
+        private final String serviceName;
+        private final TimeBucketedLog log;
+        private final Instant startTime;
+        private final Instant endTime;
+        private final LogFilter filter;
+        private final SortOrder order;
+        private final int batchSize;
+        private LogCursor next;
+        private LogCursor batchStart;
+        private List<LogEntry> batch = Collections.emptyList();
+        private int position;
+
+        Run(String serviceName, TimeBucketedLog log, Instant startTime, Instant endTime, LogFilter filter,
+            SortOrder order, int batchSize, LogCursor after) {
+            this.serviceName = serviceName;
+            this.log = log;
+            this.startTime = startTime;
+            this.endTime = endTime;
+            this.filter = filter;
+            this.order = order;
+            this.batchSize = batchSize;
+            this.next = after;
+        }
+
+        LogEntry head() {
+            return batch.get(position);
+        }
+
+        /**
+         * reads the next batch from the service's cursor
+         *
+         * @return false if the service has no more entries
+         */
+        boolean fill() {
+            LogPage<LogEntry> page = read(next, batchSize);
+            batchStart = next;
+            batch = page.getItems();
+            next = page.getNextCursor();
+            position = 0;
+            return !batch.isEmpty();
+        }
+
+        /**
+         * @return false if the service has no more entries
+         */
+        boolean advance() {
+            position++;
+            if (position < batch.size()) {
+                return true;
+            }
+            return next != null && fill();
+        }
+
+        /**
+         * merged cursor after the {@code count}th entry read from {@code start}; the batch is read again
+         * up to that entry, since pages only carry the sequence of their last entry
+         */
+        LogCursor cursorAfter(Instant timestamp, LogCursor start, int count) {
+            LogCursor position = read(start, count).getNextCursor();
+            long sequence = position != null ? position.getSequence()
+                    : order == SortOrder.ASC ? Long.MAX_VALUE : -1; // nothing left in this service
+            return new LogCursor(timestamp, serviceName, sequence);
+        }
+
+        private LogPage<LogEntry> read(LogCursor after, int limit) {
+            return filter == null
+                    ? log.findPage(startTime, endTime, after, limit, order)
+                    : log.findPageMatching(startTime, endTime, filter, after, limit, order);
+        }
+    }
+}
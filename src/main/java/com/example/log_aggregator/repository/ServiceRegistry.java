@@ -0,0 +1,199 @@
+package com.example.log_aggregator.repository;
+
+import com.example.log_aggregator.model.LogEntry;
+import com.example.log_aggregator.model.ServiceNames;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Assigns every service a dense integer ID the first time its name is seen, so the stores can keep
+ * their per-service state in arrays indexed by it, see {@link ServiceTable}.
+ * <p>
+ * At most {@code aggregator.services.max-count} services are live at once; entries of any further
+ * service are refused, which keeps a client that puts request IDs or timestamps into service names
+ * from growing the stores without bound. The store owning the registry releases a service once expiry
+ * or eviction has removed all its logs, and its ID goes to the next new service, so services that come
+ * and go, named per deploy or per pod, only count while they hold logs. Services are registered as their
+ * entries are validated, before the store admits them; when the registry is full, the store first releases
+ * the services that never got a log, whose entries were refused or dropped on the way, so those don't
+ * use up the cap either.
+ */
+@Component
+public class ServiceRegistry {
+    public static final int DEFAULT_MAX_SERVICES = 10_000;
+
+    private final int maxServices;
+    private final Map<String, Integer> idsByName = new ConcurrentHashMap<>();
+    private final ReentrantLock registerLock = new ReentrantLock();
+    // written under the lock, read without it; the volatile write publishes the new name
+    private volatile String[] names = new String[16];
+    private volatile int size;
+    private volatile int idLimit;
+    // released IDs, the longest free reused first
+    private final ArrayDeque<Integer> freeIds = new ArrayDeque<>();
+    // set by the store owning the registry, releases the services without logs
+    private volatile Runnable releaseUnused = () -> {
+    };
+
+    public ServiceRegistry() {
+        this(DEFAULT_MAX_SERVICES);
+    }
+
+    @Autowired
+    public ServiceRegistry(@Value("${aggregator.services.max-count:10000}") int maxServices) {
+        if (maxServices < 1) {
+            throw new IllegalArgumentException("Maximum service count must be positive");
+        }
+        this.maxServices = maxServices;
+    }
+
+    /**
+     * @return the service's ID, registering the name if it is new
+     * @throws IllegalArgumentException if the name is new and the maximum number of services is registered
+     */
+    public int register(String serviceName) {
+        Integer id = idsByName.get(serviceName);
+        if (id != null) {
+            return id;
+        }
+        if (size >= maxServices) {
+            // outside the lock, releasing takes the store's lock before this one
+            releaseUnused.run();
+        }
+        registerLock.lock();
+        try {
+            id = idsByName.get(serviceName);
+            if (id != null) {
+                return id;
+            }
+            if (size >= maxServices) {
+                throw full();
+            }
+            Integer free = freeIds.pollFirst();
+            int next = free != null ? free : idLimit;
+            String[] current = names;
+            if (next == current.length) {
+                current = Arrays.copyOf(current, current.length * 2);
+            }
+            String name = ServiceNames.intern(serviceName);
+            current[next] = name;
+            names = current;
+            if (free == null) {
+                idLimit = next + 1;
+            }
+            size++;
+            idsByName.put(name, next);
+            return next;
+        } finally {
+            registerLock.unlock();
+        }
+    }
+
+    /**
+     * @return the error for a new service refused because the maximum number of services is registered
+     */
+    IllegalArgumentException full() {
+        return new IllegalArgumentException("Too many services, at most " + maxServices + " are allowed");
+    }
+
+    /**
+     * registers the entry's service and gives the entry its ID and the registry's instance of the name
+     *
+     * @throws IllegalArgumentException if the service is new and the maximum number of services is registered
+     */
+    public void register(LogEntry logEntry) {
+        while (true) {
+            int id = register(logEntry.getServiceName());
+            String name = names[id];
+            // released again in between, unlikely as it needs the service to have no logs
+            if (name != null && name.equals(logEntry.getServiceName())) {
+                logEntry.setServiceName(name);
+                logEntry.setServiceId(id);
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return the ID of the entry's service; the ID the entry carries is used as is when it was given by this
+     * registry, so the name is looked up once per entry
+     */
+    int idOf(LogEntry logEntry) {
+        int id = logEntry.getServiceId();
+        String[] current = names;
+        if (id >= 0 && id < current.length && current[id] == logEntry.getServiceName()) {
+            return id;
+        }
+        register(logEntry);
+        return logEntry.getServiceId();
+    }
+
+    /**
+     * @param releaseUnused releases the services that are registered but hold no logs, run when the
+     *                      registry is full
+     */
+    void onFull(Runnable releaseUnused) {
+        this.releaseUnused = releaseUnused;
+    }
+
+    /**
+     * frees the ID for another service; entries that still carry it are registered again when stored
+     */
+    void release(int id) {
+        registerLock.lock();
+        try {
+            String[] current = names;
+            String name = current[id];
+            if (name == null) {
+                return;
+            }
+            idsByName.remove(name);
+            current[id] = null;
+            names = current;
+            size--;
+            freeIds.addLast(id);
+        } finally {
+            registerLock.unlock();
+        }
+    }
+
+    /**
+     * @return the service's ID, or -1 if it is not registered
+     */
+    public int find(String serviceName) {
+        Integer id = serviceName != null ? idsByName.get(serviceName) : null;
+        return id != null ? id : -1;
+    }
+
+    /**
+     * @return the name registered with the ID, null if it was released
+     */
+    public String name(int id) {
+        return names[id];
+    }
+
+    /**
+     * @return the number of live services
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return one past the highest ID ever given
+     */
+    public int idLimit() {
+        return idLimit;
+    }
+
+    public int getMaxServices() {
+        return maxServices;
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.log_aggregator.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Per-service values of a store, in an array indexed by {@link ServiceRegistry} ID.
+ * <p>
+ * Reads are a bounds check and an array load. Values are added under a lock that also grows the
+ * array, which happens once per new service, and removed with their service's ID by
+ * {@link #removeIf}.
+ */
+final class ServiceTable<T> {
+    private final ServiceRegistry serviceRegistry;
+    private final ReentrantLock addLock = new ReentrantLock();
+    private volatile AtomicReferenceArray<T> values = new AtomicReferenceArray<>(16);
+    private volatile int size;
+
+    ServiceTable(ServiceRegistry serviceRegistry) {
+        this.serviceRegistry = serviceRegistry;
+        serviceRegistry.onFull(this::releaseUnused);
+    }
+
+    /**
+     * @return the service's value, or null if there is none
+     */
+    T get(int serviceId) {
+        AtomicReferenceArray<T> current = values;
+        return serviceId >= 0 && serviceId < current.length() ? current.get(serviceId) : null;
+    }
+
+    /**
+     * @return the service's value, or null if there is none or the service was never registered
+     */
+    T get(String serviceName) {
+        return get(serviceRegistry.find(serviceName));
+    }
+
+    /**
+     * @param factory creates the value from the service's name
+     * @return the value, or null if the ID was released and not given out again
+     */
+    T computeIfAbsent(int serviceId, Function<String, T> factory) {
+        T value = get(serviceId);
+        if (value != null) {
+            return value;
+        }
+        addLock.lock();
+        try {
+            AtomicReferenceArray<T> current = values;
+            if (serviceId >= current.length()) {
+                AtomicReferenceArray<T> grown = new AtomicReferenceArray<>(Math.max(serviceId + 1,
+                        current.length() * 2));
+                for (int i = 0; i < current.length(); i++) {
+                    grown.set(i, current.get(i));
+                }
+                values = grown;
+                current = grown;
+            }
+            value = current.get(serviceId);
+            String name = serviceRegistry.name(serviceId);
+            if (value == null && name != null) {
+                value = factory.apply(name);
+                current.set(serviceId, value);
+                size++;
+            }
+            return value;
+        } finally {
+            addLock.unlock();
+        }
+    }
+
+    /**
+     * removes the values the predicate accepts and releases their services' IDs. The predicate must leave
+     * an accepted value refusing writes: the ID is released first and the value removed after it, so a
+     * writer holding the old ID finds that value, not a new service's, and looks its service up again.
+     *
+     * @return the number of values removed
+     */
+    int removeIf(Predicate<T> retire) {
+        AtomicReferenceArray<T> current = values;
+        int removed = 0;
+        for (int i = 0; i < current.length(); i++) {
+            T value = current.get(i);
+            if (value != null && retire.test(value)) {
+                serviceRegistry.release(i);
+                addLock.lock();
+                try {
+                    values.compareAndSet(i, value, null);
+                    size--;
+                } finally {
+                    addLock.unlock();
+                }
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * releases the IDs of services registered without ever getting a value, for entries that were refused,
+     * by the memory budget or a lagging follower, or dropped before they were stored. A value is only added
+     * under the lock while the service is registered, so none is added for a service being released.
+     */
+    void releaseUnused() {
+        int limit = serviceRegistry.idLimit();
+        for (int id = 0; id < limit; id++) {
+            if (get(id) != null || serviceRegistry.name(id) == null) {
+                continue;
+            }
+            addLock.lock();
+            try {
+                if (get(id) == null) {
+                    serviceRegistry.release(id);
+                }
+            } finally {
+                addLock.unlock();
+            }
+        }
+    }
+
+    String name(int serviceId) {
+        return serviceRegistry.name(serviceId);
+    }
+
+    /**
+     * @return the number of services with a value
+     */
+    int size() {
+        return size;
+    }
+
+    void forEach(BiConsumer<String, T> action) {
+        AtomicReferenceArray<T> current = values;
+        for (int i = 0; i < current.length(); i++) {
+            T value = current.get(i);
+            String name = value != null ? serviceRegistry.name(i) : null;
+            if (name != null) {
+                action.accept(name, value);
+            }
+        }
+    }
+
+    Stream<T> values() {
+        AtomicReferenceArray<T> current = values;
+        return IntStream.range(0, current.length()).mapToObj(current::get).filter(Objects::nonNull);
+    }
+
+    List<String> names() {
+        List<String> names = new ArrayList<>(size);
+        forEach((name, value) -> names.add(name));
+        return names;
+    }
+}
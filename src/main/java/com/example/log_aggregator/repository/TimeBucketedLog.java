@@ -0,0 +1,501 @@
+package com.example.log_aggregator.repository;
+
+import com.example.log_aggregator.model.LogCursor;
+import com.example.log_aggregator.model.LogEntry;
+import com.example.log_aggregator.model.LogFilter;
+import com.example.log_aggregator.model.LogPage;
+import com.example.log_aggregator.model.SortOrder;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Log of a single service split into one-minute time buckets, each a {@link ServiceLog} of its own.
+ * <p>
+ * Expiry never touches live entries: it raises a low watermark that hides older entries from
+ * queries and drops the buckets that end before it, one skip-list removal each. Buckets are
+ * time-disjoint, so a range is read bucket after bucket and needs no merge across them.
+ * At most one minute of expired entries stays in memory, in the bucket straddling the watermark.
+ * <p>
+ * Every bucket counts the bytes its entries retain and reports them to the {@link MemoryBudget},
+ * which takes them back when the bucket is dropped, by expiry or by eviction. A dropped bucket's
+ * count is closed, so a writer that raced the drop takes its own bytes back instead.
+ * <p>
+ * Buckets also count their entries per second as they are stored, so volume statistics are
+ * summed from 60 counters per minute and never read the entries. The same counts weigh the buckets
+ * when a wide range query is split across them, see {@link QueryExecutor}, and together with the
+ * point up to which entries have been removed they make the {@link RangeVersion} of a range.
+ * <p>
+ * Buckets that have gone cold are sealed: their log is replaced by a compressed {@link SealedLog}.
+ * Writers append to a bucket without a lock but count themselves in and out, and the sealer first
+ * turns new writers to the bucket's lock and waits for the ones in flight, so no entry is appended
+ * to a log that is being compressed.
+ * <p>
+ * A log left without buckets by expiry or eviction can be retired, which frees its service's ID for
+ * another service, see {@link ServiceRegistry}. Writers refuse to append to a retired log, or to one
+ * created for another service under a reused ID, and look the log up again.
+ */
+class TimeBucketedLog {
+    static final long BUCKET_NANOS = TimeUnit.MINUTES.toNanos(1);
+    static final int BUCKET_SECONDS = 60;
+
+    // far enough below zero that no amount of racing appends brings a closed count back up
+    private static final long CLOSED = Long.MIN_VALUE / 2;
+    // likewise for the writer count of a sealed bucket
+    private static final long SEALED = Long.MIN_VALUE / 2;
+    // timestamps outside the range of epoch nanos all land in the first bucket, which is never sealed
+    private static final long FIRST_BUCKET_KEY = Math.floorDiv(Long.MIN_VALUE, BUCKET_NANOS);
+
+    private final NavigableMap<Long, Bucket> buckets = new ConcurrentSkipListMap<>();
+    private final String serviceName;
+    private final Supplier<ServiceLog> bucketFactory;
+    private final MemoryBudget memoryBudget;
+    private final QueryExecutor queryExecutor;
+    private final AtomicLong usedBytes = new AtomicLong();
+    private final AtomicReference<Instant> lowWatermark = new AtomicReference<>(Instant.MIN);
+    // end of the newest bucket evicted for memory, in epoch nanos
+    private final AtomicLong evictedBefore = new AtomicLong(Long.MIN_VALUE);
+    private volatile boolean retired;
+
+    TimeBucketedLog(String serviceName, Supplier<ServiceLog> bucketFactory) {
+        this(serviceName, bucketFactory, new MemoryBudget());
+    }
+
+    TimeBucketedLog(String serviceName, Supplier<ServiceLog> bucketFactory, MemoryBudget memoryBudget) {
+        this(serviceName, bucketFactory, memoryBudget, new QueryExecutor());
+    }
+
+    TimeBucketedLog(String serviceName, Supplier<ServiceLog> bucketFactory, MemoryBudget memoryBudget,
+                    QueryExecutor queryExecutor) {
+        this.serviceName = serviceName;
+        this.bucketFactory = bucketFactory;
+        this.memoryBudget = memoryBudget;
+        this.queryExecutor = queryExecutor;
+    }
+
+    /**
+     * stores an entry in the bucket of its timestamp; entries already past the watermark are dropped
+     *
+     * @return false if the log is retired or belongs to another service, nothing was stored then
+     */
+    boolean append(LogEntry logEntry) {
+        if (!logEntry.getServiceName().equals(serviceName)) {
+            return false;
+        }
+        if (!logEntry.getTimestamp().isBefore(lowWatermark.get())) {
+            Bucket bucket = bucket(logEntry.getTimestamp());
+            if (retired) {
+                return false;
+            }
+            write(bucket, log -> log.append(logEntry));
+            bucket.counts.incrementAndGet(secondOfBucket(logEntry.getTimestamp()));
+        }
+        return true;
+    }
+
+    /**
+     * splits a batch by bucket, keeping arrival order, and appends each part in one call
+     *
+     * @return false if the log is retired or belongs to another service, nothing was stored then
+     */
+    boolean appendAll(List<LogEntry> logEntries) {
+        if (!logEntries.get(0).getServiceName().equals(serviceName)) {
+            return false;
+        }
+        Instant watermark = lowWatermark.get();
+        Map<Long, List<LogEntry>> byBucket = new LinkedHashMap<>();
+        for (LogEntry logEntry : logEntries) {
+            if (!logEntry.getTimestamp().isBefore(watermark)) {
+                byBucket.computeIfAbsent(bucketKey(logEntry.getTimestamp()), k -> new ArrayList<>()).add(logEntry);
+            }
+        }
+        // create every bucket before the check, so a retire either sees them or is seen
+        List<Bucket> targets = new ArrayList<>(byBucket.size());
+        for (long key : byBucket.keySet()) {
+            targets.add(bucket(key));
+        }
+        if (retired) {
+            return false;
+        }
+        int i = 0;
+        for (List<LogEntry> batch : byBucket.values()) {
+            Bucket bucket = targets.get(i++);
+            write(bucket, log -> log.appendAll(batch));
+            // one atomic add per second present in the batch
+            int[] counts = new int[BUCKET_SECONDS];
+            for (LogEntry logEntry : batch) {
+                counts[secondOfBucket(logEntry.getTimestamp())]++;
+            }
+            for (int second = 0; second < BUCKET_SECONDS; second++) {
+                if (counts[second] > 0) {
+                    bucket.counts.addAndGet(second, counts[second]);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * marks the log retired if it holds no bucket. A writer creates its bucket before it checks the mark, so
+     * either the writer sees the mark and looks the log up again, or the bucket is seen here.
+     *
+     * @return true if the log is retired and takes no more entries
+     */
+    boolean retire() {
+        retired = true;
+        if (!buckets.isEmpty()) {
+            retired = false;
+            return false;
+        }
+        return true;
+    }
+
+    private Bucket bucket(Instant timestamp) {
+        return bucket(bucketKey(timestamp));
+    }
+
+    private Bucket bucket(long key) {
+        // plain get first, computeIfAbsent may allocate a bucket that loses the race
+        Bucket bucket = buckets.get(key);
+        return bucket != null ? bucket : buckets.computeIfAbsent(key, k -> new Bucket(bucketFactory.get()));
+    }
+
+    /**
+     * appends to the bucket's log and accounts the bytes, waiting for the sealer if the bucket is being sealed
+     */
+    private void write(Bucket bucket, ToLongFunction<ServiceLog> append) {
+        if (bucket.writers.incrementAndGet() > 0) {
+            try {
+                account(bucket, append.applyAsLong(bucket.log));
+            } finally {
+                bucket.writers.decrementAndGet();
+            }
+            return;
+        }
+        // sealed or being sealed, late entries go to the sealed log under the lock
+        bucket.writers.decrementAndGet();
+        LockWait.SEAL.lock(bucket.sealLock);
+        try {
+            account(bucket, append.applyAsLong(bucket.log));
+        } finally {
+            bucket.sealLock.unlock();
+        }
+    }
+
+    private void account(Bucket bucket, long bytes) {
+        usedBytes.addAndGet(bytes);
+        memoryBudget.add(bytes);
+        if (bucket.bytes.addAndGet(bytes) < 0) {
+            // the bucket was dropped while the entries went in, and they went with it
+            usedBytes.addAndGet(-bytes);
+            memoryBudget.add(-bytes);
+        }
+    }
+
+    /**
+     * @return bytes the bucket held, now given back
+     */
+    private long close(Bucket bucket) {
+        long freed = bucket.bytes.getAndSet(CLOSED);
+        usedBytes.addAndGet(-freed);
+        memoryBudget.add(-freed);
+        return freed;
+    }
+
+    /**
+     * @return estimated heap bytes retained by the live buckets
+     */
+    long usedBytes() {
+        return usedBytes.get();
+    }
+
+    /**
+     * @return entries held, from the per-second counts; expired entries still in the bucket straddling the
+     * watermark are counted until the bucket is dropped
+     */
+    long entryCount() {
+        long count = 0;
+        for (Bucket bucket : buckets.values()) {
+            count += bucket.entryCount();
+        }
+        return count;
+    }
+
+    boolean hasBuckets() {
+        return !buckets.isEmpty();
+    }
+
+    /**
+     * @return key of the oldest bucket, {@code Long.MAX_VALUE} if there is none
+     */
+    long oldestBucketKey() {
+        Map.Entry<Long, Bucket> oldest = buckets.firstEntry();
+        return oldest != null ? oldest.getKey() : Long.MAX_VALUE;
+    }
+
+    /**
+     * @return true if a bucket ends before the bucket holding the timestamp begins
+     */
+    boolean hasBucketBefore(Instant timestamp) {
+        return oldestBucketKey() < bucketKey(timestamp);
+    }
+
+    /**
+     * drops the oldest bucket to free memory, even if it is still inside the retention window
+     *
+     * @return bytes freed, or -1 if there was no bucket
+     */
+    long evictOldestBucket() {
+        Map.Entry<Long, Bucket> oldest = buckets.pollFirstEntry();
+        return oldest != null ? evicted(oldest.getKey(), oldest.getValue()) : -1;
+    }
+
+    /**
+     * drops the oldest bucket like {@link #evictOldestBucket()}, as long as it ends before the bucket holding
+     * the timestamp begins
+     *
+     * @return bytes freed, or -1 if there was no such bucket
+     */
+    long evictOldestBucket(Instant before) {
+        Map.Entry<Long, Bucket> oldest = buckets.firstEntry();
+        if (oldest == null || oldest.getKey() >= bucketKey(before)
+                || !buckets.remove(oldest.getKey(), oldest.getValue())) {
+            return -1;
+        }
+        return evicted(oldest.getKey(), oldest.getValue());
+    }
+
+    private long evicted(long key, Bucket bucket) {
+        evictedBefore.accumulateAndGet(key < Long.MAX_VALUE / BUCKET_NANOS ? (key + 1) * BUCKET_NANOS : Long.MAX_VALUE,
+                Math::max);
+        return close(bucket);
+    }
+
+    /**
+     * @return the entries stored in the seconds touching the range and, if expiry or eviction reached
+     * past the start of the range, the point up to which entries have been removed
+     */
+    RangeVersion rangeVersion(Instant startTime, Instant endTime) {
+        long[] count = new long[1];
+        long fromSecond = startTime.getEpochSecond();
+        long toSecond = endTime.getEpochSecond() + 1;
+        countByInterval(fromSecond, toSecond, Math.max(1, toSecond - fromSecond), count);
+        long removedBefore = Math.max(EpochNanos.of(lowWatermark.get()), evictedBefore.get());
+        return new RangeVersion(count[0], removedBefore > EpochNanos.of(startTime) ? removedBefore : Long.MIN_VALUE);
+    }
+
+    /**
+     * copies the range into the target; wide ranges are read by several {@link QueryExecutor} tasks at once,
+     * each taking a run of consecutive buckets
+     */
+    void findInRange(Instant startTime, Instant endTime, List<LogEntry> target) {
+        Instant from = latest(startTime, lowWatermark.get());
+        queryExecutor.readInOrder(bucketsBetween(from, endTime, SortOrder.ASC), Bucket::entryCount,
+                (bucket, part) -> bucket.log.findInRange(from, endTime, part), target);
+    }
+
+    void forEachInRange(Instant startTime, Instant endTime, Consumer<LogEntry> action) {
+        Instant from = latest(startTime, lowWatermark.get());
+        for (Bucket bucket : bucketsBetween(from, endTime, SortOrder.ASC)) {
+            bucket.log.forEachInRange(from, endTime, action);
+        }
+    }
+
+    LogPage<LogEntry> findPage(Instant startTime, Instant endTime, LogCursor after, int limit, SortOrder order) {
+        return page(startTime, endTime, after, limit, order,
+                (bucket, from, to, cursor, max) -> bucket.findPage(from, to, cursor, max, order));
+    }
+
+    LogPage<LogEntry> findPageMatching(Instant startTime, Instant endTime, LogFilter filter, LogCursor after,
+                                       int limit, SortOrder order) {
+        return page(startTime, endTime, after, limit, order,
+                (bucket, from, to, cursor, max) -> bucket.findPageMatching(from, to, filter, cursor, max, order));
+    }
+
+    private interface PageReader {
+        LogPage<LogEntry> read(ServiceLog bucket, Instant from, Instant to, LogCursor after, int limit);
+    }
+
+    /**
+     * fills a page from consecutive buckets in the given order, starting at the cursor's bucket
+     */
+    private LogPage<LogEntry> page(Instant startTime, Instant endTime, LogCursor after, int limit, SortOrder order,
+                                   PageReader reader) {
+        boolean ascending = order == SortOrder.ASC;
+        Instant from = latest(startTime, lowWatermark.get());
+        Instant to = endTime;
+        if (after != null) {
+            if (ascending) {
+                from = latest(from, after.getTimestamp());
+            } else if (after.getTimestamp().isBefore(to)) {
+                to = after.getTimestamp();
+            }
+        }
+        List<LogEntry> items = new ArrayList<>();
+        if (from.isAfter(to)) {
+            return new LogPage<>(items, null);
+        }
+
+        boolean full = false;
+        for (Bucket bucket : bucketsBetween(from, to, order)) {
+            if (full) {
+                // the page ended exactly at the end of the previous bucket; hand out a cursor only
+                // if anything follows. No entry shares the last timestamp, as all of them sit in the
+                // previous bucket, so an extreme sequence skips exactly what has been returned
+                if (!reader.read(bucket.log, from, to, after, 1).getItems().isEmpty()) {
+                    Instant last = items.get(items.size() - 1).getTimestamp();
+                    return new LogPage<>(items, new LogCursor(last, ascending ? Long.MAX_VALUE : Long.MIN_VALUE));
+                }
+                continue;
+            }
+            LogPage<LogEntry> page = reader.read(bucket.log, from, to, after, limit - items.size());
+            items.addAll(page.getItems());
+            if (page.getNextCursor() != null) {
+                return new LogPage<>(items, page.getNextCursor());
+            }
+            full = items.size() == limit;
+        }
+        return new LogPage<>(items, null);
+    }
+
+    private Collection<Bucket> bucketsBetween(Instant from, Instant to, SortOrder order) {
+        if (from.isAfter(to)) {
+            return List.of();
+        }
+        NavigableMap<Long, Bucket> range = buckets.subMap(bucketKey(from), true, bucketKey(to), true);
+        return order == SortOrder.ASC ? range.values() : range.descendingMap().values();
+    }
+
+    /**
+     * adds the number of entries stored in each second of [fromSecond, toSecond) to the slot of its
+     * interval, slot {@code i} covering the {@code intervalSeconds} starting at
+     * {@code fromSecond + i * intervalSeconds}. Seconds before the watermark are not counted.
+     */
+    void countByInterval(long fromSecond, long toSecond, long intervalSeconds, long[] target) {
+        long from = Math.max(fromSecond, lowWatermark.get().getEpochSecond());
+        if (from >= toSecond) {
+            return;
+        }
+        NavigableMap<Long, Bucket> range = buckets.subMap(Math.floorDiv(from, BUCKET_SECONDS), true,
+                Math.floorDiv(toSecond - 1, BUCKET_SECONDS), true);
+        range.forEach((key, bucket) -> {
+            long bucketStart = key * BUCKET_SECONDS;
+            long first = Math.max(from, bucketStart);
+            long last = Math.min(toSecond, bucketStart + BUCKET_SECONDS);
+            for (long second = first; second < last; second++) {
+                target[(int) ((second - fromSecond) / intervalSeconds)] +=
+                        bucket.counts.get((int) (second - bucketStart));
+            }
+        });
+    }
+
+    /**
+     * hides entries older than the threshold and drops every bucket that ends at or before it
+     *
+     * @return number of entries in the dropped buckets
+     */
+    long removeOlderThan(Instant threshold) {
+        lowWatermark.accumulateAndGet(threshold, TimeBucketedLog::latest);
+        long thresholdKey = bucketKey(threshold);
+        long dropped = 0;
+        for (Map.Entry<Long, Bucket> oldest = buckets.firstEntry();
+             oldest != null && oldest.getKey() < thresholdKey; oldest = buckets.firstEntry()) {
+            // an evicting writer may have taken the bucket first
+            if (buckets.remove(oldest.getKey(), oldest.getValue())) {
+                close(oldest.getValue());
+                dropped += oldest.getValue().entryCount();
+            }
+        }
+        return dropped;
+    }
+
+    /**
+     * compresses every bucket that ends at or before the threshold into a {@link SealedLog}. Sealed buckets
+     * are sealed again only if entries arrived for them since.
+     *
+     * @return number of buckets sealed
+     */
+    int sealOlderThan(Instant threshold) {
+        long thresholdKey = bucketKey(threshold);
+        if (thresholdKey <= FIRST_BUCKET_KEY + 1) {
+            return 0;
+        }
+        int sealed = 0;
+        for (Bucket bucket : buckets.subMap(FIRST_BUCKET_KEY, false, thresholdKey, false).values()) {
+            if (!(bucket.log instanceof SealedLog sealedLog && !sealedLog.hasLateEntries()) && seal(bucket)) {
+                sealed++;
+            }
+        }
+        return sealed;
+    }
+
+    private boolean seal(Bucket bucket) {
+        LockWait.SEAL.lock(bucket.sealLock);
+        try {
+            if (bucket.writers.get() >= 0) {
+                // send new writers to the lock, then wait for the ones still appending
+                bucket.writers.addAndGet(SEALED);
+                while (bucket.writers.get() != SEALED) {
+                    Thread.onSpinWait();
+                }
+            }
+            long before = bucket.bytes.get();
+            if (before < 0) {
+                return false; // dropped meanwhile
+            }
+            SealedLog sealedLog = SealedLog.seal(bucket.log, bucketFactory);
+            bucket.log = sealedLog;
+            account(bucket, sealedLog.bytes() - before);
+            return true;
+        } finally {
+            bucket.sealLock.unlock();
+        }
+    }
+
+    private static long bucketKey(Instant timestamp) {
+        return Math.floorDiv(EpochNanos.of(timestamp), BUCKET_NANOS);
+    }
+
+    private static int secondOfBucket(Instant timestamp) {
+        return Math.floorMod(timestamp.getEpochSecond(), BUCKET_SECONDS);
+    }
+
+    private static Instant latest(Instant a, Instant b) {
+        return a.isAfter(b) ? a : b;
+    }
+
+    private static class Bucket {
+        private volatile ServiceLog log;
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKET_SECONDS);
+        // writers appending without the lock, SEALED is added once the bucket is sealed
+        private final AtomicLong writers = new AtomicLong();
+        private final ReentrantLock sealLock = new ReentrantLock();
+
+        Bucket(ServiceLog log) {
+            this.log = log;
+        }
+
+        long entryCount() {
+            long count = 0;
+            for (int second = 0; second < BUCKET_SECONDS; second++) {
+                count += counts.get(second);
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,460 @@
+package com.example.log_aggregator.repository;
+
+import com.example.log_aggregator.model.LogEntry;
+import com.example.log_aggregator.model.LogLevel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only binary log of ingested entries, split into segment files.
+ * <p>
+ * Callers encode their records and queue them. Whichever caller then takes the write lock
+ * becomes the leader: it drains everything queued so far, writes it with one gathering write
+ * and forces the file according to the {@link FsyncPolicy}; callers whose records were written
+ * by another leader return as soon as they get the lock. Concurrent writers therefore share
+ * one write and one fsync (group commit) without a hand-off to a dedicated writer thread.
+ * <p>
+ * Record layout: {@code int length, int crc32, long epochSecond, int nano,
+ * int serviceLength, service bytes, int messageLength, message bytes} (UTF-8), optionally followed
+ * by {@code byte level} (0 for none) and the attributes in {@link AttributeCodec} form.
+ */
+class WriteAheadLog implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(WriteAheadLog.class);
+
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int HEADER_BYTES = 8;
+    private static final byte NO_LEVEL = 0;
+    private static final LogLevel[] LEVELS = LogLevel.values();
+    private static final int MAX_GROUP = 1024;
+
+    private final Path directory;
+    private final FsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalNanos;
+    private final long segmentBytes;
+
+    private final ConcurrentLinkedQueue<PendingWrite> queue = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<ClosedSegment> closedSegments = new ConcurrentLinkedQueue<>();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    // guarded by writeLock once started
+    private FileChannel active;
+    private Path activePath;
+    private long activeSize;
+    private Instant activeNewest = Instant.MIN;
+    private long nextSegmentId;
+    private boolean dirty;
+
+    WriteAheadLog(Path directory, FsyncPolicy fsyncPolicy, long fsyncIntervalMillis, long segmentBytes) throws IOException {
+        this.directory = directory;
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(fsyncIntervalMillis);
+        this.segmentBytes = segmentBytes;
+        Files.createDirectories(directory);
+        this.flusher = new Thread(this::runFlusher, "wal-flusher");
+        this.flusher.setDaemon(true);
+    }
+
+    /**
+     * reads every segment in order and passes the entries not older than {@code notBefore} to the sink,
+     * in batches. Segments are memory-mapped for the scan; a torn record at the end of a segment,
+     * left by a crash mid-write, is truncated away. Segments holding only older entries are deleted.
+     * Must be called once, before {@link #start()}.
+     */
+    void replay(Instant notBefore, int batchSize, Consumer<List<LogEntry>> sink) throws IOException {
+        List<Path> segments = listSegments();
+        List<LogEntry> batch = new ArrayList<>(batchSize);
+        for (Path segment : segments) {
+            Instant newest = Instant.MIN;
+            long validBytes;
+            try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                while (true) {
+                    int position = buffer.position();
+                    LogEntry logEntry = decode(buffer);
+                    if (logEntry == null) {
+                        buffer.position(position);
+                        break;
+                    }
+                    if (logEntry.getTimestamp().isAfter(newest)) {
+                        newest = logEntry.getTimestamp();
+                    }
+                    if (!logEntry.getTimestamp().isBefore(notBefore)) {
+                        batch.add(logEntry);
+                        if (batch.size() == batchSize) {
+                            sink.accept(batch);
+                            batch = new ArrayList<>(batchSize);
+                        }
+                    }
+                }
+                validBytes = buffer.position();
+                if (validBytes < channel.size()) {
+                    logger.warn("Truncating torn tail of {} at byte {}", segment, validBytes);
+                    channel.truncate(validBytes);
+                }
+            }
+
+            if (newest.isBefore(notBefore)) {
+                Files.delete(segment);
+            } else {
+                closedSegments.add(new ClosedSegment(segment, newest));
+            }
+            nextSegmentId = Math.max(nextSegmentId, segmentId(segment) + 1);
+        }
+        if (!batch.isEmpty()) {
+            sink.accept(batch);
+        }
+    }
+
+    void start() throws IOException {
+        openNewSegment();
+        if (fsyncPolicy == FsyncPolicy.INTERVAL) {
+            flusher.start();
+        }
+    }
+
+    /**
+     * durably appends the entries; returns once they have been written and, under
+     * {@link FsyncPolicy#BATCH}, forced to disk
+     */
+    void append(List<LogEntry> logEntries) {
+        Instant newest = Instant.MIN;
+        List<byte[]> records = new ArrayList<>(logEntries.size());
+        int totalBytes = 0;
+        for (LogEntry logEntry : logEntries) {
+            byte[] record = encode(logEntry);
+            records.add(record);
+            totalBytes += record.length;
+            if (logEntry.getTimestamp().isAfter(newest)) {
+                newest = logEntry.getTimestamp();
+            }
+        }
+        ByteBuffer data = ByteBuffer.allocate(totalBytes);
+        records.forEach(data::put);
+        data.flip();
+
+        if (!running) {
+            throw new IllegalStateException("Write-ahead log is closed");
+        }
+        PendingWrite pending = new PendingWrite(data, newest);
+        queue.add(pending);
+        LockWait.WAL.lock(writeLock);
+        try {
+            if (!pending.done.isDone()) {
+                writeQueued();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        try {
+            pending.done.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the write-ahead log", e);
+        } catch (ExecutionException e) {
+            throw new UncheckedIOException("Write-ahead log append failed", (IOException) e.getCause());
+        }
+    }
+
+    /**
+     * deletes closed segments whose newest entry is older than the threshold
+     */
+    void removeOlderThan(Instant threshold) {
+        closedSegments.removeIf(segment -> {
+            if (!segment.newest.isBefore(threshold)) {
+                return false;
+            }
+            try {
+                Files.deleteIfExists(segment.path);
+                return true;
+            } catch (IOException e) {
+                logger.warn("Could not delete expired segment {}: {}", segment.path, e.getMessage());
+                return false;
+            }
+        });
+    }
+
+    int segmentCount() {
+        return closedSegments.size() + 1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        flusher.interrupt();
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writeLock.lock();
+        try {
+            // anything that raced past the running check is failed rather than left waiting
+            IOException closed = new IOException("Write-ahead log is closed");
+            queue.forEach(pending -> pending.done.completeExceptionally(closed));
+            queue.clear();
+            if (active != null) {
+                if (fsyncPolicy != FsyncPolicy.NEVER) {
+                    active.force(false);
+                }
+                active.close();
+                active = null;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * writes everything queued so far, in queue order; caller holds the write lock
+     */
+    private void writeQueued() {
+        List<PendingWrite> group = new ArrayList<>();
+        PendingWrite pending;
+        while ((pending = queue.poll()) != null) {
+            group.add(pending);
+            if (group.size() == MAX_GROUP) {
+                writeGroupOrFail(group);
+                group.clear();
+            }
+        }
+        writeGroupOrFail(group);
+    }
+
+    private void writeGroupOrFail(List<PendingWrite> group) {
+        if (group.isEmpty()) {
+            return;
+        }
+        try {
+            if (active == null) {
+                throw new IOException("Write-ahead log is closed");
+            }
+            writeGroup(group);
+        } catch (IOException e) {
+            logger.error("Write-ahead log write failed", e);
+            group.forEach(pending -> pending.done.completeExceptionally(e));
+        }
+    }
+
+    /**
+     * writes the group with one gathering write per segment it lands in
+     */
+    private void writeGroup(List<PendingWrite> group) throws IOException {
+        List<ByteBuffer> pendingData = new ArrayList<>(group.size());
+        long pendingBytes = 0;
+        for (PendingWrite pending : group) {
+            long size = pending.data.remaining();
+            if (activeSize + pendingBytes > 0 && activeSize + pendingBytes + size > segmentBytes) {
+                writeFully(pendingData, pendingBytes);
+                pendingData.clear();
+                pendingBytes = 0;
+                rollSegment();
+            }
+            pendingData.add(pending.data);
+            pendingBytes += size;
+            if (pending.newest.isAfter(activeNewest)) {
+                activeNewest = pending.newest;
+            }
+        }
+        writeFully(pendingData, pendingBytes);
+
+        dirty = true;
+        if (fsyncPolicy == FsyncPolicy.BATCH) {
+            active.force(false);
+            dirty = false;
+        }
+        group.forEach(pending -> pending.done.complete(null));
+    }
+
+    private void writeFully(List<ByteBuffer> data, long bytes) throws IOException {
+        ByteBuffer[] buffers = data.toArray(new ByteBuffer[0]);
+        long written = 0;
+        while (written < bytes) {
+            written += active.write(buffers);
+        }
+        activeSize += bytes;
+    }
+
+    private void runFlusher() {
+        while (running) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(fsyncIntervalNanos);
+            } catch (InterruptedException e) {
+                return;
+            }
+            FileChannel channel;
+            LockWait.WAL.lock(writeLock);
+            try {
+                channel = dirty ? active : null;
+                dirty = false;
+            } finally {
+                writeLock.unlock();
+            }
+            // forced outside the lock so writers are not stalled behind the disk
+            try {
+                if (channel != null) {
+                    channel.force(false);
+                }
+            } catch (ClosedChannelException e) {
+                // rolled or closed meanwhile, both force the segment themselves
+            } catch (IOException e) {
+                logger.error("Write-ahead log fsync failed", e);
+            }
+        }
+    }
+
+    private void rollSegment() throws IOException {
+        if (fsyncPolicy != FsyncPolicy.NEVER) {
+            active.force(false);
+        }
+        active.close();
+        closedSegments.add(new ClosedSegment(activePath, activeNewest));
+        openNewSegment();
+    }
+
+    private void openNewSegment() throws IOException {
+        activePath = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, nextSegmentId++, SEGMENT_SUFFIX));
+        active = FileChannel.open(activePath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        activeSize = 0;
+        activeNewest = Instant.MIN;
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static long segmentId(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * timestamp, service and message, then the level and attributes if the entry has any;
+     * records written before levels existed simply end after the message
+     */
+    static byte[] encode(LogEntry logEntry) {
+        byte[] service = logEntry.getServiceName().getBytes(StandardCharsets.UTF_8);
+        byte[] message = logEntry.getMessage().getBytes(StandardCharsets.UTF_8);
+        byte[] attributes = logEntry.getAttributes() != null ? AttributeCodec.encode(logEntry.getAttributes()) : null;
+        boolean extended = logEntry.getLevel() != null || attributes != null;
+        int payloadLength = Long.BYTES + Integer.BYTES * 3 + service.length + message.length
+                + (extended ? 1 : 0) + (attributes != null ? attributes.length : 0);
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + payloadLength);
+        buffer.putInt(payloadLength);
+        buffer.putInt(0); // crc, filled in below
+        buffer.putLong(logEntry.getTimestamp().getEpochSecond());
+        buffer.putInt(logEntry.getTimestamp().getNano());
+        buffer.putInt(service.length).put(service);
+        buffer.putInt(message.length).put(message);
+        if (extended) {
+            buffer.put(logEntry.getLevel() != null ? (byte) (logEntry.getLevel().ordinal() + 1) : NO_LEVEL);
+        }
+        if (attributes != null) {
+            buffer.put(attributes);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), HEADER_BYTES, payloadLength);
+        buffer.putInt(Integer.BYTES, (int) crc.getValue());
+        return buffer.array();
+    }
+
+    /**
+     * @return the next record, or null if the buffer ends or the record is incomplete or corrupt
+     */
+    static LogEntry decode(ByteBuffer buffer) {
+        if (buffer.remaining() < HEADER_BYTES) {
+            return null;
+        }
+        int payloadLength = buffer.getInt();
+        int expectedCrc = buffer.getInt();
+        if (payloadLength < Long.BYTES + Integer.BYTES * 3 || payloadLength > buffer.remaining()) {
+            return null;
+        }
+
+        byte[] payload = new byte[payloadLength];
+        buffer.get(payload);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        if ((int) crc.getValue() != expectedCrc) {
+            return null;
+        }
+
+        ByteBuffer record = ByteBuffer.wrap(payload);
+        Instant timestamp = Instant.ofEpochSecond(record.getLong(), record.getInt());
+        String service = readString(record);
+        String message = readString(record);
+        LogLevel level = null;
+        Map<String, String> attributes = null;
+        if (record.hasRemaining()) {
+            byte levelByte = record.get();
+            level = levelByte == NO_LEVEL ? null : LEVELS[levelByte - 1];
+        }
+        if (record.hasRemaining()) {
+            attributes = AttributeCodec.decode(record);
+        }
+        return new LogEntry(service, timestamp, message, level, attributes);
+    }
+
+    private static String readString(ByteBuffer record) {
+        int length = record.getInt();
+        String value = new String(record.array(), record.position(), length, StandardCharsets.UTF_8);
+        record.position(record.position() + length);
+        return value;
+    }
+
+    private static class PendingWrite {
+        private final ByteBuffer data;
+        private final Instant newest;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        PendingWrite(ByteBuffer data, Instant newest) {
+            this.data = data;
+            this.newest = newest;
+        }
+    }
+
+    private static class ClosedSegment {
+        private final Path path;
+        private final Instant newest;
+
+        ClosedSegment(Path path, Instant newest) {
+            this.path = path;
+            this.newest = newest;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.log_aggregator.service;
+
+import com.example.log_aggregator.model.IngestMetrics;
+import com.example.log_aggregator.model.LogEntry;
+import com.example.log_aggregator.replication.ReplicationService;
+import com.example.log_aggregator.repository.LogRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Decouples ingest requests from the repository: validated entries are published to a bounded
+ * {@link IngestRingBuffer} and a small pool of consumer threads drains it in batches with
+ * {@link LogRepository#saveAll}. When the buffer is full the {@link OverflowPolicy} decides
+ * whether the caller waits, is rejected or the entry is dropped.
+ * Enabled with {@code aggregator.ingest.async.enabled=true}.
+ */
+@Component
+@ConditionalOnProperty(name = "aggregator.ingest.async.enabled", havingValue = "true")
+public class AsyncIngestPipeline {
+    private static final Logger logger = LoggerFactory.getLogger(AsyncIngestPipeline.class);
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+    private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final LogRepository logRepository;
+    private final LogTailBroadcaster tailBroadcaster;
+    private final ReplicationService replicationService;
+    private final IngestRingBuffer buffer;
+    private final OverflowPolicy overflowPolicy;
+    private final int batchSize;
+    private final int retryAfterSeconds;
+    private final List<Thread> consumers = new ArrayList<>();
+    private volatile boolean running = true;
+
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong drained = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong drainedBatches = new AtomicLong();
+    private final AtomicLong totalLatencyNanos = new AtomicLong();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    @Autowired
+    public AsyncIngestPipeline(LogRepository logRepository,
+                               @Value("${aggregator.ingest.async.capacity:65536}") int capacity,
+                               @Value("${aggregator.ingest.async.consumers:2}") int consumerCount,
+                               @Value("${aggregator.ingest.async.batch-size:512}") int batchSize,
+                               @Value("${aggregator.ingest.async.overflow:block}") String overflowPolicy,
+                               @Value("${aggregator.ingest.async.retry-after-seconds:1}") int retryAfterSeconds,
+                               @Nullable LogTailBroadcaster tailBroadcaster,
+                               @Nullable ReplicationService replicationService) {
+        this(logRepository, capacity, consumerCount, batchSize, OverflowPolicy.fromString(overflowPolicy),
+                retryAfterSeconds, tailBroadcaster, replicationService);
+    }
+
+    AsyncIngestPipeline(LogRepository logRepository, int capacity, int consumerCount, int batchSize,
+                        OverflowPolicy overflowPolicy, int retryAfterSeconds) {
+        this(logRepository, capacity, consumerCount, batchSize, overflowPolicy, retryAfterSeconds, null, null);
+    }
+
+    AsyncIngestPipeline(LogRepository logRepository, int capacity, int consumerCount, int batchSize,
+                        OverflowPolicy overflowPolicy, int retryAfterSeconds, LogTailBroadcaster tailBroadcaster,
+                        ReplicationService replicationService) {
+        if (consumerCount < 1) {
+            throw new IllegalArgumentException("At least one ingest consumer is required");
+        }
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Ingest batch size must be positive");
+        }
+        this.logRepository = logRepository;
+        this.tailBroadcaster = tailBroadcaster;
+        this.replicationService = replicationService;
+        this.buffer = new IngestRingBuffer(capacity);
+        this.overflowPolicy = overflowPolicy;
+        this.batchSize = batchSize;
+        this.retryAfterSeconds = retryAfterSeconds;
+
+        for (int i = 0; i < consumerCount; i++) {
+            Thread consumer = new Thread(this::runConsumer, "ingest-consumer-" + i);
+            consumer.setDaemon(true);
+            consumers.add(consumer);
+            consumer.start();
+        }
+    }
+
+    /**
+     * hands a validated entry to the consumers
+     *
+     * @throws IngestRejectedException if the buffer is full and the policy is {@link OverflowPolicy#REJECT}
+     */
+    public void publish(LogEntry logEntry) {
+        if (!running) {
+            throw new IllegalStateException("Ingest pipeline is shut down");
+        }
+        if (buffer.offer(logEntry)) {
+            published.incrementAndGet();
+            return;
+        }
+
+        switch (overflowPolicy) {
+            case BLOCK -> {
+                while (!buffer.offer(logEntry)) {
+                    if (!running) {
+                        throw new IllegalStateException("Ingest pipeline is shut down");
+                    }
+                    LockSupport.parkNanos(FULL_PARK_NANOS);
+                }
+                published.incrementAndGet();
+            }
+            case REJECT -> {
+                rejected.incrementAndGet();
+                throw new IngestRejectedException(retryAfterSeconds);
+            }
+            case DROP -> dropped.incrementAndGet();
+        }
+    }
+
+    public IngestMetrics metrics() {
+        long batches = drainedBatches.get();
+        double averageLatency = batches == 0 ? 0 : (double) totalLatencyNanos.get() / batches;
+        return new IngestMetrics(buffer.size(), buffer.capacity(), overflowPolicy.name().toLowerCase(),
+                published.get(), drained.get(), dropped.get(), rejected.get(), failed.get(),
+                averageLatency / 1_000_000, maxLatencyNanos.get() / 1_000_000.0);
+    }
+
+    /**
+     * stops accepting entries, lets the consumers finish and stores whatever is still buffered
+     */
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        for (Thread consumer : consumers) {
+            LockSupport.unpark(consumer);
+            try {
+                consumer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        List<LogEntry> batch = new ArrayList<>(batchSize);
+        while (drainBatch(batch)) {
+            batch.clear();
+        }
+    }
+
+    private void runConsumer() {
+        List<LogEntry> batch = new ArrayList<>(batchSize);
+        while (running) {
+            if (drainBatch(batch)) {
+                batch.clear();
+            } else {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    /**
+     * @return false if the buffer was empty
+     */
+    private boolean drainBatch(List<LogEntry> batch) {
+        long oldestPublished = buffer.drainTo(batch, batchSize);
+        if (batch.isEmpty()) {
+            return false;
+        }
+        try {
+            logRepository.saveAll(batch);
+            drained.addAndGet(batch.size());
+            if (tailBroadcaster != null) {
+                tailBroadcaster.publishAll(batch);
+            }
+            if (replicationService != null) {
+                replicationService.append(batch);
+            }
+        } catch (RuntimeException e) {
+            failed.addAndGet(batch.size());
+            logger.error("Failed to store {} buffered log entries", batch.size(), e);
+        }
+
+        long latency = System.nanoTime() - oldestPublished;
+        drainedBatches.incrementAndGet();
+        totalLatencyNanos.addAndGet(latency);
+        maxLatencyNanos.accumulateAndGet(latency, Math::max);
+        return true;
+    }
+}
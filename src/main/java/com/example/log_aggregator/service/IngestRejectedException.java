@@ -0,0 +1,24 @@
+package com.example.log_aggregator.service;
+
+/**
+ * Thrown when the ingest buffer is full and the overflow policy is {@link OverflowPolicy#REJECT},
+ * or when the log's service is over its memory budget and the memory policy is reject.
+ */
+public class IngestRejectedException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final int retryAfterSeconds;
+
+    public IngestRejectedException(int retryAfterSeconds) {
+        this("Ingest buffer is full, retry later", retryAfterSeconds);
+    }
+
+    public IngestRejectedException(String message, int retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.log_aggregator.service;
+
+import com.example.log_aggregator.model.LogEntry;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free ring buffer of log entries for any number of producers and consumers.
+ * <p>
+ * Every slot carries a sequence number that says whose turn it is: a producer may fill slot
+ * {@code i} when its sequence equals the producer's claim position, a consumer may take it when
+ * the sequence is one past that. Producers and consumers each claim positions with a CAS on
+ * their own counter, so neither side ever takes a lock. Capacity is rounded up to a power of two,
+ * and is at least two.
+ */
+class IngestRingBuffer {
+    private final int mask;
+    private final LogEntry[] entries;
+    private final long[] publishedNanos;
+    private final AtomicLongArray sequences;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    IngestRingBuffer(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Ingest buffer capacity must be between 1 and 2^30");
+        }
+        // with a single slot, a published and a released slot would carry the same sequence
+        int size = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = size - 1;
+        this.entries = new LogEntry[size];
+        this.publishedNanos = new long[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    int capacity() {
+        return entries.length;
+    }
+
+    /**
+     * @return false, without waiting, if the buffer is full
+     */
+    boolean offer(LogEntry logEntry) {
+        while (true) {
+            long position = tail.get();
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    entries[index] = logEntry;
+                    publishedNanos[index] = System.nanoTime();
+                    // the volatile write publishes the plain writes above to the consumer
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+            } else if (difference < 0) {
+                return false;
+            }
+            // another producer claimed this position first, retry with the new tail
+        }
+    }
+
+    /**
+     * moves up to {@code maxEntries} entries into the target list, in publish order
+     *
+     * @return publish time ({@link System#nanoTime()}) of the oldest entry taken, or -1 if none
+     */
+    long drainTo(List<LogEntry> target, int maxEntries) {
+        long oldest = -1;
+        for (int taken = 0; taken < maxEntries; taken++) {
+            long position;
+            int index;
+            while (true) {
+                position = head.get();
+                index = (int) position & mask;
+                long difference = sequences.get(index) - (position + 1);
+                if (difference == 0) {
+                    if (head.compareAndSet(position, position + 1)) {
+                        break;
+                    }
+                } else if (difference < 0) {
+                    return oldest;
+                }
+            }
+            target.add(entries[index]);
+            if (oldest == -1) {
+                oldest = publishedNanos[index];
+            }
+            entries[index] = null;
+            // hand the slot back to producers for the next lap
+            sequences.set(index, position + mask + 1);
+        }
+        return oldest;
+    }
+
+    /**
+     * @return approximate number of entries waiting; exact when producers and consumers are idle
+     */
+    int size() {
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(size, entries.length));
+    }
+}
@@ -0,0 +1,296 @@
+package com.example.log_aggregator.service;
+
+import com.example.log_aggregator.model.LogEntry;
+import com.example.log_aggregator.replication.ReplicationService;
+import com.example.log_aggregator.repository.LockWait;
+import com.example.log_aggregator.repository.LogRepository;
+import com.example.log_aggregator.repository.ServiceRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Micrometer meters of ingest, queries, expiry and the store, published by Actuator at
+ * {@code /actuator/prometheus}. Disabled with {@code aggregator.metrics.enabled=false}.
+ * <p>
+ * The ingest path pays one {@link LongAdder} increment per entry: per-service counts are kept in an array
+ * indexed by {@link ServiceRegistry} ID, which the registry keeps dense and bounded, and are read by function
+ * counters at scrape time rather than looked up by tag on every entry. Timing a call takes two clock reads
+ * and a timer update, several times what counting costs, so single-entry saves are timed one in
+ * {@code aggregator.metrics.ingest-sample-interval}, at random; batches, queries and expiry passes are all
+ * timed. Entries and bytes per service are gauges read from the repository's counters when scraped.
+ * Entries of services that were never registered, invalid ones mostly, are counted under
+ * {@value #UNREGISTERED}. When a released ID is given to another service, the meters of the old one are
+ * removed, so the meter count stays bounded by the services cap as well.
+ * <p>
+ * With replication enabled, the replication lag of {@code GET /logs/replication} is published as two gauges
+ * read from {@link ReplicationService#status()} when scraped: on a follower how far it is behind its leader,
+ * on the leader how far its slowest live follower is.
+ */
+@Component
+@ConditionalOnProperty(name = "aggregator.metrics.enabled", havingValue = "true", matchIfMissing = true)
+public class LogMetrics {
+    static final String UNREGISTERED = "(unregistered)";
+
+    private static final Duration MIN_LATENCY = Duration.ofNanos(1_000);
+    private static final Duration MAX_LATENCY = Duration.ofSeconds(10);
+
+    /**
+     * the ingest calls, each timed separately
+     */
+    enum Ingest {
+        SAVE, SUBMIT, BATCH
+    }
+
+    /**
+     * queries, a cached result told apart from one read from the store, and pages of one service with and
+     * without a filter and of several services
+     */
+    enum Query {
+        CACHED, LIST, PAGE, FILTER, SERVICES
+    }
+
+    private final MeterRegistry meterRegistry;
+    private final LogRepository logRepository;
+    private final ServiceRegistry serviceRegistry;
+    private final int sampleInterval;
+    private final Timer[] ingestTimers = new Timer[Ingest.values().length];
+    private final Timer[] queryTimers = new Timer[Query.values().length];
+    private final Timer expiryTimer;
+    private final Counter expiredEntries;
+    private final ServiceMeters unregistered;
+    private final ReentrantLock addLock = new ReentrantLock();
+    private volatile AtomicReferenceArray<ServiceMeters> services = new AtomicReferenceArray<>(16);
+
+    public LogMetrics(MeterRegistry meterRegistry, LogRepository logRepository, ServiceRegistry serviceRegistry) {
+        this(meterRegistry, logRepository, serviceRegistry, 1);
+    }
+
+    public LogMetrics(MeterRegistry meterRegistry, LogRepository logRepository, ServiceRegistry serviceRegistry,
+                      int sampleInterval) {
+        this(meterRegistry, logRepository, serviceRegistry, sampleInterval, null);
+    }
+
+    @Autowired
+    public LogMetrics(MeterRegistry meterRegistry, LogRepository logRepository, ServiceRegistry serviceRegistry,
+                      @Value("${aggregator.metrics.ingest-sample-interval:16}") int sampleInterval,
+                      @Nullable ReplicationService replicationService) {
+        if (sampleInterval < 1) {
+            throw new IllegalArgumentException("Ingest sample interval must be positive");
+        }
+        this.meterRegistry = meterRegistry;
+        this.logRepository = logRepository;
+        this.serviceRegistry = serviceRegistry;
+        this.sampleInterval = sampleInterval;
+        for (Ingest ingest : Ingest.values()) {
+            ingestTimers[ingest.ordinal()] = latency("aggregator.ingest", "Time taken to validate and store logs")
+                    .tag("operation", ingest.name().toLowerCase())
+                    .register(meterRegistry);
+        }
+        for (Query query : Query.values()) {
+            queryTimers[query.ordinal()] = latency("aggregator.query", "Time taken to answer log queries")
+                    .tag("type", query.name().toLowerCase())
+                    .register(meterRegistry);
+        }
+        expiryTimer = Timer.builder("aggregator.expiry")
+                .description("Time taken by a pass of the expired log reaper")
+                .register(meterRegistry);
+        expiredEntries = Counter.builder("aggregator.expiry.removed")
+                .description("Log entries removed by expiry")
+                .register(meterRegistry);
+        unregistered = new ServiceMeters(UNREGISTERED, false);
+        for (LockWait lockWait : LockWait.all()) {
+            FunctionTimer.builder("aggregator.repository.lock.wait", lockWait, LockWait::waits, LockWait::waitNanos,
+                            TimeUnit.NANOSECONDS)
+                    .description("Time spent waiting for contended store locks")
+                    .tag("lock", lockWait.name())
+                    .register(meterRegistry);
+        }
+        if (replicationService != null) {
+            Gauge.builder("aggregator.replication.lag", replicationService,
+                            replication -> replication.status().getLagEntries())
+                    .description("Entries the follower is behind its leader, or the slowest live follower the leader")
+                    .baseUnit("entries")
+                    .register(meterRegistry);
+            TimeGauge.builder("aggregator.replication.lag.time", replicationService, TimeUnit.MILLISECONDS,
+                            replication -> replication.status().getLagMillis())
+                    .description("How long the follower has been behind its leader")
+                    .register(meterRegistry);
+        }
+        registerServices();
+    }
+
+    private static Timer.Builder latency(String name, String description) {
+        return Timer.builder(name)
+                .description(description)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(MIN_LATENCY)
+                .maximumExpectedValue(MAX_LATENCY);
+    }
+
+    /**
+     * @return whether to time this single-entry save
+     */
+    boolean sampleIngest() {
+        return sampleInterval == 1 || ThreadLocalRandom.current().nextInt(sampleInterval) == 0;
+    }
+
+    void recordIngest(Ingest ingest, long startNanos) {
+        ingestTimers[ingest.ordinal()].record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    void recordQuery(Query query, long startNanos) {
+        queryTimers[query.ordinal()].record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    void recordExpiry(long removed, long startNanos) {
+        expiryTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        expiredEntries.increment(removed);
+    }
+
+    void accepted(LogEntry logEntry) {
+        meters(logEntry).accepted.increment();
+    }
+
+    void accepted(List<LogEntry> logEntries) {
+        for (LogEntry logEntry : logEntries) {
+            meters(logEntry).accepted.increment();
+        }
+    }
+
+    void rejected(LogEntry logEntry) {
+        meters(logEntry).rejected.increment();
+    }
+
+    void rejected(List<LogEntry> logEntries) {
+        for (LogEntry logEntry : logEntries) {
+            meters(logEntry).rejected.increment();
+        }
+    }
+
+    /**
+     * registers the meters of services that were registered without passing through ingest, replicated or
+     * restored from the write-ahead log; called by the reaper, so they show up within one of its intervals
+     */
+    void registerServices() {
+        int limit = serviceRegistry.idLimit();
+        AtomicReferenceArray<ServiceMeters> current = services;
+        for (int id = 0; id < limit; id++) {
+            ServiceMeters meters = id < current.length() ? current.get(id) : null;
+            String name = serviceRegistry.name(id);
+            if (name != null && (meters == null || !meters.serviceName.equals(name))) {
+                meters(id);
+            }
+        }
+    }
+
+    private ServiceMeters meters(LogEntry logEntry) {
+        if (logEntry == null) {
+            return unregistered;
+        }
+        // the ID an entry carries was set by the registry, an entry rejected before that is looked up by name
+        int id = logEntry.getServiceId();
+        if (id < 0) {
+            id = serviceRegistry.find(logEntry.getServiceName());
+            if (id < 0) {
+                return unregistered;
+            }
+        }
+        AtomicReferenceArray<ServiceMeters> current = services;
+        ServiceMeters meters = id < current.length() ? current.get(id) : null;
+        // the ID may have been released and given to another service since the entry got it
+        return meters != null && meters.serviceName.equals(logEntry.getServiceName()) ? meters : meters(id);
+    }
+
+    /**
+     * adds the meters of every service up to the ID, once per new service, and replaces those of a service
+     * whose ID went to another
+     */
+    private ServiceMeters meters(int id) {
+        if (id >= serviceRegistry.idLimit() || serviceRegistry.name(id) == null) {
+            return unregistered; // an ID of another registry, or released
+        }
+        addLock.lock();
+        try {
+            AtomicReferenceArray<ServiceMeters> current = services;
+            if (id >= current.length()) {
+                AtomicReferenceArray<ServiceMeters> grown = new AtomicReferenceArray<>(Math.max(id + 1,
+                        current.length() * 2));
+                for (int i = 0; i < current.length(); i++) {
+                    grown.set(i, current.get(i));
+                }
+                services = grown;
+                current = grown;
+            }
+            for (int i = 0; i <= id; i++) {
+                ServiceMeters meters = current.get(i);
+                String name = serviceRegistry.name(i);
+                if (name != null && (meters == null || !meters.serviceName.equals(name))) {
+                    if (meters != null) {
+                        meters.remove();
+                    }
+                    current.set(i, new ServiceMeters(name, true));
+                }
+            }
+            return current.get(id);
+        } finally {
+            addLock.unlock();
+        }
+    }
+
+    private final class ServiceMeters {
+        private final String serviceName;
+        private final LongAdder accepted = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final List<Meter> meters = new ArrayList<>();
+
+        ServiceMeters(String serviceName, boolean stored) {
+            this.serviceName = serviceName;
+            meters.add(FunctionCounter.builder("aggregator.ingest.accepted", accepted, LongAdder::sum)
+                    .description("Log entries accepted for storage")
+                    .tag("service", serviceName)
+                    .register(meterRegistry));
+            meters.add(FunctionCounter.builder("aggregator.ingest.rejected", rejected, LongAdder::sum)
+                    .description("Log entries rejected as invalid, over the memory budget or the ingest buffer, "
+                            + "or while followers lag")
+                    .tag("service", serviceName)
+                    .register(meterRegistry));
+            if (stored) {
+                meters.add(Gauge.builder("aggregator.store.entries", logRepository,
+                                repository -> repository.countEntries(serviceName))
+                        .description("Log entries held, expired ones included until their time bucket is dropped")
+                        .tag("service", serviceName)
+                        .register(meterRegistry));
+                meters.add(Gauge.builder("aggregator.store.bytes", logRepository,
+                                repository -> repository.usedBytes(serviceName))
+                        .description("Estimated heap bytes retained by the logs")
+                        .tag("service", serviceName)
+                        .baseUnit("bytes")
+                        .register(meterRegistry));
+            }
+        }
+
+        void remove() {
+            meters.forEach(meterRegistry::remove);
+        }
+    }
+}
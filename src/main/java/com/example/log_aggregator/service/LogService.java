@@ -1,38 +1,322 @@
 package com.example.log_aggregator.service;
 
+import com.example.log_aggregator.model.BatchIngestResponse;
+import com.example.log_aggregator.model.IngestMetrics;
+import com.example.log_aggregator.model.LogCursor;
 import com.example.log_aggregator.model.LogEntry;
+import com.example.log_aggregator.model.LogFilter;
+import com.example.log_aggregator.model.LogPage;
 import com.example.log_aggregator.model.LogResponse;
+import com.example.log_aggregator.model.LogStats;
+import com.example.log_aggregator.model.MemoryUsage;
+import com.example.log_aggregator.model.QueryCacheStats;
+import com.example.log_aggregator.model.ServiceVolume;
+import com.example.log_aggregator.model.SortOrder;
+import com.example.log_aggregator.replication.ReplicationService;
 import com.example.log_aggregator.repository.LogRepository;
+import com.example.log_aggregator.repository.MemoryBudgetExceededException;
+import com.example.log_aggregator.repository.RangeVersion;
+import com.example.log_aggregator.repository.ServiceRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.lang.Nullable;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 @Service
 public class LogService {
     private static final Logger logger = LoggerFactory.getLogger(LogService.class);
+    static final int MAX_ATTRIBUTES = 16;
+    static final int MAX_ATTRIBUTE_KEY_LENGTH = 64;
+    static final int MAX_ATTRIBUTE_VALUE_LENGTH = 256;
 
     private final LogRepository logRepository;
+    private final AsyncIngestPipeline ingestPipeline;
+    private final LogTailBroadcaster tailBroadcaster;
+    private final ServiceRegistry serviceRegistry;
+    private final QueryCache queryCache;
+    // null unless replication is enabled
+    private final ReplicationService replicationService;
+    // null if metrics are disabled
+    private final LogMetrics metrics;
 
     public LogService(LogRepository logRepository) {
+        this(logRepository, null);
+    }
+
+    public LogService(LogRepository logRepository, @Nullable AsyncIngestPipeline ingestPipeline) {
+        this(logRepository, ingestPipeline, null);
+    }
+
+    public LogService(LogRepository logRepository, @Nullable AsyncIngestPipeline ingestPipeline,
+                      @Nullable LogTailBroadcaster tailBroadcaster) {
+        this(logRepository, ingestPipeline, tailBroadcaster, new ServiceRegistry());
+    }
+
+    public LogService(LogRepository logRepository, @Nullable AsyncIngestPipeline ingestPipeline,
+                      @Nullable LogTailBroadcaster tailBroadcaster, ServiceRegistry serviceRegistry) {
+        this(logRepository, ingestPipeline, tailBroadcaster, serviceRegistry, new QueryCache());
+    }
+
+    public LogService(LogRepository logRepository, @Nullable AsyncIngestPipeline ingestPipeline,
+                      @Nullable LogTailBroadcaster tailBroadcaster, ServiceRegistry serviceRegistry,
+                      QueryCache queryCache) {
+        this(logRepository, ingestPipeline, tailBroadcaster, serviceRegistry, queryCache, null);
+    }
+
+    public LogService(LogRepository logRepository, @Nullable AsyncIngestPipeline ingestPipeline,
+                      @Nullable LogTailBroadcaster tailBroadcaster, ServiceRegistry serviceRegistry,
+                      QueryCache queryCache, @Nullable ReplicationService replicationService) {
+        this(logRepository, ingestPipeline, tailBroadcaster, serviceRegistry, queryCache, replicationService, null);
+    }
+
+    @Autowired
+    public LogService(LogRepository logRepository, @Nullable AsyncIngestPipeline ingestPipeline,
+                      @Nullable LogTailBroadcaster tailBroadcaster, ServiceRegistry serviceRegistry,
+                      QueryCache queryCache, @Nullable ReplicationService replicationService,
+                      @Nullable LogMetrics metrics) {
         this.logRepository = logRepository;
+        this.ingestPipeline = ingestPipeline;
+        this.tailBroadcaster = tailBroadcaster;
+        this.serviceRegistry = serviceRegistry;
+        this.queryCache = queryCache;
+        this.replicationService = replicationService;
+        this.metrics = metrics;
     }
 
     /**
      * validate and save a log entry
      *
      * @param logEntry the log entry to save
+     * @throws IngestRejectedException if the service is over its memory budget and the policy is reject, or
+     *                                 followers are too far behind
      */
     public void saveLog(LogEntry logEntry) {
+        if (metrics == null) {
+            store(logEntry);
+            return;
+        }
+        boolean timed = metrics.sampleIngest();
+        long start = timed ? System.nanoTime() : 0;
+        try {
+            store(logEntry);
+            metrics.accepted(logEntry);
+        } catch (IllegalArgumentException | IngestRejectedException e) {
+            metrics.rejected(logEntry);
+            throw e;
+        } finally {
+            if (timed) {
+                metrics.recordIngest(LogMetrics.Ingest.SAVE, start);
+            }
+        }
+    }
+
+    private void store(LogEntry logEntry) {
+        validate(logEntry);
+        if (replicationService != null) {
+            replicationService.checkLag(1);
+        }
+
+        logger.debug("Saving log entry: {}", logEntry);
+        try {
+            logRepository.save(logEntry);
+        } catch (MemoryBudgetExceededException e) {
+            throw rejected(e);
+        }
+        if (tailBroadcaster != null) {
+            tailBroadcaster.publish(logEntry);
+        }
+        if (replicationService != null) {
+            replicationService.append(List.of(logEntry));
+        }
+    }
+
+    /**
+     * @return true if single log entries are ingested through the asynchronous pipeline
+     */
+    public boolean isAsyncIngest() {
+        return ingestPipeline != null;
+    }
+
+    /**
+     * validate a log entry and hand it to the asynchronous pipeline, or save it directly when
+     * asynchronous ingestion is disabled
+     *
+     * @param logEntry the log entry to save
+     * @throws IngestRejectedException if the ingest buffer is full and the overflow policy is reject,
+     *                                 the service is over its memory budget and the policy is reject, or
+     *                                 followers are too far behind
+     */
+    public void submitLog(LogEntry logEntry) {
+        if (metrics == null) {
+            submit(logEntry);
+            return;
+        }
+        boolean timed = metrics.sampleIngest();
+        long start = timed ? System.nanoTime() : 0;
+        try {
+            submit(logEntry);
+            metrics.accepted(logEntry);
+        } catch (IllegalArgumentException | IngestRejectedException e) {
+            metrics.rejected(logEntry);
+            throw e;
+        } finally {
+            if (timed) {
+                metrics.recordIngest(LogMetrics.Ingest.SUBMIT, start);
+            }
+        }
+    }
+
+    private void submit(LogEntry logEntry) {
+        validate(logEntry);
+        if (replicationService != null) {
+            replicationService.checkLag(1);
+        }
+
+        try {
+            if (ingestPipeline == null) {
+                logRepository.save(logEntry);
+                if (tailBroadcaster != null) {
+                    tailBroadcaster.publish(logEntry);
+                }
+                if (replicationService != null) {
+                    replicationService.append(List.of(logEntry));
+                }
+                return;
+            }
+            // refuse up front what the consumers could only count as failed
+            logRepository.checkMemoryBudget(List.of(logEntry));
+        } catch (MemoryBudgetExceededException e) {
+            throw rejected(e);
+        }
+        ingestPipeline.publish(logEntry);
+    }
+
+    private IngestRejectedException rejected(MemoryBudgetExceededException e) {
+        logger.warn("Rejecting logs of service {}, memory budget exceeded", e.getServiceName());
+        return new IngestRejectedException(e.getMessage(), e.getRetryAfterSeconds());
+    }
+
+    /**
+     * @return bytes held per service, the memory budgets and what they evicted or rejected
+     */
+    public MemoryUsage memoryUsage() {
+        return logRepository.memoryUsage();
+    }
+
+    /**
+     * @return size and hit ratio of the query result cache
+     */
+    public QueryCacheStats queryCacheStats() {
+        return queryCache.stats();
+    }
+
+    /**
+     * @return state of the asynchronous ingest buffer
+     * @throws IllegalStateException if asynchronous ingestion is disabled
+     */
+    public IngestMetrics ingestMetrics() {
+        if (ingestPipeline == null) {
+            throw new IllegalStateException("Asynchronous ingestion is disabled");
+        }
+        return ingestPipeline.metrics();
+    }
+
+    /**
+     * validate each entry of a batch and save the valid ones in one repository call
+     *
+     * @param logEntries the log entries to save
+     * @return accepted count and the index and reason of every rejected entry
+     * @throws IngestRejectedException if a service of the batch is over its memory budget and the policy
+     *                                 is reject, or followers are too far behind; nothing of the batch is
+     *                                 saved then
+     */
+    public BatchIngestResponse saveLogs(List<LogEntry> logEntries) {
+        if (logEntries == null) {
+            throw new IllegalArgumentException("Log batch cannot be null");
+        }
+        long start = startNanos();
+
+        List<LogEntry> accepted = new ArrayList<>(logEntries.size());
+        List<BatchIngestResponse.Rejection> rejections = new ArrayList<>();
+
+        for (int i = 0; i < logEntries.size(); i++) {
+            LogEntry logEntry = logEntries.get(i);
+            try {
+                validate(logEntry);
+                accepted.add(logEntry);
+            } catch (IllegalArgumentException e) {
+                rejections.add(new BatchIngestResponse.Rejection(i, e.getMessage()));
+                if (metrics != null) {
+                    metrics.rejected(logEntry);
+                }
+            }
+        }
+
+        logger.debug("Saving batch of {} log entries, {} rejected", accepted.size(), rejections.size());
+        try {
+            if (replicationService != null) {
+                replicationService.checkLag(accepted.size());
+            }
+            try {
+                logRepository.saveAll(accepted);
+            } catch (MemoryBudgetExceededException e) {
+                throw rejected(e);
+            }
+        } catch (IngestRejectedException e) {
+            if (metrics != null) {
+                metrics.rejected(accepted);
+                metrics.recordIngest(LogMetrics.Ingest.BATCH, start);
+            }
+            throw e;
+        }
+        if (tailBroadcaster != null) {
+            tailBroadcaster.publishAll(accepted);
+        }
+        if (replicationService != null) {
+            replicationService.append(accepted);
+        }
+        if (metrics != null) {
+            metrics.accepted(accepted);
+            metrics.recordIngest(LogMetrics.Ingest.BATCH, start);
+        }
+        return new BatchIngestResponse(accepted.size(), rejections);
+    }
+
+    private void validate(LogEntry logEntry) {
+        validateLog(logEntry);
+        // last, so an invalid entry doesn't take one of the limited service IDs; the stores reuse the ID
+        serviceRegistry.register(logEntry);
+    }
+
+    /**
+     * checks a log entry without storing it or registering its service, as for entries that another
+     * node stores, and sets a missing timestamp to now
+     *
+     * @throws IllegalArgumentException if the entry is invalid
+     */
+    public void validateLog(LogEntry logEntry) {
         if (logEntry == null) {
             throw new IllegalArgumentException("Log entry cannot be null");
         }
 
-        if (logEntry.getServiceName() == null || logEntry.getServiceName().trim().isEmpty()) {
+        if (isBlank(logEntry.getServiceName())) {
             throw new IllegalArgumentException("Service name cannot be empty");
         }
 
@@ -45,23 +329,382 @@ public class LogService {
             throw new IllegalArgumentException("Log message cannot be null");
         }
 
-        logger.debug("Saving log entry: {}", logEntry);
-        logRepository.save(logEntry);
+        Map<String, String> attributes = logEntry.getAttributes();
+        if (attributes != null) {
+            if (attributes.size() > MAX_ATTRIBUTES) {
+                throw new IllegalArgumentException("A log entry can have at most " + MAX_ATTRIBUTES + " attributes");
+            }
+            for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+                String key = attribute.getKey();
+                if (key == null || key.isBlank() || key.length() > MAX_ATTRIBUTE_KEY_LENGTH) {
+                    throw new IllegalArgumentException("Attribute names must be 1 to "
+                            + MAX_ATTRIBUTE_KEY_LENGTH + " characters");
+                }
+                if (attribute.getValue() == null || attribute.getValue().length() > MAX_ATTRIBUTE_VALUE_LENGTH) {
+                    throw new IllegalArgumentException("Attribute " + key + " must have a value of at most "
+                            + MAX_ATTRIBUTE_VALUE_LENGTH + " characters");
+                }
+            }
+        }
     }
 
     /**
-     * retrieves log for a given service within a specified time range
+     * retrieves log for a given service within a specified time range. Results are kept in the
+     * {@link QueryCache} and reused until logs are saved into or removed from the range
      *
      * @param serviceName the name of the service
      * @param startTime   start time (inclusive)
      * @param endTime     end time (exclusive)
-     * @return list of log response objects matching the query
+     * @return list of log response objects matching the query, unmodifiable if the cache is enabled
      */
     public List<LogResponse> queryLogs(String serviceName, Instant startTime, Instant endTime) {
+        validateQuery(serviceName, startTime, endTime);
+        long start = startNanos();
+
+        // the version is taken before reading, so a result is never cached as newer than it is
+        RangeVersion version = null;
+        if (queryCache.isEnabled()) {
+            version = logRepository.rangeVersion(serviceName, startTime, endTime);
+            List<LogResponse> cached = queryCache.get(serviceName, startTime, endTime, version);
+            if (cached != null) {
+                logger.debug("Serving cached logs for service: {}, from: {} to: {}", serviceName, startTime, endTime);
+                return timed(LogMetrics.Query.CACHED, start, cached);
+            }
+        }
+
+        logger.debug("Querying logs for service: {}, from: {} to: {}", serviceName, startTime, endTime);
+
+        List<LogEntry> logs = logRepository.findByServiceNameAndTimeRange(serviceName, startTime, endTime);
+
+        // map LogEntry objects to LogResponse DTOs
+        List<LogResponse> responses = logs.stream()
+                .map(LogResponse::fromLogEntry)
+                .collect(Collectors.toList());
+        return timed(LogMetrics.Query.LIST, start,
+                version != null ? queryCache.put(serviceName, startTime, endTime, version, responses) : responses);
+    }
+
+    private long startNanos() {
+        return metrics != null ? System.nanoTime() : 0;
+    }
+
+    private <T> T timed(LogMetrics.Query query, long startNanos, T result) {
+        if (metrics != null) {
+            metrics.recordQuery(query, startNanos);
+        }
+        return result;
+    }
+
+    /**
+     * retrieves one page of logs for a given service within a specified time range
+     *
+     * @param serviceName the name of the service
+     * @param startTime   start time (inclusive)
+     * @param endTime     end time (exclusive)
+     * @param after       cursor returned with the previous page, or null for the first page
+     * @param limit       maximum number of logs to return
+     * @param order       timestamp order of the page
+     * @return the page of log response objects and the cursor of the next page, if any
+     */
+    public LogPage<LogResponse> queryLogPage(String serviceName, Instant startTime, Instant endTime,
+                                             LogCursor after, int limit, SortOrder order) {
+        validatePageQuery(serviceName, startTime, endTime, limit, order);
+        long start = startNanos();
+
+        logger.debug("Querying {} logs for service: {}, from: {} to: {}, order: {}, after: {}",
+                limit, serviceName, startTime, endTime, order, after);
+
+        return timed(LogMetrics.Query.PAGE, start,
+                logRepository.findPageByServiceNameAndTimeRange(serviceName, startTime, endTime, after, limit, order)
+                        .map(LogResponse::fromLogEntry));
+    }
+
+    /**
+     * retrieves one page of logs for a given service within a specified time range that match a filter on
+     * the message text, the level and indexed attributes, see {@link LogFilter#parse}
+     *
+     * @param serviceName the name of the service
+     * @param startTime   start time (inclusive)
+     * @param endTime     end time (exclusive)
+     * @param filter      the logs to keep; an empty filter keeps every log
+     * @param after       cursor returned with the previous page, or null for the first page
+     * @param limit       maximum number of logs to return
+     * @param order       timestamp order of the page
+     * @return the page of matching log response objects and the cursor of the next page, if any
+     * @throws IllegalArgumentException if the filter names an attribute that is not indexed
+     */
+    public LogPage<LogResponse> filterLogPage(String serviceName, Instant startTime, Instant endTime, LogFilter filter,
+                                              LogCursor after, int limit, SortOrder order) {
+        validatePageQuery(serviceName, startTime, endTime, limit, order);
+        long start = startNanos();
+
+        logger.debug("Filtering {} logs for service: {}, from: {} to: {}, filter: {}, order: {}, after: {}",
+                limit, serviceName, startTime, endTime, filter, order, after);
+
+        LogPage<LogEntry> page = filter.isEmpty()
+                ? logRepository.findPageByServiceNameAndTimeRange(serviceName, startTime, endTime, after, limit, order)
+                : logRepository.findPageMatching(serviceName, startTime, endTime, filter, after, limit, order);
+        return timed(LogMetrics.Query.FILTER, start, page.map(LogResponse::fromLogEntry));
+    }
+
+    /**
+     * retrieves one page of logs of several services within a specified time range, merged in timestamp
+     * order and tagged with their service
+     *
+     * @param services    service names and globs like {@code payments-*}, matched against stored services
+     * @param startTime   start time (inclusive)
+     * @param endTime     end time (exclusive)
+     * @param query       search terms, quoted phrases and OR, or null
+     * @param conditions  level and attribute conditions, see {@link LogFilter#parse}
+     * @param after       cursor returned with the previous page, or null for the first page
+     * @param limit       maximum number of logs to return
+     * @param order       timestamp order of the page
+     * @return the page of log response objects and the cursor of the next page, if any
+     */
+    public LogPage<LogResponse> queryServicesPage(List<String> services, Instant startTime, Instant endTime,
+                                                  String query, Map<String, String> conditions, LogCursor after,
+                                                  int limit, SortOrder order) {
+        long start = startNanos();
+        List<String> serviceNames = resolveServices(services);
+        validateRange(startTime, endTime);
+        validatePage(limit, order);
+        LogFilter filter = LogFilter.parse(query, conditions);
+
+        logger.debug("Querying {} logs for services: {}, from: {} to: {}, filter: {}, order: {}, after: {}",
+                limit, serviceNames, startTime, endTime, filter, order, after);
+
+        return timed(LogMetrics.Query.SERVICES, start, logRepository.findPageAcrossServices(serviceNames, startTime,
+                        endTime, filter.isEmpty() ? null : filter, after, limit, order)
+                .map(LogResponse::fromLogEntryWithService));
+    }
+
+    /**
+     * streams logs of several services within a specified time range, merged in timestamp order
+     *
+     * @param services  service names and globs like {@code payments-*}, matched against stored services
+     * @param startTime start time (inclusive)
+     * @param endTime   end time (exclusive)
+     * @param query      search terms, quoted phrases and OR, or null
+     * @param conditions level and attribute conditions, see {@link LogFilter#parse}
+     * @param action     receives each matching entry in timestamp order
+     * @throws IllegalArgumentException if a condition is invalid or names an attribute that is not indexed
+     */
+    public void streamServices(List<String> services, Instant startTime, Instant endTime, String query,
+                               Map<String, String> conditions, Consumer<LogEntry> action) {
+        List<String> serviceNames = resolveServices(services);
+        validateRange(startTime, endTime);
+        LogFilter filter = LogFilter.parse(query, conditions);
+
+        logger.debug("Streaming logs for services: {}, from: {} to: {}, filter: {}", serviceNames, startTime, endTime,
+                filter);
+
+        logRepository.streamAcrossServices(serviceNames, startTime, endTime, filter, action);
+    }
+
+    /**
+     * follows new logs of several services as they are stored, see {@link LogTailBroadcaster}. Conditions
+     * are checked on each entry, so they may name any attribute, indexed or not.
+     *
+     * @param services   service names and globs like {@code payments-*}, also matching services that
+     *                   appear after the session started
+     * @param query      search terms, quoted phrases and OR, or null
+     * @param conditions level and attribute conditions, see {@link LogFilter#parse}
+     * @param sink       receives the matching entries in the order they were stored
+     * @return the session, to be closed when the client goes away
+     * @throws IllegalStateException if too many sessions are open
+     */
+    public LogTailBroadcaster.Subscription tail(List<String> services, String query, Map<String, String> conditions,
+                                                TailSink sink) {
+        if (tailBroadcaster == null) {
+            throw new IllegalStateException("Live tail is disabled");
+        }
+        Set<String> names = new HashSet<>();
+        List<Pattern> globs = new ArrayList<>();
+        parseServices(services, names, globs);
+        LogFilter filter = LogFilter.parse(query, conditions);
+
+        logger.debug("Tailing logs for services: {}, filter: {}", services, filter);
+
+        return tailBroadcaster.subscribe(logEntry -> {
+            String serviceName = logEntry.getServiceName();
+            return (names.contains(serviceName)
+                    || globs.stream().anyMatch(glob -> glob.matcher(serviceName).matches()))
+                    && filter.matches(logEntry);
+        }, sink);
+    }
+
+    /**
+     * @return the named services and the stored services matching any glob, sorted and without duplicates
+     */
+    private List<String> resolveServices(List<String> services) {
+        TreeSet<String> resolved = new TreeSet<>();
+        List<Pattern> globs = new ArrayList<>();
+        parseServices(services, resolved, globs);
+        if (!globs.isEmpty()) {
+            for (String serviceName : logRepository.findServiceNames()) {
+                if (globs.stream().anyMatch(glob -> glob.matcher(serviceName).matches())) {
+                    resolved.add(serviceName);
+                }
+            }
+        }
+        return new ArrayList<>(resolved);
+    }
+
+    /**
+     * splits service parameters into plain names and globs, where {@code *} matches any characters
+     */
+    private static void parseServices(List<String> services, Set<String> names, List<Pattern> globs) {
+        if (services == null || services.isEmpty()) {
+            throw new IllegalArgumentException("Service name cannot be empty");
+        }
+        for (String service : services) {
+            if (service == null || service.trim().isEmpty()) {
+                throw new IllegalArgumentException("Service name cannot be empty");
+            }
+            if (service.contains("*")) {
+                globs.add(Pattern.compile(Arrays.stream(service.trim().split("\\*", -1))
+                        .map(Pattern::quote)
+                        .collect(Collectors.joining(".*"))));
+            } else {
+                names.add(service.trim());
+            }
+        }
+    }
+
+    /**
+     * streams logs for a given service within a specified time range straight from the repository,
+     * without building a result list
+     *
+     * @param serviceName the name of the service
+     * @param startTime   start time (inclusive)
+     * @param endTime     end time (exclusive)
+     * @param query       search terms, quoted phrases and OR, or null
+     * @param conditions  level and attribute conditions, see {@link LogFilter#parse}
+     * @param action      receives each matching entry in timestamp order
+     * @throws IllegalArgumentException if a condition is invalid or names an attribute that is not indexed
+     */
+    public void streamLogs(String serviceName, Instant startTime, Instant endTime, String query,
+                           Map<String, String> conditions, Consumer<LogEntry> action) {
+        validateQuery(serviceName, startTime, endTime);
+        LogFilter filter = LogFilter.parse(query, conditions);
+
+        logger.debug("Streaming logs for service: {}, from: {} to: {}, filter: {}", serviceName, startTime, endTime,
+                filter);
+
+        logRepository.streamByServiceNameAndTimeRange(serviceName, startTime, endTime, filter, action);
+    }
+
+    /**
+     * counts logs per service and per interval from the counters the repository keeps while saving,
+     * without reading any log entry. Buckets start at {@code startTime}, counts have one-second resolution.
+     *
+     * @param serviceNames services to count, or null or empty for every service
+     * @param startTime    start time (inclusive)
+     * @param endTime      end time (exclusive)
+     * @param interval     width of each bucket, whole seconds
+     * @return totals per service, largest first, and the count of each bucket
+     */
+    public LogStats logStats(List<String> serviceNames, Instant startTime, Instant endTime, Duration interval) {
+        if (startTime == null || endTime == null) {
+            throw new IllegalArgumentException("Start and end time cannot be null");
+        }
+        if (startTime.isAfter(endTime)) {
+            throw new IllegalArgumentException("Start time cannot be after end time");
+        }
+        if (interval == null || interval.getSeconds() < 1 || interval.getNano() != 0) {
+            throw new IllegalArgumentException("Interval must be a positive number of whole seconds");
+        }
+        boolean allServices = serviceNames == null || serviceNames.isEmpty();
+        if (!allServices && serviceNames.stream().anyMatch(name -> name == null || name.trim().isEmpty())) {
+            throw new IllegalArgumentException("Service name cannot be empty");
+        }
+
+        Instant from = Instant.ofEpochSecond(startTime.getEpochSecond());
+        logger.debug("Counting logs for services: {}, from: {} to: {}, interval: {}",
+                allServices ? "all" : serviceNames, from, endTime, interval);
+
+        Map<String, long[]> countsByService = new LinkedHashMap<>();
+        for (String serviceName : allServices ? logRepository.findServiceNames() : serviceNames) {
+            countsByService.put(serviceName, logRepository.countByInterval(serviceName, from, endTime, interval));
+        }
+
+        int bucketCount = countsByService.values().stream().mapToInt(counts -> counts.length).max().orElse(0);
+        List<LogStats.Bucket> buckets = new ArrayList<>(bucketCount);
+        for (int i = 0; i < bucketCount; i++) {
+            Map<String, Long> services = new LinkedHashMap<>();
+            long total = 0;
+            for (Map.Entry<String, long[]> entry : countsByService.entrySet()) {
+                long count = entry.getValue()[i];
+                if (count > 0) {
+                    services.put(entry.getKey(), count);
+                    total += count;
+                }
+            }
+            buckets.add(new LogStats.Bucket(from.plus(interval.multipliedBy(i)), total, services));
+        }
+
+        Map<String, Long> totals = new LinkedHashMap<>();
+        countsByService.entrySet().stream()
+                .map(entry -> new ServiceVolume(entry.getKey(), Arrays.stream(entry.getValue()).sum()))
+                .filter(volume -> !allServices || volume.getCount() > 0)
+                .sorted(Comparator.comparingLong(ServiceVolume::getCount).reversed())
+                .forEach(volume -> totals.put(volume.getServiceName(), volume.getCount()));
+        long total = totals.values().stream().mapToLong(Long::longValue).sum();
+        return new LogStats(from, endTime, interval.getSeconds(), total, totals, buckets);
+    }
+
+    /**
+     * ranks services by the number of logs stored over the last minutes, from the same counters as
+     * {@link #logStats}
+     *
+     * @param minutes length of the window ending now
+     * @param limit   maximum number of services to return
+     * @return services with logs in the window, largest volume first
+     */
+    public List<ServiceVolume> topServices(int minutes, int limit) {
+        if (minutes < 1) {
+            throw new IllegalArgumentException("Minutes must be positive");
+        }
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+
+        Instant now = Instant.now();
+        Duration window = Duration.ofMinutes(minutes);
+        Instant from = Instant.ofEpochSecond(now.minus(window).getEpochSecond());
+        return logRepository.findServiceNames().stream()
+                .map(serviceName -> new ServiceVolume(serviceName,
+                        Arrays.stream(logRepository.countByInterval(serviceName, from, now, window)).sum()))
+                .filter(volume -> volume.getCount() > 0)
+                .sorted(Comparator.comparingLong(ServiceVolume::getCount).reversed())
+                .limit(limit)
+                .toList();
+    }
+
+    private void validatePageQuery(String serviceName, Instant startTime, Instant endTime, int limit,
+                                   SortOrder order) {
+        validateQuery(serviceName, startTime, endTime);
+        validatePage(limit, order);
+    }
+
+    private void validatePage(int limit, SortOrder order) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+
+        if (order == null) {
+            throw new IllegalArgumentException("Order cannot be null");
+        }
+    }
+
+    private void validateQuery(String serviceName, Instant startTime, Instant endTime) {
         if (serviceName == null || serviceName.trim().isEmpty()) {
             throw new IllegalArgumentException("Service name cannot be empty");
         }
+        validateRange(startTime, endTime);
+    }
 
+    private void validateRange(Instant startTime, Instant endTime) {
         if (startTime == null) {
             throw new IllegalArgumentException("Start time cannot be null");
         }
@@ -73,23 +716,36 @@ public class LogService {
         if (startTime.isAfter(endTime)) {
             throw new IllegalArgumentException("Start time cannot be after end time");
         }
-
-        logger.debug("Querying logs for service: {}, from: {} to: {}", serviceName, startTime, endTime);
-
-        List<LogEntry> logs = logRepository.findByServiceNameAndTimeRange(serviceName, startTime, endTime);
-
-        // map LogEntry objects to LogResponse DTOs
-        return logs.stream()
-                .map(LogResponse::fromLogEntry)
-                .collect(Collectors.toList());
     }
 
     /**
-     * set scheduled task to remove expired log entries, run every 5 mins
+     * reaper that removes expired log entries. Stores drop whole time buckets, so a pass is cheap
+     * and runs every second by default ({@code aggregator.retention.reaper-interval-ms}). It also
+     * registers the {@link LogMetrics} of services that were stored without passing through ingest
      */
-    @Scheduled(fixedRate = 300000)
+    @Scheduled(fixedDelayString = "${aggregator.retention.reaper-interval-ms:1000}")
     public void cleanupExpiredLogs() {
-        logger.debug("Running scheduled cleanup of expired logs");
-        logRepository.removeExpiredLogs();
+        logger.trace("Running scheduled cleanup of expired logs");
+        long start = startNanos();
+        long removed = logRepository.removeExpiredLogs();
+        if (metrics != null) {
+            metrics.recordExpiry(removed, start);
+            metrics.registerServices();
+        }
+    }
+
+    /**
+     * @return whether the name is null or empty after trimming, without trimming it
+     */
+    private static boolean isBlank(String name) {
+        if (name == null) {
+            return true;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) > ' ') {
+                return false;
+            }
+        }
+        return true;
     }
 }
@@ -0,0 +1,404 @@
+package com.example.log_aggregator.service;
+
+import com.example.log_aggregator.model.LogEntry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * Fans stored entries out to live tail sessions.
+ * <p>
+ * Every stored entry is published once to a shared ring of the last {@code ring-size} entries,
+ * whatever the number of sessions; publishing claims a slot and writes it, nothing more, and is
+ * skipped entirely while nobody tails. Each session only keeps its position in the ring. A dispatcher
+ * wakes every {@code flush-interval-ms} and hands every session with unread entries to a sender thread,
+ * which filters and sends them. A session further behind than {@code subscriber-buffer} entries is
+ * either moved ahead, with the skipped count sent to the client, or disconnected, so a slow client
+ * never holds back ingestion or the other sessions' entries. Idle sessions get an empty send every
+ * {@code heartbeat-interval-ms}, which keeps proxies from closing them and notices clients that left.
+ * <p>
+ * Writing to a client blocks while its socket buffer is full. The dispatcher disconnects a session whose
+ * write has taken longer than {@code send-timeout-ms} and interrupts the sender blocked in it, and until
+ * that write returns the pool runs one sender more, so a stalled client never holds up the others. A write
+ * still blocked counts against {@code max-subscribers} like an open session, which bounds the sender threads.
+ */
+@Component
+public class LogTailBroadcaster {
+    private static final Logger logger = LoggerFactory.getLogger(LogTailBroadcaster.class);
+
+    static final int MAX_SEND_BATCH = 512;
+
+    // write states of a session: no write, a write in progress, timed out, timed out and its sender interrupted
+    private static final int IDLE = 0;
+    private static final int WRITING = 1;
+    private static final int TIMED_OUT = 2;
+    private static final int INTERRUPTED = 3;
+
+    private final AtomicReferenceArray<Slot> slots;
+    private final int mask;
+    private final AtomicLong next = new AtomicLong();
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final ReentrantLock subscribeLock = new ReentrantLock();
+    private final int subscriberBuffer;
+    private final int maxSubscribers;
+    private final TailOverflowPolicy overflowPolicy;
+    private final long heartbeatIntervalNanos;
+    private final long sendTimeoutNanos;
+    private final ScheduledExecutorService dispatcher;
+    private final ThreadPoolExecutor senders;
+    private final int sendThreads;
+    private final ReentrantLock resizeLock = new ReentrantLock();
+    // writes of disconnected sessions that have not returned yet, each holding a sender thread
+    private volatile int stalledWrites;
+
+    @Autowired
+    public LogTailBroadcaster(@Value("${aggregator.tail.ring-size:65536}") int ringSize,
+                              @Value("${aggregator.tail.subscriber-buffer:8192}") int subscriberBuffer,
+                              @Value("${aggregator.tail.max-subscribers:1000}") int maxSubscribers,
+                              @Value("${aggregator.tail.overflow:drop}") String overflowPolicy,
+                              @Value("${aggregator.tail.flush-interval-ms:100}") long flushIntervalMillis,
+                              @Value("${aggregator.tail.heartbeat-interval-ms:15000}") long heartbeatMillis,
+                              @Value("${aggregator.tail.send-threads:8}") int sendThreads,
+                              @Value("${aggregator.tail.send-timeout-ms:10000}") long sendTimeoutMillis) {
+        this(ringSize, subscriberBuffer, maxSubscribers, TailOverflowPolicy.fromString(overflowPolicy),
+                flushIntervalMillis, heartbeatMillis, sendThreads, sendTimeoutMillis);
+    }
+
+    LogTailBroadcaster(int ringSize, int subscriberBuffer, int maxSubscribers, TailOverflowPolicy overflowPolicy,
+                       long flushIntervalMillis, long heartbeatIntervalMillis, int sendThreads,
+                       long sendTimeoutMillis) {
+        if (ringSize < 2) {
+            throw new IllegalArgumentException("Tail ring size must be at least 2");
+        }
+        if (subscriberBuffer < 1 || subscriberBuffer > ringSize) {
+            throw new IllegalArgumentException("Tail subscriber buffer must be between 1 and the ring size");
+        }
+        if (flushIntervalMillis < 1) {
+            throw new IllegalArgumentException("Tail flush interval must be positive");
+        }
+        if (heartbeatIntervalMillis < flushIntervalMillis) {
+            throw new IllegalArgumentException("Tail heartbeat interval cannot be shorter than the flush interval");
+        }
+        if (sendThreads < 1) {
+            throw new IllegalArgumentException("At least one tail sender thread is required");
+        }
+        if (sendTimeoutMillis < 1) {
+            throw new IllegalArgumentException("Tail send timeout must be positive");
+        }
+        int capacity = Integer.bitCount(ringSize) == 1 ? ringSize : Integer.highestOneBit(ringSize - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+        this.subscriberBuffer = subscriberBuffer;
+        this.maxSubscribers = maxSubscribers;
+        this.overflowPolicy = overflowPolicy;
+        this.heartbeatIntervalNanos = TimeUnit.MILLISECONDS.toNanos(heartbeatIntervalMillis);
+        this.sendTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeoutMillis);
+        this.sendThreads = sendThreads;
+
+        this.dispatcher = Executors.newSingleThreadScheduledExecutor(runnable -> daemon(runnable, "tail-dispatcher"));
+        AtomicInteger senderCount = new AtomicInteger();
+        this.senders = new ThreadPoolExecutor(sendThreads, sendThreads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> daemon(runnable, "tail-sender-" + senderCount.getAndIncrement()));
+        dispatcher.scheduleWithFixedDelay(this::dispatch, flushIntervalMillis, flushIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * offers a stored entry to every session
+     */
+    public void publish(LogEntry logEntry) {
+        if (subscriptions.isEmpty()) {
+            return;
+        }
+        long sequence = next.getAndIncrement();
+        slots.set((int) sequence & mask, new Slot(sequence, logEntry));
+    }
+
+    /**
+     * offers stored entries to every session, in list order
+     */
+    public void publishAll(List<LogEntry> logEntries) {
+        if (subscriptions.isEmpty() || logEntries.isEmpty()) {
+            return;
+        }
+        long sequence = next.getAndAdd(logEntries.size());
+        for (LogEntry logEntry : logEntries) {
+            slots.set((int) sequence & mask, new Slot(sequence, logEntry));
+            sequence++;
+        }
+    }
+
+    /**
+     * starts a session that receives the entries published from now on
+     *
+     * @param filter entries the session wants
+     * @param sink   where the entries are sent
+     * @return the session, to be closed when the client goes away
+     * @throws IllegalStateException if {@code max-subscribers} sessions are open, counting disconnected
+     *                               sessions whose write is still blocked
+     */
+    public Subscription subscribe(Predicate<LogEntry> filter, TailSink sink) {
+        subscribeLock.lock();
+        try {
+            if (subscriptions.size() + stalledWrites >= maxSubscribers) {
+                throw new IllegalStateException("Too many tail sessions, at most " + maxSubscribers + " are allowed");
+            }
+            Subscription subscription = new Subscription(filter, sink, next.get());
+            subscriptions.add(subscription);
+            logger.debug("Tail session opened, {} open", subscriptions.size());
+            return subscription;
+        } finally {
+            subscribeLock.unlock();
+        }
+    }
+
+    public int subscriberCount() {
+        return subscriptions.size();
+    }
+
+    /**
+     * ends every session and stops the dispatcher and sender threads
+     */
+    @PreDestroy
+    public void shutdown() {
+        dispatcher.shutdownNow();
+        for (Subscription subscription : subscriptions) {
+            disconnect(subscription);
+        }
+        senders.shutdownNow();
+    }
+
+    private void dispatch() {
+        long head = next.get();
+        long now = System.nanoTime();
+        for (Subscription subscription : subscriptions) {
+            if (subscription.writeState.get() == WRITING && now - subscription.writeStartNanos >= sendTimeoutNanos
+                    && subscription.writeState.compareAndSet(WRITING, TIMED_OUT)) {
+                abandon(subscription);
+                continue;
+            }
+            boolean due = subscription.cursor < head || now - subscription.lastSendNanos >= heartbeatIntervalNanos;
+            if (due && subscription.scheduled.compareAndSet(false, true)) {
+                try {
+                    senders.execute(() -> drain(subscription));
+                } catch (RejectedExecutionException e) {
+                    subscription.scheduled.set(false);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * sends a session what it has not read yet; runs on one sender thread at a time per session
+     */
+    void drain(Subscription subscription) {
+        try {
+            long head = next.get();
+            long cursor = subscription.cursor;
+            long dropped = 0;
+            if (head - cursor > subscriberBuffer) {
+                if (overflowPolicy == TailOverflowPolicy.DISCONNECT) {
+                    logger.debug("Disconnecting tail session {} entries behind", head - cursor);
+                    disconnect(subscription);
+                    return;
+                }
+                dropped = head - subscriberBuffer - cursor;
+                cursor = head - subscriberBuffer;
+            }
+
+            List<LogEntry> batch = new ArrayList<>();
+            while (cursor < head && !subscription.closed.get()) {
+                Slot slot = slots.get((int) cursor & mask);
+                if (slot == null || slot.sequence < cursor) {
+                    break; // claimed but not written yet, read on the next round
+                }
+                if (slot.sequence > cursor) {
+                    // overwritten while this session was reading, the ring went round
+                    if (overflowPolicy == TailOverflowPolicy.DISCONNECT) {
+                        disconnect(subscription);
+                        return;
+                    }
+                    dropped++;
+                } else if (subscription.filter.test(slot.logEntry)) {
+                    batch.add(slot.logEntry);
+                    if (batch.size() == MAX_SEND_BATCH) {
+                        subscription.send(batch, dropped);
+                        batch = new ArrayList<>();
+                        dropped = 0;
+                    }
+                }
+                cursor++;
+            }
+            subscription.cursor = cursor;
+            if (!batch.isEmpty() || dropped > 0
+                    || System.nanoTime() - subscription.lastSendNanos >= heartbeatIntervalNanos) {
+                subscription.send(batch, dropped);
+            }
+        } catch (TimeoutException e) {
+            logger.debug("Tail session disconnected after its write took more than {} ms returned",
+                    TimeUnit.NANOSECONDS.toMillis(sendTimeoutNanos));
+        } catch (IOException | RuntimeException e) {
+            logger.debug("Closing tail session that failed to send: {}", e.toString());
+            subscription.close();
+        } finally {
+            subscription.scheduled.set(false);
+        }
+    }
+
+    /**
+     * disconnects a session whose write timed out; the sender stuck in the write is interrupted and another
+     * sender takes its place until the write returns
+     */
+    private void abandon(Subscription subscription) {
+        logger.debug("Disconnecting tail session that took more than {} ms to take a send",
+                TimeUnit.NANOSECONDS.toMillis(sendTimeoutNanos));
+        subscription.close();
+        resizeSenders(1);
+        subscription.writer.interrupt();
+        subscription.writeState.set(INTERRUPTED);
+    }
+
+    private void resizeSenders(int stalledDelta) {
+        resizeLock.lock();
+        try {
+            stalledWrites += stalledDelta;
+            int size = sendThreads + stalledWrites;
+            // the maximum may never drop below the core size, so it goes first when growing and last when shrinking
+            if (stalledDelta > 0) {
+                senders.setMaximumPoolSize(size);
+                senders.setCorePoolSize(size);
+            } else {
+                senders.setCorePoolSize(size);
+                senders.setMaximumPoolSize(size);
+            }
+        } finally {
+            resizeLock.unlock();
+        }
+    }
+
+    private void disconnect(Subscription subscription) {
+        if (subscription.close()) {
+            closeSink(subscription);
+        }
+    }
+
+    private void closeSink(Subscription subscription) {
+        try {
+            subscription.sink.close();
+        } catch (RuntimeException e) {
+            logger.debug("Failed to close tail session: {}", e.toString());
+        }
+    }
+
+    private record Slot(long sequence, LogEntry logEntry) {
+    }
+
+    /**
+     * One live tail session.
+     */
+    public final class Subscription {
+        private final Predicate<LogEntry> filter;
+        private final TailSink sink;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private final AtomicLong dropped = new AtomicLong();
+        private final AtomicInteger writeState = new AtomicInteger(IDLE);
+        private volatile long writeStartNanos;
+        private volatile Thread writer;
+        // ring sequence of the next entry to read, written by the sender thread draining the session
+        private volatile long cursor;
+        private volatile long lastSendNanos = System.nanoTime();
+
+        private Subscription(Predicate<LogEntry> filter, TailSink sink, long cursor) {
+            this.filter = filter;
+            this.sink = sink;
+            this.cursor = cursor;
+        }
+
+        /**
+         * writes to the sink on the calling sender thread
+         *
+         * @throws TimeoutException if the dispatcher disconnected the session while the write was blocked; the
+         *                          sink has been closed once the write returned
+         */
+        private void send(List<LogEntry> logEntries, long droppedSinceLastSend) throws IOException, TimeoutException {
+            dropped.addAndGet(droppedSinceLastSend);
+            writer = Thread.currentThread();
+            writeStartNanos = System.nanoTime();
+            writeState.set(WRITING);
+            boolean timedOut = false;
+            try {
+                sink.send(logEntries, droppedSinceLastSend);
+            } finally {
+                if (!writeState.compareAndSet(WRITING, IDLE)) {
+                    timedOut = true;
+                    // wait for the dispatcher's interrupt so it cannot hit the next session this thread serves
+                    while (writeState.get() != INTERRUPTED) {
+                        Thread.onSpinWait();
+                    }
+                    Thread.interrupted();
+                    closeSink(this);
+                    resizeSenders(-1);
+                }
+            }
+            if (timedOut) {
+                throw new TimeoutException();
+            }
+            lastSendNanos = System.nanoTime();
+        }
+
+        /**
+         * @return entries skipped because the session fell behind
+         */
+        public long getDropped() {
+            return dropped.get();
+        }
+
+        public boolean isClosed() {
+            return closed.get();
+        }
+
+        /**
+         * stops the session without calling the sink again
+         *
+         * @return false if it was already closed
+         */
+        public boolean close() {
+            if (!closed.compareAndSet(false, true)) {
+                return false;
+            }
+            subscriptions.remove(this);
+            logger.debug("Tail session closed, {} open", subscriptions.size());
+            return true;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.log_aggregator.service;
+
+/**
+ * What asynchronous ingestion does with a log entry when the ingest buffer is full.
+ */
+public enum OverflowPolicy {
+    /**
+     * wait until the consumers free a slot
+     */
+    BLOCK,
+    /**
+     * refuse the entry, the client is told to retry later (429 with Retry-After)
+     */
+    REJECT,
+    /**
+     * discard the entry and count it
+     */
+    DROP;
+
+    /**
+     * @param value "block", "reject" or "drop", case-insensitive
+     * @return the matching policy
+     * @throws IllegalArgumentException for any other value
+     */
+    public static OverflowPolicy fromString(String value) {
+        for (OverflowPolicy policy : values()) {
+            if (policy.name().equalsIgnoreCase(value)) {
+                return policy;
+            }
+        }
+        throw new IllegalArgumentException("Overflow policy must be block, reject or drop");
+    }
+}
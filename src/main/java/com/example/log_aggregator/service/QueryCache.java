@@ -0,0 +1,179 @@
+package com.example.log_aggregator.service;
+
+import com.example.log_aggregator.model.LogResponse;
+import com.example.log_aggregator.model.QueryCacheStats;
+import com.example.log_aggregator.repository.LogRepository;
+import com.example.log_aggregator.repository.RangeVersion;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Results of {@link LogService#queryLogs} for repeated service and time range tuples, such as dashboard
+ * panels refreshing the same window, bounded to {@code aggregator.query.cache.max-size} bytes and evicted
+ * least recently used first.
+ * <p>
+ * Every result is stored with the {@link RangeVersion} its range had when it was read, and a lookup only
+ * returns it while the range still has that version, see {@link LogRepository#rangeVersion}. So a result
+ * goes stale exactly when an entry is saved into its service and range, whichever path saved it, or when
+ * expiry or eviction reaches into the range; windows in the past, sealed or not, are served from the cache
+ * until then. Stale results are dropped when they are found.
+ * <p>
+ * Sizes are estimated from the strings, maps and instants each result holds. A result taking more than
+ * a quarter of the cache is not cached, so one wide query can't flush every other window.
+ */
+@Component
+public class QueryCache {
+    // header, references, the counters and the map
+    private static final int CACHE_ENTRY_BYTES = 12 + 16 + 16 + 40;
+    private static final int LIST_BYTES = 16 + 16;
+    private static final int RESPONSE_BYTES = 12 + 5 * 4 + 4;
+    private static final int INSTANT_BYTES = 24;
+    private static final int STRING_BYTES = 24 + 16;
+    private static final int MAP_BYTES = 48 + 16;
+    private static final int MAP_ENTRY_BYTES = 32 + 4;
+
+    private final long maxBytes;
+    private final Map<Key, Cached> results = new LinkedHashMap<>(16, 0.75f, true);
+    private final ReentrantLock lock = new ReentrantLock();
+    private long usedBytes;
+    private long hits;
+    private long misses;
+    private long invalidations;
+    private long evictions;
+
+    /**
+     * a disabled cache
+     */
+    public QueryCache() {
+        this(0);
+    }
+
+    @Autowired
+    public QueryCache(@Value("${aggregator.query.cache.max-size:64MB}") String maxSize) {
+        this(parseSize(maxSize));
+    }
+
+    /**
+     * @param maxBytes bytes the cached results may take, 0 to disable the cache
+     */
+    public QueryCache(long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("Query cache size cannot be negative");
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    public boolean isEnabled() {
+        return maxBytes > 0;
+    }
+
+    /**
+     * @param version the current version of the range
+     * @return the result read for the range at the same version, or null
+     */
+    public List<LogResponse> get(String serviceName, Instant startTime, Instant endTime, RangeVersion version) {
+        Key key = new Key(serviceName, startTime, endTime);
+        lock.lock();
+        try {
+            Cached cached = results.get(key);
+            if (cached != null && cached.version.equals(version)) {
+                hits++;
+                return cached.logs;
+            }
+            if (cached != null) {
+                results.remove(key);
+                usedBytes -= cached.bytes;
+                invalidations++;
+            }
+            misses++;
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * caches a result, evicting the least recently used ones to make room
+     *
+     * @param version version of the range taken before the result was read
+     * @return the result as handed out by later lookups, unmodifiable
+     */
+    public List<LogResponse> put(String serviceName, Instant startTime, Instant endTime, RangeVersion version,
+                                 List<LogResponse> logs) {
+        List<LogResponse> result = Collections.unmodifiableList(logs);
+        long bytes = estimateBytes(serviceName, logs);
+        if (bytes > maxBytes / 4) {
+            return result;
+        }
+        lock.lock();
+        try {
+            Cached previous = results.put(new Key(serviceName, startTime, endTime), new Cached(version, result, bytes));
+            usedBytes += bytes - (previous != null ? previous.bytes : 0);
+            Iterator<Cached> eldest = results.values().iterator();
+            while (usedBytes > maxBytes && eldest.hasNext()) {
+                usedBytes -= eldest.next().bytes;
+                eldest.remove();
+                evictions++;
+            }
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public QueryCacheStats stats() {
+        lock.lock();
+        try {
+            long lookups = hits + misses;
+            return new QueryCacheStats(results.size(), usedBytes, maxBytes, hits, misses,
+                    lookups > 0 ? (double) hits / lookups : 0, invalidations, evictions);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    static long estimateBytes(String serviceName, List<LogResponse> logs) {
+        long bytes = CACHE_ENTRY_BYTES + STRING_BYTES + serviceName.length() + 2L * INSTANT_BYTES
+                + LIST_BYTES + 4L * logs.size();
+        for (LogResponse log : logs) {
+            bytes += RESPONSE_BYTES + INSTANT_BYTES + stringBytes(log.getMessage());
+            Map<String, String> attributes = log.getAttributes();
+            if (attributes != null) {
+                bytes += MAP_BYTES;
+                for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+                    bytes += MAP_ENTRY_BYTES + stringBytes(attribute.getKey()) + stringBytes(attribute.getValue());
+                }
+            }
+        }
+        return bytes;
+    }
+
+    private static long stringBytes(String value) {
+        // one byte per character, as compact strings hold Latin-1 text
+        return value != null ? STRING_BYTES + value.length() : 0;
+    }
+
+    private static long parseSize(String value) {
+        try {
+            return DataSize.parse(value.trim()).toBytes();
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid query cache size: " + value, e);
+        }
+    }
+
+    private record Key(String serviceName, Instant startTime, Instant endTime) {
+    }
+
+    private record Cached(RangeVersion version, List<LogResponse> logs, long bytes) {
+    }
+}
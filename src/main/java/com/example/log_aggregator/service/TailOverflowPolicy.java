@@ -0,0 +1,29 @@
+package com.example.log_aggregator.service;
+
+/**
+ * What a live tail does with a subscriber that falls further behind than its buffer allows.
+ */
+public enum TailOverflowPolicy {
+    /**
+     * skip the oldest entries the subscriber has not read and tell it how many were dropped
+     */
+    DROP,
+    /**
+     * end the subscriber's session
+     */
+    DISCONNECT;
+
+    /**
+     * @param value "drop" or "disconnect", case-insensitive
+     * @return the matching policy
+     * @throws IllegalArgumentException for any other value
+     */
+    public static TailOverflowPolicy fromString(String value) {
+        for (TailOverflowPolicy policy : values()) {
+            if (policy.name().equalsIgnoreCase(value)) {
+                return policy;
+            }
+        }
+        throw new IllegalArgumentException("Tail overflow policy must be drop or disconnect");
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.log_aggregator.service;
+
+import com.example.log_aggregator.model.LogEntry;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Receiving end of a live tail session, such as a Server-Sent Events response.
+ * Calls for one session never overlap.
+ */
+public interface TailSink {
+    /**
+     * sends new entries; an empty list without drops is a keep-alive for an idle session
+     *
+     * @param logEntries new entries that match the session, in the order they were stored
+     * @param dropped    entries skipped since the previous call because the session fell behind
+     * @throws IOException if the client is gone; the session is then closed
+     */
+    void send(List<LogEntry> logEntries, long dropped) throws IOException;
+
+    /**
+     * called once when the session ends on the server side, after which nothing more is sent
+     */
+    void close();
+}
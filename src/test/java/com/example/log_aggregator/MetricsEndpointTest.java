@@ -0,0 +1,74 @@
+package com.example.log_aggregator;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Instant;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Ingest and queries through the API, then a scrape of the Prometheus endpoint.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+class MetricsEndpointTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void prometheusEndpointPublishesTheAggregatorMeters() throws Exception {
+        Instant now = Instant.now();
+        mockMvc.perform(post("/logs/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"service_name\":\"metrics-test\",\"timestamp\":\"" + now + "\",\"message\":\"a\"},"
+                                + "{\"service_name\":\"metrics-test\",\"timestamp\":\"" + now + "\"}]"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/logs")
+                        .param("service", "metrics-test")
+                        .param("start", now.minusSeconds(60).toString())
+                        .param("end", now.plusSeconds(60).toString()))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/logs")
+                        .param("service", "metrics-test")
+                        .param("start", now.minusSeconds(60).toString())
+                        .param("end", now.plusSeconds(60).toString())
+                        .param("q", "a"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/logs")
+                        .param("service", "metrics-test,other")
+                        .param("start", now.minusSeconds(60).toString())
+                        .param("end", now.plusSeconds(60).toString()))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString(
+                        "aggregator_ingest_accepted_total{service=\"metrics-test\"} 1.0")))
+                .andExpect(content().string(containsString(
+                        "aggregator_ingest_rejected_total{service=\"metrics-test\"} 1.0")))
+                .andExpect(content().string(containsString(
+                        "aggregator_store_entries{service=\"metrics-test\"} 1.0")))
+                .andExpect(content().string(containsString("aggregator_store_bytes{service=\"metrics-test\"}")))
+                .andExpect(content().string(containsString(
+                        "aggregator_ingest_seconds_count{operation=\"batch\"} 1")))
+                .andExpect(content().string(containsString("aggregator_query_seconds_bucket{type=\"list\",le=")))
+                .andExpect(content().string(containsString("aggregator_query_seconds_count{type=\"filter\"} 1")))
+                .andExpect(content().string(containsString("aggregator_query_seconds_count{type=\"services\"} 1")))
+                .andExpect(content().string(containsString("aggregator_expiry_seconds_count")))
+                .andExpect(content().string(containsString("aggregator_expiry_removed_total")))
+                .andExpect(content().string(containsString(
+                        "aggregator_repository_lock_wait_seconds_count{lock=\"segment\"}")));
+    }
+}
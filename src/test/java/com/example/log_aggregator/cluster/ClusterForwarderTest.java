@@ -0,0 +1,124 @@
+package com.example.log_aggregator.cluster;
+
+import com.example.log_aggregator.model.LogEntry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A forwarder sending to a stand-in owner node that takes {@code POST /logs/batch} and can be stopped
+ * and started again on the same port.
+ */
+class ClusterForwarderTest {
+    private static final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    private final AtomicInteger received = new AtomicInteger();
+    private final List<ClusterForwarder> forwarders = new ArrayList<>();
+    private HttpServer owner;
+
+    @AfterEach
+    void stop() {
+        forwarders.forEach(ClusterForwarder::shutdown);
+        if (owner != null) {
+            owner.stop(0);
+        }
+    }
+
+    private void startOwner(int port, int status) throws IOException {
+        owner = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        owner.createContext("/logs/batch", exchange -> {
+            if (status == 202) {
+                received.addAndGet(objectMapper.readTree(exchange.getRequestBody()).size());
+            }
+            exchange.sendResponseHeaders(status, -1);
+            exchange.close();
+        });
+        owner.start();
+    }
+
+    private String node() {
+        return "http://localhost:" + owner.getAddress().getPort();
+    }
+
+    private ClusterForwarder forwarder(String node, int capacity) {
+        ClusterClient client = new ClusterClient("http://localhost:1", objectMapper, Duration.ofSeconds(1));
+        ClusterForwarder forwarder = new ClusterForwarder(client, List.of(node), capacity, 4);
+        forwarders.add(forwarder);
+        return forwarder;
+    }
+
+    private static List<LogEntry> entries(int count) {
+        List<LogEntry> logEntries = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            logEntries.add(new LogEntry("auth", Instant.now(), "entry " + i));
+        }
+        return logEntries;
+    }
+
+    private static void await(LongSupplier value, long expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 15_000;
+        while (value.getAsLong() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(expected, value.getAsLong());
+    }
+
+    @Test
+    void entriesForADownOwnerAreKeptUntilItIsBack() throws Exception {
+        startOwner(0, 202);
+        String node = node();
+        int port = owner.getAddress().getPort();
+        ClusterForwarder forwarder = forwarder(node, 10);
+        assertTrue(forwarder.forward(node, entries(3)));
+        await(forwarder::forwarded, 3);
+
+        // the owner goes away mid-forward: what is acknowledged stays queued and is retried
+        owner.stop(0);
+        assertTrue(forwarder.forward(node, entries(4)));
+        Thread.sleep(1_000);
+        assertTrue(forwarder.forward(node, entries(4)));
+        assertEquals(0, forwarder.failed());
+        assertEquals(3, forwarder.forwarded());
+
+        // acknowledged and undelivered entries use up the capacity, a batch that doesn't fit is refused whole
+        assertFalse(forwarder.forward(node, entries(3)));
+        assertEquals(3, forwarder.rejected());
+        assertTrue(forwarder.forward(node, entries(2)));
+
+        startOwner(port, 202);
+        await(forwarder::forwarded, 13);
+        assertEquals(13, received.get());
+        assertEquals(0, forwarder.failed());
+        assertEquals(0, forwarder.queued());
+        // the room is given back once the owner has the entries
+        assertTrue(forwarder.forward(node, entries(10)));
+        await(forwarder::forwarded, 23);
+    }
+
+    @Test
+    void aBatchTheOwnerRefusesIsNotRetried() throws Exception {
+        startOwner(0, 400);
+        String node = node();
+        ClusterForwarder forwarder = forwarder(node, 10);
+        assertTrue(forwarder.forward(node, entries(3)));
+
+        await(forwarder::failed, 3);
+        assertEquals(0, forwarder.forwarded());
+        // the room is freed for later entries
+        assertTrue(forwarder.forward(node, entries(10)));
+    }
+}
@@ -0,0 +1,223 @@
+package com.example.log_aggregator.cluster;
+
+import com.example.log_aggregator.DistributedLogAggregatorApplication;
+import com.example.log_aggregator.service.LogService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.StringJoiner;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Three nodes of a cluster on localhost ports, in one JVM.
+ */
+class ClusterTest {
+    private static final int SERVICES = 12;
+    private static final int ENTRIES_PER_SERVICE = 5;
+    private static final Instant BASE = Instant.now().truncatedTo(ChronoUnit.SECONDS).minusSeconds(600);
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final HttpClient httpClient = HttpClient.newHttpClient();
+    private static final List<String> nodes = new ArrayList<>();
+    private static final List<ConfigurableApplicationContext> contexts = new ArrayList<>();
+    private static HashRing ring;
+
+    @BeforeAll
+    static void startNodes() throws IOException {
+        // the ring depends on the ports, pick them again until every node owns one of the services
+        do {
+            nodes.clear();
+            for (int i = 0; i < 3; i++) {
+                try (ServerSocket socket = new ServerSocket(0)) {
+                    nodes.add("http://localhost:" + socket.getLocalPort());
+                }
+            }
+            ring = new HashRing(nodes, 128);
+        } while (!everyNodeOwnsAService(ring, nodes));
+        for (String node : nodes) {
+            // as arguments, which take precedence over application.properties
+            contexts.add(new SpringApplicationBuilder(DistributedLogAggregatorApplication.class)
+                    .run("--server.port=" + URI.create(node).getPort(),
+                            "--aggregator.cluster.enabled=true",
+                            "--aggregator.cluster.self=" + node,
+                            "--aggregator.cluster.nodes=" + String.join(",", nodes)));
+        }
+    }
+
+    private static boolean everyNodeOwnsAService(HashRing ring, List<String> nodes) {
+        List<String> owners = new ArrayList<>();
+        for (int s = 0; s < SERVICES; s++) {
+            owners.add(ring.ownerOf(service(s)));
+        }
+        return owners.containsAll(nodes);
+    }
+
+    @AfterAll
+    static void stopNodes() {
+        contexts.forEach(ConfigurableApplicationContext::close);
+    }
+
+    private static String service(int i) {
+        return "service-" + i;
+    }
+
+    @Test
+    void servicesAreStoredOnTheirOwnersAndQueriedFromAnyNode() throws Exception {
+        List<String> owners = new ArrayList<>();
+        for (int s = 0; s < SERVICES; s++) {
+            owners.add(ring.ownerOf(service(s)));
+        }
+        assertTrue(owners.containsAll(nodes), "every node owns a service");
+
+        // a batch of every service, and an invalid entry of a service owned elsewhere, sent to the first node
+        StringJoiner batch = new StringJoiner(",", "[", "]");
+        for (int i = 0; i < ENTRIES_PER_SERVICE; i++) {
+            for (int s = 0; s < SERVICES; s++) {
+                batch.add(entry(service(s), BASE.plusSeconds(i), "log " + i));
+            }
+        }
+        int remote = owners.indexOf(nodes.get(1));
+        batch.add("{\"service_name\":\"" + service(remote) + "\",\"timestamp\":\"" + BASE + "\"}");
+        HttpResponse<String> response = post(nodes.get(0) + "/logs/batch", batch.toString());
+        assertEquals(200, response.statusCode());
+        JsonNode ingested = objectMapper.readTree(response.body());
+        assertEquals(SERVICES * ENTRIES_PER_SERVICE, ingested.get("accepted").asInt());
+        assertEquals(SERVICES * ENTRIES_PER_SERVICE, ingested.get("rejections").get(0).get("index").asInt());
+
+        response = post(nodes.get(0) + "/logs",
+                entry(service(remote), BASE.plusSeconds(ENTRIES_PER_SERVICE), "single"));
+        assertEquals(202, response.statusCode());
+        long forwarded = owners.stream().filter(owner -> !owner.equals(nodes.get(0))).count() * ENTRIES_PER_SERVICE;
+        awaitForwarding(nodes.get(0), forwarded + 1);
+
+        Instant end = BASE.plusSeconds(60);
+        for (int s = 0; s < SERVICES; s++) {
+            int expected = ENTRIES_PER_SERVICE + (s == remote ? 1 : 0);
+            for (int n = 0; n < nodes.size(); n++) {
+                LogService logService = contexts.get(n).getBean(LogService.class);
+                assertEquals(nodes.get(n).equals(owners.get(s)) ? expected : 0,
+                        logService.queryLogs(service(s), BASE, end).size(), service(s) + " on " + nodes.get(n));
+            }
+            for (String node : nodes) {
+                JsonNode logs = objectMapper.readTree(get(node, "service=" + service(s), end, "").body());
+                assertEquals(expected, logs.size());
+            }
+        }
+
+        for (String order : List.of("asc", "desc")) {
+            List<String> expected = new ArrayList<>();
+            for (int i = 0; i <= ENTRIES_PER_SERVICE; i++) {
+                List<String> services = new ArrayList<>();
+                for (int s = 0; s < SERVICES; s++) {
+                    if (i < ENTRIES_PER_SERVICE || s == remote) {
+                        services.add(service(s));
+                    }
+                }
+                services.sort(Comparator.naturalOrder());
+                for (String service : services) {
+                    expected.add(BASE.plusSeconds(i) + " " + service);
+                }
+            }
+            if (order.equals("desc")) {
+                Collections.reverse(expected);
+            }
+            assertEquals(expected, readPages(nodes.get(2), "service=service-*&order=" + order, end));
+        }
+    }
+
+    @Test
+    void streamsArePassedThroughFromTheOwner() throws Exception {
+        String service = "stream-service";
+        String owner = ring.ownerOf(service);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(201, post(owner + "/logs", entry(service, BASE.plusSeconds(i), "line " + i)).statusCode());
+        }
+
+        Instant end = BASE.plusSeconds(60);
+        for (String node : nodes) {
+            HttpResponse<String> response = get(node, "service=" + service + "&stream=true", end, "");
+            assertEquals(200, response.statusCode());
+            assertEquals("application/x-ndjson", response.headers().firstValue("Content-Type").orElseThrow()
+                    .split(";")[0]);
+            List<String> messages = new ArrayList<>();
+            for (String line : response.body().split("\n")) {
+                messages.add(objectMapper.readTree(line).get("message").asText());
+            }
+            assertEquals(List.of("line 0", "line 1", "line 2"), messages, "streamed from " + node);
+        }
+
+        // services on several nodes can't be passed through from one
+        HttpResponse<String> response = get(nodes.get(0), "service=service-*&stream=true", end, "");
+        assertEquals(421, response.statusCode());
+    }
+
+    /**
+     * reads every page of 7 entries, which end between entries of one node and of one timestamp
+     */
+    private static List<String> readPages(String node, String query, Instant end) throws Exception {
+        List<String> logs = new ArrayList<>();
+        String cursor = null;
+        do {
+            HttpResponse<String> response = get(node, query + "&limit=7", end,
+                    cursor == null ? "" : "&cursor=" + URLEncoder.encode(cursor, StandardCharsets.UTF_8));
+            assertEquals(200, response.statusCode());
+            JsonNode page = objectMapper.readTree(response.body());
+            assertFalse(page.isEmpty());
+            page.forEach(log -> logs.add(log.get("timestamp").asText() + " " + log.get("service_name").asText()));
+            cursor = response.headers().firstValue("X-Next-Cursor").orElse(null);
+        } while (cursor != null);
+        return logs;
+    }
+
+    private static void awaitForwarding(String node, long entries) throws Exception {
+        long deadline = System.currentTimeMillis() + 10_000;
+        JsonNode status;
+        do {
+            Thread.sleep(50);
+            status = objectMapper.readTree(httpClient.send(HttpRequest.newBuilder(URI.create(node + "/logs/cluster"))
+                    .build(), HttpResponse.BodyHandlers.ofString()).body());
+        } while (status.get("forwarded").asLong() < entries && System.currentTimeMillis() < deadline);
+        assertEquals(entries, status.get("forwarded").asLong());
+        assertEquals(0, status.get("failed").asLong());
+        status.get("queued").forEach(queued -> assertEquals(0, queued.asLong()));
+    }
+
+    private static String entry(String service, Instant timestamp, String message) {
+        return "{\"service_name\":\"" + service + "\",\"timestamp\":\"" + timestamp + "\",\"message\":\"" + message
+                + "\"}";
+    }
+
+    private static HttpResponse<String> post(String url, String body) throws Exception {
+        return httpClient.send(HttpRequest.newBuilder(URI.create(url))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static HttpResponse<String> get(String node, String query, Instant end, String more) throws Exception {
+        return httpClient.send(HttpRequest.newBuilder(URI.create(node + "/logs?" + query + "&start=" + BASE
+                + "&end=" + end + more)).build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
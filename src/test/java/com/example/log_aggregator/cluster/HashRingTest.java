@@ -0,0 +1,60 @@
+package com.example.log_aggregator.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HashRingTest {
+    private static final List<String> NODES = List.of("http://node-a:8080", "http://node-b:8080", "http://node-c:8080");
+    private static final int KEYS = 30_000;
+
+    @Test
+    void everyNodeComputesTheSameOwners() {
+        HashRing ring = new HashRing(NODES, 128);
+        HashRing reordered = new HashRing(List.of(NODES.get(2), NODES.get(0), NODES.get(1)), 128);
+        for (int i = 0; i < KEYS; i++) {
+            assertEquals(ring.ownerOf("service-" + i), reordered.ownerOf("service-" + i));
+        }
+    }
+
+    @Test
+    void servicesAreSpreadEvenly() {
+        HashRing ring = new HashRing(NODES, 128);
+        Map<String, Integer> owned = new HashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            owned.merge(ring.ownerOf("service-" + i), 1, Integer::sum);
+        }
+        assertEquals(3, owned.size());
+        owned.values().forEach(count -> assertTrue(count > KEYS / 4 && count < KEYS * 5 / 12, owned.toString()));
+    }
+
+    @Test
+    void addingANodeOnlyMovesServicesToIt() {
+        HashRing ring = new HashRing(NODES, 128);
+        HashRing grown = new HashRing(List.of(NODES.get(0), NODES.get(1), NODES.get(2), "http://node-d:8080"), 128);
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            String before = ring.ownerOf("service-" + i);
+            String after = grown.ownerOf("service-" + i);
+            if (!before.equals(after)) {
+                assertEquals("http://node-d:8080", after);
+                moved++;
+            }
+        }
+        // about a quarter of the services
+        assertTrue(moved > KEYS / 6 && moved < KEYS / 3, "moved " + moved);
+    }
+
+    @Test
+    void ringNeedsNodesAndVirtualNodes() {
+        assertThrows(IllegalArgumentException.class, () -> new HashRing(List.of(), 128));
+        assertThrows(IllegalArgumentException.class, () -> new HashRing(NODES, 0));
+        assertEquals("http://node-a:8080", new HashRing(List.of("http://node-a:8080"), 1).ownerOf("auth"));
+    }
+}
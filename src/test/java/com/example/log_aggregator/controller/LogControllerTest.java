@@ -1,8 +1,22 @@
 package com.example.log_aggregator.controller;
 
+import com.example.log_aggregator.model.BatchIngestResponse;
+import com.example.log_aggregator.model.IngestMetrics;
+import com.example.log_aggregator.model.LogCursor;
 import com.example.log_aggregator.model.LogEntry;
+import com.example.log_aggregator.model.LogLevel;
+import com.example.log_aggregator.model.LogPage;
 import com.example.log_aggregator.model.LogResponse;
+import com.example.log_aggregator.model.LogStats;
+import com.example.log_aggregator.model.MemoryUsage;
+import com.example.log_aggregator.model.QueryCacheStats;
+import com.example.log_aggregator.model.ServiceVolume;
+import com.example.log_aggregator.model.SortOrder;
+import com.example.log_aggregator.repository.InMemoryLogRepository;
+import com.example.log_aggregator.service.IngestRejectedException;
 import com.example.log_aggregator.service.LogService;
+import com.example.log_aggregator.service.LogTailBroadcaster;
+import com.example.log_aggregator.service.TailSink;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
@@ -14,13 +28,24 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Primary;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -67,6 +92,139 @@ class LogControllerTest {
         verify(logService, times(1)).saveLog(any(LogEntry.class));
     }
 
+    @Test
+    void ingestLogAsyncAccepted() throws Exception {
+        reset(logService);
+        when(logService.isAsyncIngest()).thenReturn(true);
+        LogEntry logEntry = new LogEntry("test-service", Instant.parse("2025-03-17T10:15:00Z"), "Test log message");
+
+        mockMvc.perform(post("/logs")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(logEntry)))
+                .andExpect(status().isAccepted());
+
+        verify(logService, times(1)).submitLog(any(LogEntry.class));
+        verify(logService, never()).saveLog(any(LogEntry.class));
+        reset(logService);
+    }
+
+    @Test
+    void ingestLogAsyncBufferFull() throws Exception {
+        reset(logService);
+        when(logService.isAsyncIngest()).thenReturn(true);
+        doThrow(new IngestRejectedException(2)).when(logService).submitLog(any(LogEntry.class));
+        LogEntry logEntry = new LogEntry("test-service", Instant.parse("2025-03-17T10:15:00Z"), "Test log message");
+
+        mockMvc.perform(post("/logs")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(logEntry)))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "2"));
+        reset(logService);
+    }
+
+    @Test
+    void ingestBatchOverMemoryBudget() throws Exception {
+        reset(logService);
+        when(logService.saveLogs(anyList())).thenThrow(new IngestRejectedException("Memory budget exceeded", 5));
+        LogEntry logEntry = new LogEntry("test-service", Instant.parse("2025-03-17T10:15:00Z"), "Test log message");
+
+        mockMvc.perform(post("/logs/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(logEntry))))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "5"));
+        reset(logService);
+    }
+
+    @Test
+    void logStats() throws Exception {
+        reset(logService);
+        Instant start = Instant.parse("2025-03-17T10:00:00Z");
+        Instant end = Instant.parse("2025-03-17T10:02:00Z");
+        when(logService.logStats(List.of("auth", "payments"), start, end, Duration.ofSeconds(30)))
+                .thenReturn(new LogStats(start, end, 30, 3, Map.of("payments", 3L),
+                        List.of(new LogStats.Bucket(start, 3, Map.of("payments", 3L)))));
+
+        mockMvc.perform(get("/logs/stats")
+                        .param("service", "auth", "payments")
+                        .param("start", "2025-03-17T10:00:00Z")
+                        .param("end", "2025-03-17T10:02:00Z")
+                        .param("interval", "30s"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.interval_seconds").value(30))
+                .andExpect(jsonPath("$.services.payments").value(3))
+                .andExpect(jsonPath("$.buckets[0].start").value("2025-03-17T10:00:00Z"))
+                .andExpect(jsonPath("$.buckets[0].total").value(3));
+
+        mockMvc.perform(get("/logs/stats")
+                        .param("start", "2025-03-17T10:00:00Z")
+                        .param("end", "2025-03-18T10:00:00Z")
+                        .param("interval", "1s"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/logs/stats")
+                        .param("start", "2025-03-17T10:00:00Z")
+                        .param("end", "2025-03-17T10:02:00Z")
+                        .param("interval", "often"))
+                .andExpect(status().isBadRequest());
+        reset(logService);
+    }
+
+    @Test
+    void topServices() throws Exception {
+        reset(logService);
+        when(logService.topServices(15, 10)).thenReturn(List.of(new ServiceVolume("payments", 42)));
+
+        mockMvc.perform(get("/logs/stats/top").param("minutes", "15"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].service_name").value("payments"))
+                .andExpect(jsonPath("$[0].count").value(42));
+        reset(logService);
+    }
+
+    @Test
+    void memoryUsage() throws Exception {
+        reset(logService);
+        when(logService.memoryUsage()).thenReturn(new MemoryUsage(300, 1024, 0, "evict-oldest", 64, 1, 0,
+                new LinkedHashMap<>(Map.of("payments", 300L))));
+        mockMvc.perform(get("/logs/memory"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.used_bytes").value(300))
+                .andExpect(jsonPath("$.max_bytes_per_service").value(0))
+                .andExpect(jsonPath("$.evicted_buckets").value(1))
+                .andExpect(jsonPath("$.services.payments").value(300));
+        reset(logService);
+    }
+
+    @Test
+    void queryCacheStats() throws Exception {
+        reset(logService);
+        when(logService.queryCacheStats()).thenReturn(new QueryCacheStats(2, 4096, 1 << 20, 30, 10, 0.75, 3, 0));
+        mockMvc.perform(get("/logs/cache"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.entries").value(2))
+                .andExpect(jsonPath("$.used_bytes").value(4096))
+                .andExpect(jsonPath("$.hit_ratio").value(0.75))
+                .andExpect(jsonPath("$.invalidations").value(3));
+        reset(logService);
+    }
+
+    @Test
+    void ingestMetrics() throws Exception {
+        reset(logService);
+        mockMvc.perform(get("/logs/ingest/metrics"))
+                .andExpect(status().isNotFound());
+
+        when(logService.isAsyncIngest()).thenReturn(true);
+        when(logService.ingestMetrics()).thenReturn(new IngestMetrics(3, 1024, "block", 10, 7, 0, 0, 0, 1.5, 4.0));
+        mockMvc.perform(get("/logs/ingest/metrics"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.queue_depth").value(3))
+                .andExpect(jsonPath("$.overflow_policy").value("block"))
+                .andExpect(jsonPath("$.drain_latency_max_ms").value(4.0));
+        reset(logService);
+    }
+
     @Test
     void ingestLogBadRequest() throws Exception {
         // create invalid log entry with missing service name
@@ -86,6 +244,63 @@ class LogControllerTest {
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    void ingestBatchJsonArray() throws Exception {
+        List<LogEntry> batch = List.of(
+                new LogEntry("test-service", Instant.parse("2025-03-17T10:15:00Z"), "Message 1"),
+                new LogEntry("", Instant.parse("2025-03-17T10:16:00Z"), "Message 2")
+        );
+
+        when(logService.saveLogs(anyList())).thenReturn(new BatchIngestResponse(1,
+                List.of(new BatchIngestResponse.Rejection(1, "Service name cannot be empty"))));
+
+        mockMvc.perform(post("/logs/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(batch)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accepted").value(1))
+                .andExpect(jsonPath("$.rejected").value(1))
+                .andExpect(jsonPath("$.rejections[0].index").value(1))
+                .andExpect(jsonPath("$.rejections[0].reason").value("Service name cannot be empty"));
+    }
+
+    @Test
+    void ingestBatchNdjson() throws Exception {
+        String body = "{\"service_name\":\"test-service\",\"timestamp\":\"2025-03-17T10:15:00Z\",\"message\":\"Message 1\"}\n"
+                + "\n"
+                + "{\"service_name\":\"test-service\",\"timestamp\":\"2025-03-17T10:16:00Z\",\"message\":\"Message 2\"}\n";
+
+        when(logService.saveLogs(anyList())).thenReturn(new BatchIngestResponse(2, List.of()));
+
+        mockMvc.perform(post("/logs/batch")
+                        .contentType("application/x-ndjson")
+                        .content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accepted").value(2))
+                .andExpect(jsonPath("$.rejected").value(0));
+
+        verify(logService).saveLogs(argThat(entries -> entries.size() == 2
+                && entries.get(1).getMessage().equals("Message 2")));
+    }
+
+    @Test
+    void ingestBatchNdjsonMalformedLine() throws Exception {
+        mockMvc.perform(post("/logs/batch")
+                        .contentType("application/x-ndjson")
+                        .content("{\"service_name\":\"test-service\",\"message\":\"ok\"}\n{not json\n"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void ingestBatchTooLarge() throws Exception {
+        String line = "{\"service_name\":\"test-service\",\"message\":\"Message\"}\n";
+
+        mockMvc.perform(post("/logs/batch")
+                        .contentType("application/x-ndjson")
+                        .content(line.repeat(1001)))
+                .andExpect(status().isPayloadTooLarge());
+    }
+
     @Test
     void queryLogsSuccess() throws Exception {
         String serviceName = "auth-service";
@@ -120,6 +335,140 @@ class LogControllerTest {
         verify(logService, times(1)).queryLogs(serviceName, startTime, endTime);
     }
 
+    @Test
+    void queryLogsPaged() throws Exception {
+        Instant startTime = Instant.parse("2025-03-17T10:00:00Z");
+        Instant endTime = Instant.parse("2025-03-17T10:30:00Z");
+        LogCursor after = new LogCursor(Instant.parse("2025-03-17T10:20:00Z"), 7);
+        LogCursor next = new LogCursor(Instant.parse("2025-03-17T10:15:00Z"), 5);
+
+        when(logService.queryLogPage("paged-service", startTime, endTime, after, 1, SortOrder.DESC))
+                .thenReturn(new LogPage<>(List.of(new LogResponse(next.getTimestamp(), "Older")), next));
+
+        mockMvc.perform(get("/logs")
+                        .param("service", "paged-service")
+                        .param("start", "2025-03-17T10:00:00Z")
+                        .param("end", "2025-03-17T10:30:00Z")
+                        .param("limit", "1")
+                        .param("order", "desc")
+                        .param("cursor", after.encode()))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Next-Cursor", next.encode()))
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].message").value("Older"));
+    }
+
+    @Test
+    void searchLogs() throws Exception {
+        Instant startTime = Instant.parse("2025-03-17T10:00:00Z");
+        Instant endTime = Instant.parse("2025-03-17T10:30:00Z");
+        LogCursor next = new LogCursor(Instant.parse("2025-03-17T10:05:00Z"), 3);
+
+        when(logService.filterLogPage(eq("auth-service"), eq(startTime), eq(endTime),
+                argThat(filter -> filter.getText().toString().equals("login OR logout") && filter.getMinLevel() == null
+                        && filter.getAttributes().isEmpty()), isNull(), eq(10000), eq(SortOrder.ASC)))
+                .thenReturn(new LogPage<>(List.of(new LogResponse(next.getTimestamp(), "User login successful")),
+                        next));
+
+        mockMvc.perform(get("/logs")
+                        .param("service", "auth-service")
+                        .param("start", "2025-03-17T10:00:00Z")
+                        .param("end", "2025-03-17T10:30:00Z")
+                        .param("q", "login OR logout"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Next-Cursor", next.encode()))
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].message").value("User login successful"));
+
+        // the query is parsed before the service is called
+        mockMvc.perform(get("/logs")
+                        .param("service", "auth-service")
+                        .param("start", "2025-03-17T10:00:00Z")
+                        .param("end", "2025-03-17T10:30:00Z")
+                        .param("q", "\"unclosed"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void queryLogsAcrossServices() throws Exception {
+        Instant startTime = Instant.parse("2025-03-17T10:00:00Z");
+        Instant endTime = Instant.parse("2025-03-17T10:30:00Z");
+        LogResponse first = new LogResponse(Instant.parse("2025-03-17T10:05:00Z"), "Charge declined");
+        first.setServiceName("payments-api");
+        LogResponse second = new LogResponse(Instant.parse("2025-03-17T10:06:00Z"), "Token expired");
+        second.setServiceName("auth");
+        LogCursor next = new LogCursor(second.getTimestamp(), "auth", 4);
+
+        when(logService.queryServicesPage(List.of("payments-*", "auth"), startTime, endTime, null, Map.of(), null,
+                50, SortOrder.ASC))
+                .thenReturn(new LogPage<>(List.of(first, second), next));
+
+        mockMvc.perform(get("/logs")
+                        .param("service", "payments-*,auth")
+                        .param("start", "2025-03-17T10:00:00Z")
+                        .param("end", "2025-03-17T10:30:00Z")
+                        .param("limit", "50"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Next-Cursor", next.encode()))
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].service_name").value("payments-api"))
+                .andExpect(jsonPath("$[1].service_name").value("auth"));
+    }
+
+    @Test
+    void filterLogsByLevelAndAttributes() throws Exception {
+        Instant startTime = Instant.parse("2025-03-17T10:00:00Z");
+        Instant endTime = Instant.parse("2025-03-17T10:30:00Z");
+        Instant timestamp = Instant.parse("2025-03-17T10:05:00Z");
+
+        when(logService.filterLogPage(eq("payments"), eq(startTime), eq(endTime),
+                argThat(filter -> filter.getText() == null && filter.getMinLevel() == LogLevel.WARN
+                        && filter.getAttributes().equals(Map.of("trace_id", "abc"))), isNull(), eq(10000),
+                eq(SortOrder.ASC)))
+                .thenReturn(new LogPage<>(List.of(new LogResponse(timestamp, "Payment failed", LogLevel.ERROR,
+                        Map.of("trace_id", "abc"))), null));
+
+        // the query string level>=WARN&trace_id=abc
+        mockMvc.perform(get("/logs")
+                        .param("service", "payments")
+                        .param("start", "2025-03-17T10:00:00Z")
+                        .param("end", "2025-03-17T10:30:00Z")
+                        .param("level>", "WARN")
+                        .param("trace_id", "abc"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].level").value("ERROR"))
+                .andExpect(jsonPath("$[0].attributes.trace_id").value("abc"));
+
+        when(logService.filterLogPage(eq("payments"), any(), any(),
+                argThat(filter -> filter.getAttributes().equals(Map.of("user", "42"))), any(), anyInt(), any()))
+                .thenThrow(new IllegalArgumentException("Attribute user is not indexed"));
+
+        mockMvc.perform(get("/logs")
+                        .param("service", "payments")
+                        .param("start", "2025-03-17T10:00:00Z")
+                        .param("end", "2025-03-17T10:30:00Z")
+                        .param("user", "42"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void queryLogsInvalidPagingParameters() throws Exception {
+        mockMvc.perform(get("/logs")
+                        .param("service", "test-service")
+                        .param("start", "2025-03-17T10:00:00Z")
+                        .param("end", "2025-03-17T10:30:00Z")
+                        .param("cursor", "not-a-cursor"))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(get("/logs")
+                        .param("service", "test-service")
+                        .param("start", "2025-03-17T10:00:00Z")
+                        .param("end", "2025-03-17T10:30:00Z")
+                        .param("order", "sideways"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void queryLogsEmptyResult() throws Exception {
         // simulate no logs found
@@ -149,4 +498,155 @@ class LogControllerTest {
                         .param("end", "2025-03-17T10:30:00Z"))
                 .andExpect(status().isBadRequest());
     }
-}
\ No newline at end of file
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void streamLogsAsNdjson() throws Exception {
+        Instant startTime = Instant.parse("2025-03-17T10:00:00Z");
+        Instant endTime = Instant.parse("2025-03-17T10:30:00Z");
+
+        doAnswer(invocation -> {
+            Consumer<LogEntry> action = invocation.getArgument(5);
+            action.accept(new LogEntry("stream-service", Instant.parse("2025-03-17T10:05:00Z"), "First"));
+            action.accept(new LogEntry("stream-service", Instant.parse("2025-03-17T10:15:00Z"), "Second"));
+            return null;
+        }).when(logService).streamLogs(eq("stream-service"), eq(startTime), eq(endTime), isNull(),
+                eq(Map.of()), any(Consumer.class));
+
+        mockMvc.perform(get("/logs")
+                        .param("service", "stream-service")
+                        .param("start", "2025-03-17T10:00:00Z")
+                        .param("end", "2025-03-17T10:30:00Z")
+                        .param("stream", "true"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("application/x-ndjson"))
+                .andExpect(content().string(
+                        "{\"timestamp\":\"2025-03-17T10:05:00Z\",\"message\":\"First\"}\n"
+                                + "{\"timestamp\":\"2025-03-17T10:15:00Z\",\"message\":\"Second\"}\n"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void streamLogsInvalidRange() throws Exception {
+        doThrow(new IllegalArgumentException("Start time cannot be after end time"))
+                .when(logService).streamLogs(eq("invalid-range"), any(Instant.class), any(Instant.class), any(), any(),
+                        any(Consumer.class));
+
+        mockMvc.perform(get("/logs")
+                        .param("service", "invalid-range")
+                        .param("start", "2025-03-17T10:30:00Z")
+                        .param("end", "2025-03-17T10:00:00Z")
+                        .param("stream", "true"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void streamLogsKeepsOnlyEntriesMatchingTheQuery() throws Exception {
+        InMemoryLogRepository repository = new InMemoryLogRepository();
+        repository.saveAll(List.of(
+                new LogEntry("checkout", Instant.parse("2025-03-17T10:05:00Z"), "Upstream timeout after 5s"),
+                new LogEntry("checkout", Instant.parse("2025-03-17T10:06:00Z"), "Order placed"),
+                new LogEntry("billing", Instant.parse("2025-03-17T10:07:00Z"), "Invoice timeout")));
+        MockMvc streaming = MockMvcBuilders.standaloneSetup(new LogController(new LogService(repository),
+                new LogEntryDecoder(objectMapper), objectMapper, 1000, 10000, 10000, null, null)).build();
+
+        streaming.perform(get("/logs")
+                        .param("service", "checkout")
+                        .param("start", "2025-03-17T10:00:00Z")
+                        .param("end", "2025-03-17T10:30:00Z")
+                        .param("q", "timeout")
+                        .param("stream", "true"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(
+                        "{\"timestamp\":\"2025-03-17T10:05:00Z\",\"message\":\"Upstream timeout after 5s\"}\n"));
+        streaming.perform(get("/logs")
+                        .param("service", "checkout", "billing")
+                        .param("start", "2025-03-17T10:00:00Z")
+                        .param("end", "2025-03-17T10:30:00Z")
+                        .param("q", "timeout")
+                        .param("stream", "true"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(
+                        "{\"service_name\":\"checkout\",\"timestamp\":\"2025-03-17T10:05:00Z\","
+                                + "\"message\":\"Upstream timeout after 5s\"}\n"
+                                + "{\"service_name\":\"billing\",\"timestamp\":\"2025-03-17T10:07:00Z\","
+                                + "\"message\":\"Invoice timeout\"}\n"));
+    }
+
+    @Test
+    void streamLogsKeepsOnlyEntriesMatchingTheLevelAndAttributeFilters() throws Exception {
+        LogEntry warning = new LogEntry("checkout", Instant.parse("2025-03-17T10:05:00Z"), "Slow payment");
+        warning.setLevel(LogLevel.WARN);
+        warning.setAttributes(Map.of("trace_id", "abc"));
+        LogEntry otherTrace = new LogEntry("checkout", Instant.parse("2025-03-17T10:06:00Z"), "Card declined");
+        otherTrace.setLevel(LogLevel.ERROR);
+        otherTrace.setAttributes(Map.of("trace_id", "def"));
+        LogEntry info = new LogEntry("checkout", Instant.parse("2025-03-17T10:07:00Z"), "Order placed");
+        info.setLevel(LogLevel.INFO);
+        info.setAttributes(Map.of("trace_id", "abc"));
+        InMemoryLogRepository repository = new InMemoryLogRepository();
+        repository.saveAll(List.of(warning, otherTrace, info));
+        MockMvc streaming = MockMvcBuilders.standaloneSetup(new LogController(new LogService(repository),
+                new LogEntryDecoder(objectMapper), objectMapper, 1000, 10000, 10000, null, null)).build();
+
+        streaming.perform(get("/logs")
+                        .param("service", "checkout")
+                        .param("start", "2025-03-17T10:00:00Z")
+                        .param("end", "2025-03-17T10:30:00Z")
+                        .param("level>", "WARN")
+                        .param("trace_id", "abc")
+                        .param("stream", "true"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("{\"timestamp\":\"2025-03-17T10:05:00Z\",\"message\":\"Slow payment\","
+                        + "\"level\":\"WARN\",\"attributes\":{\"trace_id\":\"abc\"}}\n"));
+        // as on the paged query, attributes that are not indexed are refused rather than ignored
+        streaming.perform(get("/logs")
+                        .param("service", "checkout")
+                        .param("start", "2025-03-17T10:00:00Z")
+                        .param("end", "2025-03-17T10:30:00Z")
+                        .param("user", "alice")
+                        .param("stream", "true"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void tailLogsAsServerSentEvents() throws Exception {
+        LogTailBroadcaster.Subscription subscription = mock(LogTailBroadcaster.Subscription.class);
+        AtomicReference<TailSink> sink = new AtomicReference<>();
+        when(logService.tail(eq(List.of("payments-*")), isNull(), eq(Map.of("level>", "WARN")), any(TailSink.class)))
+                .thenAnswer(invocation -> {
+                    sink.set(invocation.getArgument(3));
+                    return subscription;
+                });
+
+        MvcResult result = mockMvc.perform(get("/logs/tail")
+                        .param("service", "payments-*")
+                        .param("level>", "WARN"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        LogEntry logEntry = new LogEntry("payments-api", Instant.parse("2025-03-17T10:05:00Z"), "Charge declined");
+        logEntry.setLevel(LogLevel.ERROR);
+        sink.get().send(List.of(logEntry), 3);
+        sink.get().send(List.of(), 0);
+        sink.get().close();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(content().string(
+                        "event:dropped\ndata:{\"dropped\":3}\n\n"
+                                + "event:log\ndata:{\"timestamp\":\"2025-03-17T10:05:00Z\","
+                                + "\"message\":\"Charge declined\",\"level\":\"ERROR\","
+                                + "\"service_name\":\"payments-api\"}\n\n"
+                                + ":keep-alive\n\n"));
+    }
+
+    @Test
+    void tailLogsRefusedWhenTooManySessions() throws Exception {
+        when(logService.tail(anyList(), any(), any(), any(TailSink.class)))
+                .thenThrow(new IllegalStateException("Too many tail sessions, at most 1000 are allowed"));
+
+        mockMvc.perform(get("/logs/tail").param("service", "payments"))
+                .andExpect(status().isServiceUnavailable());
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.log_aggregator.controller;
+
+import com.example.log_aggregator.model.LogEntry;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LogEntryDecoderTest {
+    // configured like the application's mapper
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final LogEntryDecoder decoder = new LogEntryDecoder(objectMapper);
+
+    @Test
+    void decodesEntriesLikeDataBinding() throws IOException {
+        List<String> documents = List.of(
+                "{\"service_name\":\"auth\",\"timestamp\":\"2025-03-17T10:15:00Z\",\"message\":\"login\"}",
+                "{\"message\":\"m\",\"timestamp\":\"2025-03-17T10:15:00.123Z\",\"service_name\":\"auth\","
+                        + "\"level\":\"warning\",\"attributes\":{\"trace_id\":\"abc\",\"user\":\"42\"}}",
+                "{\"service_name\":\"auth\",\"timestamp\":\"2025-03-17T10:15:00.123456789+05:30\",\"message\":\"\","
+                        + "\"level\":\"Error\"}",
+                "{\"service_name\":\"auth\",\"timestamp\":\"1969-12-31T23:59:59.5-08:00\",\"message\":\"x\"}",
+                "{\"service_name\":\"auth\",\"timestamp\":\"2024-02-29T00:00:00Z\",\"message\":\"leap day\"}",
+                "{\"service_name\":\"auth\",\"timestamp\":\"0001-01-01T00:00:00Z\",\"message\":\"x\"}",
+                "{\"service_name\":\"auth\",\"timestamp\":\"9999-12-31T23:59:59.999999999Z\",\"message\":\"x\"}",
+                // handed to the regular deserializer
+                "{\"service_name\":\"auth\",\"timestamp\":1742206500.250,\"message\":\"epoch seconds\"}",
+                "{\"service_name\":\"auth\",\"timestamp\":\"2025-03-17T10:15:00+01:00:30\",\"message\":\"x\"}",
+                "{\"service_name\":\"auth\",\"timestamp\":null,\"message\":\"x\",\"level\":\" info \"}",
+                // coerced, skipped and repeated fields
+                "{\"service_name\":42,\"message\":true,\"attributes\":{\"count\":7,\"ok\":false,\"none\":null}}",
+                "{\"service_name\":\"auth\",\"extra\":{\"nested\":[1,{\"a\":2}]},\"message\":\"x\",\"other\":[]}",
+                "{\"service_name\":\"first\",\"service_name\":\"second\",\"message\":\"x\",\"attributes\":null}",
+                "{}");
+        for (String document : documents) {
+            assertSameEntry(objectMapper.readValue(document, LogEntry.class), decoder.readEntry(stream(document)));
+        }
+    }
+
+    @Test
+    void fastTimestampsMatchTheRegularParser() {
+        for (String text : List.of("2025-03-17T10:15:00Z", "2025-03-17T10:15:00.1Z", "2025-03-17T10:15:00.000001Z",
+                "2000-02-29T12:00:00+01:00", "1900-03-01T00:00:00-00:30", "2100-12-31T23:59:59.99+17:59")) {
+            char[] chars = ("\"" + text + "\"").toCharArray();
+            assertEquals(Instant.from(DateTimeFormatter.ISO_OFFSET_DATE_TIME.parse(text)),
+                    LogEntryDecoder.parseIsoInstant(chars, 1, text.length()), text);
+        }
+        for (String text : List.of("2025-03-17T10:15:60Z", "2025-02-29T10:15:00Z", "2025-13-01T10:15:00Z",
+                "2025-03-17T24:00:00Z", "2025-03-17T10:15:00.Z", "2025-03-17T10:15:00.1234567891Z",
+                "2025-03-17 10:15:00Z", "2025-03-17T10:15:00", "2025-03-17T10:15:00+0100", "+12025-03-17T10:15:00Z",
+                "2025-03-17T10:15:00+18:00")) {
+            assertNull(LogEntryDecoder.parseIsoInstant(text.toCharArray(), 0, text.length()), text);
+        }
+    }
+
+    @Test
+    void serviceNamesAreShared() throws IOException {
+        LogEntry first = decoder.readEntry(stream("{\"service_name\":\"payments\",\"message\":\"a\"}"));
+        LogEntry second = decoder.readEntry(stream("{\"service_name\":\"payments\",\"message\":\"b\"}"));
+        assertSame(first.getServiceName(), second.getServiceName());
+    }
+
+    @Test
+    void malformedEntriesAreRejected() {
+        for (String document : List.of("", "[]", "\"auth\"", "{\"service_name\":\"auth\"",
+                "{\"service_name\":\"auth\",\"message\":{\"text\":\"x\"}}",
+                "{\"service_name\":\"auth\",\"message\":\"x\",\"level\":\"verbose\"}",
+                "{\"service_name\":\"auth\",\"message\":\"x\",\"attributes\":[\"a\"]}",
+                "{\"service_name\":\"auth\",\"message\":\"x\",\"attributes\":{\"a\":{}}}",
+                "{\"service_name\":\"auth\",\"message\":\"x\",\"timestamp\":\"yesterday\"}")) {
+            assertThrows(JsonProcessingException.class, () -> decoder.readEntry(stream(document)), document);
+        }
+    }
+
+    @Test
+    void nullIsReadAsAMissingEntry() throws IOException {
+        assertNull(decoder.readEntry(stream("null")));
+        List<LogEntry> logEntries = decoder.readArray(stream("[null,{\"message\":\"x\"}]"), 10);
+        assertEquals(2, logEntries.size());
+        assertNull(logEntries.get(0));
+        assertEquals("x", logEntries.get(1).getMessage());
+    }
+
+    @Test
+    void arraysStopAtTheLimit() throws IOException {
+        String batch = "[{\"message\":\"1\"},{\"message\":\"2\"},{\"message\":\"3\"}]";
+        assertEquals(3, decoder.readArray(stream(batch), 3).size());
+        assertEquals(List.of("1", "2"),
+                decoder.readArray(stream(batch), 2).stream().map(LogEntry::getMessage).toList());
+        assertEquals(0, decoder.readArray(stream("[]"), 2).size());
+        assertThrows(JsonProcessingException.class, () -> decoder.readArray(stream("{\"message\":\"1\"}"), 2));
+        assertThrows(JsonProcessingException.class, () -> decoder.readArray(stream("[{\"message\":\"1\"}"), 2));
+    }
+
+    @Test
+    void sequencesReadOneEntryPerLine() throws IOException {
+        String lines = "{\"service_name\":\"a\",\"message\":\"1\"}\n\n  \n{\"service_name\":\"b\",\"message\":\"2\"}\n";
+        List<LogEntry> logEntries = decoder.readSequence(stream(lines), 10);
+        assertEquals(List.of("a", "b"), logEntries.stream().map(LogEntry::getServiceName).toList());
+        assertEquals(1, decoder.readSequence(stream(lines), 1).size());
+
+        JsonProcessingException e = assertThrows(JsonProcessingException.class,
+                () -> decoder.readSequence(stream("{\"message\":\"1\"}\n{\"message\":\"2\"\n{\"message\":\"3\"}"), 10));
+        assertEquals(3, e.getLocation().getLineNr());
+    }
+
+    private static void assertSameEntry(LogEntry expected, LogEntry actual) {
+        assertEquals(expected.getServiceName(), actual.getServiceName());
+        assertEquals(expected.getTimestamp(), actual.getTimestamp());
+        assertEquals(expected.getMessage(), actual.getMessage());
+        assertEquals(expected.getLevel(), actual.getLevel());
+        assertEquals(expected.getAttributes(), actual.getAttributes());
+    }
+
+    private static InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
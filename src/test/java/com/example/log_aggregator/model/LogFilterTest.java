@@ -0,0 +1,78 @@
+package com.example.log_aggregator.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LogFilterTest {
+
+    @Test
+    void levelNamesAreCaseInsensitive() {
+        assertEquals(LogLevel.WARN, LogLevel.fromString("warn"));
+        assertEquals(LogLevel.WARN, LogLevel.fromString("Warning"));
+        assertEquals(LogLevel.FATAL, LogLevel.fromString(" FATAL "));
+        assertThrows(IllegalArgumentException.class, () -> LogLevel.fromString("verbose"));
+        assertThrows(IllegalArgumentException.class, () -> LogLevel.fromString(null));
+    }
+
+    @Test
+    void levelComparisonsAreRebuiltFromParameterNames() {
+        // ?level>=WARN arrives as the parameter "level>" with the value "WARN"
+        LogFilter atLeast = LogFilter.parse(null, Map.of("level>", "WARN"));
+        assertEquals(LogLevel.WARN, atLeast.getMinLevel());
+        assertNull(atLeast.getMaxLevel());
+
+        LogFilter above = LogFilter.parse(null, Map.of("level>WARN", ""));
+        assertEquals(LogLevel.ERROR, above.getMinLevel());
+
+        LogFilter atMost = LogFilter.parse(null, Map.of("level<", "info"));
+        assertEquals(LogLevel.INFO, atMost.getMaxLevel());
+
+        LogFilter below = LogFilter.parse(null, Map.of("level<INFO", ""));
+        assertEquals(LogLevel.DEBUG, below.getMaxLevel());
+
+        LogFilter exact = LogFilter.parse(null, Map.of("level", "error"));
+        assertEquals(LogLevel.ERROR, exact.getMinLevel());
+        assertEquals(LogLevel.ERROR, exact.getMaxLevel());
+
+        assertThrows(IllegalArgumentException.class, () -> LogFilter.parse(null, Map.of("level>FATAL", "")));
+        assertThrows(IllegalArgumentException.class, () -> LogFilter.parse(null, Map.of("level", "loud")));
+        Map<String, String> inverted = new LinkedHashMap<>();
+        inverted.put("level>", "ERROR");
+        inverted.put("level<", "INFO");
+        assertThrows(IllegalArgumentException.class, () -> LogFilter.parse(null, inverted));
+    }
+
+    @Test
+    void otherParametersAreAttributeValues() {
+        LogFilter filter = LogFilter.parse("timeout", Map.of("trace_id", "abc", "levels", "x"));
+
+        assertEquals(Map.of("trace_id", "abc", "levels", "x"), filter.getAttributes());
+        assertFalse(filter.hasLevel());
+        assertEquals("timeout", filter.getText().toString());
+        assertThrows(IllegalArgumentException.class, () -> LogFilter.parse(null, Map.of("trace_id", " ")));
+        assertTrue(LogFilter.parse(null, Map.of()).isEmpty());
+    }
+
+    @Test
+    void matchesEveryCondition() {
+        Instant now = Instant.now();
+        LogEntry entry = new LogEntry("svc", now, "upstream timeout", LogLevel.ERROR, Map.of("trace_id", "abc"));
+        LogEntry unleveled = new LogEntry("svc", now, "upstream timeout");
+
+        assertTrue(LogFilter.parse("timeout", Map.of("level>", "WARN", "trace_id", "abc")).matches(entry));
+        assertFalse(LogFilter.parse(null, Map.of("level<", "WARN")).matches(entry));
+        assertFalse(LogFilter.parse(null, Map.of("trace_id", "xyz")).matches(entry));
+        assertFalse(LogFilter.parse(null, Map.of("level>", "TRACE")).matches(unleveled));
+        assertFalse(LogFilter.parse(null, Map.of("trace_id", "abc")).matches(unleveled));
+        assertTrue(LogFilter.parse("timeout", Map.of()).matches(unleveled));
+    }
+}
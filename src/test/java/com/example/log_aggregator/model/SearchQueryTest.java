@@ -0,0 +1,62 @@
+package com.example.log_aggregator.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SearchQueryTest {
+
+    @Test
+    void tokenizeLowercasesRunsOfLettersAndDigits() {
+        assertEquals(List.of("get", "api", "v1", "orders", "42", "500"),
+                SearchQuery.tokenize("GET /api/v1/orders/42 -> 500!"));
+        assertEquals(List.of(), SearchQuery.tokenize(" -- "));
+    }
+
+    @Test
+    void wordsAreAndedAndOrSeparatesAlternatives() {
+        SearchQuery query = SearchQuery.parse("payment declined OR timeout");
+
+        assertEquals(2, query.getClauses().size());
+        assertEquals(List.of("payment", "declined"), query.getClauses().get(0).getTerms());
+        assertTrue(query.matches("Payment 17 was declined"));
+        assertTrue(query.matches("upstream timeout"));
+        assertFalse(query.matches("payment accepted"));
+        assertFalse(query.matches(null));
+    }
+
+    @Test
+    void explicitAndIsIgnored() {
+        SearchQuery query = SearchQuery.parse("user AND login");
+
+        assertEquals(List.of("user", "login"), query.getClauses().get(0).getTerms());
+        assertFalse(query.hasPhrases());
+    }
+
+    @Test
+    void phrasesMustBeConsecutive() {
+        SearchQuery query = SearchQuery.parse("\"connection refused\" OR req-42");
+
+        assertTrue(query.hasPhrases());
+        assertEquals(List.of(List.of("connection", "refused")), query.getClauses().get(0).getPhrases());
+        assertEquals(List.of(List.of("req", "42")), query.getClauses().get(1).getPhrases());
+        assertTrue(query.matches("db: Connection refused (retrying)"));
+        assertFalse(query.matches("refused connection"));
+        assertTrue(query.matches("handled req 42"));
+        assertFalse(query.matches("req 7 took 42ms"));
+    }
+
+    @Test
+    void invalidQueriesAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> SearchQuery.parse(" "));
+        assertThrows(IllegalArgumentException.class, () -> SearchQuery.parse("\"unclosed"));
+        assertThrows(IllegalArgumentException.class, () -> SearchQuery.parse("a OR"));
+        assertThrows(IllegalArgumentException.class, () -> SearchQuery.parse("OR b"));
+        assertThrows(IllegalArgumentException.class, () -> SearchQuery.parse("a OR --"));
+    }
+}
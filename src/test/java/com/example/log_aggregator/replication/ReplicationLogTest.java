@@ -0,0 +1,99 @@
+package com.example.log_aggregator.replication;
+
+import com.example.log_aggregator.model.LogEntry;
+import com.example.log_aggregator.model.ReplicationBatch;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReplicationLogTest {
+    private static final Instant BASE = Instant.parse("2025-03-17T10:15:00Z");
+
+    private static List<LogEntry> entries(int from, int count) {
+        List<LogEntry> logEntries = new ArrayList<>();
+        for (int i = from; i < from + count; i++) {
+            logEntries.add(new LogEntry("auth", BASE.plusSeconds(i), "Log " + i));
+        }
+        return logEntries;
+    }
+
+    @Test
+    void entriesAreReadInOrderFromAnySequenceStillHeld() throws InterruptedException {
+        ReplicationLog replicationLog = new ReplicationLog(8, 42);
+        List<LogEntry> logEntries = entries(0, 5);
+        replicationLog.append(logEntries);
+
+        ReplicationBatch batch = replicationLog.read(1, 3, 0);
+        assertEquals(42, batch.getEpoch());
+        assertEquals(1, batch.getFirstSequence());
+        assertEquals(5, batch.getNextSequence());
+        assertEquals(3, batch.getEntries().size());
+        assertSame(logEntries.get(1), batch.getEntries().get(0));
+        assertSame(logEntries.get(3), batch.getEntries().get(2));
+
+        // the ring keeps the newest 8, a reader further behind continues from the oldest and sees the gap
+        replicationLog.append(entries(5, 7));
+        assertEquals(4, replicationLog.oldestSequence());
+        batch = replicationLog.read(2, 100, 0);
+        assertEquals(4, batch.getFirstSequence());
+        assertEquals(8, batch.getEntries().size());
+        assertEquals("Log 4", batch.getEntries().get(0).getMessage());
+        assertEquals("Log 11", batch.getEntries().get(7).getMessage());
+    }
+
+    @Test
+    void readersWaitForTheNextEntry() throws Exception {
+        ReplicationLog replicationLog = new ReplicationLog(8, 1);
+        ReplicationBatch empty = replicationLog.read(0, 10, 50);
+        assertTrue(empty.getEntries().isEmpty());
+        assertEquals(0, empty.getNextSequence());
+
+        CompletableFuture<ReplicationBatch> poll = CompletableFuture.supplyAsync(() -> {
+            try {
+                return replicationLog.read(0, 10, 10_000);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(50);
+        assertFalse(poll.isDone());
+        replicationLog.append(entries(0, 2));
+        assertEquals(2, poll.get(5, TimeUnit.SECONDS).getEntries().size());
+    }
+
+    @Test
+    void followerLogKeepsTheLeadersSequences() throws InterruptedException {
+        ReplicationLog replicationLog = new ReplicationLog(8, 0);
+        replicationLog.appendAt(7, 100, entries(0, 3));
+        assertEquals(7, replicationLog.epoch());
+        assertEquals(100, replicationLog.oldestSequence());
+        assertEquals(103, replicationLog.nextSequence());
+
+        replicationLog.appendAt(7, 103, entries(3, 2));
+        assertEquals(100, replicationLog.oldestSequence());
+        assertEquals(105, replicationLog.nextSequence());
+
+        // promoted, it goes on numbering where the leader stopped
+        replicationLog.append(entries(5, 1));
+        ReplicationBatch batch = replicationLog.read(104, 10, 0);
+        assertEquals(104, batch.getFirstSequence());
+        assertEquals(List.of("Log 4", "Log 5"), batch.getEntries().stream().map(LogEntry::getMessage).toList());
+
+        // a gap or another epoch starts over
+        replicationLog.appendAt(7, 200, entries(0, 1));
+        assertEquals(200, replicationLog.oldestSequence());
+        replicationLog.appendAt(8, 0, entries(0, 1));
+        assertEquals(8, replicationLog.epoch());
+        assertEquals(0, replicationLog.oldestSequence());
+        assertEquals(1, replicationLog.nextSequence());
+    }
+}
@@ -0,0 +1,189 @@
+package com.example.log_aggregator.replication;
+
+import com.example.log_aggregator.DistributedLogAggregatorApplication;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A leader and two followers on localhost ports, in one JVM. The second follower keeps a write-ahead log,
+ * so it can be restarted and catch up from its position.
+ */
+class ReplicationTest {
+    private static final Instant BASE = Instant.now().truncatedTo(ChronoUnit.SECONDS).minusSeconds(600);
+    private static final int MAX_LAG = 100;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+    private final List<ConfigurableApplicationContext> contexts = new ArrayList<>();
+
+    @TempDir
+    Path walDirectory;
+
+    @AfterEach
+    void stopNodes() {
+        contexts.forEach(ConfigurableApplicationContext::close);
+    }
+
+    @Test
+    void followersServeReadsAndCatchUpAfterARestart() throws Exception {
+        String leader = start("--aggregator.replication.max-lag=" + MAX_LAG,
+                "--aggregator.replication.follower-timeout-ms=60000");
+        int followerPort = freePort();
+        String follower = start("--aggregator.replication.leader=" + leader);
+        String durableFollower = "http://localhost:" + followerPort;
+        ConfigurableApplicationContext durable = startDurableFollower(leader, followerPort);
+
+        assertEquals(200, post(leader + "/logs/batch", batch(0, 50)).statusCode());
+        assertEquals(201, post(leader + "/logs", entry(50)).statusCode());
+        awaitCaughtUp(leader, List.of(follower, durableFollower), 51);
+        assertEquals(51, count(follower));
+        assertEquals(51, count(durableFollower));
+        assertEquals(421, post(follower + "/logs", entry(51)).statusCode());
+        String metrics = scrape(follower);
+        assertTrue(metrics.contains("aggregator_replication_lag_entries 0.0"), metrics);
+        assertTrue(metrics.contains("aggregator_replication_lag_time_seconds 0.0"), metrics);
+
+        // while the durable follower is down the leader keeps writing, up to the maximum lag
+        durable.close();
+        contexts.remove(durable);
+        assertEquals(200, post(leader + "/logs/batch", batch(51, 60)).statusCode());
+        HttpResponse<String> refused = post(leader + "/logs/batch", batch(111, 60));
+        assertEquals(429, refused.statusCode());
+        assertEquals("1", refused.headers().firstValue("Retry-After").orElseThrow());
+        assertEquals(60, status(leader).get("rejected").asLong());
+        assertTrue(scrape(leader).contains("aggregator_replication_lag_entries 60.0"));
+
+        startDurableFollower(leader, followerPort);
+        awaitCaughtUp(leader, List.of(follower, durableFollower), 111);
+        assertEquals(111, count(durableFollower), "replayed from the write-ahead log, then caught up, no duplicates");
+        assertEquals(200, post(leader + "/logs/batch", batch(111, 60)).statusCode());
+        awaitCaughtUp(leader, List.of(follower, durableFollower), 171);
+        assertEquals(171, count(follower));
+        assertEquals(171, count(durableFollower));
+
+        // failover: the promoted follower takes writes and continues the leader's sequences
+        HttpResponse<String> promoted = post(follower + "/logs/replication/promote", "");
+        assertEquals(200, promoted.statusCode());
+        JsonNode status = objectMapper.readTree(promoted.body());
+        assertEquals("leader", status.get("role").asText());
+        assertNull(status.get("leader"));
+        assertEquals(171, status.get("next_sequence").asLong());
+        assertEquals(201, post(follower + "/logs", entry(171)).statusCode());
+        assertEquals(172, status(follower).get("next_sequence").asLong());
+        assertEquals(409, post(follower + "/logs/replication/promote", "").statusCode());
+    }
+
+    private String start(String... args) throws IOException {
+        int port = freePort();
+        startNode(port, args);
+        return "http://localhost:" + port;
+    }
+
+    private ConfigurableApplicationContext startDurableFollower(String leader, int port) {
+        return startNode(port, "--aggregator.replication.leader=" + leader, "--aggregator.wal.enabled=true",
+                "--aggregator.wal.directory=" + walDirectory);
+    }
+
+    private ConfigurableApplicationContext startNode(int port, String... args) {
+        List<String> arguments = new ArrayList<>(List.of("--server.port=" + port,
+                "--aggregator.replication.enabled=true",
+                "--aggregator.replication.self=http://localhost:" + port,
+                "--aggregator.replication.poll-wait-ms=200"));
+        arguments.addAll(List.of(args));
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(DistributedLogAggregatorApplication.class)
+                .run(arguments.toArray(String[]::new));
+        contexts.add(context);
+        return context;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private void awaitCaughtUp(String leader, List<String> followers, long sequence) throws Exception {
+        long deadline = System.currentTimeMillis() + 10_000;
+        for (String follower : followers) {
+            JsonNode status;
+            do {
+                Thread.sleep(50);
+                status = status(follower);
+            } while (status.get("next_sequence").asLong() < sequence && System.currentTimeMillis() < deadline);
+            assertEquals("follower", status.get("role").asText());
+            assertEquals(leader, status.get("leader").asText());
+            assertEquals(sequence, status.get("next_sequence").asLong());
+            assertEquals(0, status.get("lag_entries").asLong());
+            assertEquals(0, status.get("missed").asLong());
+        }
+        // the leader counts a follower as caught up once it asks for what follows
+        for (String follower : followers) {
+            JsonNode lag;
+            do {
+                Thread.sleep(50);
+                lag = status(leader).get("followers").get(follower);
+            } while ((lag == null || lag.asLong() > 0) && System.currentTimeMillis() < deadline);
+            assertEquals(0, lag == null ? -1 : lag.asLong());
+        }
+    }
+
+    private JsonNode status(String node) throws Exception {
+        return objectMapper.readTree(httpClient.send(HttpRequest.newBuilder(URI.create(node + "/logs/replication"))
+                .build(), HttpResponse.BodyHandlers.ofString()).body());
+    }
+
+    private String scrape(String node) throws Exception {
+        return httpClient.send(HttpRequest.newBuilder(URI.create(node + "/actuator/prometheus")).build(),
+                HttpResponse.BodyHandlers.ofString()).body();
+    }
+
+    private int count(String node) throws Exception {
+        HttpResponse<String> response = httpClient.send(HttpRequest.newBuilder(URI.create(node
+                        + "/logs?service=auth&start=" + BASE + "&end=" + BASE.plusSeconds(3600))).build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode());
+        return objectMapper.readTree(response.body()).size();
+    }
+
+    private static String entry(int i) {
+        return "{\"service_name\":\"auth\",\"timestamp\":\"" + BASE.plusSeconds(i) + "\",\"message\":\"Log " + i
+                + "\"}";
+    }
+
+    private static String batch(int from, int count) {
+        StringJoiner batch = new StringJoiner(",", "[", "]");
+        for (int i = from; i < from + count; i++) {
+            batch.add(entry(i));
+        }
+        return batch.toString();
+    }
+
+    private HttpResponse<String> post(String url, String body) throws Exception {
+        return httpClient.send(HttpRequest.newBuilder(URI.create(url))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
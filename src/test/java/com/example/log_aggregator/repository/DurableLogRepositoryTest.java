@@ -0,0 +1,200 @@
+package com.example.log_aggregator.repository;
+
+import com.example.log_aggregator.model.LogEntry;
+import com.example.log_aggregator.model.LogFilter;
+import com.example.log_aggregator.model.LogLevel;
+import com.example.log_aggregator.model.SortOrder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DurableLogRepositoryTest {
+
+    @TempDir
+    Path walDirectory;
+
+    private DurableLogRepository repository;
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (repository != null) {
+            repository.close();
+        }
+    }
+
+    private DurableLogRepository open(FsyncPolicy fsyncPolicy, long segmentBytes) throws IOException {
+        return new DurableLogRepository(new InMemoryLogRepository(),
+                new WriteAheadLog(walDirectory, fsyncPolicy, 10, segmentBytes));
+    }
+
+    @Test
+    void replaysEntriesAfterRestart() throws IOException {
+        String serviceName = "test-service";
+        Instant now = Instant.now();
+        LogEntry log1 = new LogEntry(serviceName, now.minus(30, ChronoUnit.MINUTES), "Log message 1");
+        LogEntry log2 = new LogEntry(serviceName, now.minus(20, ChronoUnit.MINUTES), "Log message 2 é中");
+        LogEntry log3 = new LogEntry("other-service", now.minus(10, ChronoUnit.MINUTES), "Log message 3");
+
+        repository = open(FsyncPolicy.BATCH, 1024);
+        repository.save(log2);
+        repository.saveAll(List.of(log1, log3));
+        repository.close();
+
+        repository = open(FsyncPolicy.BATCH, 1024);
+
+        assertEquals(List.of(log1, log2),
+                repository.findByServiceNameAndTimeRange(serviceName, now.minus(1, ChronoUnit.HOURS), now));
+        assertEquals(List.of(log3),
+                repository.findByServiceNameAndTimeRange("other-service", now.minus(1, ChronoUnit.HOURS), now));
+    }
+
+    @Test
+    void replaysLevelsAndAttributes() throws IOException {
+        String serviceName = "test-service";
+        Instant now = Instant.now();
+        LogEntry plain = new LogEntry(serviceName, now.minus(30, ChronoUnit.MINUTES), "plain");
+        LogEntry leveled = new LogEntry(serviceName, now.minus(20, ChronoUnit.MINUTES), "leveled",
+                LogLevel.ERROR, null);
+        LogEntry traced = new LogEntry(serviceName, now.minus(10, ChronoUnit.MINUTES), "traced",
+                null, Map.of("trace_id", "abc-é", "user", "42"));
+        LogEntry both = new LogEntry(serviceName, now.minus(5, ChronoUnit.MINUTES), "both",
+                LogLevel.WARN, Map.of("trace_id", "abc-é"));
+
+        repository = open(FsyncPolicy.BATCH, 1024);
+        repository.saveAll(List.of(plain, leveled, traced, both));
+        repository.close();
+
+        repository = open(FsyncPolicy.BATCH, 1024);
+
+        assertEquals(List.of(plain, leveled, traced, both),
+                repository.findByServiceNameAndTimeRange(serviceName, now.minus(1, ChronoUnit.HOURS), now));
+        assertEquals(List.of(traced, both), repository.findPageMatching(serviceName, now.minus(1, ChronoUnit.HOURS),
+                now, LogFilter.parse(null, Map.of("trace_id", "abc-é")), null, 10, SortOrder.ASC).getItems());
+    }
+
+    @Test
+    void rejectedEntriesAreNotLogged() throws IOException {
+        Instant now = Instant.now();
+        LogEntry kept = new LogEntry("noisy-service", now.minus(5, ChronoUnit.MINUTES), "kept");
+        LogEntry rejected = new LogEntry("noisy-service", now.minus(4, ChronoUnit.MINUTES), "rejected");
+        MemoryBudget budget = new MemoryBudget(0, 1, MemoryPolicy.REJECT, 1);
+        WriteAheadLog writeAheadLog = new WriteAheadLog(walDirectory, FsyncPolicy.BATCH, 10, 1024);
+        repository = new DurableLogRepository(
+                new InMemoryLogRepository(1024, true, new RetentionPolicy(), budget), writeAheadLog);
+        repository.save(kept);
+        assertThrows(MemoryBudgetExceededException.class, () -> repository.save(rejected));
+        assertThrows(MemoryBudgetExceededException.class, () -> repository.saveAll(List.of(rejected)));
+        repository.close();
+
+        repository = open(FsyncPolicy.BATCH, 1024);
+
+        assertEquals(List.of(kept), repository.findByServiceNameAndTimeRange("noisy-service",
+                now.minus(1, ChronoUnit.HOURS), now));
+    }
+
+    @Test
+    void entriesTheStoreRefusesAreSkippedOnReplay() throws IOException {
+        Instant now = Instant.now();
+        LogEntry first = new LogEntry("first-service", now.minus(5, ChronoUnit.MINUTES), "first");
+        LogEntry refused = new LogEntry("refused-service", now.minus(4, ChronoUnit.MINUTES), "refused");
+        LogEntry second = new LogEntry("first-service", now.minus(3, ChronoUnit.MINUTES), "second");
+
+        repository = open(FsyncPolicy.BATCH, 1024);
+        repository.saveAll(List.of(first, refused, second));
+        repository.close();
+
+        // restarted with room for one service only
+        repository = new DurableLogRepository(new InMemoryLogRepository(1024, true, "trace_id",
+                new RetentionPolicy(), new MemoryBudget(), new ServiceRegistry(1), new QueryExecutor()),
+                new WriteAheadLog(walDirectory, FsyncPolicy.BATCH, 10, 1024));
+
+        assertEquals(1, repository.replayFailures());
+        assertEquals(List.of(first, second), repository.findByServiceNameAndTimeRange("first-service",
+                now.minus(1, ChronoUnit.HOURS), now));
+    }
+
+    @Test
+    void expiredEntriesAreNotReplayed() throws IOException {
+        String serviceName = "test-service";
+        Instant now = Instant.now();
+        LogEntry expired = new LogEntry(serviceName, now.minus(2, ChronoUnit.HOURS), "Expired log");
+        LogEntry valid = new LogEntry(serviceName, now.minus(15, ChronoUnit.MINUTES), "Valid log");
+
+        repository = open(FsyncPolicy.NEVER, 1024);
+        repository.save(expired);
+        repository.save(valid);
+        repository.close();
+
+        repository = open(FsyncPolicy.NEVER, 1024);
+
+        assertEquals(List.of(valid),
+                repository.findByServiceNameAndTimeRange(serviceName, now.minus(3, ChronoUnit.HOURS), now));
+    }
+
+    @Test
+    void tornTailIsTruncatedOnReplay() throws IOException {
+        String serviceName = "test-service";
+        Instant now = Instant.now();
+        LogEntry log1 = new LogEntry(serviceName, now.minus(5, ChronoUnit.MINUTES), "Complete record");
+
+        repository = open(FsyncPolicy.INTERVAL, 1024 * 1024);
+        repository.save(log1);
+        repository.close();
+
+        // simulate a crash in the middle of the next record
+        Path segment = listSegments().get(0);
+        byte[] partial = WriteAheadLog.encode(new LogEntry(serviceName, now, "Half written"));
+        Files.write(segment, Arrays.copyOf(partial, partial.length / 2), StandardOpenOption.APPEND);
+        long tornSize = Files.size(segment);
+
+        repository = open(FsyncPolicy.INTERVAL, 1024 * 1024);
+        LogEntry log2 = new LogEntry(serviceName, now.minus(1, ChronoUnit.MINUTES), "After restart");
+        repository.save(log2);
+
+        assertEquals(tornSize - partial.length / 2, Files.size(segment));
+        assertEquals(List.of(log1, log2),
+                repository.findByServiceNameAndTimeRange(serviceName, now.minus(1, ChronoUnit.HOURS), now));
+    }
+
+    @Test
+    void rollsSegmentsAndReplaysAllOfThem() throws IOException {
+        String serviceName = "test-service";
+        Instant base = Instant.now().minus(30, ChronoUnit.MINUTES);
+        List<LogEntry> expected = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            expected.add(new LogEntry(serviceName, base.plusSeconds(i), "Log " + i));
+        }
+
+        repository = open(FsyncPolicy.BATCH, 256);
+        expected.forEach(repository::save);
+        repository.close();
+
+        int segments = listSegments().size();
+        repository = open(FsyncPolicy.BATCH, 256);
+
+        assertEquals(expected, repository.findByServiceNameAndTimeRange(serviceName, base, base.plusSeconds(60)));
+        assertTrue(segments > 1);
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(walDirectory)) {
+            return files.sorted().toList();
+        }
+    }
+}
@@ -1,14 +1,37 @@
 package com.example.log_aggregator.repository;
 
+import com.example.log_aggregator.model.LogCursor;
 import com.example.log_aggregator.model.LogEntry;
+import com.example.log_aggregator.model.LogFilter;
+import com.example.log_aggregator.model.LogLevel;
+import com.example.log_aggregator.model.LogPage;
+import com.example.log_aggregator.model.SearchQuery;
+import com.example.log_aggregator.model.SortOrder;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class InMemoryLogRepositoryTest {
 
@@ -108,4 +131,543 @@ class InMemoryLogRepositoryTest {
         assertEquals(log3, service2Results.get(0));
         assertEquals(log4, service2Results.get(1));
     }
+
+    @Test
+    void outOfOrderArrivalsAcrossChunks() {
+        repository = new InMemoryLogRepository(8);
+        String serviceName = "test-service";
+        Instant base = Instant.now().minus(30, ChronoUnit.MINUTES);
+
+        List<LogEntry> expected = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            expected.add(new LogEntry(serviceName, base.plusSeconds(i), "Log " + i));
+        }
+        List<LogEntry> shuffled = new ArrayList<>(expected);
+        Collections.shuffle(shuffled, new Random(42));
+        shuffled.forEach(repository::save);
+
+        assertEquals(expected, repository.findByServiceNameAndTimeRange(serviceName, base, base.plusSeconds(99)));
+        assertEquals(expected.subList(10, 21),
+                repository.findByServiceNameAndTimeRange(serviceName, base.plusSeconds(10), base.plusSeconds(20)));
+    }
+
+    @Test
+    void openChunkReadsSeeEveryAppendInOrder() {
+        repository = new InMemoryLogRepository(64);
+        String serviceName = "test-service";
+        Instant base = Instant.now().minus(30, ChronoUnit.MINUTES);
+        Random random = new Random(7);
+
+        List<LogEntry> saved = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            // a few distinct timestamps, so equal ones have to stay in arrival order
+            LogEntry logEntry = new LogEntry(serviceName, base.plusSeconds(random.nextInt(10)), "Log " + i);
+            repository.save(logEntry);
+            saved.add(logEntry);
+
+            List<LogEntry> expected = new ArrayList<>(saved);
+            expected.sort(Comparator.comparing(LogEntry::getTimestamp));
+            assertEquals(expected, repository.findByServiceNameAndTimeRange(serviceName, base, base.plusSeconds(10)));
+            // a second read without appends in between returns the same
+            assertEquals(expected, repository.findByServiceNameAndTimeRange(serviceName, base, base.plusSeconds(10)));
+        }
+    }
+
+    @Test
+    void concurrentSavesAreAllVisible() throws InterruptedException {
+        repository = new InMemoryLogRepository(16);
+        String serviceName = "test-service";
+        Instant base = Instant.now().minus(30, ChronoUnit.MINUTES);
+        int threads = 8;
+        int perThread = 1000;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < threads; t++) {
+            int offset = t;
+            executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < perThread; i++) {
+                    repository.save(new LogEntry(serviceName, base.plusMillis(i * threads + offset), "Log"));
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        List<LogEntry> results = repository.findByServiceNameAndTimeRange(serviceName, base, base.plusSeconds(60));
+
+        assertEquals(threads * perThread, results.size());
+        for (int i = 1; i < results.size(); i++) {
+            assertTrue(!results.get(i).getTimestamp().isBefore(results.get(i - 1).getTimestamp()));
+        }
+    }
+
+    @Test
+    void removeExpiredLogsDropsWholeChunks() {
+        repository = new InMemoryLogRepository(4);
+        String serviceName = "test-service";
+        Instant now = Instant.now();
+
+        for (int i = 0; i < 10; i++) {
+            repository.save(new LogEntry(serviceName, now.minus(2, ChronoUnit.HOURS).plusSeconds(i), "Expired log " + i));
+        }
+        LogEntry validLog = new LogEntry(serviceName, now.minus(15, ChronoUnit.MINUTES), "Valid log");
+        repository.save(validLog);
+
+        repository.removeExpiredLogs();
+
+        // later saves still land after the unlinked chunks
+        LogEntry laterLog = new LogEntry(serviceName, now.minus(5, ChronoUnit.MINUTES), "Later log");
+        repository.save(laterLog);
+
+        List<LogEntry> results = repository.findByServiceNameAndTimeRange(serviceName, now.minus(3, ChronoUnit.HOURS), now);
+
+        assertEquals(List.of(validLog, laterLog), results);
+    }
+
+    @Test
+    void saveAllGroupsByService() {
+        repository = new InMemoryLogRepository(4);
+        Instant now = Instant.now();
+        List<LogEntry> batch = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            batch.add(new LogEntry(i % 2 == 0 ? "service-1" : "service-2", now.minusSeconds(20 - i), "Log " + i));
+        }
+
+        repository.saveAll(batch);
+
+        List<LogEntry> service1Results = repository.findByServiceNameAndTimeRange("service-1", now.minus(1, ChronoUnit.HOURS), now);
+        List<LogEntry> service2Results = repository.findByServiceNameAndTimeRange("service-2", now.minus(1, ChronoUnit.HOURS), now);
+
+        assertEquals(10, service1Results.size());
+        assertEquals(10, service2Results.size());
+        assertEquals(batch.get(0), service1Results.get(0));
+        assertEquals(batch.get(19), service2Results.get(9));
+    }
+
+    @Test
+    void streamMatchesFind() {
+        repository = new InMemoryLogRepository(4);
+        String serviceName = "test-service";
+        Instant base = Instant.now().minus(30, ChronoUnit.MINUTES);
+
+        // runs of equal timestamps straddle the page and chunk boundaries
+        List<LogEntry> shuffled = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            shuffled.add(new LogEntry(serviceName, base.plusSeconds(i / 3), "Log " + i));
+        }
+        Collections.shuffle(shuffled, new Random(7));
+        shuffled.forEach(repository::save);
+
+        Instant startTime = base.plusSeconds(2);
+        Instant endTime = base.plusSeconds(12);
+        List<LogEntry> streamed = new ArrayList<>();
+        repository.streamByServiceNameAndTimeRange(serviceName, startTime, endTime, null, streamed::add);
+
+        assertEquals(repository.findByServiceNameAndTimeRange(serviceName, startTime, endTime), streamed);
+        assertEquals(33, streamed.size());
+    }
+
+    @Test
+    void pageThroughRangeInBothOrders() {
+        repository = new InMemoryLogRepository(4);
+        String serviceName = "test-service";
+        Instant base = Instant.now().minus(30, ChronoUnit.MINUTES);
+
+        List<LogEntry> shuffled = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            shuffled.add(new LogEntry(serviceName, base.plusSeconds(i / 4), "Log " + i));
+        }
+        Collections.shuffle(shuffled, new Random(3));
+        shuffled.forEach(repository::save);
+
+        Instant startTime = base.plusSeconds(1);
+        Instant endTime = base.plusSeconds(8);
+        List<LogEntry> expected = repository.findByServiceNameAndTimeRange(serviceName, startTime, endTime);
+
+        for (SortOrder order : SortOrder.values()) {
+            List<LogEntry> paged = new ArrayList<>();
+            LogCursor cursor = null;
+            do {
+                LogPage<LogEntry> page = repository.findPageByServiceNameAndTimeRange(
+                        serviceName, startTime, endTime, cursor, 5, order);
+                paged.addAll(page.getItems());
+                cursor = page.getNextCursor();
+            } while (cursor != null);
+
+            List<LogEntry> ordered = new ArrayList<>(expected);
+            if (order == SortOrder.DESC) {
+                Collections.reverse(ordered);
+            }
+            assertEquals(ordered, paged);
+        }
+
+        // the newest entries come first and a page that ends the range has no cursor
+        LogPage<LogEntry> newest = repository.findPageByServiceNameAndTimeRange(
+                serviceName, startTime, endTime, null, 4, SortOrder.DESC);
+        assertEquals(4, newest.getItems().size());
+        assertEquals(base.plusSeconds(8), newest.getItems().get(0).getTimestamp());
+        assertNull(repository.findPageByServiceNameAndTimeRange(
+                serviceName, startTime, endTime, null, 100, SortOrder.ASC).getNextCursor());
+    }
+
+    @Test
+    void searchPagesMatchAScanWithAndWithoutIndex() {
+        String serviceName = "test-service";
+        Instant base = Instant.now().minus(30, ChronoUnit.MINUTES);
+        String[] words = {"timeout", "refused", "connection", "user", "login", "payment"};
+
+        Random random = new Random(7);
+        List<LogEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            // spread over several index buckets, with equal timestamps
+            Instant timestamp = base.plusSeconds(random.nextInt(240));
+            String message = words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)] + " #" + i;
+            entries.add(new LogEntry(serviceName, timestamp, message));
+        }
+
+        for (boolean indexed : new boolean[]{true, false}) {
+            repository = new InMemoryLogRepository(4, indexed);
+            entries.forEach(repository::save);
+
+            Instant startTime = base.plusSeconds(30);
+            Instant endTime = base.plusSeconds(200);
+            List<LogEntry> all = repository.findByServiceNameAndTimeRange(serviceName, startTime, endTime);
+            for (String text : List.of("timeout", "USER login", "timeout OR payment", "\"connection refused\"",
+                    "missing", "refused AND missing OR login")) {
+                SearchQuery query = SearchQuery.parse(text);
+                List<LogEntry> expected = all.stream()
+                        .filter(logEntry -> query.matches(logEntry.getMessage()))
+                        .collect(Collectors.toList());
+
+                for (SortOrder order : SortOrder.values()) {
+                    List<LogEntry> paged = new ArrayList<>();
+                    LogCursor cursor = null;
+                    do {
+                        LogPage<LogEntry> page = repository.findPageMatching(
+                                serviceName, startTime, endTime, LogFilter.of(query), cursor, 7, order);
+                        assertTrue(page.getItems().size() <= 7);
+                        paged.addAll(page.getItems());
+                        cursor = page.getNextCursor();
+                    } while (cursor != null);
+
+                    List<LogEntry> ordered = new ArrayList<>(expected);
+                    if (order == SortOrder.DESC) {
+                        Collections.reverse(ordered);
+                    }
+                    assertEquals(ordered, paged, text + " " + order + " indexed=" + indexed);
+                }
+            }
+        }
+    }
+
+    @Test
+    void searchSkipsExpiredLogs() {
+        String serviceName = "test-service";
+        Instant now = Instant.now();
+        repository.save(new LogEntry(serviceName, now.minus(2, ChronoUnit.HOURS), "disk full"));
+        repository.save(new LogEntry(serviceName, now.minus(10, ChronoUnit.MINUTES), "disk full again"));
+
+        repository.removeExpiredLogs();
+
+        LogPage<LogEntry> page = repository.findPageMatching(serviceName, now.minus(3, ChronoUnit.HOURS), now,
+                LogFilter.of(SearchQuery.parse("disk")), null, 10, SortOrder.ASC);
+        assertEquals(1, page.getItems().size());
+        assertEquals("disk full again", page.getItems().get(0).getMessage());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void filtersByLevelAndAttributesThroughIndexes() {
+        String serviceName = "test-service";
+        Instant base = Instant.parse("2025-03-17T10:00:00Z");
+        LogLevel[] levels = LogLevel.values();
+        List<LogEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            // every fifth entry has no level, every third no attributes; timestamps go back and forth
+            Instant timestamp = base.plusSeconds((i * 37L) % 240);
+            LogLevel level = i % 5 == 0 ? null : levels[i % levels.length];
+            Map<String, String> attributes = i % 3 == 0 ? null
+                    : Map.of("trace_id", "t" + (i % 4), "user", "u" + (i % 2));
+            entries.add(new LogEntry(serviceName, timestamp, (i % 2 == 0 ? "payment" : "login") + " #" + i,
+                    level, attributes));
+        }
+
+        for (boolean indexed : new boolean[]{true, false}) {
+            repository = new InMemoryLogRepository(4, indexed);
+            entries.forEach(repository::save);
+
+            Instant startTime = base.plusSeconds(30);
+            Instant endTime = base.plusSeconds(200);
+            List<LogEntry> all = repository.findByServiceNameAndTimeRange(serviceName, startTime, endTime);
+            List<LogFilter> filters = List.of(
+                    LogFilter.parse(null, Map.of("level>", "WARN")),
+                    LogFilter.parse(null, Map.of("level", "info")),
+                    LogFilter.parse(null, Map.of("level<DEBUG", "")),
+                    LogFilter.parse(null, Map.of("trace_id", "t1")),
+                    LogFilter.parse(null, Map.of("trace_id", "t2", "level>", "ERROR")),
+                    LogFilter.parse("payment", Map.of("level<", "ERROR", "trace_id", "t3")),
+                    LogFilter.parse(null, Map.of("trace_id", "missing")));
+            for (LogFilter filter : filters) {
+                List<LogEntry> expected = all.stream().filter(filter::matches).collect(Collectors.toList());
+
+                for (SortOrder order : SortOrder.values()) {
+                    List<LogEntry> paged = new ArrayList<>();
+                    LogCursor cursor = null;
+                    do {
+                        LogPage<LogEntry> page = repository.findPageMatching(
+                                serviceName, startTime, endTime, filter, cursor, 7, order);
+                        paged.addAll(page.getItems());
+                        cursor = page.getNextCursor();
+                    } while (cursor != null);
+
+                    List<LogEntry> ordered = new ArrayList<>(expected);
+                    if (order == SortOrder.DESC) {
+                        Collections.reverse(ordered);
+                    }
+                    assertEquals(ordered, paged, filter + " " + order + " indexed=" + indexed);
+                }
+            }
+            assertFalse(repository.findPageMatching(serviceName, startTime, endTime,
+                    LogFilter.parse(null, Map.of("level>", "WARN")), null, 10, SortOrder.ASC).getItems().isEmpty());
+        }
+
+        LogFilter unindexed = LogFilter.parse(null, Map.of("user", "u1"));
+        assertThrows(IllegalArgumentException.class, () -> repository.findPageMatching(serviceName,
+                base, base.plusSeconds(240), unindexed, null, 10, SortOrder.ASC));
+    }
+
+    @Test
+    void mergesServicesInTimeOrderAcrossPages() {
+        Instant base = Instant.parse("2025-03-17T10:00:00Z");
+        List<String> services = List.of("payments-api", "payments-db", "auth", "svc:with:colons");
+        for (int i = 0; i < 400; i++) {
+            // few distinct timestamps, so entries tie within and across services
+            repository.save(new LogEntry(services.get(i % services.size()), base.plusSeconds((i * 7L) % 90),
+                    "entry " + i, i % 2 == 0 ? LogLevel.ERROR : LogLevel.INFO, null));
+        }
+
+        Instant startTime = base.plusSeconds(10);
+        Instant endTime = base.plusSeconds(80);
+        List<String> queried = List.of("auth", "payments-api", "svc:with:colons", "unknown");
+        for (LogFilter filter : Arrays.asList(null, LogFilter.parse(null, Map.of("level", "ERROR")))) {
+            List<LogEntry> expected = new ArrayList<>();
+            for (String service : queried) {
+                repository.findByServiceNameAndTimeRange(service, startTime, endTime).stream()
+                        .filter(logEntry -> filter == null || filter.matches(logEntry))
+                        .forEach(expected::add);
+            }
+            // stable sort keeps each service's own order for equal timestamps
+            expected.sort(Comparator.comparing(LogEntry::getTimestamp).thenComparing(LogEntry::getServiceName));
+
+            for (SortOrder order : SortOrder.values()) {
+                List<LogEntry> paged = new ArrayList<>();
+                LogCursor cursor = null;
+                do {
+                    LogPage<LogEntry> page = repository.findPageAcrossServices(queried, startTime, endTime, filter,
+                            cursor, 7, order);
+                    assertTrue(page.getItems().size() <= 7);
+                    paged.addAll(page.getItems());
+                    cursor = page.getNextCursor() != null ? LogCursor.decode(page.getNextCursor().encode()) : null;
+                } while (cursor != null);
+
+                List<LogEntry> ordered = new ArrayList<>(expected);
+                if (order == SortOrder.DESC) {
+                    Collections.reverse(ordered);
+                }
+                assertEquals(ordered, paged, filter + " " + order);
+            }
+        }
+
+        List<LogEntry> streamed = new ArrayList<>();
+        repository.streamAcrossServices(queried, startTime, endTime, null, streamed::add);
+        assertEquals(repository.findPageAcrossServices(queried, startTime, endTime, null, null, 10000,
+                SortOrder.ASC).getItems(), streamed);
+        assertTrue(repository.findPageAcrossServices(List.of("unknown"), startTime, endTime, null, null, 10,
+                SortOrder.ASC).getItems().isEmpty());
+    }
+
+    @Test
+    void retentionIsPerService() {
+        RetentionPolicy policy = new RetentionPolicy(Duration.ofHours(1), Map.of("debug-service", Duration.ofMinutes(10)));
+        repository = new InMemoryLogRepository(4, true, policy);
+        Instant now = Instant.now();
+
+        LogEntry oldDebug = new LogEntry("debug-service", now.minus(20, ChronoUnit.MINUTES), "Old debug log");
+        LogEntry newDebug = new LogEntry("debug-service", now.minus(2, ChronoUnit.MINUTES), "New debug log");
+        LogEntry oldApi = new LogEntry("api-service", now.minus(20, ChronoUnit.MINUTES), "Old api log");
+        repository.saveAll(List.of(oldDebug, newDebug, oldApi));
+
+        repository.removeExpiredLogs();
+
+        assertEquals(List.of(newDebug),
+                repository.findByServiceNameAndTimeRange("debug-service", now.minus(1, ChronoUnit.HOURS), now));
+        assertEquals(List.of(oldApi),
+                repository.findByServiceNameAndTimeRange("api-service", now.minus(1, ChronoUnit.HOURS), now));
+
+        // late arrivals that are already past the retention are not stored again
+        repository.save(new LogEntry("debug-service", now.minus(30, ChronoUnit.MINUTES), "Late debug log"));
+        assertEquals(List.of(newDebug),
+                repository.findByServiceNameAndTimeRange("debug-service", now.minus(1, ChronoUnit.HOURS), now));
+    }
+
+    @Test
+    void pagesSpanTimeBuckets() {
+        String serviceName = "test-service";
+        Instant base = Instant.now().minus(30, ChronoUnit.MINUTES).truncatedTo(ChronoUnit.MINUTES);
+
+        // two entries in each of five one-minute buckets, so pages of two end exactly at bucket ends
+        List<LogEntry> expected = new ArrayList<>();
+        for (int minute = 0; minute < 5; minute++) {
+            for (int i = 0; i < 2; i++) {
+                expected.add(new LogEntry(serviceName, base.plusSeconds(minute * 60L + i * 30), "Log " + minute + "." + i));
+            }
+        }
+        repository.saveAll(expected);
+
+        for (SortOrder order : SortOrder.values()) {
+            List<LogEntry> paged = new ArrayList<>();
+            LogCursor cursor = null;
+            int pages = 0;
+            do {
+                LogPage<LogEntry> page = repository.findPageByServiceNameAndTimeRange(
+                        serviceName, base, base.plusSeconds(600), cursor, 2, order);
+                paged.addAll(page.getItems());
+                cursor = page.getNextCursor();
+                pages++;
+            } while (cursor != null);
+
+            List<LogEntry> ordered = new ArrayList<>(expected);
+            if (order == SortOrder.DESC) {
+                Collections.reverse(ordered);
+            }
+            assertEquals(ordered, paged);
+            assertEquals(5, pages);
+        }
+    }
+
+    @Test
+    void countsByIntervalWithoutReadingEntries() {
+        Instant base = Instant.now().minus(30, ChronoUnit.MINUTES).truncatedTo(ChronoUnit.MINUTES);
+        repository.save(new LogEntry("test-service", base.plusMillis(500), "Log 1"));
+        repository.saveAll(List.of(
+                new LogEntry("test-service", base.plusSeconds(59), "Log 2"),
+                new LogEntry("test-service", base.plusSeconds(61), "Log 3"),
+                new LogEntry("test-service", base.plusSeconds(150), "Log 4"),
+                new LogEntry("other-service", base.plusSeconds(10), "Log 5")));
+
+        // 90 second intervals from the start of the first minute, the last one cut short at 200s
+        assertArrayEquals(new long[]{3, 1, 0},
+                repository.countByInterval("test-service", base, base.plusSeconds(200), Duration.ofSeconds(90)));
+        assertArrayEquals(new long[]{1, 1},
+                repository.countByInterval("test-service", base.plusSeconds(59), base.plusSeconds(62),
+                        Duration.ofSeconds(2)));
+        assertArrayEquals(new long[]{0}, repository.countByInterval("unknown-service", base, base.plusSeconds(60),
+                Duration.ofMinutes(1)));
+        assertEquals(List.of("other-service", "test-service"), repository.findServiceNames());
+    }
+
+    @Test
+    void rangeVersionChangesOnlyWhenTheRangeDoes() {
+        String serviceName = "test-service";
+        Instant base = Instant.now().minus(30, ChronoUnit.MINUTES).truncatedTo(ChronoUnit.MINUTES);
+        Instant start = base.plusSeconds(60);
+        Instant end = base.plusSeconds(120);
+        assertEquals(RangeVersion.EMPTY, repository.rangeVersion(serviceName, start, end));
+        repository.saveAll(List.of(new LogEntry(serviceName, base.plusSeconds(90), "Log 1"),
+                new LogEntry(serviceName, base.plusSeconds(200), "Log 2")));
+        RangeVersion version = repository.rangeVersion(serviceName, start, end);
+        assertEquals(new RangeVersion(1, Long.MIN_VALUE), version);
+
+        // other ranges, other services and sealing leave it alone
+        repository.save(new LogEntry(serviceName, base.plusSeconds(121), "Log 3"));
+        repository.save(new LogEntry("other-service", base.plusSeconds(90), "Log 4"));
+        repository.removeExpiredLogs();
+        assertEquals(version, repository.rangeVersion(serviceName, start, end));
+
+        // a late arrival for the sealed range changes it
+        repository.save(new LogEntry(serviceName, base.plusSeconds(100), "Log 5"));
+        RangeVersion afterSave = repository.rangeVersion(serviceName, start, end);
+        assertEquals(2, afterSave.entries());
+
+        // as does expiry reaching into the range
+        InMemoryLogRepository expiring = new InMemoryLogRepository(4, true, new RetentionPolicy("20m", ""));
+        expiring.save(new LogEntry(serviceName, base.plusSeconds(90), "Log 1"));
+        RangeVersion beforeExpiry = expiring.rangeVersion(serviceName, start, end);
+        expiring.removeExpiredLogs();
+        assertFalse(beforeExpiry.equals(expiring.rangeVersion(serviceName, start, end)));
+        assertEquals(List.of(), expiring.findByServiceNameAndTimeRange(serviceName, start, end));
+    }
+
+    @Test
+    void coldBucketsAreCompressedAndStillServed() {
+        String serviceName = "test-service";
+        Instant base = Instant.now().minus(30, ChronoUnit.MINUTES).truncatedTo(ChronoUnit.MINUTES);
+        List<LogEntry> logs = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            logs.add(new LogEntry(serviceName, base.plusMillis(i * 800L), "Request " + i % 50 + " served",
+                    i % 10 == 0 ? LogLevel.ERROR : LogLevel.INFO, Map.of("trace_id", "trace-" + i)));
+        }
+        repository.saveAll(logs);
+        Instant end = base.plusMillis(2000 * 800L);
+        LogFilter errors = LogFilter.parse(null, Map.of("level", "error"));
+        LogPage<LogEntry> firstPage = repository.findPageByServiceNameAndTimeRange(serviceName, base, end, null, 100,
+                SortOrder.DESC);
+        long liveBytes = repository.memoryUsage().getUsedBytes();
+
+        // everything older than five minutes is sealed
+        repository.removeExpiredLogs();
+
+        assertTrue(repository.memoryUsage().getUsedBytes() * 4 < liveBytes);
+        assertEquals(logs, repository.findByServiceNameAndTimeRange(serviceName, base, end));
+        assertEquals(logs.subList(100, 200), repository.findByServiceNameAndTimeRange(serviceName,
+                base.plusMillis(100 * 800L), base.plusMillis(199 * 800L)));
+        assertEquals(logs.stream().filter(errors::matches).toList(), repository.findPageMatching(serviceName, base, end,
+                errors, null, 1000, SortOrder.ASC).getItems());
+        List<LogEntry> nextPage = new ArrayList<>(logs.subList(1800, 1900));
+        Collections.reverse(nextPage);
+        assertEquals(nextPage, repository.findPageByServiceNameAndTimeRange(serviceName, base, end,
+                firstPage.getNextCursor(), 100, SortOrder.DESC).getItems());
+
+        // late arrivals for a sealed bucket are found at once and sealed with it on the next pass
+        LogEntry late = new LogEntry(serviceName, base.plusMillis(1), "Late log");
+        repository.save(late);
+        assertEquals(List.of(logs.get(0), late, logs.get(1)),
+                repository.findByServiceNameAndTimeRange(serviceName, base, base.plusMillis(800)));
+        repository.removeExpiredLogs();
+        assertEquals(List.of(logs.get(0), late, logs.get(1)),
+                repository.findByServiceNameAndTimeRange(serviceName, base, base.plusMillis(800)));
+    }
+
+    @Test
+    void wideQueriesAreReadInParallel() {
+        QueryExecutor queryExecutor = new QueryExecutor(4, 4, 100);
+        repository = new InMemoryLogRepository(64, true, "trace_id", new RetentionPolicy(), new MemoryBudget(),
+                new ServiceRegistry(), queryExecutor);
+        try {
+            String serviceName = "test-service";
+            Instant base = Instant.now().minus(50, ChronoUnit.MINUTES).truncatedTo(ChronoUnit.MINUTES);
+            List<LogEntry> logs = new ArrayList<>();
+            for (int i = 0; i < 5000; i++) {
+                logs.add(new LogEntry(serviceName, base.plusMillis(i * 500L), "Log " + i));
+            }
+            // in reverse, so every chunk has to be sorted
+            List<LogEntry> reversed = new ArrayList<>(logs);
+            Collections.reverse(reversed);
+            repository.saveAll(reversed);
+
+            assertEquals(logs, repository.findByServiceNameAndTimeRange(serviceName, base, Instant.now()));
+            // one bucket is not split
+            assertEquals(logs.subList(120, 240), repository.findByServiceNameAndTimeRange(serviceName,
+                    base.plusSeconds(60), base.plusMillis(119_500)));
+
+            repository.removeExpiredLogs();
+            assertEquals(logs, repository.findByServiceNameAndTimeRange(serviceName, base, Instant.now()));
+        } finally {
+            queryExecutor.shutdown();
+        }
+    }
 }
@@ -0,0 +1,37 @@
+package com.example.log_aggregator.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LockWaitTest {
+
+    @Test
+    void onlyContendedAcquisitionsAreTimed() throws InterruptedException {
+        // an instance of its own, the shared ones count the locks of every other test in the JVM
+        LockWait lockWait = new LockWait("test");
+        ReentrantLock lock = new ReentrantLock();
+
+        lockWait.lock(lock);
+        lock.unlock();
+        assertEquals(0, lockWait.waits());
+        assertEquals(0, lockWait.waitNanos());
+
+        lock.lock();
+        Thread waiter = new Thread(() -> {
+            lockWait.lock(lock);
+            lock.unlock();
+        });
+        waiter.start();
+        // release only once the waiter is blocked on the lock
+        while (!lock.hasQueuedThreads()) {
+            Thread.onSpinWait();
+        }
+        lock.unlock();
+        waiter.join();
+
+        assertEquals(1, lockWait.waits());
+    }
+}
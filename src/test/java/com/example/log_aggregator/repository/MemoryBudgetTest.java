@@ -0,0 +1,242 @@
+package com.example.log_aggregator.repository;
+
+import com.example.log_aggregator.model.LogEntry;
+import com.example.log_aggregator.model.MemoryUsage;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MemoryBudgetTest {
+    private static final Instant BASE = Instant.now().truncatedTo(ChronoUnit.MINUTES).minus(30, ChronoUnit.MINUTES);
+
+    private static LogEntry entry(String serviceName, int minute, String message) {
+        return new LogEntry(serviceName, BASE.plus(minute, ChronoUnit.MINUTES), message);
+    }
+
+    private static InMemoryLogRepository repository(MemoryBudget budget) {
+        return new InMemoryLogRepository(4, false, new RetentionPolicy(), budget);
+    }
+
+    private static int count(LogRepository repository, String serviceName) {
+        return repository.findByServiceNameAndTimeRange(serviceName, BASE.minusSeconds(60), BASE.plusSeconds(3600))
+                .size();
+    }
+
+    @Test
+    void accountsEstimatedBytesPerServiceAndReleasesThemOnExpiry() {
+        InMemoryLogRepository repository = repository(new MemoryBudget());
+        LogEntry first = entry("auth", 0, "user logged in");
+        LogEntry second = entry("payments", 1, "charge declined: €12");
+        repository.save(first);
+        repository.saveAll(List.of(second, entry("payments", 2, "retrying")));
+
+        MemoryUsage usage = repository.memoryUsage();
+        long payments = ChunkedAppendLog.estimatedBytes(second)
+                + ChunkedAppendLog.estimatedBytes(entry("payments", 2, "retrying"));
+        assertEquals(Map.of("auth", ChunkedAppendLog.estimatedBytes(first), "payments", payments),
+                usage.getServices());
+        assertEquals(List.of("payments", "auth"), List.copyOf(usage.getServices().keySet()));
+        assertEquals(ChunkedAppendLog.estimatedBytes(first) + payments, usage.getUsedBytes());
+        assertEquals("evict-oldest", usage.getPolicy());
+
+        // everything is older than a one minute retention
+        InMemoryLogRepository expiring = new InMemoryLogRepository(4, false, new RetentionPolicy("1m", ""),
+                new MemoryBudget());
+        expiring.saveAll(List.of(first, second));
+        expiring.removeExpiredLogs();
+        assertEquals(0, expiring.memoryUsage().getUsedBytes());
+        // the services left without logs are released
+        assertEquals(Map.of(), expiring.memoryUsage().getServices());
+    }
+
+    @Test
+    void segmentedStoreAccountsColumnBytes() {
+        SegmentedLogRepository repository = new SegmentedLogRepository(4, false, new RetentionPolicy(),
+                new MemoryBudget());
+        repository.save(entry("auth", 0, "abc"));
+        repository.save(entry("auth", 0, "€"));
+
+        // column bytes per entry plus the UTF-8 message
+        assertEquals(2 * Segment.COLUMN_BYTES_PER_ENTRY + 3 + 3, repository.memoryUsage().getUsedBytes());
+    }
+
+    @Test
+    void evictOldestDropsTheOldestMinuteOfAnyService() {
+        long entryBytes = ChunkedAppendLog.estimatedBytes(entry("a", 0, "0123456789"));
+        InMemoryLogRepository repository = repository(
+                new MemoryBudget(entryBytes * 4, 0, MemoryPolicy.EVICT_OLDEST, 1));
+        repository.save(entry("a", 0, "0123456789"));
+        repository.save(entry("b", 1, "0123456789"));
+        repository.save(entry("a", 2, "0123456789"));
+        repository.save(entry("b", 3, "0123456789"));
+        repository.save(entry("b", 4, "0123456789"));
+
+        assertEquals(1, count(repository, "a"));
+        assertEquals(3, count(repository, "b"));
+        // the range of the evicted minute has changed, the ranges after it have not
+        RangeVersion evicted = repository.rangeVersion("a", BASE, BASE.plusSeconds(30));
+        assertEquals(new RangeVersion(0, BASE.plusSeconds(60).getEpochSecond() * 1_000_000_000L), evicted);
+        assertEquals(new RangeVersion(1, Long.MIN_VALUE), repository.rangeVersion("a", BASE.plusSeconds(60),
+                BASE.plusSeconds(180)));
+        MemoryUsage usage = repository.memoryUsage();
+        assertEquals(entryBytes * 4, usage.getUsedBytes());
+        assertEquals(entryBytes, usage.getEvictedBytes());
+        assertEquals(1, usage.getEvictedBuckets());
+    }
+
+    @Test
+    void evictLargestDropsFromTheBiggestService() {
+        long entryBytes = ChunkedAppendLog.estimatedBytes(entry("a", 0, "0123456789"));
+        InMemoryLogRepository repository = repository(
+                new MemoryBudget(entryBytes * 4, 0, MemoryPolicy.EVICT_LARGEST, 1));
+        repository.save(entry("a", 0, "0123456789"));
+        repository.saveAll(List.of(entry("b", 1, "0123456789"), entry("b", 2, "0123456789"),
+                entry("b", 3, "0123456789")));
+        repository.save(entry("a", 4, "0123456789"));
+
+        assertEquals(2, count(repository, "a"));
+        assertEquals(2, count(repository, "b"));
+        assertEquals(entryBytes * 4, repository.memoryUsage().getUsedBytes());
+    }
+
+    @Test
+    void perServiceBudgetOnlyEvictsThatService() {
+        long entryBytes = ChunkedAppendLog.estimatedBytes(entry("a", 0, "0123456789"));
+        InMemoryLogRepository repository = repository(
+                new MemoryBudget(0, entryBytes * 2, MemoryPolicy.EVICT_OLDEST, 1));
+        repository.save(entry("a", 0, "0123456789"));
+        for (int minute = 1; minute <= 5; minute++) {
+            repository.save(entry("b", minute, "0123456789"));
+        }
+
+        assertEquals(1, count(repository, "a"));
+        assertEquals(List.of(BASE.plus(4, ChronoUnit.MINUTES), BASE.plus(5, ChronoUnit.MINUTES)),
+                repository.findByServiceNameAndTimeRange("b", BASE, BASE.plusSeconds(3600)).stream()
+                        .map(LogEntry::getTimestamp).toList());
+    }
+
+    @Test
+    void evictionKeepsTheBucketBeingWrittenAndRefusesMoreOnceItIsAllThatIsLeft() {
+        long entryBytes = ChunkedAppendLog.estimatedBytes(entry("a", 0, "0123456789"));
+        InMemoryLogRepository repository = repository(
+                new MemoryBudget(0, entryBytes * 2, MemoryPolicy.EVICT_OLDEST, 3));
+        repository.save(entry("a", 0, "0123456789"));
+        repository.saveAll(List.of(entry("a", 1, "0123456789"), entry("a", 1, "0123456789"),
+                entry("a", 1, "0123456789")));
+
+        // the older minute went, the batch just acknowledged stays even though it is over budget
+        assertEquals(3, count(repository, "a"));
+        MemoryBudgetExceededException e = assertThrows(MemoryBudgetExceededException.class,
+                () -> repository.save(entry("a", 1, "0123456789")));
+        assertEquals(3, e.getRetryAfterSeconds());
+        assertEquals(3, count(repository, "a"));
+        assertEquals(1, repository.memoryUsage().getEvictedBuckets());
+        assertEquals(1, repository.memoryUsage().getRejected());
+
+        // entries of a later minute are still taken, the older minute makes room for them
+        repository.saveAll(List.of(entry("a", 2, "0123456789")));
+        assertEquals(1, count(repository, "a"));
+        assertEquals(2, repository.memoryUsage().getEvictedBuckets());
+    }
+
+    @Test
+    void rejectRefusesServicesAtTheirBudget() {
+        long entryBytes = ChunkedAppendLog.estimatedBytes(entry("a", 0, "0123456789"));
+        InMemoryLogRepository repository = repository(
+                new MemoryBudget(0, entryBytes * 2, MemoryPolicy.REJECT, 7));
+        repository.saveAll(List.of(entry("a", 0, "0123456789"), entry("a", 1, "0123456789")));
+
+        MemoryBudgetExceededException e = assertThrows(MemoryBudgetExceededException.class,
+                () -> repository.save(entry("a", 2, "0123456789")));
+        assertEquals("a", e.getServiceName());
+        assertEquals(7, e.getRetryAfterSeconds());
+
+        // a batch touching a rejected service is not stored at all
+        assertThrows(MemoryBudgetExceededException.class, () -> repository.saveAll(
+                List.of(entry("b", 0, "0123456789"), entry("a", 3, "0123456789"))));
+        assertThrows(MemoryBudgetExceededException.class,
+                () -> repository.checkMemoryBudget(List.of(entry("a", 3, "0123456789"))));
+        assertEquals(0, count(repository, "b"));
+        repository.save(entry("b", 0, "0123456789"));
+
+        assertEquals(2, count(repository, "a"));
+        assertEquals(1, count(repository, "b"));
+        assertEquals(3, repository.memoryUsage().getRejected());
+    }
+
+    @Test
+    void servicesRefusedBeforeTheirFirstLogDoNotUseUpTheServicesCap() {
+        ServiceRegistry registry = new ServiceRegistry(4);
+        InMemoryLogRepository repository = new InMemoryLogRepository(4, false, "trace_id", new RetentionPolicy(),
+                new MemoryBudget(1, 0, MemoryPolicy.REJECT, 1), registry, new QueryExecutor());
+        repository.save(entry("a", 0, "0123456789"));
+        repository.save(entry("b", 0, "0123456789"));
+
+        // the store is full and new services are under no even share of it; each is refused by the budget,
+        // never by the cap, although every one was registered
+        for (int i = 0; i < 8; i++) {
+            String serviceName = "refused-" + i;
+            assertThrows(MemoryBudgetExceededException.class, () -> repository.save(entry(serviceName, 0, "x")));
+        }
+
+        // the cap still has room for as many other services as it allows besides the two holding logs
+        registry.register("other-0");
+        registry.register("other-1");
+        assertEquals(4, registry.size());
+        assertEquals(List.of("a", "b"), repository.findServiceNames());
+        assertEquals(1, count(repository, "a"));
+        assertEquals(1, count(repository, "b"));
+    }
+
+    @Test
+    void aBatchWithMoreNewServicesThanTheCapAllowsIsRefusedWhole() {
+        ServiceRegistry registry = new ServiceRegistry(1);
+        InMemoryLogRepository repository = new InMemoryLogRepository(4, false, "trace_id", new RetentionPolicy(),
+                new MemoryBudget(), registry, new QueryExecutor());
+
+        // registering b releases a's ID, a has no log yet; b's entries must not end up in a's log
+        assertThrows(IllegalArgumentException.class, () -> repository.saveAll(
+                List.of(entry("a", 0, "first"), entry("b", 0, "refused"), entry("a", 1, "second"))));
+        assertEquals(List.of(), repository.findServiceNames());
+
+        repository.saveAll(List.of(entry("a", 0, "first"), entry("a", 1, "second")));
+        assertEquals(List.of("a"), repository.findServiceNames());
+        assertEquals(2, count(repository, "a"));
+    }
+
+    @Test
+    void globalRejectSparesServicesUnderAnEvenShare() {
+        long entryBytes = ChunkedAppendLog.estimatedBytes(entry("a", 0, "0123456789"));
+        InMemoryLogRepository repository = repository(
+                new MemoryBudget(entryBytes * 4, 0, MemoryPolicy.REJECT, 1));
+        repository.save(entry("quiet", 0, "0123456789"));
+        for (int minute = 0; minute < 3; minute++) {
+            repository.save(entry("noisy", minute, "0123456789"));
+        }
+
+        assertThrows(MemoryBudgetExceededException.class, () -> repository.save(entry("noisy", 4, "0123456789")));
+        repository.save(entry("quiet", 1, "0123456789"));
+        assertEquals(2, count(repository, "quiet"));
+        assertTrue(repository.memoryUsage().getUsedBytes() > entryBytes * 4);
+    }
+
+    @Test
+    void parsesSizesAndPolicy() {
+        MemoryBudget budget = new MemoryBudget("512MB", "1024", "Evict-Largest", 5);
+
+        MemoryUsage usage = budget.usage(new ServiceTable<>(new ServiceRegistry()));
+        assertEquals(512L * 1024 * 1024, usage.getMaxBytes());
+        assertEquals(1024, usage.getMaxBytesPerService());
+        assertEquals("evict-largest", usage.getPolicy());
+        assertThrows(IllegalArgumentException.class, () -> new MemoryBudget("lots", "0", "reject", 5));
+        assertThrows(IllegalArgumentException.class, () -> new MemoryBudget("0", "0", "evict-newest", 5));
+        assertThrows(IllegalArgumentException.class, () -> new MemoryBudget(-1, 0, MemoryPolicy.REJECT, 5));
+    }
+}
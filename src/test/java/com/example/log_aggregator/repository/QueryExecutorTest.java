@@ -0,0 +1,68 @@
+package com.example.log_aggregator.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QueryExecutorTest {
+
+    @Test
+    void partitionsAreConcatenatedInOrder() {
+        QueryExecutor executor = new QueryExecutor(4, 3, 10);
+        try {
+            // partition i holds the numbers [100 i, 100 i + i * 7), so the weights are uneven
+            List<Integer> partitions = IntStream.range(0, 20).boxed().toList();
+            Set<String> threads = ConcurrentHashMap.newKeySet();
+            List<Integer> result = new ArrayList<>();
+            executor.readInOrder(partitions, partition -> partition * 7L, (Integer partition, List<Integer> part) -> {
+                threads.add(Thread.currentThread().getName());
+                IntStream.range(0, partition * 7).forEach(i -> part.add(partition * 100 + i));
+            }, result);
+
+            List<Integer> expected = new ArrayList<>();
+            partitions.forEach(partition -> IntStream.range(0, partition * 7).forEach(i -> expected.add(partition * 100 + i)));
+            assertEquals(expected, result);
+            assertTrue(threads.stream().allMatch(name -> name.startsWith("query-")), threads.toString());
+            assertTrue(threads.size() <= 3, threads.toString());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void smallQueriesStayOnTheCallingThread() {
+        QueryExecutor executor = new QueryExecutor(4, 4, 1000);
+        try {
+            Set<String> threads = ConcurrentHashMap.newKeySet();
+            List<Integer> result = new ArrayList<>();
+            executor.readInOrder(List.of(1, 2, 3), partition -> 500, (Integer partition, List<Integer> part) -> {
+                threads.add(Thread.currentThread().getName());
+                part.add(partition);
+            }, result);
+
+            assertEquals(List.of(1, 2, 3), result);
+            assertEquals(Set.of(Thread.currentThread().getName()), threads);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void sequentialExecutorNeverSplits() {
+        QueryExecutor executor = new QueryExecutor();
+        assertEquals(1, executor.getMaxTasksPerQuery());
+        QueryExecutor small = new QueryExecutor(2, 8);
+        assertEquals(2, small.getMaxTasksPerQuery());
+        small.shutdown();
+        assertThrows(IllegalArgumentException.class, () -> new QueryExecutor(-1, 4));
+        assertThrows(IllegalArgumentException.class, () -> new QueryExecutor(4, 0));
+    }
+}
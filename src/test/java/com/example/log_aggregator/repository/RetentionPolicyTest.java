@@ -0,0 +1,43 @@
+package com.example.log_aggregator.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RetentionPolicyTest {
+
+    @Test
+    void defaultsToOneHour() {
+        RetentionPolicy policy = new RetentionPolicy();
+
+        assertEquals(Duration.ofHours(1), policy.retentionOf("any-service"));
+        assertEquals(Duration.ofHours(1), policy.longestRetention());
+    }
+
+    @Test
+    void perServiceRetentionOverridesDefault() {
+        RetentionPolicy policy = new RetentionPolicy("30m", "payments=24h, debug-service = PT10M");
+        Instant now = Instant.parse("2025-03-17T12:00:00Z");
+
+        assertEquals(Duration.ofMinutes(30), policy.retentionOf("auth-service"));
+        assertEquals(Duration.ofHours(24), policy.retentionOf("payments"));
+        assertEquals(Duration.ofMinutes(10), policy.retentionOf("debug-service"));
+        assertEquals(Duration.ofHours(24), policy.longestRetention());
+        assertEquals(Instant.parse("2025-03-17T11:50:00Z"), policy.expiryThreshold("debug-service", now));
+    }
+
+    @Test
+    void invalidRetentionIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new RetentionPolicy("soon", ""));
+        assertThrows(IllegalArgumentException.class, () -> new RetentionPolicy("1h", "payments"));
+        assertThrows(IllegalArgumentException.class, () -> new RetentionPolicy("1h", "payments=forever"));
+        assertThrows(IllegalArgumentException.class, () -> new RetentionPolicy("0s", ""));
+        assertThrows(IllegalArgumentException.class,
+                () -> new RetentionPolicy(Duration.ofHours(1), Map.of("payments", Duration.ofMinutes(-5))));
+    }
+}
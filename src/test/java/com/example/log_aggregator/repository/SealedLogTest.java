@@ -0,0 +1,175 @@
+package com.example.log_aggregator.repository;
+
+import com.example.log_aggregator.model.LogCursor;
+import com.example.log_aggregator.model.LogEntry;
+import com.example.log_aggregator.model.LogFilter;
+import com.example.log_aggregator.model.LogLevel;
+import com.example.log_aggregator.model.LogPage;
+import com.example.log_aggregator.model.SearchQuery;
+import com.example.log_aggregator.model.SortOrder;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SealedLogTest {
+    private static final Instant BASE = Instant.parse("2025-03-17T10:15:00Z");
+    private static final Supplier<ServiceLog> LATE_LOG = () -> new ChunkedAppendLog(8, true);
+
+    @Test
+    void sealedEntriesReadLikeTheSource() {
+        for (ServiceLog source : List.of(new ChunkedAppendLog(64, true), new SegmentedLog("auth", 64, true))) {
+            // out of order, with equal timestamps, across several blocks
+            source.appendAll(entries(3000, new Random(7)));
+            SealedLog sealed = SealedLog.seal(source, LATE_LOG);
+
+            assertEquals(sequenced(source), sequenced(sealed));
+            for (int[] range : new int[][]{{0, 60_000}, {1_000, 1_000}, {12_345, 40_001}, {59_000, 70_000}}) {
+                Instant from = BASE.plusMillis(range[0]);
+                Instant to = BASE.plusMillis(range[1]);
+                assertEquals(inRange(source, from, to), inRange(sealed, from, to));
+            }
+            LogFilter errors = LogFilter.parse("orders", Map.of("level", "error"));
+            for (SortOrder order : SortOrder.values()) {
+                assertEquals(paged(source, null, order), paged(sealed, null, order));
+                assertEquals(paged(source, errors, order), paged(sealed, errors, order));
+            }
+        }
+    }
+
+    @Test
+    void cursorsOfTheSourceContinueOnTheSealedLog() {
+        ServiceLog source = new ChunkedAppendLog(16, true);
+        source.appendAll(entries(500, new Random(11)));
+        for (SortOrder order : SortOrder.values()) {
+            LogPage<LogEntry> first = source.findPage(BASE, BASE.plusSeconds(60), null, 37, order);
+            SealedLog sealed = SealedLog.seal(source, LATE_LOG);
+
+            LogPage<LogEntry> expected = source.findPage(BASE, BASE.plusSeconds(60), first.getNextCursor(), 37, order);
+            LogPage<LogEntry> actual = sealed.findPage(BASE, BASE.plusSeconds(60), first.getNextCursor(), 37, order);
+            assertEquals(expected.getItems(), actual.getItems());
+            assertEquals(expected.getNextCursor(), actual.getNextCursor());
+        }
+    }
+
+    @Test
+    void lateEntriesAreMergedUntilSealedAgain() {
+        ServiceLog source = new ChunkedAppendLog(16, true);
+        List<LogEntry> sealedEntries = entries(200, new Random(3));
+        source.appendAll(sealedEntries);
+        SealedLog sealed = SealedLog.seal(source, LATE_LOG);
+        assertFalse(sealed.hasLateEntries());
+
+        List<LogEntry> lateEntries = entries(50, new Random(5));
+        sealed.appendAll(lateEntries.subList(0, 10));
+        lateEntries.subList(10, 50).forEach(sealed::append);
+        assertTrue(sealed.hasLateEntries());
+
+        // late entries follow the sealed ones with equal timestamps
+        List<LogEntry> expected = new ArrayList<>(sealedEntries);
+        expected.addAll(lateEntries);
+        expected.sort((a, b) -> a.getTimestamp().compareTo(b.getTimestamp()));
+        assertEquals(expected, inRange(sealed, BASE, BASE.plusSeconds(60)));
+        for (SortOrder order : SortOrder.values()) {
+            List<LogEntry> ordered = new ArrayList<>(expected);
+            if (order == SortOrder.DESC) {
+                Collections.reverse(ordered);
+            }
+            assertEquals(ordered, paged(sealed, null, order));
+        }
+
+        SealedLog resealed = SealedLog.seal(sealed, LATE_LOG);
+        assertFalse(resealed.hasLateEntries());
+        assertEquals(sequenced(sealed), sequenced(resealed));
+    }
+
+    @Test
+    void filtersTheIndexAnswersOnlyInflateTheBlocksHoldingHits() {
+        List<LogEntry> entries = entries(3000, new Random(13));
+        entries.set(100, new LogEntry("auth", entries.get(100).getTimestamp(), "checkout timeout", LogLevel.ERROR,
+                Map.of("trace_id", "cafe")));
+        entries.set(2900, new LogEntry("auth", entries.get(2900).getTimestamp(), "timeout of checkout",
+                LogLevel.WARN, null));
+        for (boolean indexed : new boolean[]{true, false}) {
+            ServiceLog source = new ChunkedAppendLog(64, indexed);
+            source.appendAll(entries);
+            SealedLog sealed = SealedLog.seal(source, LATE_LOG);
+            sealed.append(new LogEntry("auth", BASE.plusSeconds(30), "late checkout timeout"));
+
+            LogFilter timeouts = LogFilter.of(SearchQuery.parse("timeout"));
+            assertEquals(List.of("checkout timeout", "late checkout timeout", "timeout of checkout"),
+                    paged(sealed, timeouts, SortOrder.ASC).stream().map(LogEntry::getMessage).toList());
+            // the first and last of the three blocks hold hits
+            assertEquals(indexed ? 2 : 3, sealed.inflatedBlocks());
+
+            LogFilter phrase = LogFilter.parse("\"checkout timeout\"", Map.of("trace_id", "cafe"));
+            assertEquals(List.of(entries.get(100)), paged(sealed, phrase, SortOrder.DESC));
+            // attributes are indexed either way
+            assertEquals(indexed ? 3 : 6, sealed.inflatedBlocks());
+            assertEquals(List.of(), paged(sealed, LogFilter.of(SearchQuery.parse("refund")), SortOrder.ASC));
+            assertEquals(indexed ? 3 : 9, sealed.inflatedBlocks());
+        }
+    }
+
+    @Test
+    void blocksTakeAFractionOfTheLiveEntries() {
+        ServiceLog source = new ChunkedAppendLog(1024, false);
+        long liveBytes = source.appendAll(entries(10_000, new Random(1)));
+        SealedLog sealed = SealedLog.seal(source, LATE_LOG);
+
+        assertTrue(sealed.bytes() * 5 < liveBytes, sealed.bytes() + " sealed vs " + liveBytes + " live");
+        assertEquals(List.of(), inRange(sealed, BASE.minusSeconds(10), BASE.minusNanos(1)));
+    }
+
+    /**
+     * entries over one minute, a few out of order and some sharing a timestamp
+     */
+    private static List<LogEntry> entries(int count, Random random) {
+        List<LogEntry> entries = new ArrayList<>();
+        LogLevel[] levels = LogLevel.values();
+        for (int i = 0; i < count; i++) {
+            long millis = (long) i * 60_000 / count + (random.nextInt(10) == 0 ? -random.nextInt(2_000) : 0);
+            Instant timestamp = BASE.plusMillis(Math.max(0, millis)).plusNanos(random.nextInt(3));
+            String message = random.nextInt(50) == 0 ? null : "GET /api/v1/orders/" + random.nextInt(1000) + " 200";
+            LogLevel level = random.nextInt(5) == 0 ? null : levels[random.nextInt(levels.length)];
+            Map<String, String> attributes = random.nextBoolean() ? null
+                    : Map.of("trace_id", Integer.toHexString(random.nextInt()), "host", "node-ü" + i % 3);
+            entries.add(new LogEntry("auth", timestamp, message, level, attributes));
+        }
+        return entries;
+    }
+
+    private static List<String> sequenced(ServiceLog log) {
+        List<String> sequenced = new ArrayList<>();
+        log.forEachSequenced((logEntry, sequence) -> sequenced.add(sequence + " " + logEntry));
+        return sequenced;
+    }
+
+    private static List<LogEntry> inRange(ServiceLog log, Instant from, Instant to) {
+        List<LogEntry> entries = new ArrayList<>();
+        log.findInRange(from, to, entries);
+        return entries;
+    }
+
+    private static List<LogEntry> paged(ServiceLog log, LogFilter filter, SortOrder order) {
+        List<LogEntry> entries = new ArrayList<>();
+        LogCursor cursor = null;
+        do {
+            LogPage<LogEntry> page = filter == null
+                    ? log.findPage(BASE, BASE.plusSeconds(60), cursor, 23, order)
+                    : log.findPageMatching(BASE, BASE.plusSeconds(60), filter, cursor, 23, order);
+            entries.addAll(page.getItems());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        return entries;
+    }
+}
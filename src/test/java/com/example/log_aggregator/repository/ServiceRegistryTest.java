@@ -0,0 +1,156 @@
+package com.example.log_aggregator.repository;
+
+import com.example.log_aggregator.model.LogEntry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ServiceRegistryTest {
+
+    @Test
+    void assignsDenseIdsOnFirstSight() {
+        ServiceRegistry registry = new ServiceRegistry();
+
+        assertEquals(0, registry.register("auth"));
+        assertEquals(1, registry.register("payments"));
+        assertEquals(0, registry.register(new String("auth")));
+        assertEquals(2, registry.size());
+        assertEquals(1, registry.find("payments"));
+        assertEquals(-1, registry.find("search"));
+        assertEquals(-1, registry.find(null));
+        assertEquals("payments", registry.name(1));
+    }
+
+    @Test
+    void refusesServicesOverTheLimit() {
+        ServiceRegistry registry = new ServiceRegistry(2);
+        registry.register("auth");
+        registry.register("payments");
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> registry.register("search"));
+        assertEquals("Too many services, at most 2 are allowed", e.getMessage());
+        assertEquals(1, registry.register("payments"));
+        assertEquals(2, registry.size());
+        assertThrows(IllegalArgumentException.class, () -> new ServiceRegistry(0));
+    }
+
+    @Test
+    void servicesLeftWithoutLogsAreReleasedAndTheirIdsReused() {
+        ServiceRegistry registry = new ServiceRegistry(2);
+        InMemoryLogRepository repository = new InMemoryLogRepository(4, true, "trace_id",
+                new RetentionPolicy("1m", ""), new MemoryBudget(), registry, new QueryExecutor());
+        Instant old = Instant.now().minusSeconds(600);
+        LogEntry first = new LogEntry("deploy-1", old, "started");
+        repository.save(first);
+        repository.saveAll(List.of(new LogEntry("deploy-2", old, "started")));
+        assertThrows(IllegalArgumentException.class,
+                () -> repository.save(new LogEntry("deploy-3", Instant.now(), "started")));
+
+        repository.removeExpiredLogs();
+        assertEquals(0, registry.size());
+        assertEquals(List.of(), repository.findServiceNames());
+
+        // new services take the freed IDs, the cap counts live services only
+        repository.save(new LogEntry("deploy-3", Instant.now(), "started"));
+        repository.saveAll(List.of(new LogEntry("deploy-4", Instant.now(), "started")));
+        assertEquals(0, registry.find("deploy-3"));
+        assertEquals(1, registry.find("deploy-4"));
+        assertEquals(-1, registry.find("deploy-1"));
+        assertEquals(2, registry.idLimit());
+        assertEquals(List.of("deploy-3", "deploy-4"), repository.findServiceNames());
+        assertEquals(1, repository.countEntries("deploy-3"));
+
+        // an entry still carrying a released ID is registered again, and refused while the cap is full
+        first.setTimestamp(Instant.now());
+        assertThrows(IllegalArgumentException.class, () -> repository.save(first));
+        assertEquals(1, repository.countEntries("deploy-3"));
+
+        // a service with logs inside the retention is kept
+        repository.removeExpiredLogs();
+        assertEquals(2, registry.size());
+    }
+
+    @Test
+    void entriesKeepTheirIdOnlyForTheRegistryThatGaveIt() {
+        ServiceRegistry registry = new ServiceRegistry();
+        ServiceRegistry other = new ServiceRegistry();
+        other.register("search");
+        LogEntry logEntry = new LogEntry(new String("auth"), Instant.now(), "login");
+
+        registry.register(logEntry);
+        assertEquals(0, logEntry.getServiceId());
+        assertSame(registry.name(0), logEntry.getServiceName());
+        assertEquals(0, registry.idOf(logEntry));
+
+        // the other registry knows the name under another ID
+        assertEquals(1, other.idOf(logEntry));
+        assertEquals(1, logEntry.getServiceId());
+
+        logEntry.setServiceName("payments");
+        assertEquals(1, registry.idOf(logEntry));
+    }
+
+    @Test
+    void concurrentRegistrationsGetOneIdPerName() throws Exception {
+        ServiceRegistry registry = new ServiceRegistry();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<List<Integer>>> results = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                results.add(executor.submit(() -> {
+                    List<Integer> ids = new ArrayList<>();
+                    for (int i = 0; i < 500; i++) {
+                        ids.add(registry.register("service-" + i));
+                    }
+                    return ids;
+                }));
+            }
+            List<Integer> expected = results.get(0).get();
+            for (Future<List<Integer>> result : results) {
+                assertEquals(expected, result.get());
+            }
+            Set<Integer> distinct = new HashSet<>(expected);
+            assertEquals(500, distinct.size());
+            assertTrue(distinct.stream().allMatch(id -> id >= 0 && id < 500));
+            for (int i = 0; i < 500; i++) {
+                assertEquals("service-" + i, registry.name(expected.get(i)));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void tablesGrowWithTheIds() {
+        ServiceRegistry registry = new ServiceRegistry();
+        ServiceTable<String> table = new ServiceTable<>(registry);
+        for (int i = 0; i < 100; i++) {
+            int id = registry.register("service-" + i);
+            if (i % 3 == 0) {
+                assertEquals("log of service-" + i, table.computeIfAbsent(id, name -> "log of " + name));
+            }
+        }
+
+        assertEquals(34, table.size());
+        assertEquals("log of service-99", table.get("service-99"));
+        assertEquals("log of service-99", table.computeIfAbsent(99, name -> "replaced"));
+        assertNull(table.get("service-98"));
+        assertNull(table.get("unknown"));
+        assertNull(table.get(1000));
+        assertEquals(34, table.names().size());
+        assertEquals(34, table.values().count());
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.log_aggregator.service;
+
+import com.example.log_aggregator.model.IngestMetrics;
+import com.example.log_aggregator.model.LogEntry;
+import com.example.log_aggregator.repository.InMemoryLogRepository;
+import com.example.log_aggregator.repository.LogRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsyncIngestPipelineTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private AsyncIngestPipeline pipeline;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        if (pipeline != null) {
+            pipeline.shutdown();
+        }
+    }
+
+    @Test
+    void publishedEntriesAreDrainedIntoRepository() throws InterruptedException {
+        InMemoryLogRepository repository = new InMemoryLogRepository();
+        pipeline = new AsyncIngestPipeline(repository, 16, 2, 4, OverflowPolicy.BLOCK, 1);
+        Instant now = Instant.now();
+
+        for (int i = 0; i < 100; i++) {
+            pipeline.publish(new LogEntry("test-service", now.minusSeconds(100 - i), "Log " + i));
+        }
+        awaitTrue(() -> pipeline.metrics().getDrained() == 100);
+
+        List<LogEntry> stored = repository.findByServiceNameAndTimeRange("test-service",
+                now.minus(1, ChronoUnit.HOURS), now);
+        assertEquals(100, stored.size());
+        IngestMetrics metrics = pipeline.metrics();
+        assertEquals(100, metrics.getPublished());
+        assertEquals(0, metrics.getQueueDepth());
+        assertTrue(metrics.getDrainLatencyMaxMillis() >= metrics.getDrainLatencyAvgMillis());
+    }
+
+    @Test
+    void fullBufferRejectsWithRetryAfter() throws InterruptedException {
+        pipeline = new AsyncIngestPipeline(blockingRepository(), 2, 1, 1, OverflowPolicy.REJECT, 3);
+
+        pipeline.publish(entry());
+        // the consumer holds the first entry, the next two fill the buffer
+        awaitTrue(() -> pipeline.metrics().getQueueDepth() == 0);
+        pipeline.publish(entry());
+        pipeline.publish(entry());
+
+        IngestRejectedException rejected = assertThrows(IngestRejectedException.class, () -> pipeline.publish(entry()));
+        assertEquals(3, rejected.getRetryAfterSeconds());
+        assertEquals(1, pipeline.metrics().getRejected());
+        release.countDown();
+    }
+
+    @Test
+    void fullBufferDropsAndCounts() throws InterruptedException {
+        pipeline = new AsyncIngestPipeline(blockingRepository(), 2, 1, 1, OverflowPolicy.DROP, 1);
+
+        pipeline.publish(entry());
+        awaitTrue(() -> pipeline.metrics().getQueueDepth() == 0);
+        for (int i = 0; i < 4; i++) {
+            pipeline.publish(entry());
+        }
+
+        assertEquals(2, pipeline.metrics().getDropped());
+        assertEquals(3, pipeline.metrics().getPublished());
+        release.countDown();
+        awaitTrue(() -> pipeline.metrics().getDrained() == 3);
+    }
+
+    @Test
+    void fullBufferBlocksUntilSpaceFrees() throws InterruptedException {
+        pipeline = new AsyncIngestPipeline(blockingRepository(), 2, 1, 1, OverflowPolicy.BLOCK, 1);
+
+        pipeline.publish(entry());
+        awaitTrue(() -> pipeline.metrics().getQueueDepth() == 0);
+        pipeline.publish(entry());
+        pipeline.publish(entry());
+
+        Thread producer = new Thread(() -> pipeline.publish(entry()));
+        producer.start();
+        Thread.sleep(100);
+        assertTrue(producer.isAlive());
+
+        release.countDown();
+        producer.join(5000);
+        assertEquals(4, pipeline.metrics().getPublished());
+        awaitTrue(() -> pipeline.metrics().getDrained() == 4);
+    }
+
+    @Test
+    void shutdownStoresBufferedEntries() {
+        InMemoryLogRepository repository = new InMemoryLogRepository();
+        pipeline = new AsyncIngestPipeline(repository, 1024, 1, 8, OverflowPolicy.BLOCK, 1);
+        Instant now = Instant.now();
+        for (int i = 0; i < 500; i++) {
+            pipeline.publish(new LogEntry("test-service", now.minusSeconds(i), "Log " + i));
+        }
+
+        pipeline.shutdown();
+
+        assertEquals(500, repository.findByServiceNameAndTimeRange("test-service",
+                now.minus(1, ChronoUnit.HOURS), now).size());
+        assertThrows(IllegalStateException.class, () -> pipeline.publish(entry()));
+        pipeline = null;
+    }
+
+    private static LogEntry entry() {
+        return new LogEntry("test-service", Instant.now(), "Log");
+    }
+
+    private LogRepository blockingRepository() {
+        return new InMemoryLogRepository() {
+            @Override
+            public void saveAll(List<LogEntry> logEntries) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.saveAll(logEntries);
+            }
+        };
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("Condition not met within 5s");
+            }
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.log_aggregator.service;
+
+import com.example.log_aggregator.model.LogEntry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IngestRingBufferTest {
+
+    private static LogEntry entry(int i) {
+        return new LogEntry("test-service", Instant.EPOCH.plusSeconds(i), "Log " + i);
+    }
+
+    @Test
+    void capacityIsRoundedUpToPowerOfTwo() {
+        assertEquals(2, new IngestRingBuffer(1).capacity());
+        assertEquals(8, new IngestRingBuffer(5).capacity());
+        assertEquals(8, new IngestRingBuffer(8).capacity());
+    }
+
+    @Test
+    void offerFailsWhenFullAndDrainKeepsOrder() {
+        IngestRingBuffer buffer = new IngestRingBuffer(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(buffer.offer(entry(i)));
+        }
+        assertFalse(buffer.offer(entry(4)));
+        assertEquals(4, buffer.size());
+
+        List<LogEntry> drained = new ArrayList<>();
+        assertTrue(buffer.drainTo(drained, 3) > 0);
+        assertEquals(List.of(entry(0), entry(1), entry(2)), drained);
+
+        // freed slots are reused on the next lap
+        assertTrue(buffer.offer(entry(4)));
+        drained.clear();
+        buffer.drainTo(drained, 10);
+        assertEquals(List.of(entry(3), entry(4)), drained);
+        assertEquals(-1, buffer.drainTo(drained, 10));
+    }
+
+    @Test
+    void concurrentProducersAndConsumersLoseNothing() throws Exception {
+        IngestRingBuffer buffer = new IngestRingBuffer(64);
+        int producers = 4;
+        int perProducer = 2_000;
+        ExecutorService executor = Executors.newFixedThreadPool(producers + 2);
+        try {
+            for (int p = 0; p < producers; p++) {
+                int offset = p * perProducer;
+                executor.submit(() -> {
+                    for (int i = 0; i < perProducer; i++) {
+                        while (!buffer.offer(entry(offset + i))) {
+                            Thread.onSpinWait();
+                        }
+                    }
+                });
+            }
+            AtomicInteger remaining = new AtomicInteger(producers * perProducer);
+            List<Future<List<LogEntry>>> consumers = new ArrayList<>();
+            for (int c = 0; c < 2; c++) {
+                consumers.add(executor.submit(() -> {
+                    List<LogEntry> taken = new ArrayList<>();
+                    while (remaining.get() > 0) {
+                        int before = taken.size();
+                        buffer.drainTo(taken, 16);
+                        remaining.addAndGet(before - taken.size());
+                    }
+                    return taken;
+                }));
+            }
+
+            Set<String> messages = new HashSet<>();
+            int total = 0;
+            for (Future<List<LogEntry>> consumer : consumers) {
+                for (LogEntry logEntry : consumer.get(30, TimeUnit.SECONDS)) {
+                    messages.add(logEntry.getMessage());
+                    total++;
+                }
+            }
+            assertEquals(producers * perProducer, total);
+            assertEquals(producers * perProducer, messages.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
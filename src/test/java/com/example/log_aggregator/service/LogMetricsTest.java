@@ -0,0 +1,127 @@
+package com.example.log_aggregator.service;
+
+import com.example.log_aggregator.model.LogEntry;
+import com.example.log_aggregator.model.SortOrder;
+import com.example.log_aggregator.repository.InMemoryLogRepository;
+import com.example.log_aggregator.repository.LogRepository;
+import com.example.log_aggregator.repository.MemoryBudget;
+import com.example.log_aggregator.repository.QueryExecutor;
+import com.example.log_aggregator.repository.RetentionPolicy;
+import com.example.log_aggregator.repository.ServiceRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LogMetricsTest {
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ServiceRegistry serviceRegistry = new ServiceRegistry();
+    private final LogRepository repository = new InMemoryLogRepository(1024, true, "trace_id", new RetentionPolicy(),
+            new MemoryBudget(), serviceRegistry, new QueryExecutor());
+    private final LogService logService = new LogService(repository, null, null, serviceRegistry, new QueryCache(),
+            null, new LogMetrics(meterRegistry, repository, serviceRegistry));
+
+    private double counter(String name, String service) {
+        return meterRegistry.get(name).tag("service", service).functionCounter().count();
+    }
+
+    private long timed(String name, String tag, String value) {
+        return meterRegistry.get(name).tag(tag, value).timer().count();
+    }
+
+    @Test
+    void ingestIsCountedPerServiceAndTimed() {
+        Instant now = Instant.now();
+        logService.saveLog(new LogEntry("auth", now, "Login"));
+        logService.saveLog(new LogEntry("auth", now, "Logout"));
+        assertThrows(IllegalArgumentException.class, () -> logService.saveLog(new LogEntry("auth", now, null)));
+        assertThrows(IllegalArgumentException.class, () -> logService.saveLog(new LogEntry(" ", now, "Lost")));
+        logService.saveLogs(Arrays.asList(new LogEntry("payments", now, "Charged"),
+                new LogEntry("payments", now, null), null));
+
+        assertEquals(2, counter("aggregator.ingest.accepted", "auth"));
+        assertEquals(1, counter("aggregator.ingest.rejected", "auth"));
+        assertEquals(1, counter("aggregator.ingest.accepted", "payments"));
+        assertEquals(1, counter("aggregator.ingest.rejected", "payments"));
+        assertEquals(2, counter("aggregator.ingest.rejected", LogMetrics.UNREGISTERED));
+        assertEquals(4, timed("aggregator.ingest", "operation", "save"));
+        assertEquals(1, timed("aggregator.ingest", "operation", "batch"));
+
+        assertEquals(2, meterRegistry.get("aggregator.store.entries").tag("service", "auth").gauge().value());
+        assertTrue(meterRegistry.get("aggregator.store.bytes").tag("service", "auth").gauge().value() > 0);
+        assertNull(meterRegistry.find("aggregator.store.entries").tag("service", LogMetrics.UNREGISTERED).gauge());
+    }
+
+    @Test
+    void queriesAreTimedByHowTheyWereAnswered() {
+        MeterRegistry cachedRegistry = new SimpleMeterRegistry();
+        LogService cached = new LogService(repository, null, null, serviceRegistry, new QueryCache(1 << 20), null,
+                new LogMetrics(cachedRegistry, repository, serviceRegistry));
+        Instant now = Instant.now();
+        logService.saveLog(new LogEntry("auth", now.minusSeconds(10), "Login"));
+
+        cached.queryLogs("auth", now.minusSeconds(60), now);
+        assertEquals(1, cached.queryLogs("auth", now.minusSeconds(60), now).size());
+        assertEquals(1, cachedRegistry.get("aggregator.query").tag("type", "list").timer().count());
+        assertEquals(1, cachedRegistry.get("aggregator.query").tag("type", "cached").timer().count());
+
+        logService.queryLogPage("auth", now.minusSeconds(60), now, null, 10, SortOrder.ASC);
+        assertEquals(1, timed("aggregator.query", "type", "page"));
+        assertEquals(0, timed("aggregator.query", "type", "list"));
+    }
+
+    @Test
+    void expiryPassesAreTimedWithTheEntriesTheyRemoved() {
+        Instant expired = Instant.now().minusSeconds(7200);
+        repository.saveAll(List.of(new LogEntry("auth", expired, "Old"), new LogEntry("auth", expired, "Older"),
+                new LogEntry("auth", Instant.now(), "New")));
+
+        logService.cleanupExpiredLogs();
+
+        assertEquals(1, meterRegistry.get("aggregator.expiry").timer().count());
+        assertEquals(2, meterRegistry.get("aggregator.expiry.removed").counter().count());
+        // the service was stored without passing through ingest, the reaper registered its meters
+        assertEquals(1, meterRegistry.get("aggregator.store.entries").tag("service", "auth").gauge().value());
+        assertEquals(0, counter("aggregator.ingest.accepted", "auth"));
+    }
+
+    @Test
+    void metersOfAReleasedServiceAreReplacedWhenItsIdIsReused() {
+        MeterRegistry reusedRegistry = new SimpleMeterRegistry();
+        ServiceRegistry capped = new ServiceRegistry(1);
+        LogRepository expiring = new InMemoryLogRepository(1024, true, "trace_id", new RetentionPolicy("1m", ""),
+                new MemoryBudget(), capped, new QueryExecutor());
+        LogService service = new LogService(expiring, null, null, capped, new QueryCache(), null,
+                new LogMetrics(reusedRegistry, expiring, capped));
+        service.saveLog(new LogEntry("deploy-1", Instant.now().minusSeconds(600), "Started"));
+        service.cleanupExpiredLogs();
+
+        service.saveLog(new LogEntry("deploy-2", Instant.now(), "Started"));
+        assertEquals(1, reusedRegistry.get("aggregator.ingest.accepted").tag("service", "deploy-2")
+                .functionCounter().count());
+        assertNull(reusedRegistry.find("aggregator.ingest.accepted").tag("service", "deploy-1").functionCounter());
+        assertNull(reusedRegistry.find("aggregator.store.entries").tag("service", "deploy-1").gauge());
+    }
+
+    @Test
+    void lockWaitsArePublishedPerLock() {
+        for (String lock : List.of("segment", "index", "seal", "wal")) {
+            assertNotNull(meterRegistry.find("aggregator.repository.lock.wait").tag("lock", lock).functionTimer());
+        }
+    }
+
+    @Test
+    void sampleIntervalMustBePositive() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new LogMetrics(meterRegistry, repository, serviceRegistry, 0));
+    }
+}
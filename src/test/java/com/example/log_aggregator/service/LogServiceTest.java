@@ -1,20 +1,41 @@
 package com.example.log_aggregator.service;
 
+import com.example.log_aggregator.model.BatchIngestResponse;
+import com.example.log_aggregator.model.LogCursor;
 import com.example.log_aggregator.model.LogEntry;
+import com.example.log_aggregator.model.LogFilter;
+import com.example.log_aggregator.model.LogLevel;
+import com.example.log_aggregator.model.LogPage;
 import com.example.log_aggregator.model.LogResponse;
+import com.example.log_aggregator.model.LogStats;
+import com.example.log_aggregator.model.QueryCacheStats;
+import com.example.log_aggregator.model.ServiceVolume;
+import com.example.log_aggregator.model.SortOrder;
 import com.example.log_aggregator.repository.LogRepository;
+import com.example.log_aggregator.repository.MemoryBudgetExceededException;
+import com.example.log_aggregator.repository.RangeVersion;
+import com.example.log_aggregator.repository.ServiceRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 class LogServiceTest {
@@ -40,6 +61,74 @@ class LogServiceTest {
         verify(logRepository, times(1)).save(logEntry);
     }
 
+    @Test
+    void submitLogPublishesToPipeline() {
+        AsyncIngestPipeline pipeline = mock(AsyncIngestPipeline.class);
+        logService = new LogService(logRepository, pipeline);
+        LogEntry logEntry = new LogEntry("test-service", Instant.now(), "Test message");
+
+        logService.submitLog(logEntry);
+
+        assertTrue(logService.isAsyncIngest());
+        verify(pipeline, times(1)).publish(logEntry);
+        verify(logRepository, never()).save(any());
+        assertThrows(IllegalArgumentException.class, () -> logService.submitLog(new LogEntry("", Instant.now(), "x")));
+    }
+
+    @Test
+    void storedLogsArePublishedToTail() {
+        LogTailBroadcaster broadcaster = mock(LogTailBroadcaster.class);
+        logService = new LogService(logRepository, null, broadcaster);
+        LogEntry logEntry = new LogEntry("test-service", Instant.now(), "Test message");
+        LogEntry other = new LogEntry("test-service", Instant.now(), "Other message");
+
+        logService.saveLog(logEntry);
+        logService.submitLog(other);
+        logService.saveLogs(Arrays.asList(logEntry, new LogEntry("", Instant.now(), "x"), other));
+
+        verify(broadcaster).publish(logEntry);
+        verify(broadcaster).publish(other);
+        verify(broadcaster).publishAll(List.of(logEntry, other));
+
+        doThrow(new MemoryBudgetExceededException("test-service", 5)).when(logRepository).save(any());
+        assertThrows(IngestRejectedException.class, () -> logService.saveLog(logEntry));
+        verifyNoMoreInteractions(broadcaster);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void tailMatchesServicesGlobsAndConditions() {
+        LogTailBroadcaster broadcaster = mock(LogTailBroadcaster.class);
+        logService = new LogService(logRepository, null, broadcaster);
+        TailSink sink = mock(TailSink.class);
+
+        logService.tail(List.of("payments-*", "auth"), "timeout", Map.of("level>", "WARN", "region", "eu"), sink);
+
+        ArgumentCaptor<Predicate<LogEntry>> filter = ArgumentCaptor.forClass(Predicate.class);
+        verify(broadcaster).subscribe(filter.capture(), eq(sink));
+        assertTrue(filter.getValue().test(tailEntry("payments-eu", LogLevel.ERROR, "eu", "gateway timeout")));
+        assertTrue(filter.getValue().test(tailEntry("auth", LogLevel.WARN, "eu", "timeout")));
+        assertFalse(filter.getValue().test(tailEntry("payments", LogLevel.ERROR, "eu", "timeout")));
+        assertFalse(filter.getValue().test(tailEntry("auth", LogLevel.INFO, "eu", "timeout")));
+        assertFalse(filter.getValue().test(tailEntry("auth", LogLevel.ERROR, "us", "timeout")));
+        assertFalse(filter.getValue().test(tailEntry("auth", LogLevel.ERROR, "eu", "refused")));
+
+        assertThrows(IllegalArgumentException.class, () -> logService.tail(List.of(" "), null, Map.of(), sink));
+        assertThrows(IllegalStateException.class,
+                () -> new LogService(logRepository).tail(List.of("auth"), null, Map.of(), sink));
+    }
+
+    @Test
+    void submitLogWithoutPipelineSavesDirectly() {
+        LogEntry logEntry = new LogEntry("test-service", Instant.now(), "Test message");
+
+        logService.submitLog(logEntry);
+
+        assertFalse(logService.isAsyncIngest());
+        verify(logRepository, times(1)).save(logEntry);
+        assertThrows(IllegalStateException.class, () -> logService.ingestMetrics());
+    }
+
     @Test
     void saveLogWithNullTimestamp() {
         //if timestamp is null, set it to current time
@@ -67,6 +156,118 @@ class LogServiceTest {
         assertThrows(IllegalArgumentException.class, () -> {
             logService.saveLog(new LogEntry("test-service", Instant.now(), null));
         });
+
+        // test attributes over the limits
+        Map<String, String> tooMany = new HashMap<>();
+        for (int i = 0; i <= LogService.MAX_ATTRIBUTES; i++) {
+            tooMany.put("key" + i, "value");
+        }
+        assertThrows(IllegalArgumentException.class, () ->
+                logService.saveLog(new LogEntry("test-service", Instant.now(), "Test message", null, tooMany)));
+        assertThrows(IllegalArgumentException.class, () -> logService.saveLog(new LogEntry("test-service",
+                Instant.now(), "Test message", null, Map.of(" ", "value"))));
+        assertThrows(IllegalArgumentException.class, () -> logService.saveLog(new LogEntry("test-service",
+                Instant.now(), "Test message", null,
+                Map.of("trace_id", "x".repeat(LogService.MAX_ATTRIBUTE_VALUE_LENGTH + 1)))));
+        verify(logRepository, never()).save(any());
+    }
+
+    @Test
+    void saveLogsReportsRejectedEntries() {
+        LogEntry valid1 = new LogEntry("test-service", Instant.now(), "Message 1");
+        LogEntry missingService = new LogEntry(" ", Instant.now(), "Message 2");
+        LogEntry valid2 = new LogEntry("test-service", null, "Message 3");
+        LogEntry missingMessage = new LogEntry("test-service", Instant.now(), null);
+
+        BatchIngestResponse response = logService.saveLogs(Arrays.asList(valid1, missingService, valid2, null, missingMessage));
+
+        assertEquals(2, response.getAccepted());
+        assertEquals(3, response.getRejected());
+        assertEquals(List.of(1, 3, 4), response.getRejections().stream().map(BatchIngestResponse.Rejection::getIndex).toList());
+        assertEquals("Service name cannot be empty", response.getRejections().get(0).getReason());
+        assertNotNull(valid2.getTimestamp());
+        verify(logRepository, times(1)).saveAll(List.of(valid1, valid2));
+    }
+
+    @Test
+    void saveLogsRejectsServicesOverTheLimit() {
+        ServiceRegistry serviceRegistry = new ServiceRegistry(2);
+        logService = new LogService(logRepository, null, null, serviceRegistry);
+        LogEntry first = new LogEntry("auth", Instant.now(), "Message 1");
+        LogEntry invalid = new LogEntry("invalid", Instant.now(), null);
+        LogEntry second = new LogEntry(new String("payments"), Instant.now(), "Message 2");
+        LogEntry third = new LogEntry("search", Instant.now(), "Message 3");
+        LogEntry again = new LogEntry(new String("auth"), Instant.now(), "Message 4");
+
+        BatchIngestResponse response = logService.saveLogs(List.of(first, invalid, second, third, again));
+
+        assertEquals(3, response.getAccepted());
+        assertEquals(List.of(1, 3), response.getRejections().stream().map(BatchIngestResponse.Rejection::getIndex).toList());
+        assertEquals("Too many services, at most 2 are allowed", response.getRejections().get(1).getReason());
+        assertEquals(-1, serviceRegistry.find("invalid"));
+        // accepted entries carry their ID and share one name per service
+        assertEquals(List.of(0, 1, 0), List.of(first.getServiceId(), second.getServiceId(), again.getServiceId()));
+        assertSame(first.getServiceName(), again.getServiceName());
+        verify(logRepository, times(1)).saveAll(List.of(first, second, again));
+    }
+
+    @Test
+    void logStatsBuildsBucketsFromRepositoryCounts() {
+        Instant start = Instant.parse("2025-03-17T10:00:00.250Z");
+        Instant from = Instant.parse("2025-03-17T10:00:00Z");
+        Instant end = Instant.parse("2025-03-17T10:03:00Z");
+        Duration minute = Duration.ofMinutes(1);
+        when(logRepository.findServiceNames()).thenReturn(List.of("auth", "idle", "payments"));
+        when(logRepository.countByInterval("auth", from, end, minute)).thenReturn(new long[]{1, 0, 2});
+        when(logRepository.countByInterval("idle", from, end, minute)).thenReturn(new long[]{0, 0, 0});
+        when(logRepository.countByInterval("payments", from, end, minute)).thenReturn(new long[]{4, 1, 0});
+
+        LogStats stats = logService.logStats(null, start, end, minute);
+
+        assertEquals(from, stats.getStart());
+        assertEquals(60, stats.getIntervalSeconds());
+        assertEquals(8, stats.getTotal());
+        assertEquals(List.of("payments", "auth"), List.copyOf(stats.getServices().keySet()));
+        assertEquals(3, stats.getBuckets().size());
+        assertEquals(Instant.parse("2025-03-17T10:02:00Z"), stats.getBuckets().get(2).getStart());
+        assertEquals(Map.of("auth", 1L, "payments", 4L), stats.getBuckets().get(0).getServices());
+        assertEquals(2, stats.getBuckets().get(2).getTotal());
+
+        LogStats idle = logService.logStats(List.of("idle"), start, end, minute);
+        assertEquals(Map.of("idle", 0L), idle.getServices());
+
+        assertThrows(IllegalArgumentException.class,
+                () -> logService.logStats(null, start, end, Duration.ofMillis(1500)));
+        assertThrows(IllegalArgumentException.class, () -> logService.logStats(null, end, start, minute));
+        assertThrows(IllegalArgumentException.class, () -> logService.logStats(List.of(" "), start, end, minute));
+    }
+
+    @Test
+    void topServicesRanksByVolume() {
+        when(logRepository.findServiceNames()).thenReturn(List.of("auth", "idle", "payments", "search"));
+        when(logRepository.countByInterval(eq("auth"), any(), any(), eq(Duration.ofMinutes(15))))
+                .thenReturn(new long[]{7});
+        when(logRepository.countByInterval(eq("idle"), any(), any(), any())).thenReturn(new long[]{0});
+        when(logRepository.countByInterval(eq("payments"), any(), any(), any())).thenReturn(new long[]{40, 2});
+        when(logRepository.countByInterval(eq("search"), any(), any(), any())).thenReturn(new long[]{3});
+
+        List<ServiceVolume> top = logService.topServices(15, 2);
+
+        assertEquals(List.of("payments", "auth"), top.stream().map(ServiceVolume::getServiceName).toList());
+        assertEquals(42, top.get(0).getCount());
+        assertThrows(IllegalArgumentException.class, () -> logService.topServices(0, 2));
+        assertThrows(IllegalArgumentException.class, () -> logService.topServices(15, 0));
+    }
+
+    @Test
+    void memoryBudgetRejectionsBecomeIngestRejections() {
+        LogEntry logEntry = new LogEntry("noisy-service", Instant.now(), "Message");
+        doThrow(new MemoryBudgetExceededException("noisy-service", 7)).when(logRepository).save(logEntry);
+        doThrow(new MemoryBudgetExceededException("noisy-service", 7)).when(logRepository).saveAll(anyList());
+
+        IngestRejectedException single = assertThrows(IngestRejectedException.class, () -> logService.saveLog(logEntry));
+        assertEquals(7, single.getRetryAfterSeconds());
+        assertThrows(IngestRejectedException.class, () -> logService.saveLogs(List.of(logEntry)));
     }
 
     @Test
@@ -91,6 +292,113 @@ class LogServiceTest {
         assertEquals(log2.getMessage(), results.get(1).getMessage());
     }
 
+    @Test
+    void queryLogPageSuccess() {
+        String serviceName = "test-service";
+        Instant startTime = Instant.now().minus(1, ChronoUnit.HOURS);
+        Instant endTime = Instant.now();
+        LogEntry log1 = new LogEntry(serviceName, endTime.minusSeconds(10), "Newest");
+        LogCursor nextCursor = new LogCursor(log1.getTimestamp(), 42);
+
+        when(logRepository.findPageByServiceNameAndTimeRange(serviceName, startTime, endTime, null, 1, SortOrder.DESC))
+                .thenReturn(new LogPage<>(List.of(log1), nextCursor));
+
+        LogPage<LogResponse> page = logService.queryLogPage(serviceName, startTime, endTime, null, 1, SortOrder.DESC);
+
+        assertEquals(1, page.getItems().size());
+        assertEquals("Newest", page.getItems().get(0).getMessage());
+        assertEquals(nextCursor, page.getNextCursor());
+
+        assertThrows(IllegalArgumentException.class, () ->
+                logService.queryLogPage(serviceName, startTime, endTime, null, 0, SortOrder.ASC));
+    }
+
+    @Test
+    void filterLogPageMatchesText() {
+        String serviceName = "test-service";
+        Instant startTime = Instant.now().minus(1, ChronoUnit.HOURS);
+        Instant endTime = Instant.now();
+        LogEntry log1 = new LogEntry(serviceName, endTime.minusSeconds(10), "Connection refused by db");
+
+        when(logRepository.findPageMatching(eq(serviceName), eq(startTime), eq(endTime),
+                argThat(filter -> filter.getText().toString().equals("\"connection refused\"")), isNull(), eq(10),
+                eq(SortOrder.ASC)))
+                .thenReturn(new LogPage<>(List.of(log1), null));
+
+        LogPage<LogResponse> page = logService.filterLogPage(serviceName, startTime, endTime,
+                LogFilter.parse("\"connection refused\"", Map.of()), null, 10, SortOrder.ASC);
+
+        assertEquals(1, page.getItems().size());
+        assertEquals("Connection refused by db", page.getItems().get(0).getMessage());
+    }
+
+    @Test
+    void filterLogPageMatchesLevelAndAttributes() {
+        String serviceName = "test-service";
+        Instant startTime = Instant.now().minus(1, ChronoUnit.HOURS);
+        Instant endTime = Instant.now();
+        LogEntry log1 = new LogEntry(serviceName, endTime.minusSeconds(10), "Payment failed", LogLevel.ERROR,
+                Map.of("trace_id", "abc"));
+
+        when(logRepository.findPageMatching(eq(serviceName), eq(startTime), eq(endTime),
+                argThat(filter -> filter.getMinLevel() == LogLevel.WARN && filter.getMaxLevel() == null
+                        && filter.getAttributes().equals(Map.of("trace_id", "abc")) && filter.getText() == null),
+                isNull(), eq(10), eq(SortOrder.ASC)))
+                .thenReturn(new LogPage<>(List.of(log1), null));
+
+        LogPage<LogResponse> page = logService.filterLogPage(serviceName, startTime, endTime,
+                LogFilter.parse(null, Map.of("level>", "WARN", "trace_id", "abc")), null, 10, SortOrder.ASC);
+
+        assertEquals(1, page.getItems().size());
+        assertEquals(LogLevel.ERROR, page.getItems().get(0).getLevel());
+        assertEquals(Map.of("trace_id", "abc"), page.getItems().get(0).getAttributes());
+
+        // an empty filter pages through every log
+        when(logRepository.findPageByServiceNameAndTimeRange(serviceName, startTime, endTime, null, 10,
+                SortOrder.ASC)).thenReturn(new LogPage<>(List.of(log1), null));
+        assertEquals(1, logService.filterLogPage(serviceName, startTime, endTime, LogFilter.parse(null, Map.of()),
+                null, 10, SortOrder.ASC).getItems().size());
+    }
+
+    @Test
+    void queryServicesPageExpandsGlobs() {
+        Instant startTime = Instant.now().minus(1, ChronoUnit.HOURS);
+        Instant endTime = Instant.now();
+        LogEntry log1 = new LogEntry("payments-db", endTime.minusSeconds(10), "Slow query");
+        when(logRepository.findServiceNames()).thenReturn(List.of("auth", "payments-api", "payments-db", "search"));
+        when(logRepository.findPageAcrossServices(eq(List.of("auth", "payments-api", "payments-db")), eq(startTime),
+                eq(endTime), isNull(), isNull(), eq(10), eq(SortOrder.DESC)))
+                .thenReturn(new LogPage<>(List.of(log1), null));
+
+        LogPage<LogResponse> page = logService.queryServicesPage(List.of("payments-*", "auth", "payments-api"),
+                startTime, endTime, null, Map.of(), null, 10, SortOrder.DESC);
+
+        assertEquals(1, page.getItems().size());
+        assertEquals("payments-db", page.getItems().get(0).getServiceName());
+
+        // a glob without matches is an empty result, not an error
+        when(logRepository.findPageAcrossServices(eq(List.of()), any(), any(), any(), any(), anyInt(), any()))
+                .thenReturn(new LogPage<>(List.of(), null));
+        assertTrue(logService.queryServicesPage(List.of("billing-*"), startTime, endTime, null, Map.of(), null, 10,
+                SortOrder.ASC).getItems().isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> logService.queryServicesPage(List.of("auth", " "),
+                startTime, endTime, null, Map.of(), null, 10, SortOrder.ASC));
+    }
+
+    @Test
+    void streamLogsDelegatesToRepository() {
+        String serviceName = "test-service";
+        Instant startTime = Instant.now().minus(1, ChronoUnit.HOURS);
+        Instant endTime = Instant.now();
+        List<LogEntry> received = new ArrayList<>();
+
+        logService.streamLogs(serviceName, startTime, endTime, null, Map.of(), received::add);
+
+        verify(logRepository, times(1)).streamByServiceNameAndTimeRange(eq(serviceName), eq(startTime), eq(endTime),
+                argThat(LogFilter::isEmpty), any());
+        assertThrows(IllegalArgumentException.class, () -> logService.streamLogs(serviceName, endTime, startTime, null, Map.of(), received::add));
+    }
+
     @Test
     void queryLogsWithInvalidData() {
         Instant startTime = Instant.now().minus(1, ChronoUnit.HOURS);
@@ -132,10 +440,48 @@ class LogServiceTest {
         assertTrue(results.isEmpty());
     }
 
+    @Test
+    void queryLogsIsCachedUntilTheRangeChanges() {
+        logService = new LogService(logRepository, null, null, new ServiceRegistry(), new QueryCache(1 << 20));
+        String serviceName = "test-service";
+        Instant startTime = Instant.now().minus(1, ChronoUnit.HOURS);
+        Instant endTime = Instant.now();
+        when(logRepository.rangeVersion(serviceName, startTime, endTime))
+                .thenReturn(new RangeVersion(1, Long.MIN_VALUE));
+        when(logRepository.findByServiceNameAndTimeRange(serviceName, startTime, endTime))
+                .thenReturn(List.of(new LogEntry(serviceName, startTime, "Log 1")));
+
+        List<LogResponse> first = logService.queryLogs(serviceName, startTime, endTime);
+        assertSame(first, logService.queryLogs(serviceName, startTime, endTime));
+        verify(logRepository, times(1)).findByServiceNameAndTimeRange(serviceName, startTime, endTime);
+
+        // a save into the range changes its version
+        when(logRepository.rangeVersion(serviceName, startTime, endTime))
+                .thenReturn(new RangeVersion(2, Long.MIN_VALUE));
+        when(logRepository.findByServiceNameAndTimeRange(serviceName, startTime, endTime))
+                .thenReturn(List.of(new LogEntry(serviceName, startTime, "Log 1"),
+                        new LogEntry(serviceName, endTime, "Log 2")));
+        assertEquals(2, logService.queryLogs(serviceName, startTime, endTime).size());
+        verify(logRepository, times(2)).findByServiceNameAndTimeRange(serviceName, startTime, endTime);
+
+        QueryCacheStats stats = logService.queryCacheStats();
+        assertEquals(1, stats.getHits());
+        assertEquals(2, stats.getMisses());
+        assertEquals(1, stats.getInvalidations());
+        assertEquals(1, stats.getEntries());
+    }
+
     @Test
     void cleanupExpiredLogs() {
         logService.cleanupExpiredLogs();
 
         verify(logRepository, times(1)).removeExpiredLogs();
     }
+
+    private static LogEntry tailEntry(String serviceName, LogLevel level, String region, String message) {
+        LogEntry logEntry = new LogEntry(serviceName, Instant.now(), message);
+        logEntry.setLevel(level);
+        logEntry.setAttributes(Map.of("region", region));
+        return logEntry;
+    }
 }
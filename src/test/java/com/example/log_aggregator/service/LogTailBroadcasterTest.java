@@ -0,0 +1,336 @@
+package com.example.log_aggregator.service;
+
+import com.example.log_aggregator.model.LogEntry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LogTailBroadcasterTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private LogTailBroadcaster broadcaster;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        if (broadcaster != null) {
+            broadcaster.shutdown();
+        }
+    }
+
+    @Test
+    void fansOutEntriesInOrderToEverySubscriber() throws InterruptedException {
+        broadcaster = new LogTailBroadcaster(1024, 1024, 500, TailOverflowPolicy.DROP, 5, 60_000, 4, 60_000);
+        List<CollectingSink> all = new ArrayList<>();
+        List<CollectingSink> payments = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            CollectingSink sink = new CollectingSink();
+            if (i % 2 == 0) {
+                broadcaster.subscribe(logEntry -> true, sink);
+                all.add(sink);
+            } else {
+                broadcaster.subscribe(logEntry -> logEntry.getServiceName().equals("payments"), sink);
+                payments.add(sink);
+            }
+        }
+
+        for (int i = 0; i < 300; i++) {
+            broadcaster.publish(entry(i % 3 == 0 ? "payments" : "auth", i));
+        }
+        awaitTrue(() -> all.stream().allMatch(sink -> sink.entries.size() == 300)
+                && payments.stream().allMatch(sink -> sink.entries.size() == 100));
+
+        for (CollectingSink sink : all) {
+            for (int i = 0; i < 300; i++) {
+                assertEquals("Log " + i, sink.entries.get(i).getMessage());
+            }
+            assertEquals(0, sink.dropped.get());
+        }
+        for (CollectingSink sink : payments) {
+            for (int i = 0; i < 100; i++) {
+                assertEquals("Log " + i * 3, sink.entries.get(i).getMessage());
+            }
+        }
+    }
+
+    @Test
+    void slowSubscriberDropsOldestWithoutHoldingBackOthers() throws InterruptedException {
+        broadcaster = new LogTailBroadcaster(4096, 2048, 10, TailOverflowPolicy.DROP, 5, 60_000, 2, 60_000);
+        CollectingSink slow = new CollectingSink(release);
+        CollectingSink fast = new CollectingSink();
+        LogTailBroadcaster.Subscription slowSubscription = broadcaster.subscribe(logEntry -> true, slow);
+        broadcaster.subscribe(logEntry -> true, fast);
+
+        broadcaster.publish(entry("payments", 0));
+        awaitTrue(() -> slow.sends.get() == 1 && fast.entries.size() == 1);
+        // the slow sink is stuck in its first send while the fast one keeps up
+        for (int round = 0; round < 5; round++) {
+            List<LogEntry> batch = new ArrayList<>();
+            for (int i = 1; i <= 1000; i++) {
+                batch.add(entry("payments", round * 1000 + i));
+            }
+            broadcaster.publishAll(batch);
+            int expected = (round + 1) * 1000 + 1;
+            awaitTrue(() -> fast.entries.size() == expected);
+        }
+        assertEquals(1, slow.entries.size());
+
+        release.countDown();
+        awaitTrue(() -> slow.entries.size() == 1 + 2048);
+        assertEquals(5000 - 2048, slow.dropped.get());
+        assertEquals(5000 - 2048, slowSubscription.getDropped());
+        assertEquals("Log 2953", slow.entries.get(1).getMessage());
+        assertEquals("Log 5000", slow.entries.get(2048).getMessage());
+        assertEquals(0, fast.dropped.get());
+        assertEquals(2, broadcaster.subscriberCount());
+    }
+
+    @Test
+    void disconnectPolicyClosesSubscriberThatFallsBehind() throws InterruptedException {
+        broadcaster = new LogTailBroadcaster(64, 16, 10, TailOverflowPolicy.DISCONNECT, 5, 60_000, 2, 60_000);
+        CollectingSink slow = new CollectingSink(release);
+        LogTailBroadcaster.Subscription subscription = broadcaster.subscribe(logEntry -> true, slow);
+
+        broadcaster.publish(entry("payments", 0));
+        awaitTrue(() -> slow.sends.get() == 1);
+        for (int i = 1; i <= 100; i++) {
+            broadcaster.publish(entry("payments", i));
+        }
+        release.countDown();
+
+        awaitTrue(() -> slow.closed);
+        assertTrue(subscription.isClosed());
+        assertEquals(0, broadcaster.subscriberCount());
+        assertEquals(1, slow.entries.size());
+    }
+
+    @Test
+    void limitsNumberOfSubscribers() {
+        broadcaster = new LogTailBroadcaster(64, 16, 2, TailOverflowPolicy.DROP, 5, 60_000, 1, 60_000);
+        LogTailBroadcaster.Subscription first = broadcaster.subscribe(logEntry -> true, new CollectingSink());
+        broadcaster.subscribe(logEntry -> true, new CollectingSink());
+
+        assertThrows(IllegalStateException.class, () -> broadcaster.subscribe(logEntry -> true, new CollectingSink()));
+
+        assertTrue(first.close());
+        assertFalse(first.close());
+        broadcaster.subscribe(logEntry -> true, new CollectingSink());
+        assertEquals(2, broadcaster.subscriberCount());
+    }
+
+    @Test
+    void failedSendClosesSubscription() throws InterruptedException {
+        broadcaster = new LogTailBroadcaster(64, 16, 10, TailOverflowPolicy.DROP, 5, 60_000, 1, 60_000);
+        LogTailBroadcaster.Subscription subscription = broadcaster.subscribe(logEntry -> true, new TailSink() {
+            @Override
+            public void send(List<LogEntry> logEntries, long dropped) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+
+        broadcaster.publish(entry("payments", 0));
+
+        awaitTrue(subscription::isClosed);
+        assertEquals(0, broadcaster.subscriberCount());
+    }
+
+    @Test
+    void stalledSinksAreDisconnectedWithoutStallingTheSender() throws InterruptedException {
+        broadcaster = new LogTailBroadcaster(64, 16, 10, TailOverflowPolicy.DROP, 5, 60_000, 1, 100);
+        List<StalledSink> stalled = List.of(new StalledSink(), new StalledSink());
+        List<LogTailBroadcaster.Subscription> stalledSubscriptions = new ArrayList<>();
+        for (StalledSink sink : stalled) {
+            stalledSubscriptions.add(broadcaster.subscribe(logEntry -> true, sink));
+        }
+        CollectingSink live = new CollectingSink();
+        broadcaster.subscribe(logEntry -> true, live);
+
+        for (int i = 0; i < 10; i++) {
+            broadcaster.publish(entry("payments", i));
+            Thread.sleep(20);
+        }
+
+        // a sender took over from each one stuck in a stalled write
+        awaitTrue(() -> live.entries.size() == 10);
+        awaitTrue(() -> stalled.stream().allMatch(sink -> sink.closed));
+        assertTrue(stalledSubscriptions.stream().allMatch(LogTailBroadcaster.Subscription::isClosed));
+        assertEquals(1, broadcaster.subscriberCount());
+        awaitTrue(() -> stalled.stream().allMatch(sink -> sink.interrupted));
+    }
+
+    @Test
+    void writesStillBlockedCountAgainstMaxSubscribers() throws InterruptedException {
+        broadcaster = new LogTailBroadcaster(64, 16, 2, TailOverflowPolicy.DROP, 5, 60_000, 1, 100);
+        StuckSink stuck = new StuckSink(release);
+        LogTailBroadcaster.Subscription stuckSubscription = broadcaster.subscribe(logEntry -> true, stuck);
+        CollectingSink live = new CollectingSink();
+        broadcaster.subscribe(logEntry -> true, live);
+
+        broadcaster.publish(entry("payments", 0));
+        awaitTrue(stuckSubscription::isClosed);
+        broadcaster.publish(entry("payments", 1));
+        awaitTrue(() -> live.entries.size() == 2);
+        // healthy sessions are written to by the sender itself
+        assertTrue(live.thread.startsWith("tail-sender-"));
+        assertEquals(1, broadcaster.subscriberCount());
+
+        // the write ignores the interrupt and still holds a thread, so there is no room for another session
+        assertThrows(IllegalStateException.class, () -> broadcaster.subscribe(logEntry -> true, new CollectingSink()));
+        assertFalse(stuck.closed);
+
+        release.countDown();
+        awaitTrue(() -> stuck.closed);
+        awaitTrue(() -> {
+            try {
+                broadcaster.subscribe(logEntry -> true, new CollectingSink());
+                return true;
+            } catch (IllegalStateException e) {
+                return false;
+            }
+        });
+    }
+
+    @Test
+    void idleSubscriberGetsHeartbeats() throws InterruptedException {
+        broadcaster = new LogTailBroadcaster(64, 16, 10, TailOverflowPolicy.DROP, 5, 20, 1, 60_000);
+        CollectingSink sink = new CollectingSink();
+        broadcaster.subscribe(logEntry -> true, sink);
+
+        awaitTrue(() -> sink.heartbeats.get() >= 2);
+        assertTrue(sink.entries.isEmpty());
+    }
+
+    @Test
+    void rejectsInvalidConfiguration() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new LogTailBroadcaster(64, 128, 10, TailOverflowPolicy.DROP, 5, 1000, 1, 60_000));
+        assertThrows(IllegalArgumentException.class, () -> TailOverflowPolicy.fromString("block"));
+        assertEquals(TailOverflowPolicy.DISCONNECT, TailOverflowPolicy.fromString("Disconnect"));
+    }
+
+    private static LogEntry entry(String serviceName, int i) {
+        return new LogEntry(serviceName, Instant.now(), "Log " + i);
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("Condition not met within 5s");
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    /**
+     * never returns from a send, like a client whose socket buffer stays full
+     */
+    private static class StalledSink implements TailSink {
+        private volatile boolean interrupted;
+        private volatile boolean closed;
+
+        @Override
+        public void send(List<LogEntry> logEntries, long dropped) {
+            try {
+                new CountDownLatch(1).await();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    /**
+     * blocks in a send until released, whether interrupted or not, like a write stuck on a socket
+     */
+    private static class StuckSink implements TailSink {
+        private final CountDownLatch gate;
+        private volatile boolean closed;
+
+        StuckSink(CountDownLatch gate) {
+            this.gate = gate;
+        }
+
+        @Override
+        public void send(List<LogEntry> logEntries, long dropped) {
+            while (gate.getCount() > 0) {
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                    // keeps blocking
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    private static class CollectingSink implements TailSink {
+        private final CountDownLatch gate;
+        private final List<LogEntry> entries = new CopyOnWriteArrayList<>();
+        private final AtomicLong dropped = new AtomicLong();
+        private final AtomicInteger sends = new AtomicInteger();
+        private final AtomicInteger heartbeats = new AtomicInteger();
+        private volatile boolean closed;
+        private volatile String thread;
+
+        CollectingSink() {
+            this(new CountDownLatch(0));
+        }
+
+        /**
+         * @param gate the first send that carries entries waits for it
+         */
+        CollectingSink(CountDownLatch gate) {
+            this.gate = gate;
+        }
+
+        @Override
+        public void send(List<LogEntry> logEntries, long droppedSinceLastSend) {
+            if (logEntries.isEmpty() && droppedSinceLastSend == 0) {
+                heartbeats.incrementAndGet();
+                return;
+            }
+            thread = Thread.currentThread().getName();
+            entries.addAll(logEntries);
+            dropped.addAndGet(droppedSinceLastSend);
+            if (sends.getAndIncrement() == 0) {
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.log_aggregator.service;
+
+import com.example.log_aggregator.model.LogResponse;
+import com.example.log_aggregator.model.QueryCacheStats;
+import com.example.log_aggregator.repository.RangeVersion;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QueryCacheTest {
+    private static final Instant BASE = Instant.parse("2025-03-17T10:15:00Z");
+    private static final RangeVersion VERSION = new RangeVersion(2, Long.MIN_VALUE);
+
+    private static List<LogResponse> logs(int count) {
+        List<LogResponse> logs = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            logs.add(new LogResponse(BASE.plusSeconds(i), "Log " + i, null, Map.of("trace_id", "t" + i)));
+        }
+        return logs;
+    }
+
+    @Test
+    void resultsAreServedWhileTheRangeKeepsItsVersion() {
+        QueryCache cache = new QueryCache(1 << 20);
+        List<LogResponse> logs = logs(2);
+        assertNull(cache.get("auth", BASE, BASE.plusSeconds(60), VERSION));
+        List<LogResponse> cached = cache.put("auth", BASE, BASE.plusSeconds(60), VERSION, logs);
+        assertThrows(UnsupportedOperationException.class, () -> cached.add(logs.get(0)));
+
+        assertEquals(logs, cache.get("auth", BASE, BASE.plusSeconds(60), VERSION));
+        assertNull(cache.get("auth", BASE, BASE.plusSeconds(61), VERSION));
+        assertNull(cache.get("payments", BASE, BASE.plusSeconds(60), VERSION));
+
+        // a save into the range finds the result stale and drops it
+        assertNull(cache.get("auth", BASE, BASE.plusSeconds(60), new RangeVersion(3, Long.MIN_VALUE)));
+        assertNull(cache.get("auth", BASE, BASE.plusSeconds(60), VERSION));
+
+        QueryCacheStats stats = cache.stats();
+        assertEquals(0, stats.getEntries());
+        assertEquals(0, stats.getUsedBytes());
+        assertEquals(1, stats.getHits());
+        assertEquals(5, stats.getMisses());
+        assertEquals(1.0 / 6, stats.getHitRatio(), 1e-9);
+        assertEquals(1, stats.getInvalidations());
+    }
+
+    @Test
+    void leastRecentlyUsedResultsMakeRoom() {
+        long bytes = QueryCache.estimateBytes("auth", logs(10));
+        QueryCache cache = new QueryCache(bytes * 4);
+        List<LogResponse> first = logs(10);
+        cache.put("auth", BASE, BASE.plusSeconds(60), VERSION, first);
+        for (int i = 1; i < 4; i++) {
+            cache.put("auth", BASE.plusSeconds(i), BASE.plusSeconds(60), VERSION, logs(10));
+        }
+        assertEquals(bytes * 4, cache.stats().getUsedBytes());
+        cache.get("auth", BASE, BASE.plusSeconds(60), VERSION);
+
+        cache.put("auth", BASE.plusSeconds(4), BASE.plusSeconds(60), VERSION, logs(10));
+        assertEquals(1, cache.stats().getEvictions());
+        assertEquals(bytes * 4, cache.stats().getUsedBytes());
+        assertNull(cache.get("auth", BASE.plusSeconds(1), BASE.plusSeconds(60), VERSION));
+        assertEquals(first, cache.get("auth", BASE, BASE.plusSeconds(60), VERSION));
+
+        // a result over a quarter of the cache is handed back but not kept
+        cache.put("auth", BASE, BASE.plusSeconds(120), VERSION, logs(50));
+        assertNull(cache.get("auth", BASE, BASE.plusSeconds(120), VERSION));
+        assertEquals(4, cache.stats().getEntries());
+    }
+
+    @Test
+    void sizeIsConfigured() {
+        assertFalse(new QueryCache().isEnabled());
+        assertFalse(new QueryCache("0").isEnabled());
+        assertTrue(new QueryCache("64MB").isEnabled());
+        assertEquals(64L << 20, new QueryCache("64MB").stats().getMaxBytes());
+        assertThrows(IllegalArgumentException.class, () -> new QueryCache("lots"));
+        assertThrows(IllegalArgumentException.class, () -> new QueryCache(-1));
+    }
+}